@@ -146,7 +146,7 @@ def test_case(ll: Path) -> bool:
     try:
         # 捕获汇编 / 链接阶段的 stderr
         result = subprocess.run(
-            [CROSS_GCC, "-static", "-g", "-Og", "-fno-omit-frame-pointer", asm_a64, str(LIBSYSY_A64), "-o", elf_a64],
+            [CROSS_GCC, "-static", "-g", "-Og", "-fno-omit-frame-pointer", asm_a64, str(LIBSYSY_A64), "-lpthread", "-o", elf_a64],
             capture_output=True, text=True, check=True)
 
         if result.stderr:                # 记录可能的警告 / 错误
@@ -142,7 +142,7 @@ def test_case(sy: Path) -> bool:
 
     # ---------- 4. A64 链接 & 运行 ----------
     try:
-        run([CROSS_GCC, "-static", asm_a64, str(LIBSYSY_A64), "-o", elf_a64])
+        run([CROSS_GCC, "-static", asm_a64, str(LIBSYSY_A64), "-lpthread", "-o", elf_a64])
         with open(run_out, "w") as f:
             rc2 = run_prog([QEMU, elf_a64], stdin, f)
         run_out.write_text(run_out.read_text() + f"\n---\nRETVAL={rc2}\n")
@@ -211,7 +211,7 @@ def test_case(sy: Path, report) -> bool:
     # --- 3. 链接 & 运行（本编译器产物） ---
     try:
         run([CROSS_GCC, "-static", "-g", "-Og", "-fno-omit-frame-pointer",
-             asm_a64, str(LIBSYSY_A64), "-o", elf_a64])
+             asm_a64, str(LIBSYSY_A64), "-lpthread", "-o", elf_a64])
         with open(run_out, "w") as f:
             rc_run = run_prog([QEMU, elf_a64], stdin, f)
         run_out.write_text(run_out.read_text() + f"\n---\nRETVAL={rc_run}\n")
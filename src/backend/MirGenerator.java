@@ -15,6 +15,8 @@ import ir.value.constants.ConstantArray;
 import ir.value.constants.ConstantCString;
 import ir.value.instructions.*;
 import java.util.*;
+import pass.IRPass.analysis.BlockFrequencyAnalysis;
+import pass.IRPass.analysis.DominanceAnalysisPass;
 import util.IList;
 import util.LoggingManager;
 import util.logging.Logger;
@@ -48,6 +50,9 @@ public class MirGenerator {
     // 当前函数的虚拟寄存器工厂
     private VReg.Factory currentVRegFactory = new VReg.Factory("glob");
 
+    // 当前函数的块频率估计，传给机器块供寄存器分配等后端 pass 使用
+    private BlockFrequencyAnalysis blockFrequency;
+
     // 指令翻译器映射表
     private final Map<Opcode, InstructionTranslator> translators = new HashMap<>();
 
@@ -61,10 +66,21 @@ public class MirGenerator {
     // PHI复制信息，用于寄存器分配后的修复
     private final Map<String, PhiCopyInfo> phiCopyInfoMap = new HashMap<>();
 
+    // 向量水平归约：归约树根 -> 跨 lane 指令；树中其余节点（vextract / 中间结果）翻译时跳过
+    private final Map<Instruction, VectorReduction> vectorReductions = new HashMap<>();
+    private final Set<Instruction> foldedReductionInsts = new HashSet<>();
+
+    // 栈上清零：不超过该字节数时内联 STP XZR 序列，否则调用 memset
+    private static final int INLINE_ZERO_LIMIT = 256;
+    // 局部常量数组的非零元素不少于该数目且占一半以上时，改为从只读模板 memcpy
+    private static final int TEMPLATE_COPY_MIN_STORES = 16;
+
     // 库函数列表
     private static final Set<String> LIBRARY_FUNCTIONS = Set.of("getint", "getch", "getfloat", "getarray", "getfarray",
             "putint", "putch",
-            "putfloat", "putarray", "putfarray", "putf", "starttime", "stoptime");
+            "putfloat", "putarray", "putfarray", "putf", "starttime", "stoptime",
+            "_sysy_memset_i32", "_sysy_memset_f32", "_sysy_memcpy_i32", "_sysy_memcpy_f32",
+            "_sysy_parallel_for");
 
     private MirGenerator() {
         funcMap = new HashMap<>();
@@ -179,7 +195,7 @@ public class MirGenerator {
                 } else if (init instanceof ConstantArray) {
                     // 数组常量需要特殊处理
                     ConstantArray arrayInit = (ConstantArray) init;
-                    logger.debug("数组常量，元素数量: {}", arrayInit.getElements().size());
+                    logger.debug("数组常量: {}", arrayInit.getType());
                     createArrayGlobal(name, arrayInit, elementType);
                     continue; // 跳过普通全局变量的创建
                 } else if (init instanceof ConstantFloat) {
@@ -250,12 +266,12 @@ public class MirGenerator {
             return;
         }
 
-        // ARM64汇编中数组表示为连续的数据
-        // 例如：int arr[3] = {1, 2, 3} 会生成：
+        // ARM64汇编中数组表示为连续的数据，按游程编码：
+        // 例如：int arr[8] = {1, 2, 2, 2} 会生成：
         // arr:
         // .word 1
-        // .word 2
-        // .word 3
+        // .fill 3, 4, 2
+        // .zero 16
         ArrayType arrType = (ArrayType) arrayType;
         int elementSize = calculateTypeSize(arrType.getElementType());
         int totalSize = elementSize * arrType.getLength();
@@ -268,41 +284,52 @@ public class MirGenerator {
                 false, // 不是零初始化
                 calculateTypeAlignment(arrType.getElementType()));
 
-        // 设置数组元素
-        List<Operand> arrayElements = new ArrayList<>();
-        for (Constant elem : arrayInit.getElements()) {
-            if (elem instanceof ConstantInt) {
-                long value = ((ConstantInt) elem).getValue();
-                arrayElements.add(new Imm(value, Imm.ImmKind.ARITH_U12));
-            } else if (elem instanceof ConstantFloat) {
-                float value = ((ConstantFloat) elem).getValue();
-                arrayElements.add(new Imm(Float.floatToIntBits(value), Imm.ImmKind.FLOAT_IMM));
-            } else if (elem instanceof ConstantArray) {
-                // 递归处理嵌套数组 - 扁平化
-                flattenArrayElements((ConstantArray) elem, arrayElements);
-            }
-        }
-        global.setArrayElements(arrayElements);
+        // 设置数组数据
+        List<MachineGlobal.DataRun> runs = new ArrayList<>();
+        appendArrayRuns(arrayInit, runs);
+        global.setArrayRuns(runs);
 
         mirModule.addGlobal(global);
     }
 
     /**
-     * 递归扁平化数组元素
+     * 把常量数组按行主序追加为游程：稀疏数组只遍历非零元素，零初始化子数组整体作为一个 0 段
      */
-    private void flattenArrayElements(ConstantArray array, List<Operand> result) {
-        for (Constant elem : array.getElements()) {
-            if (elem instanceof ConstantInt) {
-                long value = ((ConstantInt) elem).getValue();
-                result.add(new Imm(value, Imm.ImmKind.ARITH_U12));
-            } else if (elem instanceof ConstantFloat) {
-                float value = ((ConstantFloat) elem).getValue();
-                result.add(new Imm(Float.floatToIntBits(value), Imm.ImmKind.FLOAT_IMM));
-            } else if (elem instanceof ConstantArray) {
-                // 递归处理
-                flattenArrayElements((ConstantArray) elem, result);
+    private void appendArrayRuns(Constant constant, List<MachineGlobal.DataRun> runs) {
+        if (constant instanceof ConstantSparseArray sparse) {
+            int elementSize = calculateTypeSize(sparse.getScalarType());
+            Imm zeroImm = new Imm(0, Imm.ImmKind.ARITH_U12);
+            int next = 0;
+            for (Map.Entry<Integer, Constant> entry : sparse.getNonZeroElements().entrySet()) {
+                MachineGlobal.appendRun(runs, zeroImm, elementSize, entry.getKey() - next);
+                MachineGlobal.appendRun(runs, scalarDataImm(entry.getValue()), elementSize, 1);
+                next = entry.getKey() + 1;
+            }
+            MachineGlobal.appendRun(runs, zeroImm, elementSize, sparse.getFlatSize() - next);
+        } else if (constant instanceof ConstantZeroInitializer zeroInit) {
+            Type scalarType = zeroInit.getType();
+            int count = 1;
+            while (scalarType instanceof ArrayType arr) {
+                count *= arr.getLength();
+                scalarType = arr.getElementType();
+            }
+            MachineGlobal.appendRun(runs, new Imm(0, Imm.ImmKind.ARITH_U12),
+                    calculateTypeSize(scalarType), count);
+        } else if (constant instanceof ConstantArray array) {
+            // 递归处理嵌套数组 - 扁平化
+            for (Constant elem : array.getElements()) {
+                appendArrayRuns(elem, runs);
             }
+        } else {
+            MachineGlobal.appendRun(runs, scalarDataImm(constant), calculateTypeSize(constant.getType()), 1);
+        }
+    }
+
+    private Imm scalarDataImm(Constant elem) {
+        if (elem instanceof ConstantFloat cf) {
+            return new Imm(Float.floatToIntBits(cf.getValue()), Imm.ImmKind.FLOAT_IMM);
         }
+        return new Imm(((ConstantInt) elem).getValue(), Imm.ImmKind.ARITH_U12);
     }
 
     /**
@@ -354,16 +381,18 @@ public class MirGenerator {
         currentVRegFactory = machineFunc.getVRegFactory();
         logger.debug("设置虚拟寄存器工厂: {}", currentVRegFactory);
 
-        // 1. 创建基本块
+        // 1. 创建基本块（附带 IR 上估计的块频率）
         logger.debug("步骤1: 创建基本块");
+        blockFrequency = BlockFrequencyAnalysis.compute(function);
         createBasicBlocks(function, machineFunc);
 
         // 2. 处理函数参数
         logger.debug("步骤2: 处理函数参数");
         processFunctionParameters(function, machineFunc);
 
-        // 3. 翻译指令
+        // 3. 翻译指令（先识别可折叠成跨 lane 指令的向量水平归约）
         logger.debug("步骤3: 翻译指令");
+        matchVectorReductions(function);
         translateInstructions(function);
 
         // 4. 建立控制流关系
@@ -387,6 +416,7 @@ public class MirGenerator {
             String labelName = function.getName() + "_" + bb.getName();
             Label label = new Label(labelName);
             MachineBlock machineBlock = new MachineBlock(label, machineFunc);
+            machineBlock.setFrequency(blockFrequency.getBlockFrequency(bb));
             blockMap.put(bb, machineBlock);
             machineFunc.addBlock(machineBlock);
         }
@@ -531,6 +561,15 @@ public class MirGenerator {
             logger.debug("    -> {} ({})", inst.opCode(), inst.toNLVM());
         }
 
+        if (foldedReductionInsts.contains(inst)) {
+            return;
+        }
+        VectorReduction reduction = vectorReductions.get(inst);
+        if (reduction != null) {
+            emitVectorReduction(inst, reduction, machineBlock);
+            return;
+        }
+
         InstructionTranslator translator = translators.get(inst.opCode());
         if (translator != null) {
             translator.translate(inst, machineBlock);
@@ -612,6 +651,26 @@ public class MirGenerator {
 
         // PHI指令
         translators.put(Opcode.PHI, this::translatePhiInst);
+
+        // 向量指令（NEON，固定 128 位 / 4 x 32 位 lane）
+        // 没有对应 NEON 指令的向量 opcode 不注册，落到 translateInstruction 的 Unsupported instruction
+        translators.put(Opcode.VADD, (inst, block) -> translateVectorBinInst(inst, block, Mnemonic.ADD_V, Mnemonic.FADD_V));
+        translators.put(Opcode.VSUB, (inst, block) -> translateVectorBinInst(inst, block, Mnemonic.SUB_V, Mnemonic.FSUB_V));
+        translators.put(Opcode.VMUL, (inst, block) -> translateVectorBinInst(inst, block, Mnemonic.MUL_V, Mnemonic.FMUL_V));
+        translators.put(Opcode.VMIN, (inst, block) -> translateVectorBinInst(inst, block, Mnemonic.SMIN_V, Mnemonic.FMIN_V));
+        translators.put(Opcode.VMAX, (inst, block) -> translateVectorBinInst(inst, block, Mnemonic.SMAX_V, Mnemonic.FMAX_V));
+        translators.put(Opcode.VDIV, this::translateVectorDivInst);
+        for (VectorICMPPredicate pred : VectorICMPPredicate.values()) {
+            translators.put(pred.getOpcode(), this::translateVectorIcmpInst);
+        }
+        for (VectorFCMPPredicate pred : VectorFCMPPredicate.values()) {
+            translators.put(pred.getOpcode(), this::translateVectorFcmpInst);
+        }
+        translators.put(Opcode.VLOAD, this::translateVectorLoadInst);
+        translators.put(Opcode.VSTORE, this::translateVectorStoreInst);
+        translators.put(Opcode.VEXTRACT, this::translateVectorExtractInst);
+        translators.put(Opcode.VINSERT, this::translateVectorInsertInst);
+        translators.put(Opcode.VGEP, this::translateGepInst);
     }
 
     // === 选择指令翻译（在 initTranslators 内部声明，确保捕获 translator map 初始化阶段）
@@ -1601,102 +1660,99 @@ public class MirGenerator {
     // }
 
     /** 把 ConstantArray 写回到栈上的 alloca：
-     *  - 连续 0 用 STP/STR + post-index（优先 16B，再 8B，最后 4B）
-     *  - 非 0 元素仍按 4B 存
-     *  - 全程用后变址推进游标，避免 ADD
+     *  - 非零元素多且稠密：从只读模板 memcpy 整块拷贝
+     *  - 数组较大：先 memset 清零，再只写非零段
+     *  - 否则顺序扫描游程，连续 0 用 STP/STR XZR + post-index（优先 16B，再 8B，最后 4B）
+     *  - 非 0 元素按 4B 存，同值的整段只装载一次
      */
     private void initializeArrayOnStack(Operand baseAddr, ConstantArray array, MachineBlock block) {
         VReg base = (VReg) baseAddr;
-        List<Operand> elems = new ArrayList<>();
-        flattenArrayElements(array, elems);      // 元素均为 i32/float
+        List<MachineGlobal.DataRun> runs = new ArrayList<>();
+        appendArrayRuns(array, runs);            // 元素均为 i32/float，按游程合并
+
+        int totalBytes = 0;
+        int nonZeroStores = 0;
+        for (MachineGlobal.DataRun run : runs) {
+            totalBytes += run.getCount() * run.getElementSize();
+            if (!run.isZero()) {
+                nonZeroStores += run.getCount();
+            }
+        }
 
-        final int STEP4 = 4, STEP8 = 8, STEP16 = 16;
+        // ====== 稠密：memcpy(base, 模板, size) ======
+        if (nonZeroStores >= TEMPLATE_COPY_MIN_STORES && nonZeroStores * 4 * 2 >= totalBytes) {
+            Symbol template = Symbol.create(addArrayTemplate(array, runs, totalBytes));
+            VReg src = currentVRegFactory.createGPR("arr_tmpl");
+            generateGlobalSymbolLoad(src, template, block, false);
+            emitMemcpy(base, src, totalBytes, block);
+            return;
+        }
+
+        // ====== 大而稀疏：memset 后只写非零段 ======
+        if (totalBytes > INLINE_ZERO_LIMIT) {
+            emitMemset(base, totalBytes, block);
+            int offset = 0;
+            for (MachineGlobal.DataRun run : runs) {
+                if (!run.isZero()) {
+                    VReg cur = currentVRegFactory.createGPR("arr_cur");
+                    Register addr = buildAddrWithOffset(base, offset, block);
+                    block.addInst(new MoveInst(Mnemonic.MOV, cur, addr, /*is32=*/false));
+                    emitValueStores(cur, run, block);
+                }
+                offset += run.getCount() * run.getElementSize();
+            }
+            return;
+        }
 
         // 用独立游标，避免破坏基址；post-index 需要 X 寄存器
         VReg cur = currentVRegFactory.createGPR("arr_cur");
         block.addInst(new MoveInst(Mnemonic.MOV, cur, base, /*is32=*/false)); // x寄存器
 
-        for (int i = 0; i < elems.size();) {
-
-            // ====== 连续 0 run-length 合并 ======
-            int run = 0;
-            while (i + run < elems.size()) {
-                Operand op = elems.get(i + run);
-                if (op instanceof Imm imm && isZeroImm32(imm)) run++;
-                else break;
-            }
-
-            if (run > 0) {
-                // 1) 16B：STP XZR, XZR, [cur], #16   （一次清 4 个 i32）
-                while (run >= 4) {
-                    block.addInst(new MemInst(
-                                              Mnemonic.STP,
-                                              PReg.getZeroRegister(false),  // XZR
-                                              PReg.getZeroRegister(false),  // XZR
-                                              ImmAddr.postS9(cur, STEP16),
-                                              /*is32=*/false));             // 64-bit pair
-                    i   += 4;
-                    run -= 4;
-                }
-                // 2) 8B：STR XZR, [cur], #8           （一次清 2 个 i32）
-                while (run >= 2) {
-                    block.addInst(new MemInst(
-                                              Mnemonic.STR,
-                                              PReg.getZeroRegister(false),  // XZR
-                                              ImmAddr.postS9(cur, STEP8),
-                                              /*is32=*/false));             // 64-bit
-                    i   += 2;
-                    run -= 2;
-                }
-                // 3) 4B：STR WZR, [cur], #4           （清 1 个 i32）
-                if (run == 1) {
-                    block.addInst(new MemInst(
-                                              Mnemonic.STR,
-                                              PReg.getZeroRegister(true),   // WZR
-                                              ImmAddr.postS9(cur, STEP4),
-                                              /*is32=*/true));              // 32-bit
-                    i += 1;
-                }
-                continue;
-            }
-
-            // ====== 非 0 元素：装载到 GPR 后 4B 存 + post-index ======
-            Operand elem = elems.get(i);
-            Register dataReg;
-            if (elem instanceof Imm imm) {
-                // 浮点“大立即数” → 常量池 LDR 到 FPR，再 FMOV 到 GPR 以便 STR
-                if (imm.getKind() == Imm.ImmKind.FLOAT_IMM && !canUseDirectImmediate(imm, Mnemonic.FMOV)) {
-                    float fVal = Float.intBitsToFloat((int) imm.getValue());
-                    VReg fpr = currentVRegFactory.createFPR();
-                    generateFloatConstantLoad(fVal, fpr, block);
-                    dataReg = currentVRegFactory.createGPR();
-                    block.addInst(new MoveInst(Mnemonic.FMOV, dataReg, fpr, /*toGPR=*/true));
-                } else {
-                    dataReg = currentVRegFactory.createGPR();
-                    block.addInst(new MoveInst(Mnemonic.MOV, dataReg, imm, /*is32=*/true));
-                }
+        for (MachineGlobal.DataRun run : runs) {
+            if (run.isZero()) {
+                // ====== 连续 0 run-length 合并 ======
+                emitZeroStores(cur, run.getCount() * run.getElementSize(), block);
             } else {
-                dataReg = (Register) elem; // 极少出现
+                emitValueStores(cur, run, block);
             }
+        }
+    }
 
+    /** 非 0 段：装载到 GPR 一次，然后逐个 4B 存 + post-index */
+    private void emitValueStores(VReg cur, MachineGlobal.DataRun run, MachineBlock block) {
+        Imm imm = run.getValue();
+        Register dataReg;
+        // 浮点“大立即数” → 常量池 LDR 到 FPR，再 FMOV 到 GPR 以便 STR
+        if (imm.getKind() == Imm.ImmKind.FLOAT_IMM && !canUseDirectImmediate(imm, Mnemonic.FMOV)) {
+            float fVal = Float.intBitsToFloat((int) imm.getValue());
+            VReg fpr = currentVRegFactory.createFPR();
+            generateFloatConstantLoad(fVal, fpr, block);
+            dataReg = currentVRegFactory.createGPR();
+            block.addInst(new MoveInst(Mnemonic.FMOV, dataReg, fpr, /*toGPR=*/true));
+        } else {
+            dataReg = currentVRegFactory.createGPR();
+            block.addInst(new MoveInst(Mnemonic.MOV, dataReg, imm, /*is32=*/true));
+        }
+
+        for (int k = 0; k < run.getCount(); k++) {
             block.addInst(new MemInst(
                                       Mnemonic.STR, dataReg,
-                                      ImmAddr.postS9(cur, STEP4),
+                                      ImmAddr.postS9(cur, 4),
                                       /*is32=*/true));
-            i += 1;
         }
     }
 
-    /** 识别 32 位“0”：整数 0，或浮点 +0/-0（0x00000000 / 0x80000000） */
-    private boolean isZeroImm32(Imm imm) {
-        if (imm.getKind() == Imm.ImmKind.FLOAT_IMM) {
-            int bits = (int) imm.getValue();
-            return bits == 0 || bits == 0x80000000;
-        }
-        return imm.getValue() == 0;
+    /** 为局部常量数组生成只读模板，内容相同的数组共用一份 */
+    private String addArrayTemplate(ConstantArray array, List<MachineGlobal.DataRun> runs, int totalBytes) {
+        return constantPool.computeIfAbsent(array.getHash(), k -> {
+            String label = ".LC" + constantCounter++;
+            MachineGlobal template = new MachineGlobal(label, null, true, totalBytes, false, 8);
+            template.setArrayRuns(runs);
+            mirModule.addGlobal(template);
+            return label;
+        });
     }
 
-
     /**
      * ALLOCA翻译 - 栈空间分配
      */
@@ -1857,7 +1913,11 @@ public class MirGenerator {
             }
 
             // 下一层类型
-            curType = (curType instanceof ArrayType) ? ((ArrayType) curType).getElementType() : curType;
+            if (curType instanceof ArrayType arrayType) {
+                curType = arrayType.getElementType();
+            } else if (curType instanceof VectorType vectorType) {
+                curType = vectorType.getElementType();
+            }
         }
 
         // 3) 先把累积的常量偏移一次性并入
@@ -2303,6 +2363,417 @@ public class MirGenerator {
         return new HashSet<>(phiRelatedVRegs);
     }
 
+    // === 向量指令翻译（NEON） ===
+
+    /** 向量水平归约：对 vector 的 4 个 lane 做一次跨 lane 运算 */
+    private record VectorReduction(Value vector, Mnemonic mnemonic) {
+    }
+
+    /** 目前只支持 4 x 32 位 lane 的 128 位向量 */
+    private String arrangementOf(Type type) {
+        if (type instanceof VectorType vt && vt.getNumElements() == 4
+                && (vt.getElementType().isFloat() || vt.getElementType() instanceof IntegerType)) {
+            return ".4s";
+        }
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+
+    private boolean isFloatVector(Type type) {
+        return type instanceof VectorType vt && vt.getElementType().isFloat();
+    }
+
+    /** 取向量操作数所在的寄存器；undef 用全零向量代替 */
+    private Register vectorRegister(Value value, MachineBlock block) {
+        if (value instanceof UndefValue) {
+            VReg zero = currentVRegFactory.createVector128("vec_undef");
+            block.addInst(VectorInst.createZeroVector(zero));
+            return zero;
+        }
+        return getOrCreateVReg(value);
+    }
+
+    /** 把标量放进寄存器：整数用 GPR，浮点用 FPR */
+    private Register scalarRegister(Value value, MachineBlock block) {
+        if (value instanceof ConstantInt ci) {
+            VReg reg = currentVRegFactory.createGPR();
+            generateConstantLoad(ci.getValue(), reg, block);
+            return reg;
+        } else if (value instanceof ConstantFloat cf) {
+            VReg reg = currentVRegFactory.createFPR();
+            generateFloatConstantLoad(cf.getValue(), reg, block);
+            return reg;
+        }
+        return getOrCreateVReg(value);
+    }
+
+    /** 0-3 的常量下标返回 lane 号，否则返回 -1（需经栈槽按下标访问） */
+    private int constantLane(Value index) {
+        if (index instanceof ConstantInt ci && ci.getValue() >= 0 && ci.getValue() < 4) {
+            return ci.getValue();
+        }
+        return -1;
+    }
+
+    /** 在栈上分配一个 16 字节槽位并把 vec 存进去，返回槽位地址 */
+    private VReg spillVectorToSlot(Register vec, MachineBlock block) {
+        VReg slot = currentVRegFactory.createPointer("vec_slot");
+        currentMachineFunc.addAllocaSize(16);
+        ArithInst addrInst = new ArithInst(Mnemonic.ADD, slot, PReg.getFramePointer(),
+                new Imm(-16, Imm.ImmKind.ARITH_U12), false, true);
+        addrInst.setComment("ALLOCA_PLACEHOLDER:size=16 - vector lane slot");
+        block.addInst(addrInst);
+        block.addInst(VectorInst.createStore(vec, ImmAddr.offset(slot, 0)));
+        return slot;
+    }
+
+    /** 槽位中第 index 个 lane 的地址 slot + 4 * index；下标按 lane 数取模，越界不会写出槽位 */
+    private RegAddr laneAddress(VReg slot, Value index, MachineBlock block) {
+        VReg mask = currentVRegFactory.createGPR();
+        generateConstantLoad(3, mask, block);
+        VReg lane = currentVRegFactory.createGPR();
+        block.addInst(new ArithInst(Mnemonic.AND, lane, scalarRegister(index, block), mask));
+        return RegAddr.uxtw(slot, lane, 2);
+    }
+
+    private void translateVectorBinInst(Instruction inst, MachineBlock block, Mnemonic intOp, Mnemonic floatOp) {
+        VectorBinInst bin = (VectorBinInst) inst;
+        String arr = arrangementOf(inst.getType());
+        VReg dst = getOrCreateVReg(inst);
+        Register lhs = vectorRegister(bin.getLHS(), block);
+        Register rhs = vectorRegister(bin.getRHS(), block);
+        Mnemonic mnemonic = isFloatVector(inst.getType()) ? floatOp : intOp;
+        block.addInst(VectorInst.createOp(mnemonic, arr, dst, lhs, rhs));
+    }
+
+    private void translateVectorDivInst(Instruction inst, MachineBlock block) {
+        if (isFloatVector(inst.getType())) {
+            translateVectorBinInst(inst, block, Mnemonic.FDIV_V, Mnemonic.FDIV_V);
+            return;
+        }
+        VectorBinInst bin = (VectorBinInst) inst;
+        arrangementOf(inst.getType());
+        VReg dst = getOrCreateVReg(inst);
+        Register lhs = vectorRegister(bin.getLHS(), block);
+        Register rhs = vectorRegister(bin.getRHS(), block);
+
+        // NEON 没有整数除法：逐 lane 取出做 sdiv 再插回
+        block.addInst(VectorInst.createZeroVector(dst));
+        for (int lane = 0; lane < 4; lane++) {
+            VReg a = currentVRegFactory.createGPR();
+            VReg b = currentVRegFactory.createGPR();
+            VReg q = currentVRegFactory.createGPR();
+            block.addInst(VectorInst.createExtract(a, lhs, lane));
+            block.addInst(VectorInst.createExtract(b, rhs, lane));
+            block.addInst(new ArithInst(Mnemonic.SDIV, q, a, b));
+            block.addInst(VectorInst.createInsert(dst, q, lane));
+        }
+    }
+
+    /** 整数向量比较：结果每个 lane 为全 1 / 全 0；小于类比较交换操作数后用大于类指令，NE 对 EQ 取反 */
+    private void translateVectorIcmpInst(Instruction inst, MachineBlock block) {
+        VectorICMPInst cmp = (VectorICMPInst) inst;
+        String arr = arrangementOf(cmp.getLHS().getType());
+        VReg dst = getOrCreateVReg(inst);
+        Register l = vectorRegister(cmp.getLHS(), block);
+        Register r = vectorRegister(cmp.getRHS(), block);
+
+        VectorICMPPredicate pred = cmp.getPredicate();
+        Mnemonic mnemonic = switch (pred) {
+            case EQ, NE -> Mnemonic.CMEQ_V;
+            case SGT, SLT -> Mnemonic.CMGT_V;
+            case SGE, SLE -> Mnemonic.CMGE_V;
+            case UGT, ULT -> Mnemonic.CMHI_V;
+            case UGE, ULE -> Mnemonic.CMHS_V;
+        };
+        boolean swap = switch (pred) {
+            case SLT, SLE, ULT, ULE -> true;
+            case EQ, NE, SGT, SGE, UGT, UGE -> false;
+        };
+        if (swap) {
+            Register t = l;
+            l = r;
+            r = t;
+        }
+        if (pred == VectorICMPPredicate.NE) {
+            VReg eq = currentVRegFactory.createVector128();
+            block.addInst(VectorInst.createOp(mnemonic, arr, eq, l, r));
+            block.addInst(VectorInst.createOp(Mnemonic.NOT_V, arr, dst, eq));
+        } else {
+            block.addInst(VectorInst.createOp(mnemonic, arr, dst, l, r));
+        }
+    }
+
+    /** 浮点向量比较：有序比较直接对应 fcmeq/fcmgt/fcmge，ONE/ORD/UNO 由两次比较组合 */
+    private void translateVectorFcmpInst(Instruction inst, MachineBlock block) {
+        VectorFCMPInst cmp = (VectorFCMPInst) inst;
+        String arr = arrangementOf(cmp.getLHS().getType());
+        VReg dst = getOrCreateVReg(inst);
+        Register l = vectorRegister(cmp.getLHS(), block);
+        Register r = vectorRegister(cmp.getRHS(), block);
+
+        switch (cmp.getPredicate()) {
+            case OEQ -> block.addInst(VectorInst.createOp(Mnemonic.FCMEQ_V, arr, dst, l, r));
+            case OGT -> block.addInst(VectorInst.createOp(Mnemonic.FCMGT_V, arr, dst, l, r));
+            case OGE -> block.addInst(VectorInst.createOp(Mnemonic.FCMGE_V, arr, dst, l, r));
+            case OLT -> block.addInst(VectorInst.createOp(Mnemonic.FCMGT_V, arr, dst, r, l));
+            case OLE -> block.addInst(VectorInst.createOp(Mnemonic.FCMGE_V, arr, dst, r, l));
+            case ONE -> {
+                VReg gt = currentVRegFactory.createVector128();
+                VReg lt = currentVRegFactory.createVector128();
+                block.addInst(VectorInst.createOp(Mnemonic.FCMGT_V, arr, gt, l, r));
+                block.addInst(VectorInst.createOp(Mnemonic.FCMGT_V, arr, lt, r, l));
+                block.addInst(VectorInst.createOp(Mnemonic.ORR_V, arr, dst, gt, lt));
+            }
+            case ORD, UNO -> {
+                // x == x 仅在 x 不是 NaN 时成立
+                VReg lOrd = currentVRegFactory.createVector128();
+                VReg rOrd = currentVRegFactory.createVector128();
+                block.addInst(VectorInst.createOp(Mnemonic.FCMEQ_V, arr, lOrd, l, l));
+                block.addInst(VectorInst.createOp(Mnemonic.FCMEQ_V, arr, rOrd, r, r));
+                if (cmp.getPredicate() == VectorFCMPPredicate.ORD) {
+                    block.addInst(VectorInst.createOp(Mnemonic.AND_V, arr, dst, lOrd, rOrd));
+                } else {
+                    VReg ord = currentVRegFactory.createVector128();
+                    block.addInst(VectorInst.createOp(Mnemonic.AND_V, arr, ord, lOrd, rOrd));
+                    block.addInst(VectorInst.createOp(Mnemonic.NOT_V, arr, dst, ord));
+                }
+            }
+        }
+    }
+
+    /** 向量访存的基址寄存器；全局符号先装入地址 */
+    private Register vectorAddress(Value pointer, MachineBlock block) {
+        Operand addr = getOperand(pointer);
+        if (addr instanceof Symbol symbol) {
+            VReg base = currentVRegFactory.createPointer("vec_addr");
+            generateGlobalSymbolLoad(base, symbol, block, false);
+            return base;
+        } else if (addr instanceof Register reg) {
+            return reg;
+        }
+        throw new RuntimeException("Unexpected address operand type for vector access: " + addr);
+    }
+
+    private void translateVectorLoadInst(Instruction inst, MachineBlock block) {
+        VectorLoadInst load = (VectorLoadInst) inst;
+        arrangementOf(inst.getType());
+        VReg dst = getOrCreateVReg(inst);
+        Register base = vectorAddress(load.getPointerOperand(), block);
+        block.addInst(VectorInst.createLoad(dst, ImmAddr.offset(base, 0)));
+    }
+
+    private void translateVectorStoreInst(Instruction inst, MachineBlock block) {
+        VectorStoreInst store = (VectorStoreInst) inst;
+        arrangementOf(store.getValueOperand().getType());
+        Register value = vectorRegister(store.getValueOperand(), block);
+        Register base = vectorAddress(store.getPointerOperand(), block);
+        block.addInst(VectorInst.createStore(value, ImmAddr.offset(base, 0)));
+    }
+
+    private void translateVectorExtractInst(Instruction inst, MachineBlock block) {
+        VectorExtractInst ext = (VectorExtractInst) inst;
+        arrangementOf(ext.getVectorOperand().getType());
+        int lane = constantLane(ext.getIndexOperand());
+        VReg dst = getOrCreateVReg(inst);
+        Register vec = vectorRegister(ext.getVectorOperand(), block);
+        if (lane >= 0) {
+            block.addInst(VectorInst.createExtract(dst, vec, lane));
+        } else {
+            // 下标不是常量：整个向量存到栈上，再按下标读一个 lane
+            VReg slot = spillVectorToSlot(vec, block);
+            block.addInst(new MemInst(Mnemonic.LDR, dst, laneAddress(slot, ext.getIndexOperand(), block), true));
+        }
+        if (inst.getType() instanceof IntegerType it && it.getBitWidth() == 1) {
+            // 比较结果的 lane 是全 1 掩码，转成 0/1
+            block.addInst(new ArithInst(Mnemonic.AND, dst, dst, Imm.logical(1)));
+        }
+    }
+
+    /** 只被同一块中下一条 vinsert 使用的常量下标 vinsert 不单独生成代码，由链尾一次性构造 */
+    private boolean isFoldedIntoNextInsert(VectorInsertInst ins) {
+        if (ins.getUses().size() != 1 || constantLane(ins.getIndexOperand()) < 0) {
+            return false;
+        }
+        return ins.getUses().getFirst().getUser() instanceof VectorInsertInst next
+                && next.getVectorOperand() == ins && next.getParent() == ins.getParent()
+                && constantLane(next.getIndexOperand()) >= 0;
+    }
+
+    /**
+     * 翻译 vinsert 链：4 个 lane 都是同一个标量时生成 movi / dup 广播，
+     * 否则从基向量（undef 视为全零）出发逐 lane 写入；下标不是常量的 vinsert 经栈槽单独写入
+     */
+    private void translateVectorInsertInst(Instruction inst, MachineBlock block) {
+        VectorInsertInst top = (VectorInsertInst) inst;
+        if (isFoldedIntoNextInsert(top)) {
+            return;
+        }
+        String arr = arrangementOf(inst.getType());
+        VReg dst = getOrCreateVReg(inst);
+        if (constantLane(top.getIndexOperand()) < 0) {
+            VReg slot = spillVectorToSlot(vectorRegister(top.getVectorOperand(), block), block);
+            block.addInst(new MemInst(Mnemonic.STR, scalarRegister(top.getElementOperand(), block),
+                    laneAddress(slot, top.getIndexOperand(), block), true));
+            block.addInst(VectorInst.createLoad(dst, ImmAddr.offset(slot, 0)));
+            return;
+        }
+
+        // 自链尾向上收集，后写入的 lane 覆盖先写入的
+        Value[] lanes = new Value[4];
+        Value base = top;
+        while (base instanceof VectorInsertInst ins && (ins == top || isFoldedIntoNextInsert(ins))) {
+            int lane = constantLane(ins.getIndexOperand());
+            if (lanes[lane] == null) {
+                lanes[lane] = ins.getElementOperand();
+            }
+            base = ins.getVectorOperand();
+        }
+
+        boolean fromUndef = base instanceof UndefValue;
+        if (fromUndef && lanes[0] != null && lanes[1] == lanes[0] && lanes[2] == lanes[0]
+                && lanes[3] == lanes[0]) {
+            emitVectorSplat(dst, lanes[0], arr, block);
+            return;
+        }
+
+        if (fromUndef) {
+            block.addInst(VectorInst.createZeroVector(dst));
+        } else {
+            block.addInst(VectorInst.createMove(dst, vectorRegister(base, block)));
+        }
+        for (int lane = 0; lane < 4; lane++) {
+            Value elem = lanes[lane];
+            if (elem == null || (fromUndef && isZeroConstant(elem))) {
+                continue;
+            }
+            block.addInst(VectorInst.createInsert(dst, scalarRegister(elem, block), lane));
+        }
+    }
+
+    private void emitVectorSplat(VReg dst, Value scalar, String arr, MachineBlock block) {
+        if (scalar instanceof ConstantInt ci && ci.getValue() >= 0 && ci.getValue() <= 255) {
+            // movi 的 8 位立即数可直接编码
+            block.addInst(new VectorInst(dst, Imm.of(ci.getValue()), arr));
+            return;
+        }
+        block.addInst(VectorInst.createDup(dst, scalarRegister(scalar, block)));
+    }
+
+    private boolean isZeroConstant(Value value) {
+        return (value instanceof ConstantInt ci && ci.getValue() == 0)
+                || (value instanceof ConstantFloat cf && Float.floatToRawIntBits(cf.getValue()) == 0);
+    }
+
+    /**
+     * 识别 LoopVectorize 生成的水平归约 ((e0 op e1) op (e2 op e3))，其中 ei 是同一向量第 i 个 lane 的 vextract，
+     * 整棵树折叠成一条 addv / sminv / smaxv / fminv / fmaxv
+     */
+    private void matchVectorReductions(Function function) {
+        vectorReductions.clear();
+        foldedReductionInsts.clear();
+        for (IList.INode<BasicBlock, Function> bbNode : function.getBlocks()) {
+            List<Instruction> insts = new ArrayList<>();
+            for (IList.INode<Instruction, BasicBlock> instNode : bbNode.getVal().getInstructions()) {
+                insts.add(instNode.getVal());
+            }
+            // 自后向前，先遇到的是树根
+            for (int i = insts.size() - 1; i >= 0; i--) {
+                Instruction root = insts.get(i);
+                Mnemonic mnemonic = reductionMnemonic(root);
+                if (mnemonic == null || foldedReductionInsts.contains(root)) {
+                    continue;
+                }
+                Set<Instruction> tree = new HashSet<>();
+                VectorExtractInst[] lanes = new VectorExtractInst[4];
+                if (!collectReductionTree(root, root, mnemonic, tree, lanes)) {
+                    continue;
+                }
+                Value vector = lanes[0] == null ? null : lanes[0].getVectorOperand();
+                boolean complete = vector != null && isFloatVector(vector.getType()) == root.getType().isFloat();
+                for (VectorExtractInst lane : lanes) {
+                    complete &= lane != null && lane.getVectorOperand() == vector;
+                }
+                if (!complete) {
+                    continue;
+                }
+                arrangementOf(vector.getType());
+                tree.remove(root);
+                foldedReductionInsts.addAll(tree);
+                vectorReductions.put(root, new VectorReduction(vector, mnemonic));
+            }
+        }
+    }
+
+    /** 归约树节点对应的跨 lane 指令：i32 加法，或 select(cmp a, b), a, b 形式的 min / max */
+    private Mnemonic reductionMnemonic(Instruction inst) {
+        if (inst instanceof BinOperator && inst.opCode() == Opcode.ADD && inst.getType().isI32()) {
+            return Mnemonic.ADDV;
+        }
+        if (!(inst instanceof SelectInst sel) || !(sel.getCondition() instanceof Instruction cmp)
+                || cmp.getNumOperands() != 2 || cmp.getOperand(0) != sel.getTrueValue()
+                || cmp.getOperand(1) != sel.getFalseValue()) {
+            return null;
+        }
+        if (cmp instanceof ICmpInst icmp && inst.getType().isI32()) {
+            return switch (icmp.getOpcode()) {
+                case ICMP_SLT, ICMP_SLE -> Mnemonic.SMINV;
+                case ICMP_SGT, ICMP_SGE -> Mnemonic.SMAXV;
+                default -> null;
+            };
+        }
+        if (cmp instanceof FCmpInst fcmp && inst.getType().isFloat()) {
+            return switch (fcmp.getOpcode()) {
+                case FCMP_OLT, FCMP_OLE -> Mnemonic.FMINV;
+                case FCMP_OGT, FCMP_OGE -> Mnemonic.FMAXV;
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    private boolean collectReductionTree(Value value, Instruction root, Mnemonic mnemonic,
+            Set<Instruction> tree, VectorExtractInst[] lanes) {
+        if (value instanceof VectorExtractInst ext) {
+            if (ext.getUses().size() != 1 || !(ext.getIndexOperand() instanceof ConstantInt ci)
+                    || ci.getValue() < 0 || ci.getValue() >= 4 || lanes[ci.getValue()] != null) {
+                return false;
+            }
+            lanes[ci.getValue()] = ext;
+            tree.add(ext);
+            return true;
+        }
+        // 4 个 lane 的归约树最多 3 个组合节点（min / max 各带一条比较）
+        if (tree.size() > 10 || !(value instanceof Instruction node) || reductionMnemonic(node) != mnemonic
+                || (node != root && node.getUses().size() != 1)) {
+            return false;
+        }
+        tree.add(node);
+        if (node instanceof SelectInst sel) {
+            Instruction cmp = (Instruction) sel.getCondition();
+            if (cmp.getUses().size() != 1) {
+                return false;
+            }
+            tree.add(cmp);
+            return collectReductionTree(sel.getTrueValue(), root, mnemonic, tree, lanes)
+                    && collectReductionTree(sel.getFalseValue(), root, mnemonic, tree, lanes);
+        }
+        return collectReductionTree(node.getOperand(0), root, mnemonic, tree, lanes)
+                && collectReductionTree(node.getOperand(1), root, mnemonic, tree, lanes);
+    }
+
+    private void emitVectorReduction(Instruction root, VectorReduction reduction, MachineBlock block) {
+        VReg dst = getOrCreateVReg(root);
+        Register vec = vectorRegister(reduction.vector(), block);
+        if (dst.isGPR()) {
+            // 跨 lane 结果落在 s 寄存器，整数再搬回 w 寄存器
+            VReg acc = currentVRegFactory.createFPR("vec_red");
+            block.addInst(VectorInst.createOp(reduction.mnemonic(), ".4s", acc, vec));
+            block.addInst(VectorInst.createExtract(dst, acc, 0));
+        } else {
+            block.addInst(VectorInst.createOp(reduction.mnemonic(), ".4s", dst, vec));
+        }
+    }
+
     /**
      * 建立控制流关系
      */
@@ -2436,6 +2907,7 @@ public class MirGenerator {
         String labelName = function.getName() + "_" + newBlockName;
         Label label = new Label(labelName);
         MachineBlock newMachineBlock = new MachineBlock(label, currentMachineFunc);
+        newMachineBlock.setFrequency(splitEdgeFrequency(source, target));
         blockMap.put(newBlock, newMachineBlock);
         currentMachineFunc.addBlock(newMachineBlock);
 
@@ -2452,6 +2924,16 @@ public class MirGenerator {
         logger.debug("成功分裂关键边，创建中间块: {}", newBlockName);
     }
 
+    /**
+     * 分裂块的频率取原边的频率；源块的分支已被改写（同一源块分裂多条边）时退回两端频率的较小者
+     */
+    private double splitEdgeFrequency(BasicBlock source, BasicBlock target) {
+        double edge = blockFrequency.getEdgeFrequency(source, target);
+        if (edge > 0)
+            return edge;
+        return Math.min(blockMap.get(source).getFrequency(), blockMap.get(target).getFrequency());
+    }
+
     /**
      * 更新分裂边后的控制流关系
      */
@@ -2466,6 +2948,11 @@ public class MirGenerator {
         newBlock.setPredecessor(source);
         newBlock.setSuccessor(target);
         target.setPredecessor(newBlock);
+        // 若 IR 层缓存了支配树，增量补上 source -> newBlock -> target
+        DominanceAnalysisPass.updateCached(source.getParent(), List.of(
+                DominanceAnalysisPass.Update.delete(source, target),
+                DominanceAnalysisPass.Update.insert(source, newBlock),
+                DominanceAnalysisPass.Update.insert(newBlock, target)));
 
         // 更新机器基本块的控制流关系
         MachineBlock sourceMachine = blockMap.get(source);
@@ -2634,6 +3121,10 @@ public class MirGenerator {
                     BasicBlock incomingBlock = (BasicBlock) phiInst.getOperand(i + 1);
 
                     MachineBlock predBlock = blockMap.get(incomingBlock);
+                    if (incomingValue instanceof UndefValue && dst.isVector()) {
+                        // 未定义的向量输入无需复制
+                        continue;
+                    }
                     if (predBlock != null) {
                         // 在phi消除阶段，不要立即生成常量加载指令
                         // 而是保存原始值，在插入指令时再处理
@@ -2831,7 +3322,8 @@ public class MirGenerator {
         Register breakPoint = cycle.get(0);
 
         // 创建临时寄存器
-        VReg tempReg = breakPoint.isFPR() ? currentVRegFactory.createFPR("temp_phi")
+        VReg tempReg = breakPoint.isVector() ? currentVRegFactory.createVector128("temp_phi")
+                : breakPoint.isFPR() ? currentVRegFactory.createFPR("temp_phi")
                 : currentVRegFactory.createGPR("temp_phi");
 
         logger.debug("为循环依赖创建临时寄存器: {} -> {}", breakPoint, tempReg);
@@ -2980,6 +3472,14 @@ public class MirGenerator {
      */
     private void insertCopyInstruction(
             MachineBlock predBlock, MachineBlock targetBlock, CopyOperation copy) {
+        if (copy.dst.isVector()) {
+            // 向量整体复制：mov vD.16b, vN.16b
+            VectorInst movInst = VectorInst.createMove(copy.dst, (Register) copy.src);
+            movInst.setComment("PHI resolution: " + copy.src + " -> " + copy.dst);
+            insertBeforeEdgeBranch(predBlock, targetBlock, movInst);
+            return;
+        }
+
         // 选择合适的移动指令
         Mnemonic moveMnemonic = copy.isFloat ? Mnemonic.FMOV : Mnemonic.MOV;
 
@@ -3327,6 +3827,10 @@ public class MirGenerator {
             // 指针类型使用专门的指针VReg
             vreg = currentVRegFactory.createPointer(value.getName());
             regType = "Pointer";
+        } else if (value.getType() instanceof VectorType) {
+            // 向量放在 128 位 q 寄存器中，与浮点寄存器共用 v0-v31
+            vreg = currentVRegFactory.createVector128(value.getName());
+            regType = "Vector";
         } else {
             // 使用Factory的自动命名机制，确保唯一性
             vreg = currentVRegFactory.createGPR(value.getName());
@@ -3888,12 +4392,14 @@ public class MirGenerator {
             return (intType.getBitWidth() + 7) / 8;
         } else if (type instanceof FloatType) {
             return 4; // 32位浮点
-        } else if (type instanceof PointerType) {
+        } else if (type instanceof PointerType || type instanceof FunctionType) {
             return 8; // 64位指针
         } else if (type instanceof ArrayType arrayType) {
             // 修复：添加数组类型大小计算
             int elementSize = calculateTypeSize(arrayType.getElementType());
             return elementSize * arrayType.getLength();
+        } else if (type instanceof VectorType vectorType) {
+            return calculateTypeSize(vectorType.getElementType()) * vectorType.getNumElements();
         } else {
             throw new IllegalArgumentException("Unsupported type: " + type.getClass().getName());
         }
@@ -3952,7 +4458,15 @@ public class MirGenerator {
 
         for (int i = 0; i < inst.getNumOperands(); i++) {
             Value arg = inst.getOperand(i);
-            Operand argOperand = getOperandWithBlock(arg, block);
+            Operand argOperand;
+            if (arg instanceof Function fn) {
+                // 函数地址（并行循环体）：LDR =symbol
+                VReg addr = currentVRegFactory.createGPR("func_addr");
+                generateGlobalSymbolLoad(addr, Symbol.create(fn.getName()), block, false);
+                argOperand = addr;
+            } else {
+                argOperand = getOperandWithBlock(arg, block);
+            }
             boolean isFloat = arg.getType() instanceof FloatType;
             int size = calculateTypeSize(arg.getType());
 
@@ -4054,41 +4568,74 @@ public class MirGenerator {
 
     /**
      * 生成alloca内存初始化代码
-     * 将分配的内存区域清零
+     * 将分配的内存区域清零：小块内联 STP/STR XZR，大块调用 memset
      */
     private void generateAllocaInitialization(
             VReg baseAddr, int size, MachineBlock block, boolean is32bit) {
         logger.info("Initializing alloca memory: base={}, size={}", baseAddr, size);
 
-        // 使用memset的简化版本：逐字节清零
-        // 对于小的alloca，这是可接受的
-        if (size <= 128) { // 小内存区域，直接清零
-            for (int offset = 0; offset < size; offset += 4) {
-                VReg addrReg = currentVRegFactory.createGPR();
-                if (offset == 0) {
-                    // 第一个位置，直接使用基址
-                    MoveInst moveInst = new MoveInst(Mnemonic.MOV, addrReg, baseAddr, false);
-                    block.addInst(moveInst);
-                } else {
-                    // 其他位置，计算偏移地址
-                    Imm offsetImm = new Imm(offset, Imm.ImmKind.ARITH_U12);
-                    ArithInst addInst = new ArithInst(Mnemonic.ADD, addrReg, baseAddr, offsetImm, false, true);
-                    addInst.setComment(
-                            "alloca initialization address - generateAllocaInitialization");
-                    block.addInst(addInst);
-                }
+        if (size > INLINE_ZERO_LIMIT) {
+            emitMemset(baseAddr, size, block);
+        } else {
+            // 用独立游标，避免破坏基址；post-index 需要 X 寄存器
+            VReg cur = currentVRegFactory.createGPR("zero_cur");
+            block.addInst(new MoveInst(Mnemonic.MOV, cur, baseAddr, /*is32=*/false));
+            emitZeroStores(cur, size, block);
+        }
 
-                // 存储0到该位置
-                // 实际上我们只需要用xzr/wzr就可以了，不需要mov 0 进来
-                PReg zeroReg = PReg.getZeroRegister(is32bit);
+        logger.info("Completed alloca initialization for {} bytes", size);
+    }
 
-                MemInst storeInst = new MemInst(Mnemonic.STR, zeroReg, ImmAddr.offset(addrReg, 0), true);
-                storeInst.setComment("alloca initialization");
-                block.addInst(storeInst);
-            }
+    /**
+     * 从游标 cur 开始连续清零 bytes 字节（bytes 为 4 的倍数），cur 随之后移：
+     * 优先 STP XZR 一次 16B，再 STR XZR 8B，最后 STR WZR 4B
+     */
+    private void emitZeroStores(VReg cur, int bytes, MachineBlock block) {
+        while (bytes >= 16) {
+            block.addInst(new MemInst(Mnemonic.STP,
+                    PReg.getZeroRegister(false), PReg.getZeroRegister(false),
+                    ImmAddr.postS9(cur, 16), /*is32=*/false));
+            bytes -= 16;
+        }
+        if (bytes >= 8) {
+            block.addInst(new MemInst(Mnemonic.STR, PReg.getZeroRegister(false),
+                    ImmAddr.postS9(cur, 8), /*is32=*/false));
+            bytes -= 8;
+        }
+        if (bytes >= 4) {
+            block.addInst(new MemInst(Mnemonic.STR, PReg.getZeroRegister(true),
+                    ImmAddr.postS9(cur, 4), /*is32=*/true));
         }
+    }
 
-        logger.info("Completed alloca initialization for {} bytes", size);
+    /** memset(dst, 0, size) */
+    private void emitMemset(Register dst, int size, MachineBlock block) {
+        VReg sizeReg = currentVRegFactory.createGPR("memset_size");
+        generateConstantLoad(size, sizeReg, block);
+        emitRuntimeCall("memset", List.of(dst, PReg.getZeroRegister(false), sizeReg), block);
+    }
+
+    /** memcpy(dst, src, size) */
+    private void emitMemcpy(Register dst, Register src, int size, MachineBlock block) {
+        VReg sizeReg = currentVRegFactory.createGPR("memcpy_size");
+        generateConstantLoad(size, sizeReg, block);
+        emitRuntimeCall("memcpy", List.of(dst, src, sizeReg), block);
+    }
+
+    /**
+     * 后端自行插入的 C 运行时调用（只有整数/指针参数，不超过 8 个，无返回值），
+     * 调用约定与 translateCallInst 相同：caller save → 传参 → BL → restore
+     */
+    private void emitRuntimeCall(String name, List<Operand> args, MachineBlock block) {
+        block.addInst(new PlaceHolder(Mnemonic.SAVE_PSEUDO));
+        List<PReg> gprArgs = PReg.getArgumentRegisters(false);
+        for (int i = 0; i < args.size(); i++) {
+            generateArgumentMove(args.get(i), gprArgs.get(i), /* isFloat */ false, block);
+        }
+        BranchInst callInst = new BranchInst(Mnemonic.BL, new Label(name));
+        callInst.setStackArgSize(0);
+        block.addInst(callInst);
+        block.addInst(new PlaceHolder(Mnemonic.RESTORE_PSEUDO));
     }
 
     /** 根据偏移构造可编码的 ImmAddr；若返回 null 说明要用临时寄存器方案 */
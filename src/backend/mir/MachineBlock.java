@@ -21,6 +21,7 @@ public class MachineBlock implements MIRListNode {
     private final Set<MachineBlock> successors;
 
     private int id; // 基本块ID，用于唯一标识
+    private double frequency = 1.0; // 相对函数入口的估计执行次数，来自 IR 的块频率分析
 
     /**
      * 创建机器基本块
@@ -377,4 +378,12 @@ public class MachineBlock implements MIRListNode {
         this.id = id;
     }
 
+    public double getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(double frequency) {
+        this.frequency = frequency;
+    }
+
 }
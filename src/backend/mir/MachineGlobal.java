@@ -1,11 +1,12 @@
 package backend.mir;
 
+import backend.mir.operand.Imm;
 import backend.mir.operand.Operand;
 import backend.mir.operand.StringLiteral;
 import backend.mir.util.MIRList;
 import backend.mir.util.MIRListNode;
-import ir.value.constants.ConstantArray;
 
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -21,7 +22,51 @@ public class MachineGlobal implements MIRListNode {
     private boolean zeroInit;
     private int alignment;
     private boolean isStringConstant = false;
-    private java.util.List<Operand> arrayElements = null; // 数组元素
+    private List<DataRun> arrayRuns = null; // 数组数据（游程编码）
+
+    /**
+     * 数组数据中的一段：count 个连续且相同的元素。
+     * 值为 0 的段输出为 .zero，重复的非零值输出为 .fill，
+     * 这样输出大小只与“值发生变化的次数”相关，而不是元素总数。
+     */
+    public static final class DataRun {
+        private final Imm value;
+        private final int elementSize;
+        private int count;
+
+        public DataRun(Imm value, int elementSize, int count) {
+            this.value = Objects.requireNonNull(value, "value");
+            this.elementSize = elementSize;
+            this.count = count;
+        }
+
+        public Imm getValue() {
+            return value;
+        }
+
+        public int getElementSize() {
+            return elementSize;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isZero() {
+            return value.getValue() == 0;
+        }
+
+        /** 能否与后继段合并：同为 0，或是同一个值 */
+        boolean canMerge(Imm other, int otherSize) {
+            if (elementSize != otherSize) {
+                return false;
+            }
+            if (isZero() && other.getValue() == 0) {
+                return true;
+            }
+            return value.getKind() == other.getKind() && value.getValue() == other.getValue();
+        }
+    }
 
     /**
      * 创建全局变量
@@ -117,24 +162,41 @@ public class MachineGlobal implements MIRListNode {
     }
 
     /**
-     * 获取数组元素列表
+     * 获取数组数据（游程编码）
      */
-    public java.util.List<Operand> getArrayElements() {
-        return arrayElements;
+    public List<DataRun> getArrayRuns() {
+        return arrayRuns;
     }
 
     /**
-     * 设置数组元素列表
+     * 设置数组数据（游程编码）
      */
-    public void setArrayElements(java.util.List<Operand> arrayElements) {
-        this.arrayElements = arrayElements;
+    public void setArrayRuns(List<DataRun> arrayRuns) {
+        this.arrayRuns = arrayRuns;
+    }
+
+    /**
+     * 追加 count 个相同元素，与末尾的同值段自动合并
+     */
+    public static void appendRun(List<DataRun> runs, Imm value, int elementSize, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (!runs.isEmpty()) {
+            DataRun last = runs.get(runs.size() - 1);
+            if (last.canMerge(value, elementSize)) {
+                last.count += count;
+                return;
+            }
+        }
+        runs.add(new DataRun(value, elementSize, count));
     }
 
     /**
      * 检查是否为数组
      */
     public boolean isArray() {
-        return arrayElements != null && !arrayElements.isEmpty();
+        return arrayRuns != null && !arrayRuns.isEmpty();
     }
 
     @Override
@@ -152,22 +214,31 @@ public class MachineGlobal implements MIRListNode {
 
         // 处理数据输出
         if (isArray()) {
-            // 数组数据输出
-            for (Operand element : arrayElements) {
-                if (element instanceof backend.mir.operand.Imm) {
-                    backend.mir.operand.Imm imm = (backend.mir.operand.Imm) element;
-                    if (imm.getKind() == backend.mir.operand.Imm.ImmKind.FLOAT_IMM) {
-                        // 浮点数使用.float指令
-                        float floatValue = Float.intBitsToFloat((int) imm.getValue());
-                        sb.append("\t.float\t").append(floatValue).append("\n");
-                    } else {
-                        // 整数使用.word指令
-                        sb.append("\t.word\t").append(imm.getValue()).append("\n");
-                    }
+            // 数组数据输出：0 段用 .zero，重复值用 .fill，单个值用 .word/.float
+            int emitted = 0;
+            for (DataRun run : arrayRuns) {
+                Imm imm = run.getValue();
+                boolean isFloat = imm.getKind() == Imm.ImmKind.FLOAT_IMM;
+                if (run.isZero()) {
+                    sb.append("\t.zero\t").append(run.getCount() * run.getElementSize()).append("\n");
+                } else if (run.getCount() > 1) {
+                    String bits = isFloat ? "0x" + Integer.toHexString((int) imm.getValue())
+                            : String.valueOf(imm.getValue());
+                    sb.append("\t.fill\t").append(run.getCount()).append(", ")
+                            .append(run.getElementSize()).append(", ").append(bits).append("\n");
+                } else if (isFloat) {
+                    // 浮点数使用.float指令
+                    float floatValue = Float.intBitsToFloat((int) imm.getValue());
+                    sb.append("\t.float\t").append(floatValue).append("\n");
                 } else {
-                    // 其他类型的操作数
-                    sb.append("\t.word\t").append(element.toString()).append("\n");
+                    // 整数使用.word指令
+                    sb.append("\t.word\t").append(imm.getValue()).append("\n");
                 }
+                emitted += run.getCount() * run.getElementSize();
+            }
+            // 初始化器短于对象大小时补齐尾部
+            if (emitted < size) {
+                sb.append("\t.zero\t").append(size - emitted).append("\n");
             }
         } else if (zeroInit && size > 0) {
             // 零初始化数据 - 使用.zero指令确保内存被初始化为0
@@ -137,6 +137,39 @@ public enum Mnemonic {
     MOVI("movi", 2), // 向量立即数移动
     STP_Q("stp", 3), // 向量寄存器对存储
     LDP_Q("ldp", 3), // 向量寄存器对加载
+    LDR_Q("ldr", 2), // 128 位向量加载 ldr qN, [addr]
+    STR_Q("str", 2), // 128 位向量存储 str qN, [addr]
+    ADD_V("add", 3), // 逐 lane 整数加
+    SUB_V("sub", 3), // 逐 lane 整数减
+    MUL_V("mul", 3), // 逐 lane 整数乘
+    FADD_V("fadd", 3), // 逐 lane 浮点加
+    FSUB_V("fsub", 3), // 逐 lane 浮点减
+    FMUL_V("fmul", 3), // 逐 lane 浮点乘
+    FDIV_V("fdiv", 3), // 逐 lane 浮点除
+    SMIN_V("smin", 3), // 逐 lane 有符号最小值
+    SMAX_V("smax", 3), // 逐 lane 有符号最大值
+    FMIN_V("fmin", 3), // 逐 lane 浮点最小值
+    FMAX_V("fmax", 3), // 逐 lane 浮点最大值
+    CMEQ_V("cmeq", 3), // 逐 lane 相等，结果为全 1 / 全 0 掩码
+    CMGT_V("cmgt", 3), // 有符号大于
+    CMGE_V("cmge", 3), // 有符号大于等于
+    CMHI_V("cmhi", 3), // 无符号大于
+    CMHS_V("cmhs", 3), // 无符号大于等于
+    FCMEQ_V("fcmeq", 3), // 浮点相等
+    FCMGT_V("fcmgt", 3), // 浮点大于
+    FCMGE_V("fcmge", 3), // 浮点大于等于
+    AND_V("and", 3), // 按位与（.16b）
+    ORR_V("orr", 3), // 按位或（.16b）
+    NOT_V("mvn", 2), // 按位取反（.16b）
+    MOV_V("mov", 2), // 整寄存器拷贝 mov vD.16b, vN.16b
+    DUP_V("dup", 2), // 标量广播到所有 lane
+    INS_V("mov", 2), // 写单个 lane：mov vD.s[i], wN / vN.s[0]
+    UMOV_V("mov", 2), // 读单个 lane：mov wD, vN.s[i] / mov sD, vN.s[i]
+    ADDV("addv", 2), // 跨 lane 整数求和
+    SMINV("sminv", 2), // 跨 lane 有符号最小值
+    SMAXV("smaxv", 2), // 跨 lane 有符号最大值
+    FMINV("fminv", 2), // 跨 lane 浮点最小值
+    FMAXV("fmaxv", 2), // 跨 lane 浮点最大值
 
     // 系统指令 (用于高级优化)
     MRS("mrs", 2), // 读取系统寄存器
@@ -1,6 +1,7 @@
 package backend.mir.inst;
 
 import java.util.List;
+import java.util.Set;
 import java.util.ArrayList;
 
 import backend.mir.operand.Operand;
@@ -12,23 +13,36 @@ import backend.mir.operand.addr.Addr;
 /**
  * NEON/SIMD 向量指令类
  * 支持 AArch64 的向量操作指令
+ *
+ * 约定：除存储类指令（STR_Q / STP_Q / DC_ZVA / MSR）外，第一个操作数是目标寄存器；
+ * INS_V 只改写目标寄存器的一个 lane，因此目标同时也是使用。
+ * 向量值在寄存器分配时与浮点值共用 v0-v31，打印时按编号和助记符选择 v/q/s/w 视图。
  */
 public class VectorInst extends Inst {
     private final Mnemonic mnemonic;
     private final List<Operand> operands;
     private final int vectorWidth; // 向量宽度：128, 64, 32, 16, 8
     private final String vectorType; // 向量类型：.2d, .4s, .8h, .16b 等
+    private final int lane; // INS_V / UMOV_V 访问的 lane，其余指令为 -1
+
+    // 不定义寄存器的指令
+    private static final Set<Mnemonic> NO_DEF = Set.of(
+            Mnemonic.STP_Q, Mnemonic.STR_Q, Mnemonic.DC_ZVA, Mnemonic.MSR);
+
+    // 按 .16b 整体处理的按位指令
+    private static final Set<Mnemonic> BYTEWISE = Set.of(
+            Mnemonic.AND_V, Mnemonic.ORR_V, Mnemonic.NOT_V, Mnemonic.MOV_V);
+
+    // 结果是标量（s 视图）的跨 lane 归约
+    private static final Set<Mnemonic> ACROSS_LANES = Set.of(
+            Mnemonic.ADDV, Mnemonic.SMINV, Mnemonic.SMAXV, Mnemonic.FMINV, Mnemonic.FMAXV);
 
     /**
      * MOVI 指令构造器 - 向量立即数移动
      * 例如：movi v0.2d, #0
      */
     public VectorInst(Register dst, Imm imm, String vectorType) {
-        super(Mnemonic.MOVI);
-        this.mnemonic = Mnemonic.MOVI;
-        this.operands = List.of(dst, imm);
-        this.vectorWidth = parseVectorWidth(vectorType);
-        this.vectorType = vectorType;
+        this(Mnemonic.MOVI, List.of(dst, imm), vectorType, -1);
     }
 
     /**
@@ -36,11 +50,8 @@ public class VectorInst extends Inst {
      * 例如：stp q0, q1, [x29, #16]
      */
     public VectorInst(Register src1, Register src2, Addr addr, boolean isStore) {
-        super(isStore ? Mnemonic.STP_Q : Mnemonic.LDP_Q);
-        this.mnemonic = isStore ? Mnemonic.STP_Q : Mnemonic.LDP_Q;
-        this.operands = List.of(src1, src2, addr);
-        this.vectorWidth = 128; // Q 寄存器固定 128 位
-        this.vectorType = ".2d"; // 默认双精度
+        // Q 寄存器固定 128 位，默认按双精度排布
+        this(isStore ? Mnemonic.STP_Q : Mnemonic.LDP_Q, List.of(src1, src2, addr), ".2d", -1);
     }
 
     /**
@@ -53,6 +64,22 @@ public class VectorInst extends Inst {
         this.operands = List.of(operands);
         this.vectorWidth = 0; // 系统指令无向量宽度
         this.vectorType = "";
+        this.lane = -1;
+    }
+
+    /**
+     * 通用向量指令构造器
+     *
+     * @param vectorType 排布后缀，如 ".4s"
+     * @param lane       INS_V / UMOV_V 访问的 lane，其余指令传 -1
+     */
+    public VectorInst(Mnemonic mnemonic, List<Operand> operands, String vectorType, int lane) {
+        super(mnemonic);
+        this.mnemonic = mnemonic;
+        this.operands = List.copyOf(operands);
+        this.vectorWidth = parseVectorWidth(vectorType);
+        this.vectorType = vectorType;
+        this.lane = lane;
     }
 
     @Override
@@ -68,16 +95,15 @@ public class VectorInst extends Inst {
     @Override
     public List<Operand> getUses() {
         List<Operand> uses = new ArrayList<>();
-        for (Operand op : operands) {
-            if (op instanceof Register reg) {
-                // 对于存储指令，所有寄存器都是使用
-                // 对于加载指令，除了第一个目标寄存器外都是使用
-                if (mnemonic == Mnemonic.LDP_Q && op == operands.get(0)) {
-                    continue; // 跳过目标寄存器
-                }
-                if (mnemonic == Mnemonic.LDP_Q && operands.size() > 1 && op == operands.get(1)) {
-                    continue; // 跳过第二个目标寄存器
-                }
+        int firstUse = definedCount();
+        if (mnemonic == Mnemonic.INS_V) {
+            firstUse = 0; // 只写一个 lane，其余 lane 保持原值
+        }
+        for (int i = 0; i < operands.size(); i++) {
+            Operand op = operands.get(i);
+            if (op instanceof Addr addr) {
+                uses.addAll(addr.getRegisterOperands());
+            } else if (op instanceof Register reg && i >= firstUse) {
                 uses.add(reg);
             }
         }
@@ -87,28 +113,22 @@ public class VectorInst extends Inst {
     @Override
     public List<Operand> getDefs() {
         List<Operand> defs = new ArrayList<>();
-        if (mnemonic == Mnemonic.MOVI) {
-            // MOVI 定义目标寄存器
-            if (!operands.isEmpty() && operands.get(0) instanceof Register reg) {
-                defs.add(reg);
-            }
-        } else if (mnemonic == Mnemonic.LDP_Q) {
-            // LDP_Q 定义两个目标寄存器
-            if (operands.size() >= 2) {
-                if (operands.get(0) instanceof Register reg1)
-                    defs.add(reg1);
-                if (operands.get(1) instanceof Register reg2)
-                    defs.add(reg2);
-            }
-        } else if (mnemonic == Mnemonic.MRS) {
-            // MRS 定义目标寄存器
-            if (!operands.isEmpty() && operands.get(0) instanceof Register reg) {
+        for (int i = 0; i < definedCount(); i++) {
+            if (operands.get(i) instanceof Register reg) {
                 defs.add(reg);
             }
         }
         return defs;
     }
 
+    /** 前几个操作数是定义 */
+    private int definedCount() {
+        if (NO_DEF.contains(mnemonic) || operands.isEmpty()) {
+            return 0;
+        }
+        return mnemonic == Mnemonic.LDP_Q ? 2 : 1;
+    }
+
     @Override
     public boolean validate() {
         return mnemonic.validate(operands);
@@ -116,15 +136,18 @@ public class VectorInst extends Inst {
 
     @Override
     public VectorInst clone() {
-        // 简化的克隆实现
-        if (mnemonic == Mnemonic.MOVI) {
-            return new VectorInst((Register) operands.get(0), (Imm) operands.get(1), vectorType);
-        } else if (mnemonic == Mnemonic.STP_Q || mnemonic == Mnemonic.LDP_Q) {
-            return new VectorInst((Register) operands.get(0), (Register) operands.get(1),
-                    (Addr) operands.get(2), mnemonic == Mnemonic.STP_Q);
-        } else {
-            return new VectorInst(mnemonic, operands.toArray(new Operand[0]));
-        }
+        return withOperands(operands);
+    }
+
+    /**
+     * 以新的操作数重建同一条指令（寄存器分配改写时使用）
+     */
+    public VectorInst withOperands(List<Operand> newOperands) {
+        VectorInst inst = vectorWidth == 0 && vectorType.isEmpty()
+                ? new VectorInst(mnemonic, newOperands.toArray(new Operand[0]))
+                : new VectorInst(mnemonic, newOperands, vectorType, lane);
+        inst.setComment(getComment());
+        return inst;
     }
 
     public boolean is32Bit() {
@@ -135,35 +158,103 @@ public class VectorInst extends Inst {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(mnemonic.getText());
+        if (operands.isEmpty()) {
+            return sb.toString();
+        }
+        sb.append(" ");
 
-        if (!operands.isEmpty()) {
-            sb.append(" ");
-            for (int i = 0; i < operands.size(); i++) {
-                if (i > 0)
-                    sb.append(", ");
-
-                Operand op = operands.get(i);
-                if (op instanceof Register reg && reg instanceof PReg preg && preg.isVector()) {
-                    // 向量寄存器需要添加类型后缀
-                    if (mnemonic == Mnemonic.MOVI) {
-                        // MOVI 指令使用 v 前缀
-                        sb.append("v").append(preg.getEncoding());
-                        if (!vectorType.isEmpty()) {
-                            sb.append(vectorType);
-                        }
-                    } else {
-                        // STP/LDP 指令使用 q 前缀
-                        sb.append(preg.getVectorName(vectorWidth));
+        switch (mnemonic) {
+            case LDR_Q, STR_Q -> sb.append(q(reg(0))).append(", ").append(operands.get(1));
+            case DUP_V -> sb.append(vec(reg(0))).append(", ").append(scalarOrLane0(reg(1)));
+            case INS_V -> sb.append(lane(reg(0), lane)).append(", ").append(scalarOrLane0(reg(1)));
+            case UMOV_V -> sb.append(scalar(reg(0))).append(", ").append(lane(reg(1), lane));
+            default -> {
+                if (ACROSS_LANES.contains(mnemonic)) {
+                    sb.append(scalar(reg(0))).append(", ").append(vec(reg(1)));
+                } else if (BYTEWISE.contains(mnemonic) || isLaneWise()) {
+                    String suffix = BYTEWISE.contains(mnemonic) ? ".16b" : vectorType;
+                    for (int i = 0; i < operands.size(); i++) {
+                        if (i > 0)
+                            sb.append(", ");
+                        sb.append(view(reg(i), suffix));
                     }
                 } else {
-                    sb.append(op.toString());
+                    appendLegacyOperands(sb);
                 }
             }
         }
-
         return sb.toString();
     }
 
+    /** 逐 lane 的三操作数运算 / 比较 */
+    private boolean isLaneWise() {
+        return switch (mnemonic) {
+            case ADD_V, SUB_V, MUL_V, FADD_V, FSUB_V, FMUL_V, FDIV_V, SMIN_V, SMAX_V, FMIN_V, FMAX_V,
+                    CMEQ_V, CMGT_V, CMGE_V, CMHI_V, CMHS_V, FCMEQ_V, FCMGT_V, FCMGE_V -> true;
+            default -> false;
+        };
+    }
+
+    /** MOVI / STP_Q / LDP_Q / 系统指令的原有打印方式 */
+    private void appendLegacyOperands(StringBuilder sb) {
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0)
+                sb.append(", ");
+
+            Operand op = operands.get(i);
+            if (op instanceof Register reg && reg instanceof PReg preg && preg.isVector()) {
+                // 向量寄存器需要添加类型后缀
+                if (mnemonic == Mnemonic.MOVI) {
+                    // MOVI 指令使用 v 前缀
+                    sb.append("v").append(preg.getEncoding());
+                    if (!vectorType.isEmpty()) {
+                        sb.append(vectorType);
+                    }
+                } else {
+                    // STP/LDP 指令使用 q 前缀
+                    sb.append(preg.getVectorName(vectorWidth));
+                }
+            } else {
+                sb.append(op.toString());
+            }
+        }
+    }
+
+    private Register reg(int index) {
+        return (Register) operands.get(index);
+    }
+
+    /** 寄存器编号；分配前的虚拟寄存器用名字代替，仅用于调试输出 */
+    private static String number(Register reg) {
+        return reg instanceof PReg preg ? String.valueOf(preg.getEncoding()) : "_" + reg.getName();
+    }
+
+    private String vec(Register reg) {
+        return view(reg, vectorType);
+    }
+
+    private static String view(Register reg, String suffix) {
+        return "v" + number(reg) + suffix;
+    }
+
+    private static String q(Register reg) {
+        return "q" + number(reg);
+    }
+
+    private static String lane(Register reg, int index) {
+        return "v" + number(reg) + ".s[" + index + "]";
+    }
+
+    /** 标量视图：整数用 w，浮点 / 向量用 s */
+    private static String scalar(Register reg) {
+        return (reg.isGPR() ? "w" : "s") + number(reg);
+    }
+
+    /** DUP / INS 的源：整数寄存器直接用 w，浮点寄存器取其 lane 0 */
+    private static String scalarOrLane0(Register reg) {
+        return reg.isGPR() ? "w" + number(reg) : lane(reg, 0);
+    }
+
     /**
      * 解析向量类型字符串获取宽度
      */
@@ -201,18 +292,25 @@ public class VectorInst extends Inst {
         return vectorType;
     }
 
+    /**
+     * 获取 INS_V / UMOV_V 访问的 lane
+     */
+    public int getLane() {
+        return lane;
+    }
+
     /**
      * 判断是否为向量存储指令
      */
     public boolean isVectorStore() {
-        return mnemonic == Mnemonic.STP_Q;
+        return mnemonic == Mnemonic.STP_Q || mnemonic == Mnemonic.STR_Q;
     }
 
     /**
      * 判断是否为向量加载指令
      */
     public boolean isVectorLoad() {
-        return mnemonic == Mnemonic.LDP_Q;
+        return mnemonic == Mnemonic.LDP_Q || mnemonic == Mnemonic.LDR_Q;
     }
 
     /**
@@ -243,6 +341,55 @@ public class VectorInst extends Inst {
         return new VectorInst(dst1, dst2, addr, false);
     }
 
+    /**
+     * 创建 LDR qN, [addr] 指令
+     */
+    public static VectorInst createLoad(Register dst, Addr addr) {
+        return new VectorInst(Mnemonic.LDR_Q, List.of(dst, addr), ".4s", -1);
+    }
+
+    /**
+     * 创建 STR qN, [addr] 指令
+     */
+    public static VectorInst createStore(Register src, Addr addr) {
+        return new VectorInst(Mnemonic.STR_Q, List.of(src, addr), ".4s", -1);
+    }
+
+    /**
+     * 创建逐 lane 运算 / 比较（以及 NOT_V、MOV_V、跨 lane 归约等）指令
+     */
+    public static VectorInst createOp(Mnemonic mnemonic, String vectorType, Register... regs) {
+        return new VectorInst(mnemonic, List.of(regs), vectorType, -1);
+    }
+
+    /**
+     * 创建 mov vD.16b, vN.16b 指令
+     */
+    public static VectorInst createMove(Register dst, Register src) {
+        return createOp(Mnemonic.MOV_V, ".16b", dst, src);
+    }
+
+    /**
+     * 创建 dup vD.4s, wN / vN.s[0] 指令
+     */
+    public static VectorInst createDup(Register dst, Register scalar) {
+        return createOp(Mnemonic.DUP_V, ".4s", dst, scalar);
+    }
+
+    /**
+     * 创建 mov vD.s[lane], wN / vN.s[0] 指令
+     */
+    public static VectorInst createInsert(Register dst, Register scalar, int lane) {
+        return new VectorInst(Mnemonic.INS_V, List.of(dst, scalar), ".4s", lane);
+    }
+
+    /**
+     * 创建 mov wD / sD, vN.s[lane] 指令
+     */
+    public static VectorInst createExtract(Register dst, Register vector, int lane) {
+        return new VectorInst(Mnemonic.UMOV_V, List.of(dst, vector), ".4s", lane);
+    }
+
     /**
      * 创建 DC ZVA, x0 指令 - 缓存行零填充
      */
@@ -41,6 +41,7 @@ public class PReg extends Register {
     private static final PReg[] GPRs = new PReg[32];
     private static final PReg[] FPRs = new PReg[32];
     private static final PReg[] VECTORs = new PReg[32]; // NEON 向量寄存器 q0-q31
+    private static final PReg[] DOUBLEs = new PReg[32]; // 浮点寄存器的 64 位视图 d0-d31
 
     // 初始化所有物理寄存器
     static {
@@ -102,6 +103,11 @@ public class PReg extends Register {
         // s0 用于浮点返回值
         FPRs[0].specialRole = SpecialRole.RETURN_VALUE;
 
+        // d0-d31 只在保存/恢复 callee-saved 寄存器时使用：AAPCS 要求保留 v8-v15 的低 64 位
+        for (int i = 0; i < 32; i++) {
+            DOUBLEs[i] = new PReg("d" + i, i, RegClass.FPR, FPRs[i].savePolicy, SpecialRole.NONE);
+        }
+
         // 向量寄存器 (q0-q31, 128位)
         for (int i = 0; i < 32; i++) {
             // NEON 向量寄存器调用约定：
@@ -186,6 +192,26 @@ public class PReg extends Register {
         return FPRs[index];
     }
 
+    /**
+     * 获取浮点寄存器的 64 位视图（d 寄存器）
+     */
+    public static PReg getFPR64(int index) {
+        if (index < 0 || index >= DOUBLEs.length) {
+            throw new IllegalArgumentException("无效的FPR索引: " + index);
+        }
+        return DOUBLEs[index];
+    }
+
+    /**
+     * 获取特定编号的向量寄存器（与同编号的 s/d 寄存器是同一个物理寄存器）
+     */
+    public static PReg getVector(int index) {
+        if (index < 0 || index >= VECTORs.length) {
+            throw new IllegalArgumentException("无效的向量寄存器索引: " + index);
+        }
+        return VECTORs[index];
+    }
+
     /**
      * 获取所有通用寄存器
      */
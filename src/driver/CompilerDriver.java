@@ -74,6 +74,7 @@ public class CompilerDriver {
                 }
                 case "-emit-llvm" -> {
                     emitLLVM = true;
+                    Config.getInstance().emitLLVM = true;
                 }
                 default -> {
                     if (cmd.endsWith(".sy") || cmd.endsWith(".ll")) {
@@ -8,6 +8,8 @@ public class Config {
 
     public boolean isO1 = false;
     public boolean isDebug = false;
+    // 输出 LLVM IR（交给 lli 运行）时不生成只有后端认识的向量指令
+    public boolean emitLLVM = false;
 
     private Config() {
         isDebug = getFlag("debug");
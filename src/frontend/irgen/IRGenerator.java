@@ -19,7 +19,6 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
     private static final Logger logger = LogManager.getLogger(IRGenerator.class);
 
     private static boolean DEBUG_ENABLED = false;
-    private static final int N_MAX_SIZE = 256;
 
     // 根据调用栈深度打印带缩进的信息
     public static void syLogging(String message) {
@@ -171,7 +170,7 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
         if (DEBUG_ENABLED)
             syLogging("visitSyVarDefWithType: type is " + getTypeDetailString(varType));
 
-        List<Value> flatInitValues = null;
+        FlatInitializer flatInitValues = null;
         Value scalarInitValue = null;
 
         boolean useZeroInitializerForGlobal = false;
@@ -211,16 +210,11 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
                 if (useZeroInitializerForGlobal) {
                     globalVar.setInitializer(getZeroConstant(varType));
                 } else if (flatInitValues != null) { // Global const array
-                    if (flatInitValues.stream().anyMatch(v -> !(v instanceof ir.value.constants.Constant))) {
+                    if (!flatInitValues.allConstant()) {
                         throw new RuntimeException(
                                 "Global constant array initializer must contain only constant values.");
                     }
-                    List<Integer> dims = getArrayDims(varType);
-                    Type baseElementType = getBaseElementType(varType);
-                    List<Value> nestedElements = buildNestedArrayStructure(new ArrayList<>(flatInitValues), dims, 0,
-                            baseElementType);
-                    ConstantArray constArr = new ConstantArray((ArrayType) varType, nestedElements);
-                    globalVar.setInitializer(constArr);
+                    globalVar.setInitializer(flatInitValues.toConstant((ArrayType) varType));
                 } else if (scalarInitValue != null) { // Global const scalar
                     if (!(scalarInitValue instanceof ir.value.constants.Constant)) {
                         throw new RuntimeException("Global constant initializer must be a constant value.");
@@ -238,14 +232,9 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
                     scalarInitValue = convertType(scalarInitValue, varType);
                     symbolTable.define(varName, scalarInitValue);
                     return scalarInitValue;
-                } else if (flatInitValues != null
-                        && flatInitValues.stream().allMatch(v -> v instanceof ir.value.constants.Constant)) {
-                    List<Integer> dims = getArrayDims(varType);
-                    Type baseElementType = getBaseElementType(varType);
-                    List<Value> nestedElements = buildNestedArrayStructure(new ArrayList<>(flatInitValues), dims, 0,
-                            baseElementType);
+                } else if (flatInitValues != null && flatInitValues.allConstant()) {
                     Value varRef = builder.buildAlloca(varType, varName);
-                    initializeConstantArray(varRef, nestedElements, dims);
+                    initializeConstantArray(varRef, flatInitValues);
                     symbolTable.define(varName, varRef);
                     return varRef;
                 }
@@ -262,14 +251,8 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
                 // them.
                 // The flatInitValues are already correctly padded and structured by
                 // parseStructuredInitializer.
-                boolean allConstants = flatInitValues.stream().allMatch(v -> v instanceof ir.value.constants.Constant);
-                if (allConstants) {
-                    List<Integer> dims = getArrayDims(varType);
-                    Type baseElementType = getBaseElementType(varType);
-                    List<Value> nestedElements = buildNestedArrayStructure(
-                            new ArrayList<>(flatInitValues), dims, 0, baseElementType);
-                    ConstantArray constArr = new ConstantArray((ArrayType) varType, nestedElements);
-                    ((GlobalVariable) varRef).setInitializer(constArr);
+                if (flatInitValues.allConstant()) {
+                    ((GlobalVariable) varRef).setInitializer(flatInitValues.toConstant((ArrayType) varType));
                 } else {
                     // If not all initializers are constants, global arrays must be
                     // zero-initialized.
@@ -287,18 +270,11 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
         } else {
             varRef = builder.buildAlloca(varType, varName);
             if (flatInitValues != null) {
-                List<Integer> dims = getArrayDims(varType);
-                int totalSize = getTotalSize(dims);
-
-                if (totalSize > N_MAX_SIZE) {
-                    initializeLargeRuntimeArray(varRef, flatInitValues, dims);
+                // 常量初始化器整体作为一条聚合 store，由后端选择 stp/memset/memcpy 降级
+                if (flatInitValues.allConstant()) {
+                    initializeConstantArray(varRef, flatInitValues);
                 } else {
-                    // The flatInitValues are already correctly padded by parseStructuredInitializer
-                    if (flatInitValues.stream().allMatch(v -> v instanceof ir.value.constants.Constant)) {
-                        initializeConstantArray(varRef, flatInitValues, dims);
-                    } else {
-                        initializeRuntimeArray(varRef, flatInitValues, dims);
-                    }
+                    initializeRuntimeArray(varRef, flatInitValues, getArrayDims(varType));
                 }
             } else if (scalarInitValue != null) {
                 // 添加类型转换，确保局部变量的初始值类型与声明类型匹配
@@ -311,22 +287,74 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
         return varRef;
     }
 
-    private List<Value> parseStructuredInitializer(SysYParser.SyInitValContext rootNode, List<Integer> dimensions,
+    /**
+     * 扁平化后的数组初始化器：只记录非零常量和运行时值（按行主序下标），
+     * 省略的/显式为 0 的元素不占空间，大数组的编译内存只和非零元素个数相关。
+     */
+    private static final class FlatInitializer {
+        private final int totalSize;
+        private final TreeMap<Integer, Value> values = new TreeMap<>();
+        private int cursor = 0;
+        private boolean allConstant = true;
+
+        FlatInitializer(int totalSize) {
+            this.totalSize = totalSize;
+        }
+
+        int size() {
+            return cursor;
+        }
+
+        void append(Value value) {
+            if (cursor >= totalSize) {
+                throw new RuntimeException("Too many initializers for array of size " + totalSize);
+            }
+            if (!(value instanceof ir.value.constants.Constant)) {
+                allConstant = false;
+                values.put(cursor, value);
+            } else if (!ConstantSparseArray.isZero((ir.value.constants.Constant) value)) {
+                values.put(cursor, value);
+            }
+            cursor++;
+        }
+
+        void skip(int count) {
+            cursor += count;
+        }
+
+        boolean allConstant() {
+            return allConstant;
+        }
+
+        /** 需要显式写入的元素：非零常量与运行时值 */
+        NavigableMap<Integer, Value> explicitValues() {
+            return values;
+        }
+
+        ConstantArray toConstant(ArrayType type) {
+            if (values.isEmpty()) {
+                return new ConstantZeroInitializer(type);
+            }
+            return new ConstantSparseArray(type, values);
+        }
+    }
+
+    private FlatInitializer parseStructuredInitializer(SysYParser.SyInitValContext rootNode, List<Integer> dimensions,
             Type baseType) {
-        List<Value> flatList = new ArrayList<>();
+        FlatInitializer flatList = new FlatInitializer(getTotalSize(dimensions));
         processInitializerRecursive(rootNode, dimensions, 0, flatList, baseType);
         return flatList;
     }
 
     private void processInitializerRecursive(SysYParser.SyInitValContext currentNode, List<Integer> dimensions,
-            int level, List<Value> flatList, Type baseType) {
+            int level, FlatInitializer flatList, Type baseType) {
         // Base Case: The initializer is a single expression, not a list. Add its value
         // and return.
         if (currentNode.syExp() != null) {
             Value initValue = visit(currentNode.syExp());
             // 进行类型转换以匹配数组的基本类型
             initValue = convertType(initValue, baseType);
-            flatList.add(initValue);
+            flatList.append(initValue);
             return;
         }
 
@@ -347,10 +375,7 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
             if (item.syExp() == null) { // The item is a nested initializer list.
                 int itemsInCurrentSubArray = (flatList.size() - listStartPosition) % subArraySize;
                 if (itemsInCurrentSubArray != 0) {
-                    int paddingNeeded = subArraySize - itemsInCurrentSubArray;
-                    for (int i = 0; i < paddingNeeded; i++) {
-                        flatList.add(getZeroConstant(baseType));
-                    }
+                    flatList.skip(subArraySize - itemsInCurrentSubArray);
                 }
             }
 
@@ -361,8 +386,8 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
         int itemsAddedSoFar = flatList.size() - listStartPosition;
 
         int finalPaddingNeeded = totalItemsForThisLevel - itemsAddedSoFar;
-        for (int i = 0; i < finalPaddingNeeded; i++) {
-            flatList.add(getZeroConstant(baseType));
+        if (finalPaddingNeeded > 0) {
+            flatList.skip(finalPaddingNeeded);
         }
     }
 
@@ -389,110 +414,42 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
         return type;
     }
 
-    private void initializeConstantArray(Value arrayPtr, List<? extends Value> values, List<Integer> dims) {
+    private void initializeConstantArray(Value arrayPtr, FlatInitializer values) {
         ArrayType arrayType = (ArrayType) ((PointerType) arrayPtr.getType()).getPointeeType();
-        Type baseType = getBaseElementType(arrayType);
-
-        List<Value> flat = new ArrayList<>();
-        collectFlatValues(values, flat);
-        List<Value> nestedElements = buildNestedArrayStructure(flat, dims, 0, baseType);
-        builder.buildStore(new ConstantArray(arrayType, nestedElements), arrayPtr);
+        builder.buildStore(values.toConstant(arrayType), arrayPtr);
     }
 
-    private void initializeRuntimeArray(Value arrayPtr, List<? extends Value> values, List<Integer> dims) {
-        int total = getTotalSize(dims);
+    private void initializeRuntimeArray(Value arrayPtr, FlatInitializer values, List<Integer> dims) {
+        ArrayType arrayType = (ArrayType) ((PointerType) arrayPtr.getType()).getPointeeType();
         // Get the base type of the array elements, e.g., i32 for an int[]
-        Type elementType = getBaseElementType(((PointerType) arrayPtr.getType()).getPointeeType());
+        Type elementType = getBaseElementType(arrayType);
+
+        // 1. 有省略/为 0 的元素时先整体清零，而不是逐个元素写 0
+        if (values.explicitValues().size() < getTotalSize(dims)) {
+            builder.buildStore(getZeroConstant(arrayType), arrayPtr);
+        }
 
-        for (int i = 0; i < total; ++i) {
-            List<Value> gepIndices = getGEPIndicesForFlatIndex(i, dims);
+        // 2. 只写显式给出的非零元素
+        for (Map.Entry<Integer, Value> entry : values.explicitValues().entrySet()) {
+            List<Value> gepIndices = getGEPIndicesForFlatIndex(entry.getKey(), dims);
             Value gep = builder.buildGEP(arrayPtr, gepIndices, "arrayidx"); // Pointer to the destination element
 
-            // If there's an initializer for this element, process it
-            if (i < values.size()) {
-                Value initValue = values.get(i);
+            Value initValue = entry.getValue();
+            if (DEBUG_ENABLED)
+                syLogging("initializeRuntimeArray: " + entry.getKey() + "-th initValue: "
+                        + getTypeDetailString(initValue.getType()));
+
+            // If the initializer is a pointer to the element type,
+            // it means we were given an address instead of a value. We must load the value.
+            if (initValue.getType() instanceof PointerType &&
+                    ((PointerType) initValue.getType()).getPointeeType().equals(elementType)) {
+                initValue = builder.buildLoad(initValue, "init.load");
                 if (DEBUG_ENABLED)
-                    syLogging("initializeRuntimeArray: " + i + "-th initValue: "
+                    syLogging("initializeRuntimeArray: <LOAD>" + entry.getKey() + "-th initValue: "
                             + getTypeDetailString(initValue.getType()));
 
-                // If the initializer is a pointer to the element type,
-                // it means we were given an address instead of a value. We must load the value.
-                if (initValue.getType() instanceof PointerType &&
-                        ((PointerType) initValue.getType()).getPointeeType().equals(elementType)) {
-                    initValue = builder.buildLoad(initValue, "init.load");
-                    if (DEBUG_ENABLED)
-                        syLogging("initializeRuntimeArray: <LOAD>" + i + "-th initValue: "
-                                + getTypeDetailString(initValue.getType()));
-
-                }
-                builder.buildStore(initValue, gep);
-            }
-        }
-    }
-
-    private void initializeLargeRuntimeArray(Value arrayPtr, List<? extends Value> values, List<Integer> dims) {
-        int totalSize = getTotalSize(dims);
-        Type elementType = getBaseElementType(((PointerType) arrayPtr.getType()).getPointeeType());
-        Value zeroValue = getZeroConstant(elementType);
-
-        // Cast array pointer to a flat pointer to the base element type for
-        // zero-filling
-        Value flatPtr = builder.buildBitCast(arrayPtr, PointerType.get(elementType), "array.flat_ptr");
-
-        // 1. Create loop blocks
-        BasicBlock loopCond = currentFunction.appendBasicBlock("large_arr.loop.cond");
-        BasicBlock loopBody = currentFunction.appendBasicBlock("large_arr.loop.body");
-        BasicBlock loopEnd = currentFunction.appendBasicBlock("large_arr.loop.end");
-
-        // 2. Setup loop counter
-        Value counterPtr = builder.buildAlloca(i32, "large_arr.counter.ptr");
-        builder.buildStore(zero, counterPtr);
-        builder.buildBr(loopCond);
-
-        // 3. Loop condition
-        setCurrentBlock(loopCond);
-        Value counter = builder.buildLoad(counterPtr, "large_arr.counter");
-        Value cmp = builder.buildICmpSLT(counter, new ConstantInt(i32, totalSize), "large_arr.loop.cmp");
-        builder.buildCondBr(cmp, loopBody, loopEnd);
-
-        // 4. Loop body (zero-fill)
-        setCurrentBlock(loopBody);
-        Value currentIdx = builder.buildLoad(counterPtr, "large_arr.current_idx");
-        Value elementPtr = builder.buildInBoundsGEP(flatPtr, List.of(currentIdx), "element.ptr");
-        builder.buildStore(zeroValue, elementPtr);
-
-        // Increment counter
-        Value nextCounter = builder.buildAdd(currentIdx, new ConstantInt(i32, 1), "large_arr.next_counter");
-        builder.buildStore(nextCounter, counterPtr);
-        builder.buildBr(loopCond);
-
-        // 5. After loop, set current block to loopEnd
-        setCurrentBlock(loopEnd);
-
-        // 6. Store non-zero initializers
-        for (int i = 0; i < values.size(); i++) {
-            Value initValue = values.get(i);
-            boolean shouldStore = false;
-            if (initValue instanceof ConstantInt) {
-                if (((ConstantInt) initValue).getValue() != 0)
-                    shouldStore = true;
-            } else if (initValue instanceof ConstantFloat) {
-                if (((ConstantFloat) initValue).getValue() != 0.0f)
-                    shouldStore = true;
-            } else {
-                shouldStore = true; // It's a runtime value
-            }
-
-            if (shouldStore) {
-                List<Value> gepIndices = getGEPIndicesForFlatIndex(i, dims);
-                Value elementAddress = builder.buildGEP(arrayPtr, gepIndices, "arrayidx.nz");
-
-                if (initValue.getType() instanceof PointerType) {
-                    initValue = builder.buildLoad(initValue, "init.load.nz");
-                }
-                initValue = convertType(initValue, elementType);
-                builder.buildStore(initValue, elementAddress);
             }
+            builder.buildStore(convertType(initValue, elementType), gep);
         }
     }
 
@@ -511,55 +468,6 @@ public class IRGenerator extends SysYParserBaseVisitor<Value> {
         return indices;
     }
 
-    private void collectFlatValues(List<? extends Value> in, List<Value> out) {
-        for (Value v : in) {
-            if (v instanceof ConstantArray) {
-                collectFlatValues(((ConstantArray) v).getElements(), out);
-            } else {
-                out.add(v);
-            }
-        }
-    }
-
-    private List<Value> buildNestedArrayStructure(List<Value> flatValues, List<Integer> dims, int depth,
-            Type baseType) {
-        if (depth == dims.size()) { // Base case: reached the scalar elements
-            return flatValues;
-        }
-
-        int currentDim = dims.get(depth);
-        int stride = 1;
-        for (int i = depth + 1; i < dims.size(); ++i) {
-            stride *= dims.get(i);
-        }
-
-        List<Value> result = new ArrayList<>();
-        for (int i = 0; i < currentDim; ++i) {
-            int start = i * stride;
-            int end = start + stride;
-            List<Value> sublist = new ArrayList<>(flatValues.subList(start, end));
-            List<Value> nestedElements = buildNestedArrayStructure(sublist, dims, depth + 1, baseType);
-
-            if (depth == dims.size() - 1) {
-                // This is the last array dimension, so nestedElements are scalar values
-                result.addAll(nestedElements);
-            } else {
-                // Not the last array dimension, so nestedElements form a sub-array
-                ArrayType subArrayType = buildArrayType(baseType, dims, depth + 1);
-                result.add(new ConstantArray(subArrayType, nestedElements));
-            }
-        }
-        return result;
-    }
-
-    private ArrayType buildArrayType(Type base, List<Integer> dims, int from) {
-        Type t = base;
-        for (int i = dims.size() - 1; i >= from; i--) {
-            t = ArrayType.get(t, dims.get(i));
-        }
-        return (ArrayType) t;
-    }
-
     private ir.value.constants.Constant getZeroConstant(Type type) {
         if (type instanceof IntegerType) {
             return zero;
@@ -39,6 +39,8 @@ import ir.value.instructions.VectorInsertInst;
 import ir.value.instructions.VectorMulInst;
 import ir.value.instructions.VectorSubInst;
 import ir.value.instructions.VectorLoadInst;
+import ir.value.instructions.VectorMaxInst;
+import ir.value.instructions.VectorMinInst;
 import ir.value.instructions.VectorStoreInst;
 
 public class Builder {
@@ -517,6 +519,18 @@ public class Builder {
         return inst;
     }
 
+    public VectorMinInst createVectorMin(Value lhs, Value rhs, String name) {
+        VectorMinInst inst = new VectorMinInst(lhs, rhs, name);
+        insertInstruction(inst);
+        return inst;
+    }
+
+    public VectorMaxInst createVectorMax(Value lhs, Value rhs, String name) {
+        VectorMaxInst inst = new VectorMaxInst(lhs, rhs, name);
+        insertInstruction(inst);
+        return inst;
+    }
+
     /**
      * 创建向量整数比较指令
      * @param predicate 比较谓词
@@ -38,6 +38,10 @@ public interface InstructionVisitor<T> {
 
     T visitVectorDivInst(VectorDivInst inst);
 
+    T visitVectorMinInst(VectorMinInst inst);
+
+    T visitVectorMaxInst(VectorMaxInst inst);
+
     T visitVectorICMPInst(VectorICMPInst inst);
 
     T visitVectorFCMPInst(VectorFCMPInst inst);
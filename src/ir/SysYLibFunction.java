@@ -5,7 +5,10 @@ import ir.type.IntegerType;
 import ir.type.PointerType;
 import ir.type.VoidType;
 import ir.type.FloatType;
+import ir.type.Type;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -39,7 +42,35 @@ public enum SysYLibFunction {
                                            List.of(IntegerType.getI32()))),
     _SYSY_STOPTIME("_sysy_stoptime",
                    () -> FunctionType.get(VoidType.getVoid(),
-                                          List.of(IntegerType.getI32())));
+                                          List.of(IntegerType.getI32()))),
+
+    // 循环惯用法识别生成的批量填充 / 拷贝（元素个数为单位，n <= 0 时什么也不做）
+    _SYSY_MEMSET_I32("_sysy_memset_i32",
+                     () -> FunctionType.get(VoidType.getVoid(),
+                                            List.of(PointerType.get(IntegerType.getI32()), IntegerType.getI32(),
+                                                    IntegerType.getI32()))),
+    _SYSY_MEMSET_F32("_sysy_memset_f32",
+                     () -> FunctionType.get(VoidType.getVoid(),
+                                            List.of(PointerType.get(FloatType.getFloat()), FloatType.getFloat(),
+                                                    IntegerType.getI32()))),
+    _SYSY_MEMCPY_I32("_sysy_memcpy_i32",
+                     () -> FunctionType.get(VoidType.getVoid(),
+                                            List.of(PointerType.get(IntegerType.getI32()),
+                                                    PointerType.get(IntegerType.getI32()), IntegerType.getI32()))),
+    _SYSY_MEMCPY_F32("_sysy_memcpy_f32",
+                     () -> FunctionType.get(VoidType.getVoid(),
+                                            List.of(PointerType.get(FloatType.getFloat()),
+                                                    PointerType.get(FloatType.getFloat()), IntegerType.getI32()))),
+
+    // 自动并行化：_sysy_parallel_for(body, lo, hi, grain, long a0..a3, float f0..f7)，与 sylib.h 的定长原型一致，
+    // a0..a3 / f0..f7 原样转发给 body
+    _SYSY_PARALLEL_FOR("_sysy_parallel_for", () -> {
+        List<Type> params = new ArrayList<>(List.of(PointerType.get(IntegerType.getI8()), IntegerType.getI32(),
+                                                    IntegerType.getI32(), IntegerType.getI32()));
+        params.addAll(Collections.nCopies(4, IntegerType.getI64()));
+        params.addAll(Collections.nCopies(8, FloatType.getFloat()));
+        return FunctionType.get(VoidType.getVoid(), params);
+    });
 
 
     private final String name;
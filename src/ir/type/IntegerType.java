@@ -32,6 +32,7 @@ public final class IntegerType extends Type {
         case 8 -> NLVMKind.I8;
         case 16 -> NLVMKind.I16;
         case 32 -> NLVMKind.I32;
+        case 64 -> NLVMKind.I64;
         default ->
             throw CompileException.
             unSupported("Integer with bitWidth " + bitWidth);
@@ -52,6 +53,8 @@ public final class IntegerType extends Type {
 
     public static IntegerType getI8() { return getInteger(8); }
 
+    public static IntegerType getI64() { return getInteger(64); }
+
     @Override
     public String toNLVM() {
         return "i" + bitWidth;
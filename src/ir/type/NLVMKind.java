@@ -6,6 +6,7 @@ public enum NLVMKind {
     I8,
     I16,
     I32,
+    I64,
     // others
     FLOAT,
     VOID,
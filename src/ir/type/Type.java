@@ -21,13 +21,14 @@ public abstract class Type {
     public boolean isI8() { return is(NLVMKind.I8); };
     public boolean isI16() { return is(NLVMKind.I16); };
     public boolean isI32() { return is(NLVMKind.I32); };
+    public boolean isI64() { return is(NLVMKind.I64); };
     public boolean isFloat() { return is(NLVMKind.FLOAT); };
     public boolean isArray() { return is(NLVMKind.ARRAY); };
     public boolean isFunc() { return is(NLVMKind.FUNC); };
     public boolean isVoid() { return is(NLVMKind.VOID); };
     public boolean isPointer() { return is(NLVMKind.POINTER); };
     public boolean isInteger() {
-        return isI1() || isI8() || isI16() || isI32();
+        return isI1() || isI8() || isI16() || isI32() || isI64();
     }
 
 
@@ -181,6 +181,7 @@ public class BasicBlock extends Value {
         }
         predecessors.add(pred);
         pred.successors.add(this);
+        edgeChanged(pred, this);
     }
 
     public void removePredecessor(BasicBlock pred) {
@@ -189,6 +190,7 @@ public class BasicBlock extends Value {
         }
         predecessors.remove(pred);
         pred.successors.remove(this);
+        edgeChanged(pred, this);
 
         // Also remove corresponding entries from any PHI nodes in this block.
         for (var instNode : getInstructions()) {
@@ -216,6 +218,7 @@ public class BasicBlock extends Value {
         }
         successors.add(succ);
         succ.predecessors.add(this);
+        edgeChanged(this, succ);
     }
 
     public void removeSuccessor(BasicBlock succ) {
@@ -235,8 +238,12 @@ public class BasicBlock extends Value {
         if (oldPred == newPred) {
             return;
         }
-        predecessors.remove(oldPred);
-        predecessors.add(newPred);
+        if (predecessors.remove(oldPred)) {
+            edgeChanged(oldPred, this);
+        }
+        if (predecessors.add(newPred)) {
+            edgeChanged(newPred, this);
+        }
         oldPred.successors.remove(this);
         newPred.successors.add(this);
 
@@ -253,6 +260,21 @@ public class BasicBlock extends Value {
         }
     }
 
+    /** 一条边 from -> to 被增删：递增所在函数的 CFG 版本号（每次变化只计一次） */
+    private static void edgeChanged(BasicBlock from, BasicBlock to) {
+        Function func = to.getParentOrNull();
+        if (func == null) {
+            func = from.getParentOrNull();
+        }
+        if (func != null) {
+            func.bumpCfgVersion();
+        }
+    }
+
+    private Function getParentOrNull() {
+        return blockNode.getParent() != null ? blockNode.getParent().getVal() : null;
+    }
+
     public INode<Instruction, BasicBlock> getTerminator() {
         for (var node : instructions) {
             if (node.getVal().opCode().isTerminator()) {
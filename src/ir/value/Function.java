@@ -25,6 +25,9 @@ public class Function extends Value {
 
     private final Map<String, Integer> nameCounts;
     
+    // CFG 版本号：每增删一条边递增一次，缓存的支配树据此判断是否仍然有效
+    private long cfgVersion = 0;
+
     // 调用关系管理
     private final Set<Function> callers = new HashSet<>();  // 调用此函数的函数列表
     private final Set<Function> callees = new HashSet<>();  // 此函数调用的函数列表
@@ -111,6 +114,14 @@ public class Function extends Value {
         return blocks.getEntry() != null ? blocks.getEntry().getVal() : null;
     }
 
+    public long getCfgVersion() {
+        return cfgVersion;
+    }
+
+    public void bumpCfgVersion() {
+        cfgVersion++;
+    }
+
     public BasicBlock appendBasicBlock(String name) {
         String uniqueName = this.getUniqueName(name);  // 使用函数级别的命名空间
         BasicBlock block = new BasicBlock(uniqueName, this);
@@ -211,48 +222,40 @@ public class Function extends Value {
             }
         }
         
-        // Clone instructions
+        // Values may be used before their definition in block order (phis, loop
+        // back edges), so every result gets a unique placeholder first and is
+        // swapped for the real clone once that clone exists.
         for (var bbNode : blocks) {
-            BasicBlock originalBB = bbNode.getVal();
-            BasicBlock newBB = blockMap.get(originalBB);
-            
-            for (var instNode : originalBB.getInstructions()) {
+            for (var instNode : bbNode.getVal().getInstructions()) {
                 Instruction originalInst = instNode.getVal();
-                if (!(originalInst instanceof Phi)) {  // Handle Phi separately
-                    try {
-                        Instruction newInst = originalInst.clone(valueMap, blockMap);
-                        newBB.addInstruction(newInst);
-                        valueMap.put(originalInst, newInst);
-                    } catch (Exception e) {
-                        // If clone method not implemented, skip this instruction
-                        // This is a fallback for instructions without clone implementation
-                        System.err.println("Warning: Could not clone instruction: " + originalInst.getClass().getSimpleName());
-                    }
+                if (!originalInst.getType().isVoid()) {
+                    valueMap.put(originalInst, UndefValue.createUnique(originalInst.getType()));
                 }
             }
         }
-        
-        // Handle Phi instructions separately (need all blocks to be set up first)
+
+        // Clone instructions
         for (var bbNode : blocks) {
             BasicBlock originalBB = bbNode.getVal();
             BasicBlock newBB = blockMap.get(originalBB);
 
             for (var instNode : originalBB.getInstructions()) {
                 Instruction originalInst = instNode.getVal();
-                if (originalInst instanceof Phi) {
-                    try {
-                        Phi newPhi = (Phi) originalInst.clone(valueMap, blockMap);
-                        newBB.insertPhi(newPhi);
-                        valueMap.put(originalInst, newPhi);
-                    } catch (Exception e) {
-                        System.err.println("Warning: Could not clone Phi instruction");
-                    }
+                Instruction newInst = originalInst.clone(valueMap, blockMap);
+                if (newInst instanceof Phi newPhi) {
+                    newBB.insertPhi(newPhi);
+                } else {
+                    newBB.addInstruction(newInst);
+                }
+                Value placeholder = valueMap.put(originalInst, newInst);
+                if (placeholder != null) {
+                    placeholder.replaceAllUsesWith(newInst);
                 }
             }
         }
-        
-        // Note: Do not call replaceAllUsesWith here as it would break SSA form
-        // The cloned function is independent and should not modify original uses
+
+        // Note: Only the placeholders above are replaced; uses of this function's
+        // values are left untouched, the clone is independent
         // Note: Do NOT copy caller/callee relationships as this would modify the original call graph
         // The FunctionInlinePass will handle call graph updates separately
         
@@ -4,6 +4,7 @@ import ir.NLVMModule;
 import ir.type.PointerType;
 import ir.type.Type;
 import ir.value.constants.Constant;
+import ir.value.constants.ConstantSparseArray;
 import ir.value.constants.ConstantZeroInitializer;
 
 import java.util.Objects;
@@ -43,6 +44,10 @@ public class GlobalVariable extends Value {
 
     @Override
     public String toNLVM() {
+        Type pointeeType = ((PointerType)getType()).getPointeeType();
+        if (initializer instanceof ConstantSparseArray sparse && sparse.prefersPacked()) {
+            return toPackedNLVM(sparse, pointeeType);
+        }
         StringBuilder sb = new StringBuilder();
         sb.append("@").append(getName()).append(" = ");
         if (isPrivate) {
@@ -56,21 +61,47 @@ public class GlobalVariable extends Value {
         } else {
             sb.append("global ");
         }
-        Type pointeeType = ((PointerType)getType()).getPointeeType();
         if (initializer != null) {
             sb.append(initializer.toNLVM());
         } else {
             // If initializer is null, it means it's implicitly zero-initialized
             sb.append("zeroinitializer");
         }
+        appendAlign(sb, pointeeType);
+        return sb.toString();
+    }
+
+    /**
+     * 大而稀疏的数组：数据放在 packed struct 类型的 @name.data 里，@name 是把它 bitcast 成数组指针的别名，
+     * 所有引用仍是 [N x T]* @name
+     */
+    private String toPackedNLVM(ConstantSparseArray sparse, Type pointeeType) {
+        String data = "@" + getName() + ".data";
+        String arrayType = pointeeType.toNLVM();
+        StringBuilder sb = new StringBuilder();
+        sb.append(data).append(" = private ");
+        if (isUnnamedAddr) {
+            sb.append("unnamed_addr ");
+        }
+        sb.append(isConst() ? "constant " : "global ").append(sparse.toPackedNLVM());
+        appendAlign(sb, pointeeType);
+        sb.append("\n@").append(getName()).append(" = ");
+        if (isPrivate) {
+            sb.append("private ");
+        }
+        sb.append("alias ").append(arrayType).append(", ").append(arrayType).append("* bitcast (")
+                .append(sparse.getPackedTypeNLVM()).append("* ").append(data).append(" to ").append(arrayType)
+                .append("*)");
+        return sb.toString();
+    }
 
+    private void appendAlign(StringBuilder sb, Type pointeeType) {
         int align = parent.getTargetDataLayout().getAlignment(pointeeType);
         if (align > 0) {
             sb.append(", align ").append(align);
         }else {
             throw new IllegalStateException("Alignment must be greater than 0");
         }
-        return sb.toString();
     }
 
     @Override
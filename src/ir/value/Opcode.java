@@ -76,6 +76,8 @@ public enum Opcode {
     VSUB, // 向量减法
     VMUL, // 向量乘法
     VDIV, // 向量除法
+    VMIN, // 向量最小值（整数按有符号比较）
+    VMAX, // 向量最大值（整数按有符号比较）
     VAND, // 向量与
     VOR, // 向量或
     VXOR, // 向量异或
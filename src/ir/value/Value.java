@@ -66,7 +66,7 @@ public abstract class Value {
         }
 
         /* ── 普通 SSA 值：保持原有名字规则 ─────────────────── */
-        if (this instanceof GlobalVariable) return "@" + getName();
+        if (this instanceof GlobalVariable || this instanceof Function) return "@" + getName();
         return "%" + getName();
     }
 
@@ -0,0 +1,295 @@
+package ir.value.constants;
+
+import ir.type.ArrayType;
+import ir.type.FloatType;
+import ir.type.IntegerType;
+import ir.type.Type;
+import ir.value.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 稀疏常量数组：只保存非零的标量元素（按行主序的扁平下标），其余元素隐式为 0。
+ * 用于 long_array 一类“大而稀疏”的初始化器，内存与输出规模只和非零元素个数相关。
+ *
+ * 与 ConstantZeroInitializer 一样不把元素登记为操作数；需要逐层访问时
+ * getElement/getElements 会按需切出子数组视图。
+ */
+public class ConstantSparseArray extends ConstantArray {
+    // 按数组形式输出时逐个列出的元素数超过 2 * 非零个数 + 该值，全局变量就改用 packed struct 形式定义
+    private static final int PACKED_SLACK = 16;
+
+    private final Type scalarType;
+    private final int flatSize;
+    // 按扁平下标升序排列的非零元素
+    private final int[] indices;
+    private final Constant[] values;
+
+    /**
+     * @param type     完整的数组类型，如 [3 x [4 x i32]]
+     * @param nonZeros 扁平下标 → 标量常量；值为 0 的项会被丢弃
+     */
+    public ConstantSparseArray(ArrayType type, Map<Integer, ? extends Value> nonZeros) {
+        super(type, Collections.emptyList());
+        this.scalarType = baseType(type);
+        this.flatSize = flatSizeOf(type);
+
+        TreeMap<Integer, Constant> sorted = new TreeMap<>();
+        for (Map.Entry<Integer, ? extends Value> e : nonZeros.entrySet()) {
+            int idx = e.getKey();
+            if (idx < 0 || idx >= flatSize) {
+                throw new IllegalArgumentException("Sparse index out of range: " + idx);
+            }
+            if (!(e.getValue() instanceof Constant c) || c instanceof ConstantArray) {
+                throw new IllegalArgumentException("Element is not a scalar constant: " + e.getValue());
+            }
+            if (!isZero(c)) {
+                sorted.put(idx, c);
+            }
+        }
+        this.indices = new int[sorted.size()];
+        this.values = new Constant[sorted.size()];
+        int k = 0;
+        for (Map.Entry<Integer, Constant> e : sorted.entrySet()) {
+            indices[k] = e.getKey();
+            values[k] = e.getValue();
+            k++;
+        }
+    }
+
+    private ConstantSparseArray(ArrayType type, int[] indices, Constant[] values) {
+        super(type, Collections.emptyList());
+        this.scalarType = baseType(type);
+        this.flatSize = flatSizeOf(type);
+        this.indices = indices;
+        this.values = values;
+    }
+
+    /** 标量 0 判定；-0.0f 的位模式不是 0，必须显式保存 */
+    public static boolean isZero(Constant c) {
+        if (c instanceof ConstantInt ci) {
+            return ci.getValue() == 0;
+        }
+        if (c instanceof ConstantFloat cf) {
+            return Float.floatToRawIntBits(cf.getValue()) == 0;
+        }
+        return c instanceof ConstantZeroInitializer;
+    }
+
+    /* getter */
+    public Type getScalarType() { return scalarType; }
+    public int getFlatSize() { return flatSize; }
+    public int getNumNonZeros() { return indices.length; }
+    public boolean isAllZero() { return indices.length == 0; }
+
+    /** 扁平下标 → 非零标量，按下标升序 */
+    public NavigableMap<Integer, Constant> getNonZeroElements() {
+        TreeMap<Integer, Constant> map = new TreeMap<>();
+        for (int i = 0; i < indices.length; i++) {
+            map.put(indices[i], values[i]);
+        }
+        return Collections.unmodifiableNavigableMap(map);
+    }
+
+    /** 按扁平下标取标量元素，未保存的位置返回 0 */
+    public Constant getFlatElement(int flatIndex) {
+        int pos = Arrays.binarySearch(indices, flatIndex);
+        return pos >= 0 ? values[pos] : zeroOf(scalarType);
+    }
+
+    @Override
+    public List<Constant> getElements() {
+        ArrayType type = (ArrayType) getType();
+        List<Constant> result = new ArrayList<>(type.getLength());
+        for (int i = 0; i < type.getLength(); i++) {
+            result.add(getElement(i));
+        }
+        return result;
+    }
+
+    @Override
+    public Constant getElement(int index) {
+        ArrayType type = (ArrayType) getType();
+        if (index < 0 || index >= type.getLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds: " + index);
+        }
+        if (!(type.getElementType() instanceof ArrayType subType)) {
+            return getFlatElement(index);
+        }
+        // 子数组：切出 [lo, hi) 区间并重新以 0 为基准编号
+        int stride = flatSizeOf(subType);
+        int lo = lowerBound(index * stride);
+        int hi = lowerBound((index + 1) * stride);
+        int[] subIdx = new int[hi - lo];
+        for (int i = lo; i < hi; i++) {
+            subIdx[i - lo] = indices[i] - index * stride;
+        }
+        return new ConstantSparseArray(subType, subIdx, Arrays.copyOfRange(values, lo, hi));
+    }
+
+    /** 数组形式，类型与 getType() 一致，可直接作 store 的值 */
+    @Override
+    public String toNLVM() {
+        if (isAllZero()) {
+            return getType().toNLVM() + " zeroinitializer";
+        }
+        StringBuilder sb = new StringBuilder();
+        appendNLVM(sb, (ArrayType) getType(), 0, 0, indices.length);
+        return sb.toString();
+    }
+
+    /** 数组形式要逐个列出的零远多于非零元素时，全局变量改用 packed struct 定义（见 GlobalVariable） */
+    public boolean prefersPacked() {
+        return !isAllZero() && denseLeafElements() > 2L * indices.length + PACKED_SLACK;
+    }
+
+    /** packed struct 的类型，如 <{ i32, [999999 x i32] }> */
+    public String getPackedTypeNLVM() {
+        StringBuilder types = new StringBuilder();
+        appendPacked(types, new StringBuilder());
+        return "<{ " + types + " }>";
+    }
+
+    /** packed struct 形式的类型与值，如 <{ i32, [999999 x i32] }> <{ i32 1, [999999 x i32] zeroinitializer }> */
+    public String toPackedNLVM() {
+        StringBuilder types = new StringBuilder();
+        StringBuilder fields = new StringBuilder();
+        appendPacked(types, fields);
+        return "<{ " + types + " }> <{ " + fields + " }>";
+    }
+
+    /** 按数组形式输出时逐个列出的元素数：含非零元素的最内层行，每行全部列出 */
+    private long denseLeafElements() {
+        Type type = getType();
+        while (type instanceof ArrayType arrayType && arrayType.getElementType() instanceof ArrayType sub) {
+            type = sub;
+        }
+        int rowLength = ((ArrayType) type).getLength();
+        long rows = 0;
+        int lastRow = -1;
+        for (int idx : indices) {
+            if (idx / rowLength != lastRow) {
+                lastRow = idx / rowLength;
+                rows++;
+            }
+        }
+        return rows * rowLength;
+    }
+
+    /** 按扁平布局列出 packed struct 的字段：非零元素逐个列出，零段折叠成 [k x T] zeroinitializer，内存布局与原数组相同 */
+    private void appendPacked(StringBuilder types, StringBuilder fields) {
+        int next = 0;
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] > next) {
+                appendZeroRun(types, fields, indices[i] - next);
+            }
+            appendPackedField(types, fields, scalarType.toNLVM(), values[i].toNLVM());
+            next = indices[i] + 1;
+        }
+        if (flatSize > next) {
+            appendZeroRun(types, fields, flatSize - next);
+        }
+    }
+
+    private void appendZeroRun(StringBuilder types, StringBuilder fields, int length) {
+        String type = "[" + length + " x " + scalarType.toNLVM() + "]";
+        appendPackedField(types, fields, type, type + " zeroinitializer");
+    }
+
+    private static void appendPackedField(StringBuilder types, StringBuilder fields, String type, String field) {
+        if (!types.isEmpty()) {
+            types.append(", ");
+            fields.append(", ");
+        }
+        types.append(type);
+        fields.append(field);
+    }
+
+    /** 输出 [base, base+size) 这一段；全零的子数组用 zeroinitializer 折叠 */
+    private void appendNLVM(StringBuilder sb, ArrayType type, int base, int lo, int hi) {
+        sb.append(type.toNLVM());
+        if (lo == hi) {
+            sb.append(" zeroinitializer");
+            return;
+        }
+        sb.append(" [");
+        Type elemType = type.getElementType();
+        if (elemType instanceof ArrayType subType) {
+            int stride = flatSizeOf(subType);
+            int cur = lo;
+            for (int i = 0; i < type.getLength(); i++) {
+                int start = base + i * stride;
+                int end = cur;
+                while (end < hi && indices[end] < start + stride) {
+                    end++;
+                }
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                appendNLVM(sb, subType, start, cur, end);
+                cur = end;
+            }
+        } else {
+            int cur = lo;
+            for (int i = 0; i < type.getLength(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                if (cur < hi && indices[cur] == base + i) {
+                    sb.append(values[cur++].toNLVM());
+                } else {
+                    sb.append(zeroOf(elemType).toNLVM());
+                }
+            }
+        }
+        sb.append("]");
+    }
+
+    @Override
+    public String getHash() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("CONST_SPARSE");
+        sb.append(getType().getHash());
+        for (int i = 0; i < indices.length; i++) {
+            sb.append('@').append(indices[i]).append(values[i].getHash());
+        }
+        return sb.toString();
+    }
+
+    private int lowerBound(int flatIndex) {
+        int pos = Arrays.binarySearch(indices, flatIndex);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    private static Type baseType(Type type) {
+        while (type instanceof ArrayType arrayType) {
+            type = arrayType.getElementType();
+        }
+        return type;
+    }
+
+    private static int flatSizeOf(Type type) {
+        int size = 1;
+        while (type instanceof ArrayType arrayType) {
+            size *= arrayType.getLength();
+            type = arrayType.getElementType();
+        }
+        return size;
+    }
+
+    private static Constant zeroOf(Type type) {
+        if (type instanceof FloatType floatType) {
+            return new ConstantFloat(floatType, 0.0f);
+        }
+        if (type instanceof IntegerType intType) {
+            return new ConstantInt(intType, 0);
+        }
+        throw new IllegalArgumentException("Unsupported sparse element type: " + type);
+    }
+}
@@ -28,4 +28,9 @@ public class ConstantZeroInitializer extends ConstantArray {
     public String toNLVM() {
         return getType().toNLVM() + " " + "zeroinitializer";
     }
-}
\ No newline at end of file
+
+    @Override
+    public String getHash() {
+        return "CONST_ZERO" + getType().getHash();
+    }
+}
@@ -82,6 +82,11 @@ public class CallInst extends Instruction {
 
         ArrayList<String> argStrings = new ArrayList<>();
         for (var arg : argsList) {
+            // 函数作实参（并行循环体）时转成 i8* 传递
+            if (arg instanceof Function fn) {
+                argStrings.add("i8* bitcast (" + fn.getFunctionType().toNLVM() + "* " + fn.getReference() + " to i8*)");
+                continue;
+            }
             argStrings.add(arg.getType().toNLVM() + " " + arg.getReference());
         }
 
@@ -86,7 +86,8 @@ public abstract class Instruction extends User {
     public abstract Instruction clone(Map<Value, Value> valueMap, Map<BasicBlock, BasicBlock> blockMap);
 
     public boolean isSideEffect() {
-        return opCode() == Opcode.STORE || opCode() == Opcode.CALL || opCode() == Opcode.RET;
+        return opCode() == Opcode.STORE || opCode() == Opcode.VSTORE || opCode() == Opcode.CALL
+                || opCode() == Opcode.RET;
     }
 
     public Value simplify() {
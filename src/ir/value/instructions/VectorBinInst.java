@@ -28,8 +28,8 @@ public abstract class VectorBinInst extends Instruction {
     
     @Override
     public String toNLVM() {
-        return getName() + " = " + getMnemonic() + " " + getType() + " " + 
-               getLHS().getName() + ", " + getRHS().getName();
+        return "%" + getName() + " = " + getMnemonic() + " " + getType().toNLVM() + " " + 
+               getLHS().getReference() + ", " + getRHS().getReference();
     }
     
     protected abstract String getMnemonic();
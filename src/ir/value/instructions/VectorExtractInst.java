@@ -38,9 +38,9 @@ public class VectorExtractInst extends Instruction {
     
     @Override
     public String toNLVM() {
-        return getName() + " = vextract " + getVectorOperand().getType() + " " +
-               getVectorOperand().getName() + ", " + getIndexOperand().getType() + " " +
-               getIndexOperand().getName();
+        return "%" + getName() + " = vextract " + getVectorOperand().getType().toNLVM() + " " +
+               getVectorOperand().getReference() + ", " + getIndexOperand().getType().toNLVM() + " " +
+               getIndexOperand().getReference();
     }
     
     @Override
@@ -48,8 +48,8 @@ public class VectorFCMPInst extends Instruction {
     
     @Override
     public String toNLVM() {
-        return getName() + " = vfcmp " + predicate.toString() + " " + 
-               getLHS().getType() + " " + getLHS().getName() + ", " + getRHS().getName();
+        return "%" + getName() + " = vfcmp " + predicate.toString() + " " + 
+               getLHS().getType().toNLVM() + " " + getLHS().getReference() + ", " + getRHS().getReference();
     }
     
     @Override
@@ -84,7 +84,7 @@ public class VectorGEPInst extends Instruction {
     @Override
     public String toNLVM() {
         StringBuilder sb = new StringBuilder();
-        sb.append(getName()).append(" = vgetelementptr ");
+        sb.append("%").append(getName()).append(" = vgetelementptr ");
         
         if (inBounds) {
             sb.append("inbounds ");
@@ -92,13 +92,13 @@ public class VectorGEPInst extends Instruction {
         
         // 添加指针类型和名称
         Value ptr = getPointerOperand();
-        sb.append(ptr.getType().toString()).append(" ");
-        sb.append(ptr.getName());
+        sb.append(ptr.getType().toNLVM()).append(" ");
+        sb.append(ptr.getReference());
         
         // 添加索引
         for (Value idx : getIndices()) {
-            sb.append(", ").append(idx.getType().toString());
-            sb.append(" ").append(idx.getName());
+            sb.append(", ").append(idx.getType().toNLVM());
+            sb.append(" ").append(idx.getReference());
         }
         
         return sb.toString();
@@ -50,8 +50,8 @@ public class VectorICMPInst extends Instruction {
     
     @Override
     public String toNLVM() {
-        return getName() + " = vicmp " + predicate.toString() + " " + 
-               getLHS().getType() + " " + getLHS().getName() + ", " + getRHS().getName();
+        return "%" + getName() + " = vicmp " + predicate.toString() + " " + 
+               getLHS().getType().toNLVM() + " " + getLHS().getReference() + ", " + getRHS().getReference();
     }
     
     @Override
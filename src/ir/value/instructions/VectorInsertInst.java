@@ -51,10 +51,10 @@ public class VectorInsertInst extends Instruction {
     
     @Override
     public String toNLVM() {
-        return getName() + " = vinsert " + getVectorOperand().getType() + " " +
-               getVectorOperand().getName() + ", " + 
-               getElementOperand().getType() + " " + getElementOperand().getName() + ", " +
-               getIndexOperand().getType() + " " + getIndexOperand().getName();
+        return "%" + getName() + " = vinsert " + getVectorOperand().getType().toNLVM() + " " +
+               getVectorOperand().getReference() + ", " + 
+               getElementOperand().getType().toNLVM() + " " + getElementOperand().getReference() + ", " +
+               getIndexOperand().getType().toNLVM() + " " + getIndexOperand().getReference();
     }
     
     @Override
@@ -72,15 +72,15 @@ public class VectorLoadInst extends Instruction {
     @Override
     public String toNLVM() {
         StringBuilder sb = new StringBuilder();
-        sb.append(getName()).append(" = vload ");
+        sb.append("%").append(getName()).append(" = vload ");
         
         if (isVolatile) {
             sb.append("volatile ");
         }
         
-        sb.append(getType().toString()).append(", ");
-        sb.append(getPointerOperand().getType().toString()).append(" ");
-        sb.append(getPointerOperand().getName());
+        sb.append(getType().toNLVM()).append(", ");
+        sb.append(getPointerOperand().getType().toNLVM()).append(" ");
+        sb.append(getPointerOperand().getReference());
         
         if (alignment > 0) {
             sb.append(", align ").append(alignment);
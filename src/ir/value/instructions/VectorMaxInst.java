@@ -0,0 +1,36 @@
+package ir.value.instructions;
+
+import ir.InstructionVisitor;
+import ir.value.BasicBlock;
+import ir.value.Opcode;
+import ir.value.Value;
+
+import java.util.Map;
+
+public class VectorMaxInst extends VectorBinInst {
+    public VectorMaxInst(Value lhs, Value rhs, String name) {
+        super(lhs, rhs, name);
+    }
+    
+    @Override
+    public Opcode opCode() {
+        return Opcode.VMAX;
+    }
+    
+    @Override
+    protected String getMnemonic() {
+        return "vmax";
+    }
+    
+    @Override
+    public <T> T accept(InstructionVisitor<T> visitor) {
+        return visitor.visitVectorMaxInst(this);
+    }
+    
+    @Override
+    public Instruction clone(Map<Value, Value> valueMap, Map<BasicBlock, BasicBlock> blockMap) {
+        Value lhs = valueMap.getOrDefault(getLHS(), getLHS());
+        Value rhs = valueMap.getOrDefault(getRHS(), getRHS());
+        return new VectorMaxInst(lhs, rhs, getName());
+    }
+}
\ No newline at end of file
@@ -4,6 +4,7 @@ import ir.InstructionVisitor;
 import ir.type.PointerType;
 import ir.type.Type;
 import ir.type.VectorType;
+import ir.type.VoidType;
 import ir.value.BasicBlock;
 import ir.value.Opcode;
 import ir.value.Value;
@@ -24,7 +25,7 @@ public class VectorStoreInst extends Instruction {
      */
     public VectorStoreInst(Value value, Value pointer, boolean isVolatile, int alignment) {
         // 存储指令不返回值，因此类型为void
-        super(null, "");
+        super(VoidType.getVoid(), "");
         this.isVolatile = isVolatile;
         this.alignment = alignment;
         
@@ -94,10 +95,10 @@ public class VectorStoreInst extends Instruction {
         Value value = getValueOperand();
         Value pointer = getPointerOperand();
         
-        sb.append(value.getType().toString()).append(" ");
-        sb.append(value.getName()).append(", ");
-        sb.append(pointer.getType().toString()).append(" ");
-        sb.append(pointer.getName());
+        sb.append(value.getType().toNLVM()).append(" ");
+        sb.append(value.getReference()).append(", ");
+        sb.append(pointer.getType().toNLVM()).append(" ");
+        sb.append(pointer.getReference());
         
         if (alignment > 0) {
             sb.append(", align ").append(alignment);
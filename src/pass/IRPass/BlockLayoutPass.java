@@ -5,6 +5,7 @@ import ir.value.BasicBlock;
 import ir.value.Function;
 import pass.IRPassType;
 import pass.Pass;
+import pass.IRPass.analysis.BranchProbabilityAnalysis;
 import util.IList;
 import util.IList.INode;
 
@@ -15,6 +16,7 @@ import java.util.*;
  * 依赖 CFGAnalysisPass 提前填好的 successors/predecessors。
  * - 对不可达块：保持原相对顺序，追加到末尾。
  * - 仅调整 IList 节点位置，不新建/删除 Block。
+ * - DFS 最后访问概率最高的后继，使它在 RPO 中紧跟当前块，成为 fall-through。
  */
 public class BlockLayoutPass implements Pass.IRPass {
 
@@ -51,7 +53,8 @@ public class BlockLayoutPass implements Pass.IRPass {
         // ---- RPO：DFS 得到 postorder，反转 ----
         Set<BasicBlock> vis = new LinkedHashSet<>();
         List<BasicBlock> post = new ArrayList<>();
-        dfsRPO(entry, vis, post, indexOf);
+        BranchProbabilityAnalysis bpi = BranchProbabilityAnalysis.compute(f);
+        dfsRPO(entry, vis, post, indexOf, bpi);
         Collections.reverse(post);
 
         // ---- 不可达块：维持原相对顺序，追加 ----
@@ -76,19 +79,21 @@ public class BlockLayoutPass implements Pass.IRPass {
         }
     }
 
-    /** 基于 successors 做 DFS，记录 postorder；对 successor 的遍历按原出现顺序稳定化 */
+    /** 基于 successors 做 DFS，记录 postorder；successor 按概率升序访问，概率相同时按原出现顺序稳定化 */
     private void dfsRPO(BasicBlock bb,
                         Set<BasicBlock> vis,
                         List<BasicBlock> post,
-                        Map<BasicBlock, Integer> indexOf) {
+                        Map<BasicBlock, Integer> indexOf,
+                        BranchProbabilityAnalysis bpi) {
         if (bb == null || !vis.add(bb)) return;
 
-        // 将 Set<BasicBlock> successors 按原函数中出现的顺序进行稳定化排序
+        // 最后访问的后继在反转后紧跟 bb，因此把最可能的后继放到最后
         List<BasicBlock> succs = new ArrayList<>(bb.getSuccessors());
-        succs.sort(Comparator.comparingInt(b -> indexOf.getOrDefault(b, Integer.MAX_VALUE)));
+        succs.sort(Comparator.<BasicBlock>comparingDouble(b -> bpi.getEdgeProbability(bb, b))
+                .thenComparingInt(b -> indexOf.getOrDefault(b, Integer.MAX_VALUE)));
 
         for (BasicBlock s : succs) {
-            dfsRPO(s, vis, post, indexOf);
+            dfsRPO(s, vis, post, indexOf, bpi);
         }
         post.add(bb);
     }
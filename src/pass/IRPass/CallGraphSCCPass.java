@@ -0,0 +1,55 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.value.Function;
+import pass.IRPassType;
+import pass.Pass;
+import pass.Pass.FunctionPass;
+import pass.PassManager;
+import pass.IRPass.analysis.CallGraph;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.List;
+
+/**
+ * 按调用图强连通分量自底向上的内联与化简。
+ * <p>
+ * 被调者所在的分量先处理：对分量中的每个函数，先把可内联的调用点展开，再运行一遍函数级 pipeline。
+ * 这样轮到调用者做内联决策时，被调函数已经化简过，内联代价按优化后的大小计算。
+ * 全部分量处理完后删除不再被调用的函数。
+ */
+public class CallGraphSCCPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(CallGraphSCCPass.class);
+
+    // 每个函数内联之后运行的函数级 pipeline
+    private static final IRPassType[] FUNCTION_PIPELINE = {
+            IRPassType.CFGAnalysis,
+            IRPassType.InstCombinePass,
+            IRPassType.GVN,
+            IRPassType.DeadCodeElimination,
+            IRPassType.CFGAnalysis,
+    };
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.CallGraphSCC;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule module = NLVMModule.getModule();
+        CallGraph callGraph = CallGraph.compute(module);
+        PassManager pm = PassManager.getInstance();
+        List<FunctionPass> pipeline = pm.createFunctionPipeline(FUNCTION_PIPELINE);
+        FunctionInlinePass inliner = new FunctionInlinePass();
+
+        pm.runBottomUp(callGraph, pipeline, scc -> {
+            for (Function f : scc) {
+                if (inliner.inlineCallSitesIn(f, callGraph))
+                    log.debug("{}: inlined callees before simplification", f.getName());
+            }
+        });
+        inliner.removeDeadFunctions(callGraph);
+    }
+}
@@ -10,15 +10,18 @@ import ir.value.Value;
 import ir.value.instructions.*;
 import pass.IRPassType;
 import pass.Pass;
+import pass.IRPass.analysis.DominanceAnalysisPass;
 import util.IList;
 import util.LoggingManager;
 import util.logging.Logger;
 
 import java.util.*;
 
-public class DeadCodeEliminationPass implements Pass.IRPass {
+public class DeadCodeEliminationPass implements Pass.FunctionPass {
     private final Logger log = LoggingManager.getLogger(this.getClass());
     private boolean enableLog = true; // Control logging output
+    // 本轮对 CFG 的边修改，结束时交给缓存的支配树做增量更新
+    private final List<DominanceAnalysisPass.Update> domUpdates = new ArrayList<>();
 
     @Override
     public IRPassType getType() {
@@ -31,16 +34,19 @@ public class DeadCodeEliminationPass implements Pass.IRPass {
         NLVMModule module = NLVMModule.getModule();
         for (Function function : module.getFunctions()) {
             if (!function.isDeclaration()) {
-                boolean changed;
-                do {
-
-                    changed = runOnFunction(function);
-
-                } while (changed);
+                run(function);
             }
         }
     }
 
+    @Override
+    public void run(Function function) {
+        boolean changed;
+        do {
+            changed = runOnFunction(function);
+        } while (changed);
+    }
+
     private boolean runOnFunction(Function function) {
         boolean changed = false;
         changed |= simplifyConstantBranches(function);
@@ -49,9 +55,25 @@ public class DeadCodeEliminationPass implements Pass.IRPass {
         changed |= mergeReturnBlocks(function); // Add this new pass
         changed |= removeDeadInstructions(function);
         changed |= simplifyPhis(function);
+        DominanceAnalysisPass.updateCached(function, domUpdates);
+        domUpdates.clear();
         return changed;
     }
 
+    private void removeEdge(BasicBlock from, BasicBlock to) {
+        if (to.getPredecessors().contains(from)) {
+            to.removePredecessor(from);
+            domUpdates.add(DominanceAnalysisPass.Update.delete(from, to));
+        }
+    }
+
+    private void addEdge(BasicBlock from, BasicBlock to) {
+        if (!to.getPredecessors().contains(from)) {
+            to.setPredecessor(from);
+            domUpdates.add(DominanceAnalysisPass.Update.insert(from, to));
+        }
+    }
+
     /**
      * Unreachable Code Elimination (UCE)
      * Removes basic blocks that are not reachable from the entry block.
@@ -120,11 +142,11 @@ public class DeadCodeEliminationPass implements Pass.IRPass {
 
             // Notify successors to remove this block from their PHI nodes.
             for (BasicBlock succ : new ArrayList<>(block.getSuccessors())) {
-                succ.removePredecessor(block);
+                removeEdge(block, succ);
             }
             // Disconnect from predecessors
             for (BasicBlock pred : new ArrayList<>(block.getPredecessors())) {
-                pred.removeSuccessor(block);
+                removeEdge(pred, block);
             }
 
             if (enableLog) {
@@ -411,8 +433,8 @@ public class DeadCodeEliminationPass implements Pass.IRPass {
                 // Update each predecessor's terminator and control flow
                 for (BasicBlock pred : predecessors) {
                     // Update control flow graph
-                    emptyBlock.removePredecessor(pred);
-                    pred.setSuccessor(targetBlock);
+                    removeEdge(pred, emptyBlock);
+                    addEdge(pred, targetBlock);
 
                     // Update terminator instruction
                     IList.INode<Instruction, BasicBlock> termNode = pred.getTerminator();
@@ -515,7 +537,9 @@ public class DeadCodeEliminationPass implements Pass.IRPass {
                         blockToTarget.put(block, targetBlock);
                     }
                 }
-                emptyBlock.removeAllSuccessors();
+                for (BasicBlock succ : new ArrayList<>(emptyBlock.getSuccessors())) {
+                    removeEdge(emptyBlock, succ);
+                }
 
                 emptyBlock.getTerminator().getVal().clearOperands();
                 emptyBlock.getTerminator().removeSelf();
@@ -611,8 +635,7 @@ public class DeadCodeEliminationPass implements Pass.IRPass {
                 termInst._getINode().removeSelf();
 
                 // Update the control flow graph
-                pred.getSuccessors().clear();
-                returnBlock.removePredecessor(pred);
+                removeEdge(pred, returnBlock);
 
                 changed = true;
             }
@@ -627,7 +650,8 @@ public class DeadCodeEliminationPass implements Pass.IRPass {
     private boolean isAlwaysUseful(Instruction inst) {
         // Instructions with side effects are always useful.
         // This includes terminators, memory writes, and function calls.
-        return inst.isTerminator() || inst instanceof StoreInst || inst instanceof CallInst
+        return inst.isTerminator() || inst instanceof StoreInst || inst instanceof VectorStoreInst
+                || inst instanceof CallInst
                 || inst instanceof ReturnInst || inst instanceof BranchInst || inst instanceof Phi;
     }
 
@@ -671,8 +695,8 @@ public class DeadCodeEliminationPass implements Pass.IRPass {
                         block.addInstructionBefore(newBrInst, termInst);
 
                         // Update the control flow graph
-                        removedBlock.removePredecessor(block);
-                        targetBlock.setPredecessor(block); // 防止二者相同
+                        removeEdge(block, removedBlock);
+                        addEdge(block, targetBlock); // 防止二者相同
 
                         // System.out.println("Simplified branch in " + block.getName() +
                         // " from " + termInst.toNLVM() +
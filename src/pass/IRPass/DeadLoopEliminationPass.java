@@ -48,8 +48,7 @@ public class DeadLoopEliminationPass implements Pass.IRPass {
 
     private void runOnFunction(Function func) {
         // 分析循环
-        DominanceAnalysisPass dom = new DominanceAnalysisPass(func);
-        dom.run();
+        DominanceAnalysisPass dom = DominanceAnalysisPass.getOrCompute(func);
         LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
         loopAnalysis.runOnFunction(func);
         LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
@@ -0,0 +1,92 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.StoreInst;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.AliasAnalysis;
+import pass.IRPass.analysis.AliasAnalysis.AliasResult;
+import pass.IRPass.analysis.AliasAnalysis.MemoryLocation;
+import pass.IRPass.analysis.MemorySSA;
+import pass.IRPass.analysis.MemorySSA.MemoryDef;
+import pass.IRPass.analysis.MemorySSA.MemoryUseOrDef;
+import pass.IRPass.analysis.ModRefAnalysis;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 块内死 store 消除：store 之后、同一块内被写同一位置的 store 完全覆盖，
+ * 且中间没有可能读取该位置的 load / 调用时，前一个 store 是死的。
+ * 读写关系由 MemorySSA 的访问序列与 AliasAnalysis 给出。
+ */
+public class DeadStoreEliminationPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(DeadStoreEliminationPass.class);
+
+    private ModRefAnalysis modRef;
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.DeadStoreElimination;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule module = NLVMModule.getModule();
+        modRef = ModRefAnalysis.compute(module);
+        for (Function function : module.getFunctions()) {
+            if (!function.isDeclaration()) {
+                runOnFunction(function);
+            }
+        }
+    }
+
+    private void runOnFunction(Function func) {
+        MemorySSA mssa = new MemorySSA(func, modRef);
+        List<StoreInst> dead = new ArrayList<>();
+        for (var bbNode : func.getBlocks()) {
+            List<MemoryUseOrDef> accesses = mssa.getBlockAccesses(bbNode.getVal());
+            for (int i = 0; i < accesses.size(); i++) {
+                if (accesses.get(i).getInstruction() instanceof StoreInst st && isOverwritten(accesses, i))
+                    dead.add(st);
+            }
+        }
+        for (StoreInst st : dead) {
+            mssa.removeAccess(st);
+            BasicBlock parent = st.getParent();
+            parent.removeInstruction(st);
+        }
+        if (!dead.isEmpty())
+            log.debug("DSE: removed {} store(s) in {}", dead.size(), func.getName());
+    }
+
+    private boolean isOverwritten(List<MemoryUseOrDef> accesses, int index) {
+        MemoryLocation loc = MemorySSA.getLocation(accesses.get(index).getInstruction());
+        if (loc.size() == AliasAnalysis.UNKNOWN_SIZE)
+            return false;
+        for (int j = index + 1; j < accesses.size(); j++) {
+            MemoryUseOrDef next = accesses.get(j);
+            Instruction inst = next.getInstruction();
+            if (inst instanceof CallInst call) {
+                if (AliasAnalysis.callMayRef(call, loc, modRef))
+                    return false;
+                continue;
+            }
+            MemoryLocation nextLoc = MemorySSA.getLocation(inst);
+            if (!(next instanceof MemoryDef)) {
+                if (AliasAnalysis.mayAlias(loc, nextLoc))
+                    return false;
+                continue;
+            }
+            if (AliasAnalysis.alias(loc, nextLoc) == AliasResult.MUST)
+                return true;
+        }
+        return false;
+    }
+}
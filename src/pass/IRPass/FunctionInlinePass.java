@@ -13,6 +13,8 @@ import ir.value.constants.ConstantFloat;
 import ir.value.instructions.*;
 import pass.IRPassType;
 import pass.Pass.IRPass;
+import pass.IRPass.analysis.BlockFrequencyAnalysis;
+import pass.IRPass.analysis.CallGraph;
 import util.LoggingManager;
 import util.logging.LogLevel;
 import util.logging.Logger;
@@ -25,8 +27,9 @@ public class FunctionInlinePass implements IRPass {
     private static final Logger logger = LoggingManager.getLogger(FunctionInlinePass.class, LogLevel.FATAL);
 
     // 配置参数
-    private static final int MAX_INLINE_SIZE = 1000; // 最大内联函数大小（指令数）
+    static final int MAX_INLINE_SIZE = 1000; // 最大内联函数大小（指令数）
     private static final int MAX_FUNCTION_SIZE = 10000; // 函数最大允许大小
+    private static final int COLD_INLINE_SIZE = 100; // 调用点全部为冷块时允许内联的最大大小
     private static final int MAX_INLINE_DEPTH = 5; // 最大内联深度
     private static final int MAX_ITERATIONS = 20; // 最大迭代次数
 
@@ -35,6 +38,7 @@ public class FunctionInlinePass implements IRPass {
     private boolean changed = false;
 
     // 缓存数据
+    private CallGraph callGraph;
     private Map<Function, Integer> functionSizes = new HashMap<>();
     private Set<Function> recursiveFunctions = new HashSet<>();
 
@@ -73,38 +77,14 @@ public class FunctionInlinePass implements IRPass {
     private void buildCallGraph() {
         logger.info("Building call graph...");
 
-        // 清空现有关系
+        callGraph = CallGraph.compute(module);
         functionSizes.clear();
-
-        // 清空所有函数的调用关系
         for (Function func : module.getFunctions()) {
             if (!func.isDeclaration()) {
-                func.getCallerList().clear();
-                func.getCalleeList().clear();
                 functionSizes.put(func, calculateFunctionSize(func));
             }
         }
 
-        // 构建调用关系
-        for (Function caller : module.getFunctions()) {
-            if (caller.isDeclaration())
-                continue;
-
-            for (var bbNode : caller.getBlocks()) {
-                BasicBlock bb = bbNode.getVal();
-                for (var instNode : bb.getInstructions()) {
-                    Instruction inst = instNode.getVal();
-                    if (inst instanceof CallInst call) {
-                        Function callee = call.getCalledFunction();
-
-                        if (!callee.isDeclaration()) {
-                            caller.addCallee(callee); // 这会自动更新双向关系
-                        }
-                    }
-                }
-            }
-        }
-
         // 打印调用关系图统计
         logger.info("Call graph built: {} functions", functionSizes.size());
         for (Function func : module.getFunctions()) {
@@ -112,8 +92,8 @@ public class FunctionInlinePass implements IRPass {
                 logger.debug("Function {}: size={}, callers={}, callees={}",
                         func.getName(),
                         functionSizes.get(func),
-                        func.getCallerList().size(),
-                        func.getCalleeList().size());
+                        callGraph.getCallers(func).size(),
+                        callGraph.getCallees(func).size());
             }
         }
     }
@@ -136,60 +116,18 @@ public class FunctionInlinePass implements IRPass {
     private void identifyRecursiveFunctions() {
         logger.info("Identifying recursive functions...");
 
-        Map<Function, Integer> index = new HashMap<>();
-        Map<Function, Integer> lowlink = new HashMap<>();
-        Map<Function, Boolean> onStack = new HashMap<>();
-        Stack<Function> stack = new Stack<>();
-        final int[] indexCounter = { 0 };
-
-        for (Function func : module.getFunctions()) {
-            if (!func.isDeclaration() && !index.containsKey(func)) {
-                strongConnect(func, index, lowlink, onStack, stack, indexCounter);
-            }
-        }
-
-        logger.info("Found {} recursive functions", recursiveFunctions.size());
-    }
-
-    private void strongConnect(Function func, Map<Function, Integer> index,
-            Map<Function, Integer> lowlink, Map<Function, Boolean> onStack,
-            Stack<Function> stack, int[] indexCounter) {
-        index.put(func, indexCounter[0]);
-        lowlink.put(func, indexCounter[0]);
-        indexCounter[0]++;
-        stack.push(func);
-        onStack.put(func, true);
-
-        // 遍历后继
-        for (Function callee : func.getCalleeList()) {
-            if (!callee.isDeclaration()) {
-                if (!index.containsKey(callee)) {
-                    strongConnect(callee, index, lowlink, onStack, stack, indexCounter);
-                    lowlink.put(func, Math.min(lowlink.get(func), lowlink.get(callee)));
-                } else if (onStack.getOrDefault(callee, false)) {
-                    lowlink.put(func, Math.min(lowlink.get(func), index.get(callee)));
-                }
-            }
-        }
-
-        // 如果是SCC的根
-        if (lowlink.get(func).equals(index.get(func))) {
-            List<Function> scc = new ArrayList<>();
-            Function w;
-            do {
-                w = stack.pop();
-                onStack.put(w, false);
-                scc.add(w);
-            } while (!w.equals(func));
-
+        recursiveFunctions.clear();
+        for (List<Function> scc : callGraph.getBottomUpSCCs()) {
             // 如果SCC包含多个函数，或单个函数调用自己，则是递归
-            if (scc.size() > 1 || func.getCalleeList().contains(func)) {
+            if (callGraph.isRecursive(scc.get(0))) {
                 recursiveFunctions.addAll(scc);
                 logger.info("Found SCC with {} functions: {}",
                         scc.size(),
                         scc.stream().map(Function::getName).collect(Collectors.toList()));
             }
         }
+
+        logger.info("Found {} recursive functions", recursiveFunctions.size());
     }
 
     /**
@@ -221,11 +159,10 @@ public class FunctionInlinePass implements IRPass {
                 }
             }
 
-            // 更新函数大小
+            // 更新函数大小（调用图已在内联时增量更新）
             if (changed) {
                 updateFunctionSizes();
             }
-            buildCallGraph();
 
         } while (changed && iteration < MAX_ITERATIONS);
 
@@ -240,11 +177,11 @@ public class FunctionInlinePass implements IRPass {
 
         List<Function> toRemove = new ArrayList<>();
 
-        // 找出所有没有调用者的非 main 函数
+        // 找出所有没有调用者、也没被取地址（并行循环体）的非 main 函数
         for (Function func : module.getFunctions()) {
             if (!func.isDeclaration() &&
                     !func.getName().equals("main") &&
-                    func.getCallerList().isEmpty()) {
+                    callGraph.getCallers(func).isEmpty() && func.getUses().isEmpty()) {
                 toRemove.add(func);
             }
         }
@@ -255,15 +192,9 @@ public class FunctionInlinePass implements IRPass {
             boolean removed = module.removeFunction(func);
             if (removed) {
                 logger.debug("Successfully removed dead function: {}", func.getName());
-                // 清理缓存
+                // 清理缓存与调用关系
                 functionSizes.remove(func);
-                // 清理调用关系（Function 内置方法会自动处理双向关系）
-                for (Function callee : new ArrayList<>(func.getCalleeList())) {
-                    func.removeCallee(callee);
-                }
-                for (Function caller : new ArrayList<>(func.getCallerList())) {
-                    caller.removeCallee(func);
-                }
+                callGraph.removeFunction(func);
             } else {
                 logger.warn("Failed to remove dead function: {}", func.getName());
             }
@@ -291,7 +222,7 @@ public class FunctionInlinePass implements IRPass {
 
             // 检查是否为叶子函数（不调用其他非库函数）或强制内联
             boolean isLeaf = true;
-            for (Function callee : func.getCalleeList()) {
+            for (Function callee : callGraph.getCallees(func)) {
                 if (!callee.isDeclaration()) {
                     isLeaf = false;
                     break;
@@ -312,7 +243,7 @@ public class FunctionInlinePass implements IRPass {
      */
     private boolean shouldInlineFunction(Function func) {
         // 检查是否有调用者
-        if (func.getCallerList().isEmpty()) {
+        if (callGraph.getCallers(func).isEmpty()) {
             logger.debug("Function {} has no callers", func.getName());
             return false;
         }
@@ -331,7 +262,7 @@ public class FunctionInlinePass implements IRPass {
         }
 
         // 检查调用者大小
-        for (Function caller : func.getCallerList()) {
+        for (Function caller : callGraph.getCallers(func)) {
             int callerSize = functionSizes.get(caller);
             if (callerSize + funcSize > MAX_FUNCTION_SIZE) {
                 logger.debug("Inlining {} into {} would exceed size limit",
@@ -340,6 +271,33 @@ public class FunctionInlinePass implements IRPass {
             }
         }
 
+        // 只在冷路径上被调用的较大函数不内联：收益小，却会撑大调用者、干扰热路径的寄存器分配
+        if (funcSize > COLD_INLINE_SIZE && allCallSitesCold(func)) {
+            logger.debug("Function {} only called from cold blocks (size={})", func.getName(), funcSize);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * 检查函数的所有调用点是否都位于调用者的冷块中（按静态块频率估计）
+     */
+    private boolean allCallSitesCold(Function func) {
+        for (Function caller : callGraph.getCallers(func)) {
+            if (caller == func)
+                return false;
+            BlockFrequencyAnalysis bfi = BlockFrequencyAnalysis.compute(caller);
+            for (var bbNode : caller.getBlocks()) {
+                BasicBlock bb = bbNode.getVal();
+                for (var instNode : bb.getInstructions()) {
+                    if (instNode.getVal() instanceof CallInst call
+                            && call.getCalledFunction() == func && !bfi.isCold(bb)) {
+                        return false;
+                    }
+                }
+            }
+        }
         return true;
     }
 
@@ -382,22 +340,9 @@ public class FunctionInlinePass implements IRPass {
      * 内联函数到所有调用点
      */
     private void inlineFunction(Function func) {
-        List<CallInst> callSites = new ArrayList<>();
-
         // 收集所有调用点
-        for (Function caller : new ArrayList<>(func.getCallerList())) {
-            for (var bbNode : caller.getBlocks()) {
-                BasicBlock bb = bbNode.getVal();
-                for (var instNode : bb.getInstructions()) {
-                    Instruction inst = instNode.getVal();
-                    if (inst instanceof CallInst call) {
-                        if (call.getCalledFunction().equals(func)) {
-                            callSites.add(call);
-                        }
-                    }
-                }
-            }
-        }
+        List<CallInst> callSites = callGraph.getCallSitesOf(func);
+        Set<Function> callers = new LinkedHashSet<>(callGraph.getCallers(func));
 
         logger.info("Inlining {} call sites for function {}",
                 callSites.size(), func.getName());
@@ -407,30 +352,84 @@ public class FunctionInlinePass implements IRPass {
             inlineCallSite(call, func);
         }
 
-        // 更新调用图
-        updateCallGraphAfterInline(func);
+        // 更新调用图：调用者不再调用 func，改为调用 func 的被调函数
+        for (Function caller : callers) {
+            callGraph.refreshFunction(caller);
+        }
 
         // 如果函数不再被调用，可以删除
-        if (func.getCallerList().isEmpty() && !func.getName().equals("main")) {
+        if (callGraph.getCallers(func).isEmpty() && func.getUses().isEmpty() && !func.getName().equals("main")) {
             logger.info("Removing dead function: {}", func.getName());
             boolean removed = module.removeFunction(func);
             if (removed) {
                 logger.debug("Successfully removed function: {}", func.getName());
-                // 从本地缓存中也移除
+                // 从本地缓存与调用图中移除
                 functionSizes.remove(func);
-                // 清理调用关系（Function 内置方法会自动处理双向关系）
-                for (Function callee : new ArrayList<>(func.getCalleeList())) {
-                    func.removeCallee(callee);
-                }
-                for (Function caller : new ArrayList<>(func.getCallerList())) {
-                    caller.removeCallee(func);
-                }
+                callGraph.removeFunction(func);
             } else {
                 logger.warn("Failed to remove function: {}", func.getName());
             }
         }
     }
 
+    /**
+     * 按调用图 SCC 自底向上调度时使用：在 caller 中就地展开可内联的调用点。
+     * 此时被调函数已经优化过，按当前（优化后的）大小判断是否内联；不删除函数，
+     * 由调度方在全部分量处理完后调用 {@link #removeDeadFunctions}。
+     *
+     * @return 是否内联了至少一个调用点
+     */
+    public boolean inlineCallSitesIn(Function caller, CallGraph callGraph) {
+        this.module = NLVMModule.getModule();
+        this.builder = new Builder(module);
+        this.callGraph = callGraph;
+        identifyRecursiveFunctions();
+
+        // 先记下冷调用点：内联会拆分调用块，之后的块频率不再可用
+        BlockFrequencyAnalysis bfi = BlockFrequencyAnalysis.compute(caller);
+        Set<CallInst> coldCalls = new HashSet<>();
+        for (CallInst call : callGraph.getCallSites(caller)) {
+            if (bfi.isCold(call.getParent())) {
+                coldCalls.add(call);
+            }
+        }
+
+        int callerSize = calculateFunctionSize(caller);
+        boolean inlined = false;
+        for (CallInst call : new ArrayList<>(callGraph.getCallSites(caller))) {
+            Function callee = call.getCalledFunction();
+            if (callee.isDeclaration() || callee.getName().equals("main") || recursiveFunctions.contains(callee)) {
+                continue;
+            }
+            int calleeSize = calculateFunctionSize(callee);
+            if (!shouldForceInlineSimpleCase(callee)) {
+                if (calleeSize > MAX_INLINE_SIZE || callerSize + calleeSize > MAX_FUNCTION_SIZE) {
+                    continue;
+                }
+                if (calleeSize > COLD_INLINE_SIZE && coldCalls.contains(call)) {
+                    continue;
+                }
+            }
+            logger.info("Inlining {} into {} (size={})", callee.getName(), caller.getName(), calleeSize);
+            inlineCallSite(call, callee);
+            callerSize += calleeSize;
+            inlined = true;
+        }
+        if (inlined) {
+            callGraph.refreshFunction(caller);
+        }
+        return inlined;
+    }
+
+    /**
+     * 删除除 main 以外不再被调用的函数，并同步更新调用图
+     */
+    public void removeDeadFunctions(CallGraph callGraph) {
+        this.module = NLVMModule.getModule();
+        this.callGraph = callGraph;
+        cleanupDeadFunctions();
+    }
+
     /**
      * 内联单个调用点
      */
@@ -665,30 +664,6 @@ public class FunctionInlinePass implements IRPass {
         }
     }
 
-    /**
-     * 更新调用图（内联后）
-     */
-    private void updateCallGraphAfterInline(Function inlinedFunc) {
-        // 获取被内联函数调用的所有函数
-        Set<Function> inlinedCallees = new HashSet<>(inlinedFunc.getCalleeList());
-
-        // 更新所有调用者的调用关系
-        for (Function caller : new ArrayList<>(inlinedFunc.getCallerList())) {
-            // 移除对被内联函数的调用
-            caller.removeCallee(inlinedFunc);
-
-            // 添加被内联函数的调用关系
-            for (Function callee : inlinedCallees) {
-                caller.addCallee(callee);
-            }
-        }
-
-        // 清理被内联函数的调用关系
-        for (Function callee : new ArrayList<>(inlinedFunc.getCalleeList())) {
-            inlinedFunc.removeCallee(callee);
-        }
-    }
-
     /**
      * 更新所有函数的大小
      */
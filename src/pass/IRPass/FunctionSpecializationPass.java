@@ -0,0 +1,255 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.value.Argument;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Use;
+import ir.value.Value;
+import ir.value.constants.Constant;
+import ir.value.constants.ConstantFloat;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.FCmpInst;
+import ir.value.instructions.GEPInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.SelectInst;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.BlockFrequencyAnalysis;
+import pass.IRPass.analysis.CallGraph;
+import pass.IRPass.analysis.SideEffectAnalysis;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.*;
+
+/**
+ * 函数特化：按常量实参组合克隆函数。
+ * <p>
+ * 内联之后仍然存在的调用，被调函数要么递归、要么超过 {@link FunctionInlinePass#MAX_INLINE_SIZE}，
+ * 调用点传进来的常量（数组维度、模式开关、递归基）在函数体里用不上。这里对这类函数：
+ * <ol>
+ * <li>按调用点收集常量实参组合，只保留函数体里真正参与运算、比较、寻址或原样递归下传的位置；</li>
+ * <li>所有调用点都传同一组常量时交给 {@link InterproceduralSCCPPass}，不克隆；</li>
+ * <li>按调用点块频率之和从高到低挑组合，每个组合克隆一份函数、把对应形参换成常量，
+ * 克隆总指令数受模块级增长预算限制；</li>
+ * <li>把实参匹配的调用点（包括克隆体里原样下传的递归调用）改为调用克隆。</li>
+ * </ol>
+ * 克隆体里的常量随后由 IPSCCP / 常量传播折叠，循环界变成常量后交给展开。
+ */
+public class FunctionSpecializationPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(FunctionSpecializationPass.class);
+
+    private static final int MAX_SPECIALIZE_SIZE = 1500; // 被克隆函数的最大指令数：再大克隆体在后面的稠密数据流里太慢
+    private static final int MAX_CLONES_PER_FUNCTION = 3; // 每个函数最多的特化版本数
+    private static final int MIN_GROWTH_BUDGET = 2000; // 模块级增长预算下限（指令数）
+    private static final double GROWTH_BUDGET_RATIO = 0.5; // 预算 = max(下限, 模块指令数 × 比例)
+
+    /** 一组常量实参：形参下标 → 常量，按下标有序 */
+    private record Candidate(Function callee, SortedMap<Integer, Constant> args, double weight, boolean hot) {
+    }
+
+    private record Specialization(Function function, SortedMap<Integer, Constant> args) {
+    }
+
+    private final Map<Function, BlockFrequencyAnalysis> frequencies = new HashMap<>();
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.FunctionSpecialization;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule module = NLVMModule.getModule();
+        CallGraph callGraph = CallGraph.compute(module);
+        Map<Function, Integer> sizes = new HashMap<>();
+        int moduleSize = 0;
+        for (Function f : module.getFunctions()) {
+            if (f.isDeclaration())
+                continue;
+            int size = sizeOf(f);
+            sizes.put(f, size);
+            moduleSize += size;
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (Function f : module.getFunctions()) {
+            if (f.isDeclaration() || f.getName().equals("main") || !f.getUses().isEmpty())
+                continue;
+            int size = sizes.get(f);
+            if (size > MAX_SPECIALIZE_SIZE)
+                continue;
+            // 小的非递归函数交给内联
+            if (size <= FunctionInlinePass.MAX_INLINE_SIZE && !callGraph.isRecursive(f))
+                continue;
+            candidates.addAll(collectCandidates(f, callGraph.getCallSitesOf(f)));
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::weight).reversed());
+
+        int budget = Math.max(MIN_GROWTH_BUDGET, (int) (moduleSize * GROWTH_BUDGET_RATIO));
+        Map<Function, List<Specialization>> specs = new LinkedHashMap<>();
+        for (Candidate c : candidates) {
+            List<Specialization> existing = specs.computeIfAbsent(c.callee(), k -> new ArrayList<>());
+            int size = sizes.get(c.callee());
+            if (!c.hot() || existing.size() >= MAX_CLONES_PER_FUNCTION || size > budget)
+                continue;
+            budget -= size;
+            existing.add(new Specialization(specialize(module, c), c.args()));
+        }
+        specs.values().removeIf(List::isEmpty);
+        if (specs.isEmpty())
+            return;
+
+        // 组合大的优先匹配；克隆体里原样下传的递归调用此时实参已是常量，同样改写
+        for (List<Specialization> list : specs.values())
+            list.sort(Comparator.comparingInt((Specialization s) -> s.args().size()).reversed());
+        int rewritten = 0;
+        Set<Function> stillCalled = new HashSet<>();
+        for (Function f : module.getFunctions()) {
+            if (f.isDeclaration())
+                continue;
+            for (var bbNode : f.getBlocks()) {
+                BasicBlock bb = bbNode.getVal();
+                for (var node = bb.getInstructions().getEntry(); node != null;) {
+                    var next = node.getNext();
+                    if (node.getVal() instanceof CallInst call && specs.containsKey(call.getCalledFunction())) {
+                        Specialization target = null;
+                        for (Specialization s : specs.get(call.getCalledFunction())) {
+                            if (matches(call, s.args())) {
+                                target = s;
+                                break;
+                            }
+                        }
+                        if (target != null) {
+                            redirect(call, target.function());
+                            rewritten++;
+                        } else if (f != call.getCalledFunction()) {
+                            stillCalled.add(call.getCalledFunction());
+                        }
+                    }
+                    node = next;
+                }
+            }
+        }
+        // 调用点全部改到克隆上的原函数（只剩自身的递归调用）不再需要
+        for (Function f : specs.keySet()) {
+            if (!stillCalled.contains(f))
+                module.removeFunction(f);
+        }
+        log.info("FunctionSpecialization: {} clones, {} call sites rewritten",
+                specs.values().stream().mapToInt(List::size).sum(), rewritten);
+        CallInst.invalidatePureCache();
+        SideEffectAnalysis.getInstance().reset();
+    }
+
+    // ==================== 候选收集 ====================
+
+    private List<Candidate> collectCandidates(Function f, List<CallInst> calls) {
+        boolean[] useful = new boolean[f.getArguments().size()];
+        for (Argument arg : f.getArguments())
+            useful[arg.getIndex()] = benefitsFromConstant(f, arg);
+
+        Map<List<Object>, Candidate> groups = new LinkedHashMap<>();
+        for (CallInst call : calls) {
+            BasicBlock bb = call.getParent();
+            // 递归调用点在克隆后按实参重新匹配
+            if (bb == null || bb.getParent() == f)
+                continue;
+            SortedMap<Integer, Constant> args = new TreeMap<>();
+            List<Object> key = new ArrayList<>();
+            for (int i = 0; i < call.getNumArgs(); i++) {
+                Value v = call.getArg(i);
+                if (useful[i] && (v instanceof ConstantInt || v instanceof ConstantFloat)) {
+                    args.put(i, (Constant) v);
+                    key.add(i);
+                    key.add(v.getHash());
+                }
+            }
+            if (args.isEmpty())
+                continue;
+            BlockFrequencyAnalysis bfi = frequencies.computeIfAbsent(bb.getParent(), BlockFrequencyAnalysis::compute);
+            double weight = bfi.getBlockFrequency(bb);
+            boolean hot = !bfi.isCold(bb);
+            groups.merge(key, new Candidate(f, args, weight, hot),
+                    (a, b) -> new Candidate(f, a.args(), a.weight() + b.weight(), a.hot() || b.hot()));
+        }
+        List<Candidate> result = new ArrayList<>();
+        for (Candidate c : groups.values()) {
+            if (!sharedByAllCallSites(f, calls, c.args()))
+                result.add(c);
+        }
+        return result;
+    }
+
+    /** 形参变成常量后能折叠点什么：参与运算、比较、寻址，或原样递归下传 */
+    private static boolean benefitsFromConstant(Function f, Argument arg) {
+        for (Use use : arg.getUses()) {
+            Value user = use.getUser();
+            if (user instanceof BinOperator || user instanceof ICmpInst || user instanceof FCmpInst
+                    || user instanceof SelectInst || user instanceof CastInst || user instanceof GEPInst)
+                return true;
+            if (user instanceof CallInst call && call.getCalledFunction() == f
+                    && arg.getIndex() < call.getNumArgs() && call.getArg(arg.getIndex()) == arg)
+                return true;
+        }
+        return false;
+    }
+
+    /** 每个调用点都传这组常量（递归调用点原样下传）时，IPSCCP 不克隆也能传播 */
+    private static boolean sharedByAllCallSites(Function f, List<CallInst> calls,
+            SortedMap<Integer, Constant> args) {
+        for (CallInst call : calls) {
+            for (var e : args.entrySet()) {
+                Value v = call.getArg(e.getKey());
+                boolean passThrough = call.getParent().getParent() == f && v == f.getParam(e.getKey());
+                if (!passThrough && !sameConstant(v, e.getValue()))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== 克隆与改写 ====================
+
+    private static Function specialize(NLVMModule module, Candidate c) {
+        Function f = c.callee();
+        Function clone = f.clone(module.getUniqueGlobalName(f.getName() + ".spec"), Map.of());
+        module.registerFunction(clone.getName(), clone);
+        for (var e : c.args().entrySet())
+            clone.getParam(e.getKey()).replaceAllUsesWith(e.getValue());
+        log.debug("Specialized {} as {} for {}", f.getName(), clone.getName(), c.args().keySet());
+        return clone;
+    }
+
+    private static boolean matches(CallInst call, SortedMap<Integer, Constant> args) {
+        for (var e : args.entrySet()) {
+            if (!sameConstant(call.getArg(e.getKey()), e.getValue()))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean sameConstant(Value v, Constant c) {
+        return (v instanceof ConstantInt || v instanceof ConstantFloat) && v.getHash().equals(c.getHash());
+    }
+
+    private static void redirect(CallInst call, Function target) {
+        BasicBlock bb = call.getParent();
+        CallInst newCall = new CallInst(target, new ArrayList<>(call.getArgs()), call.getName());
+        newCall.hasAlias = call.hasAlias;
+        bb.addInstructionBefore(newCall, call);
+        call.replaceAllUsesWith(newCall);
+        bb.removeInstruction(call);
+    }
+
+    private static int sizeOf(Function f) {
+        int size = 0;
+        for (var bbNode : f.getBlocks())
+            size += bbNode.getVal().getInstructions().getNumNode();
+        return size;
+    }
+}
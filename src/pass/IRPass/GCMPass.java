@@ -31,6 +31,8 @@ public class GCMPass implements Pass.IRPass {
 
     // 配置：true 时倾向“尽可能晚”的放置（更接近使用点，偏下沉）；false 时允许按循环深度轻度上提
     private static final boolean PREFERS_LATE_OVER_HOIST = false;
+    // 当前函数的支配信息
+    private DominanceAnalysisPass domInfo;
 
     public String getName() {
         return "gcm";
@@ -57,8 +59,8 @@ public class GCMPass implements Pass.IRPass {
 
     public void runOnFunction(Function func) {
         // Ensure dominator info exists for this function (materializes idom/domLevel)
-        DominanceAnalysisPass dom = new DominanceAnalysisPass(func);
-        dom.run();
+        DominanceAnalysisPass dom = DominanceAnalysisPass.getOrCompute(func);
+        this.domInfo = dom;
 
         // --- 调试输出仅在关键点打印变更 ---
         logger.info("--- Dominator Tree for function: {} ---", func.getName());
@@ -533,17 +535,10 @@ public class GCMPass implements Pass.IRPass {
     }
 
     private boolean dominates(BasicBlock a, BasicBlock b) {
-        // 简单实现：通过向上遍历b的idom链来检查a是否出现
+        // 支配树 DFS 区间比较，O(1)
         if (a == b)
             return true;
-        BasicBlock current = b.getIdom();
-        while (current != null) {
-            if (current == a) {
-                return true;
-            }
-            current = current.getIdom();
-        }
-        return false;
+        return domInfo.dominates(a, b);
     }
 
     /**
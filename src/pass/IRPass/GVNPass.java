@@ -10,10 +10,14 @@ import ir.value.instructions.LoadInst;
 import ir.value.instructions.MemPhi;
 import ir.value.instructions.Phi;
 import ir.value.instructions.StoreInst;
-import ir.value.instructions.CallInst;
-import pass.Pass.IRPass;
+import pass.Pass.FunctionPass;
 import pass.IRPassType;
-import pass.IRPass.analysis.ArrayAliasAnalysis;
+import pass.IRPass.analysis.AliasAnalysis;
+import pass.IRPass.analysis.AliasAnalysis.AliasResult;
+import pass.IRPass.analysis.MemorySSA;
+import pass.IRPass.analysis.ModRefAnalysis;
+import pass.IRPass.analysis.MemorySSA.MemoryAccess;
+import pass.IRPass.analysis.MemorySSA.MemoryDef;
 import pass.IRPass.analysis.DominanceAnalysisPass;
 
 import util.logging.LogManager;
@@ -25,13 +29,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
-public class GVNPass implements IRPass {
+public class GVNPass implements FunctionPass {
     private static final Logger logger = LogManager.getLogger(GVNPass.class);
 
     private HashMap<String, Value> valueMap = new HashMap<>();
-    private ArrayAliasAnalysis arrAlias;
+    private DominanceAnalysisPass dom;
+    private ModRefAnalysis modRef;
 
     public String getName() {
         return "gvn";
@@ -40,6 +44,7 @@ public class GVNPass implements IRPass {
     @Override
     public void run() {
         ir.NLVMModule module = ir.NLVMModule.getModule();
+        modRef = ModRefAnalysis.compute(module);
         for (Function funcNode : module.getFunctions()) {
             if (funcNode.isDeclaration()) {
                 continue;
@@ -49,13 +54,19 @@ public class GVNPass implements IRPass {
         }
     }
 
+    /** 单独运行时沿用已有的 mod/ref 摘要：内联与删除访存不会让摘要变得不安全 */
+    @Override
+    public void run(Function func) {
+        if (modRef == null)
+            modRef = ModRefAnalysis.compute(ir.NLVMModule.getModule());
+        runOnFunction(func);
+    }
+
     public void runOnFunction(Function func) {
-        // Run alias analysis once per function
-        this.arrAlias = new ArrayAliasAnalysis();
-        this.arrAlias.runAnalysis(func);
+        this.dom = DominanceAnalysisPass.getOrCompute(func);
 
-        // 先执行基于支配树的数组Load冗余消除（更保守的 GAVN）
-        runGAVN(func);
+        // 先基于 MemorySSA 消除冗余 Load
+        runMemoryGVN(func);
 
         // 按支配树自顶向下遍历，使用作用域化的 GVNMap
         valueMap.clear();
@@ -65,8 +76,6 @@ public class GVNPass implements IRPass {
             // 作用域化：每个块结束后清理编号，避免跨支配域错误复用
             valueMap.clear();
         }
-
-        this.arrAlias.clearAnalysis(func);
     }
 
     @Override
@@ -136,8 +145,6 @@ public class GVNPass implements IRPass {
             boolean canReplace = false;
             if (vn instanceof Instruction) {
                 Instruction vnInst = (Instruction) vn;
-                DominanceAnalysisPass dom = this.arrAlias.getDomAnalysis();
-
                 BasicBlock vnParent = vnInst.getParent();
                 BasicBlock instParent = inst.getParent();
 
@@ -264,110 +271,76 @@ public class GVNPass implements IRPass {
     }
 
     // =================================================================
-    // GAVN: 基于支配树的数组Load冗余消除
+    // 基于 MemorySSA 的 Load 冗余消除与 Store-to-Load 转发
     // =================================================================
 
-    private void runGAVN(Function f) {
-        DominanceAnalysisPass dom = new DominanceAnalysisPass(f);
-        dom.run();
+    /** 同一地址、同一 clobber 的 load 读到相同的值 */
+    private record LoadKey(Object address, MemoryAccess clobber) {
+    }
 
-        Set<String> canGAVN = computeCanGAVN(f);
-        Map<String, Value> addr2val = new HashMap<>();
-        BasicBlock entry = f.getBlocks().getEntry().getVal();
-        dfsGAVN(entry, dom, canGAVN, addr2val);
+    private void runMemoryGVN(Function f) {
+        MemorySSA mssa = new MemorySSA(f, modRef);
+        BasicBlock entry = f.getEntryBlock();
+        if (entry != null) {
+            dfsMemoryGVN(entry, mssa, new HashMap<>());
+        }
     }
 
-    private void dfsGAVN(BasicBlock bb,
-            DominanceAnalysisPass dom,
-            Set<String> canGAVN,
-            Map<String, Value> addr2val) {
-        List<String> addedKeys = new ArrayList<>();
+    private void dfsMemoryGVN(BasicBlock bb, MemorySSA mssa, Map<LoadKey, LoadInst> available) {
+        List<LoadKey> addedKeys = new ArrayList<>();
         for (var in = bb.getInstructions().getEntry(); in != null;) {
             Instruction inst = in.getVal();
             in = in.getNext();
+            if (!(inst instanceof LoadInst ld))
+                continue;
 
-            if (inst instanceof LoadInst ld) {
-                Value addr = ld.getPointer();
-                if (addr instanceof GEPInst gep) {
-                    String key = gep.getHash();
-                    if (!canGAVN.contains(key)) {
-                        continue;
-                    }
-                    if (addr2val.containsKey(key)) {
-                        System.out
-                                .println("[GAVN] ElimLoad: " + ld.toNLVM() + " -> " + addr2val.get(key).getReference());
-                        ld.replaceAllUsesWith(addr2val.get(key));
-                        BasicBlock parent = ld.getParent();
-                        if (parent != null) {
-                            parent.removeInstruction(ld);
-                        } else {
-                            var listParent = ld._getINode().getParent();
-                            if (listParent != null) {
-                                BasicBlock bbb = listParent.getVal();
-                                bbb.removeInstruction(ld);
-                            } else {
-                                System.out.println("[GAVN][warn] dangling load no parent/list: " + ld);
-                            }
-                        }
-                    } else {
-                        addr2val.put(key, ld);
-                        addedKeys.add(key);
-                    }
-                }
-            } else if (inst instanceof StoreInst st) {
-                Value addr = st.getPointer();
-                if (addr instanceof GEPInst gep) {
-                    if (hasNonConstIndex(gep)) {
-                        // 写入含非常量下标：保守清空
-                        addr2val.clear();
-                        addedKeys.clear();
+            MemoryAccess clobber = mssa.getClobberingAccess(ld);
+            if (clobber == null)
+                continue;
 
-                    } else {
-                        // 精确失效：移除相同地址
-                        String key = gep.getHash();
-                        addr2val.remove(key);
-                        addedKeys.remove(key);
-                    }
-                } else {
-                    // 对未知指针写：更保守
-                    addr2val.clear();
-                    addedKeys.clear();
-                }
-            } else if (inst instanceof CallInst) {
-                // 严格保守：任何调用都视作可能影响内存
-                addr2val.clear();
-                addedKeys.clear();
+            // Store-to-Load 转发：clobber 恰好是写同一位置的 store
+            if (clobber instanceof MemoryDef def && def.getInstruction() instanceof StoreInst st
+                    && st.getValue().getType().equals(ld.getType())
+                    && st.getParent() != null && dom.dominates(st.getParent(), bb)
+                    && AliasAnalysis.alias(MemorySSA.getLocation(st), MemorySSA.getLocation(ld)) == AliasResult.MUST) {
+                logger.debug("StoreFwd: {} -> {}", ld.toNLVM(), st.getValue().getReference());
+                removeLoad(ld, st.getValue(), mssa);
+                continue;
+            }
+
+            LoadKey key = new LoadKey(addressKey(ld.getPointer()), clobber);
+            LoadInst prev = available.get(key);
+            if (prev != null && prev.getType().equals(ld.getType())) {
+                logger.debug("ElimLoad: {} -> {}", ld.toNLVM(), prev.getReference());
+                removeLoad(ld, prev, mssa);
+            } else {
+                available.put(key, ld);
+                addedKeys.add(key);
             }
         }
         for (BasicBlock child : dom.getDomTreeChildren(bb)) {
-            dfsGAVN(child, dom, canGAVN, addr2val);
+            dfsMemoryGVN(child, mssa, available);
         }
-        for (int i = addedKeys.size() - 1; i >= 0; i--) {
-            addr2val.remove(addedKeys.get(i));
+        for (LoadKey key : addedKeys) {
+            available.remove(key);
         }
     }
 
-    private boolean hasNonConstIndex(GEPInst gep) {
+    /** GEP 按结构判等（常量下标按值，其它操作数按对象），其它指针按对象判等 */
+    private Object addressKey(Value ptr) {
+        if (!(ptr instanceof GEPInst gep))
+            return ptr;
+        List<Object> key = new ArrayList<>();
+        key.add(addressKey(gep.getPointer()));
         for (Value idx : gep.getIndices()) {
-            if (!(idx instanceof ConstantInt))
-                return true;
+            key.add(idx instanceof ConstantInt c ? (Object) c.getValue() : idx);
         }
-        return false;
+        return key;
     }
 
-    private Set<String> computeCanGAVN(Function f) {
-        Set<String> geps = new HashSet<>();
-        Set<String> stored = new HashSet<>();
-        for (var bbNode : f.getBlocks()) {
-            for (var in : bbNode.getVal().getInstructions()) {
-                Instruction inst = in.getVal();
-                if (inst instanceof GEPInst g)
-                    geps.add(g.getHash());
-                if (inst instanceof StoreInst st && st.getPointer() instanceof GEPInst g)
-                    stored.add(g.getHash());
-            }
-        }
-        geps.removeAll(stored);
-        return geps;
+    private void removeLoad(LoadInst ld, Value replacement, MemorySSA mssa) {
+        mssa.removeAccess(ld);
+        ld.replaceAllUsesWith(replacement);
+        ld.getParent().removeInstruction(ld);
     }
-}
\ No newline at end of file
+}
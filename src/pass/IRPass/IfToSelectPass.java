@@ -54,8 +54,7 @@ public class IfToSelectPass implements Pass.IRPass {
 
     private boolean runOnFunction(Function func) {
         boolean changed = false;
-        DominanceAnalysisPass dom = new DominanceAnalysisPass(func);
-        dom.run();
+        DominanceAnalysisPass dom = DominanceAnalysisPass.getOrCompute(func);
 
         List<BasicBlock> blocks = new ArrayList<>();
         for (IList.INode<BasicBlock, Function> n : func.getBlocks())
@@ -150,6 +149,13 @@ public class IfToSelectPass implements Pass.IRPass {
                 // 断开 M 与 T/F 的前驱关系
                 M.removePredecessor(T);
                 M.removePredecessor(F);
+                // 增量维护支配树：菱形塌缩成 B->M
+                DominanceAnalysisPass.updateCached(func, List.of(
+                        DominanceAnalysisPass.Update.delete(b, T),
+                        DominanceAnalysisPass.Update.delete(b, F),
+                        DominanceAnalysisPass.Update.insert(b, M),
+                        DominanceAnalysisPass.Update.delete(T, M),
+                        DominanceAnalysisPass.Update.delete(F, M)));
                 // 删除 T、F 基本块
                 eraseEmptyBlock(T);
                 eraseEmptyBlock(F);
@@ -11,6 +11,12 @@ import ir.value.constants.ConstantInt;
 import ir.value.instructions.*;
 import pass.IRPassType;
 import pass.Pass;
+import pass.IRPass.analysis.AliasAnalysis;
+import pass.IRPass.analysis.AliasAnalysis.MemoryLocation;
+import pass.IRPass.analysis.KnownBitsAnalysis;
+import pass.IRPass.analysis.KnownBitsAnalysis.KnownBits;
+import pass.IRPass.analysis.MemorySSA;
+import pass.IRPass.analysis.ModRefAnalysis;
 import util.LoggingManager;
 import util.logging.Logger;
 
@@ -22,12 +28,14 @@ import java.util.*;
  * - 加强在性能样例中常见模式：模 2 判断、重复算子/常量折叠、选择指令化简
  * - 与 ConstantPropagation/DCE/IfToSelect 等 pass 互补
  */
-public class InstCombinePass implements Pass.IRPass {
+public class InstCombinePass implements Pass.FunctionPass {
     private static final Logger log = LoggingManager.getLogger(InstCombinePass.class);
 
     // Fast-Math 风格：允许将所有 fdiv 常量改写成 fmul 乘倒数（可能引入微小舍入差异）
     private static final boolean ENABLE_FDIV_RECIP_FASTMATH = false;
 
+    private ModRefAnalysis modRef;
+
     public IRPassType getType() {
         return IRPassType.InstCombinePass;
     }
@@ -35,6 +43,8 @@ public class InstCombinePass implements Pass.IRPass {
     @Override
     public void run() {
         NLVMModule m = NLVMModule.getModule();
+        // 化简只会删除或等价改写访存，摘要在整个 pass 内保持有效
+        modRef = ModRefAnalysis.compute(m);
 
         boolean changedAny;
         int iter = 0;
@@ -54,6 +64,19 @@ public class InstCombinePass implements Pass.IRPass {
         // System.out.println("InstCombine done after " + iter + " iterations");
     }
 
+    /** 单独运行时沿用已有的 mod/ref 摘要：内联与删除访存不会让摘要变得不安全 */
+    @Override
+    public void run(Function f) {
+        if (modRef == null)
+            modRef = ModRefAnalysis.compute(NLVMModule.getModule());
+        boolean changed;
+        int iter = 0;
+        do {
+            changed = runOnFunction(f);
+            iter++;
+        } while (changed && iter < 10); // 防御性上限
+    }
+
     private boolean runOnFunction(Function f) {
         boolean changed = false;
         // 两阶段：
@@ -216,6 +239,12 @@ public class InstCombinePass implements Pass.IRPass {
             var next = node.getNext();
             Instruction inst = node.getVal();
             if (inst instanceof StoreInst st) {
+                // 可能与本次写入别名的缓存全部失效
+                MemoryLocation loc = MemorySSA.getLocation(st);
+                lastStoreValByPtr.entrySet().removeIf(e -> AliasAnalysis.mayAlias(
+                        MemoryLocation.of(e.getKey(), e.getValue().getType()), loc));
+                lastLoadByPtr.entrySet().removeIf(e -> AliasAnalysis.mayAlias(
+                        MemoryLocation.of(e.getKey(), e.getValue().getType()), loc));
                 lastStoreValByPtr.put(st.getPointer(), st.getValue());
                 // 存在内存写入，阻断简单CSE的等价性假设
                 seenPureExpr.clear();
@@ -236,10 +265,12 @@ public class InstCombinePass implements Pass.IRPass {
                     continue;
                 }
                 lastLoadByPtr.put(ptr, ld);
-            } else if (inst instanceof CallInst) {
-                // 调用具有未知副作用，清空两类缓存
-                // TODO：过程间分析
-                lastStoreValByPtr.clear();
+            } else if (inst instanceof CallInst call) {
+                // 调用可能改写的位置全部失效
+                lastStoreValByPtr.entrySet().removeIf(e -> AliasAnalysis.callMayModify(call,
+                        MemoryLocation.of(e.getKey(), e.getValue().getType()), modRef));
+                lastLoadByPtr.entrySet().removeIf(e -> AliasAnalysis.callMayModify(call,
+                        MemoryLocation.of(e.getKey(), e.getValue().getType()), modRef));
                 seenPureExpr.clear();
             }
 
@@ -342,6 +373,7 @@ public class InstCombinePass implements Pass.IRPass {
                     ICMP_SGT, ICMP_SGE, ICMP_SLT, ICMP_SLE ->
                 combineICmp((ICmpInst) inst);
             case SELECT -> combineSelect((SelectInst) inst);
+            case PHI -> combinePhi((Phi) inst);
             case GETELEMENTPOINTER -> combineGEP((GEPInst) inst);
             default -> false;
         };
@@ -380,6 +412,9 @@ public class InstCombinePass implements Pass.IRPass {
             a = inst.getOperand(0);
             b = inst.getOperand(1);
         }
+        // 按已知位化简：结果完全确定、掩码多余
+        if (combineByKnownBits(inst))
+            return true;
         // 代数恒等 / 本地合并
         switch (op) {
             case ADD -> {
@@ -479,6 +514,22 @@ public class InstCombinePass implements Pass.IRPass {
                     replaceInstWith(inst, new ConstantInt(IntegerType.getI32(), 0));
                     return true;
                 }
+                // X - ((X ashr k) shl k) => X & (2^k - 1)：去掉低 k 位后再相减，剩下的就是低 k 位
+                if (b instanceof BinOperator shl && shl.getOpcode() == Opcode.SHL
+                        && shl.getOperand(0) instanceof BinOperator sr
+                        && (sr.getOpcode() == Opcode.ASHR || sr.getOpcode() == Opcode.LSHR)
+                        && sr.getOperand(0) == a) {
+                    ConstantInt k1 = getConstInt(shl.getOperand(1));
+                    ConstantInt k2 = getConstInt(sr.getOperand(1));
+                    if (k1 != null && k2 != null && k1.getValue() == k2.getValue()
+                            && k1.getValue() > 0 && k1.getValue() < 31) {
+                        IntegerType ty = (IntegerType) a.getType();
+                        Value mask = insertBin(inst.getParent(), inst, Opcode.AND, a,
+                                new ConstantInt(ty, (1 << k1.getValue()) - 1), "ic.lowbits");
+                        replaceInstWith(inst, mask);
+                        return true;
+                    }
+                }
             }
             case MUL -> {
                 if (isZero(b)) {
@@ -575,6 +626,11 @@ public class InstCombinePass implements Pass.IRPass {
                     Value sh = insertBin(bb, inst, Opcode.LSHR, a, new ConstantInt(ty, k), "ic.lshr");
                     replaceInstWith(inst, sh);
                     return true;
+                } else if (op == Opcode.SDIV && C > 0 && KnownBitsAnalysis.isKnownNonNegative(a)) {
+                    // 被除数符号位已知为 0：无需舍入修正
+                    Value sh = insertBin(bb, inst, Opcode.LSHR, a, new ConstantInt(ty, k), "ic.lshr");
+                    replaceInstWith(inst, sh);
+                    return true;
                 } else if (op == Opcode.SDIV) {
                     // x sdiv 2^k
                     // 对负数舍入问题：保守采用算术右移前的“bias”修正： (x + ((x>>31) & ((1<<k)-1))) >> k
@@ -612,8 +668,8 @@ public class InstCombinePass implements Pass.IRPass {
                 int mask = abs - 1;
                 BasicBlock bb = inst.getParent();
                 IntegerType ty = (IntegerType) a.getType();
-                // 对于无符号：x & (2^k-1)
-                if (op == Opcode.UREM) {
+                // 对于无符号，或被除数符号位已知为 0：x & (2^k-1)
+                if (op == Opcode.UREM || KnownBitsAnalysis.isKnownNonNegative(a)) {
                     Value andv = insertBin(bb, inst, Opcode.AND, a, new ConstantInt(ty, mask), "ic.and");
                     replaceInstWith(inst, andv);
                     return true;
@@ -865,6 +921,13 @@ public class InstCombinePass implements Pass.IRPass {
             return true;
         }
 
+        // 已知位足以决定比较结果
+        Boolean known = evaluateICmpByKnownBits(pred, a, b);
+        if (known != null) {
+            replaceInstWith(inst, new ConstantInt(IntegerType.getI1(), known ? 1 : 0));
+            return true;
+        }
+
         // (icmp eq/ne (srem x, 2^k), 0) => (icmp eq/ne (and x, 2^k-1), 0)
         if ((pred == Opcode.ICMP_EQ || pred == Opcode.ICMP_NE)
                 && (isZero(a) || isZero(b))) {
@@ -912,9 +975,74 @@ public class InstCombinePass implements Pass.IRPass {
             replaceInstWith(sel, t);
             return true;
         }
+        return replaceIfKnownConstant(sel);
+    }
+
+    // phi：各入边的已知位合流后完全确定（如 select/phi 链上只剩同一个常量）
+    private boolean combinePhi(Phi phi) {
+        return replaceIfKnownConstant(phi);
+    }
+
+    private static boolean replaceIfKnownConstant(Instruction inst) {
+        KnownBits kb = KnownBitsAnalysis.computeKnownBits(inst);
+        if (kb == null || !kb.isConstant())
+            return false;
+        replaceInstWith(inst, new ConstantInt((IntegerType) inst.getType(), kb.getConstant()));
+        return true;
+    }
+
+    /**
+     * 基于已知位的整数二元化简：
+     * - 结果的每一位都已知：替换为常量
+     * - and x, m：m 清掉的位在 x 中已知为 0，掩码多余
+     * - or x, m：m 置上的位在 x 中已知为 1，或运算多余
+     */
+    private boolean combineByKnownBits(BinOperator inst) {
+        if (replaceIfKnownConstant(inst))
+            return true;
+        Opcode op = inst.getOpcode();
+        if ((op != Opcode.AND && op != Opcode.OR) || !(inst.getOperand(1) instanceof ConstantInt c))
+            return false;
+        Value x = inst.getOperand(0);
+        KnownBits kx = KnownBitsAnalysis.computeKnownBits(x);
+        if (kx == null || kx.width() != 32)
+            return false;
+        boolean redundant = op == Opcode.AND
+                ? (~c.getValue() & ~kx.zero()) == 0
+                : (c.getValue() & ~kx.one()) == 0;
+        if (redundant) {
+            replaceInstWith(inst, x);
+            return true;
+        }
         return false;
     }
 
+    /** 返回 null 表示已知位不足以判定 */
+    private static Boolean evaluateICmpByKnownBits(Opcode pred, Value a, Value b) {
+        KnownBits ka = KnownBitsAnalysis.computeKnownBits(a);
+        KnownBits kb = KnownBitsAnalysis.computeKnownBits(b);
+        if (ka == null || kb == null || ka.width() != kb.width())
+            return null;
+        return switch (pred) {
+            case ICMP_EQ, ICMP_NE -> {
+                boolean differ = ((ka.zero() & kb.one()) | (ka.one() & kb.zero())) != 0;
+                boolean same = ka.isConstant() && kb.isConstant() && ka.getConstant() == kb.getConstant();
+                if (!differ && !same)
+                    yield null;
+                yield (pred == Opcode.ICMP_EQ) == same;
+            }
+            case ICMP_SLT -> decide(ka.signedMax() < kb.signedMin(), ka.signedMin() >= kb.signedMax());
+            case ICMP_SLE -> decide(ka.signedMax() <= kb.signedMin(), ka.signedMin() > kb.signedMax());
+            case ICMP_ULT -> decide(ka.unsignedMax() < kb.unsignedMin(), ka.unsignedMin() >= kb.unsignedMax());
+            case ICMP_ULE -> decide(ka.unsignedMax() <= kb.unsignedMin(), ka.unsignedMin() > kb.unsignedMax());
+            default -> null;
+        };
+    }
+
+    private static Boolean decide(boolean alwaysTrue, boolean alwaysFalse) {
+        return alwaysTrue ? Boolean.TRUE : alwaysFalse ? Boolean.FALSE : null;
+    }
+
     // GEP 合并：gep ptr, 0 => ptr（仅当唯一索引为常量0时）
     private boolean combineGEP(GEPInst gep) {
         if (gep.getNumIndices() == 1) {
@@ -0,0 +1,515 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.type.FloatType;
+import ir.type.IntegerType;
+import ir.type.PointerType;
+import ir.type.Type;
+import ir.value.Argument;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.GlobalVariable;
+import ir.value.Opcode;
+import ir.value.Use;
+import ir.value.Value;
+import ir.value.constants.Constant;
+import ir.value.constants.ConstantFloat;
+import ir.value.constants.ConstantInt;
+import ir.value.constants.ConstantZeroInitializer;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.FCmpInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.LoadInst;
+import ir.value.instructions.Phi;
+import ir.value.instructions.ReturnInst;
+import ir.value.instructions.SelectInst;
+import ir.value.instructions.StoreInst;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.SideEffectAnalysis;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.*;
+
+/**
+ * 过程间稀疏条件常量传播（IPSCCP）。
+ * <p>
+ * 在整个模块上做一次 Wegman-Zadeck 式的 SCCP：格值为 未定 &lt; 常量 &lt; 非常量，只沿可执行的边传播。
+ * 与 {@link ConstantPropagationPass} 把参数和调用结果一律视为非常量不同，这里额外跟踪：
+ * <ul>
+ * <li>内部函数（不是 main、地址没有被取用）的形参：所有可执行调用点实参的交汇；</li>
+ * <li>函数返回值：所有可执行 ret 的交汇，调用结果取这个值；</li>
+ * <li>只被直接 load / store 的 i32 / float 全局标量：初值与所有可执行 store 值的交汇。</li>
+ * </ul>
+ * 求解后把常量值的指令、形参与 load 换成常量（调用本身保留，留给 DCE 判断），删除写回同一常量的 store，
+ * 把条件为常量的分支改成无条件跳转，不可达的块交给随后的 DCE 删除。
+ */
+public class InterproceduralSCCPPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(InterproceduralSCCPPass.class);
+
+    /** 格值：UNDEF（尚未见到定义）、某个常量、OVERDEFINED（非常量） */
+    private static final class LatticeValue {
+        static final LatticeValue UNDEF = new LatticeValue(null);
+        static final LatticeValue OVERDEFINED = new LatticeValue(null);
+
+        final Constant constant;
+
+        private LatticeValue(Constant constant) {
+            this.constant = constant;
+        }
+
+        static LatticeValue of(Constant constant) {
+            return new LatticeValue(constant);
+        }
+
+        boolean isConstant() {
+            return constant != null;
+        }
+    }
+
+    private final Map<Value, LatticeValue> values = new HashMap<>();
+    private final Set<BasicBlock> executable = new HashSet<>();
+    /** 块 → 已知可执行的入边来源 */
+    private final Map<BasicBlock, Set<BasicBlock>> feasiblePreds = new HashMap<>();
+    private final Deque<BasicBlock> blockWorklist = new ArrayDeque<>();
+    private final Deque<Instruction> instWorklist = new ArrayDeque<>();
+    private final Map<Function, List<CallInst>> callSites = new HashMap<>();
+    private final Set<GlobalVariable> trackedGlobals = new HashSet<>();
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.IPSCCP;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule module = NLVMModule.getModule();
+        initialize(module);
+        solve();
+        if (rewrite(module)) {
+            // 删掉的 store 可能让函数变成无副作用
+            CallInst.invalidatePureCache();
+            SideEffectAnalysis.getInstance().reset();
+        }
+    }
+
+    // ==================== 初始化 ====================
+
+    private void initialize(NLVMModule module) {
+        for (Function f : module.getFunctions()) {
+            if (f.isDeclaration())
+                continue;
+            for (var bbNode : f.getBlocks()) {
+                for (var node : bbNode.getVal().getInstructions()) {
+                    if (node.getVal() instanceof CallInst call)
+                        callSites.computeIfAbsent(call.getCalledFunction(), k -> new ArrayList<>()).add(call);
+                }
+            }
+        }
+        for (Function f : module.getFunctions()) {
+            if (f.isDeclaration())
+                continue;
+            // main 由运行时调用，取了地址的函数（如并行循环体）调用点不可见：形参都是非常量
+            if (!isInternal(f)) {
+                for (Argument arg : f.getArguments())
+                    values.put(arg, LatticeValue.OVERDEFINED);
+            }
+            // 保守地认为每个函数都会执行；没有可执行调用点的内部函数形参停在 UNDEF，不会被改写
+            markExecutable(f.getEntryBlock());
+        }
+        for (GlobalVariable gv : module.getGlobalVariables()) {
+            Constant init = scalarInitializer(gv);
+            if (init != null && onlyLoadedAndStored(gv)) {
+                trackedGlobals.add(gv);
+                values.put(gv, LatticeValue.of(init));
+            }
+        }
+    }
+
+    private static boolean isInternal(Function f) {
+        return !f.getName().equals("main") && f.getUses().isEmpty();
+    }
+
+    private static Constant scalarInitializer(GlobalVariable gv) {
+        if (!(gv.getType() instanceof PointerType ptr))
+            return null;
+        Type type = ptr.getPointeeType();
+        Constant init = gv.getInitializer();
+        if (type instanceof IntegerType it && it.getBitWidth() == 32) {
+            if (init instanceof ConstantInt ci)
+                return ci;
+            if (init == null || init instanceof ConstantZeroInitializer)
+                return new ConstantInt(it, 0);
+        } else if (type instanceof FloatType ft) {
+            if (init instanceof ConstantFloat cf)
+                return cf;
+            if (init == null || init instanceof ConstantZeroInitializer)
+                return new ConstantFloat(ft, 0.0f);
+        }
+        return null;
+    }
+
+    /** 地址没有流向别处：全部使用都是以它为指针的 load / store */
+    private static boolean onlyLoadedAndStored(GlobalVariable gv) {
+        for (Use use : gv.getUses()) {
+            if (use.getUser() instanceof LoadInst load && load.getPointer() == gv)
+                continue;
+            if (use.getUser() instanceof StoreInst store && store.getPointer() == gv && store.getValue() != gv)
+                continue;
+            return false;
+        }
+        return true;
+    }
+
+    // ==================== 求解 ====================
+
+    private void solve() {
+        while (!blockWorklist.isEmpty() || !instWorklist.isEmpty()) {
+            while (!instWorklist.isEmpty()) {
+                Instruction inst = instWorklist.poll();
+                if (inst.getParent() != null && executable.contains(inst.getParent()))
+                    visit(inst);
+            }
+            while (!blockWorklist.isEmpty()) {
+                BasicBlock bb = blockWorklist.poll();
+                for (var node : bb.getInstructions())
+                    visit(node.getVal());
+            }
+        }
+    }
+
+    private void markExecutable(BasicBlock bb) {
+        if (executable.add(bb))
+            blockWorklist.add(bb);
+    }
+
+    private void markEdge(BasicBlock from, BasicBlock to) {
+        if (!feasiblePreds.computeIfAbsent(to, k -> new HashSet<>()).add(from))
+            return;
+        if (!executable.contains(to)) {
+            markExecutable(to);
+            return;
+        }
+        // 已可执行的块多了一条入边，phi 需要重新交汇
+        for (var node : to.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            instWorklist.add(phi);
+        }
+    }
+
+    private LatticeValue valueOf(Value v) {
+        if (v instanceof ConstantInt || v instanceof ConstantFloat)
+            return LatticeValue.of((Constant) v);
+        if (v instanceof Instruction || v instanceof Argument || trackedGlobals.contains(v))
+            return values.getOrDefault(v, LatticeValue.UNDEF);
+        // undef、数组常量、函数与未跟踪的全局
+        return LatticeValue.OVERDEFINED;
+    }
+
+    /** 与旧值交汇后写回；值下降时把使用者重新加入工作表 */
+    private void update(Value key, LatticeValue nv) {
+        LatticeValue old = values.getOrDefault(key, LatticeValue.UNDEF);
+        LatticeValue merged = meet(old, nv);
+        if (merged == old || (old.isConstant() && merged.isConstant()))
+            return;
+        values.put(key, merged);
+        if (key instanceof Function f) {
+            for (CallInst call : callSites.getOrDefault(f, List.of()))
+                instWorklist.add(call);
+            return;
+        }
+        for (Use use : key.getUses()) {
+            if (use.getUser() instanceof Instruction user)
+                instWorklist.add(user);
+        }
+    }
+
+    private static LatticeValue meet(LatticeValue a, LatticeValue b) {
+        if (a == LatticeValue.UNDEF)
+            return b;
+        if (b == LatticeValue.UNDEF)
+            return a;
+        if (a == LatticeValue.OVERDEFINED || b == LatticeValue.OVERDEFINED)
+            return LatticeValue.OVERDEFINED;
+        return sameConstant(a.constant, b.constant) ? a : LatticeValue.OVERDEFINED;
+    }
+
+    private static boolean sameConstant(Constant a, Constant b) {
+        if (a instanceof ConstantInt x && b instanceof ConstantInt y)
+            return x.getType().equals(y.getType()) && x.getValue() == y.getValue();
+        if (a instanceof ConstantFloat x && b instanceof ConstantFloat y)
+            return Float.floatToIntBits(x.getValue()) == Float.floatToIntBits(y.getValue());
+        return false;
+    }
+
+    private void visit(Instruction inst) {
+        BasicBlock bb = inst.getParent();
+        if (inst instanceof Phi phi) {
+            Set<BasicBlock> preds = feasiblePreds.getOrDefault(bb, Set.of());
+            LatticeValue result = LatticeValue.UNDEF;
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                if (preds.contains(phi.getIncomingBlock(i)))
+                    result = meet(result, valueOf(phi.getIncomingValue(i)));
+            }
+            update(phi, result);
+        } else if (inst instanceof BranchInst br) {
+            if (!br.isConditional()) {
+                markEdge(bb, br.getThenBlock());
+                return;
+            }
+            LatticeValue cond = valueOf(br.getCondition());
+            if (cond.constant instanceof ConstantInt c) {
+                markEdge(bb, c.getValue() != 0 ? br.getThenBlock() : br.getElseBlock());
+            } else if (cond == LatticeValue.OVERDEFINED || cond.isConstant()) {
+                markEdge(bb, br.getThenBlock());
+                markEdge(bb, br.getElseBlock());
+            }
+        } else if (inst instanceof ReturnInst ret) {
+            if (ret.hasReturnValue())
+                update(bb.getParent(), valueOf(ret.getReturnValue()));
+        } else if (inst instanceof CallInst call) {
+            Function callee = call.getCalledFunction();
+            if (callee.isDeclaration()) {
+                if (!call.getType().isVoid())
+                    update(call, LatticeValue.OVERDEFINED);
+                return;
+            }
+            if (isInternal(callee)) {
+                for (int i = 0; i < call.getNumArgs(); i++)
+                    update(callee.getParam(i), valueOf(call.getArg(i)));
+            }
+            if (!call.getType().isVoid())
+                update(call, values.getOrDefault(callee, LatticeValue.UNDEF));
+        } else if (inst instanceof StoreInst store) {
+            if (trackedGlobals.contains(store.getPointer()))
+                update(store.getPointer(), valueOf(store.getValue()));
+        } else if (inst instanceof LoadInst load) {
+            update(load, trackedGlobals.contains(load.getPointer()) ? valueOf(load.getPointer())
+                    : LatticeValue.OVERDEFINED);
+        } else if (!inst.getType().isVoid()) {
+            update(inst, evaluate(inst));
+        }
+    }
+
+    // ==================== 常量折叠 ====================
+
+    private LatticeValue evaluate(Instruction inst) {
+        if (inst instanceof SelectInst sel) {
+            LatticeValue cond = valueOf(sel.getCondition());
+            if (cond.constant instanceof ConstantInt c)
+                return valueOf(c.getValue() != 0 ? sel.getTrueValue() : sel.getFalseValue());
+            if (cond == LatticeValue.UNDEF)
+                return LatticeValue.UNDEF;
+            LatticeValue t = valueOf(sel.getTrueValue());
+            LatticeValue f = valueOf(sel.getFalseValue());
+            return t.isConstant() && f.isConstant() ? meet(t, f) : LatticeValue.OVERDEFINED;
+        }
+        if (!(inst instanceof BinOperator || inst instanceof ICmpInst || inst instanceof FCmpInst
+                || inst instanceof CastInst))
+            return LatticeValue.OVERDEFINED;
+        List<Constant> ops = new ArrayList<>();
+        boolean undef = false;
+        for (Value op : inst.getOperands()) {
+            LatticeValue v = valueOf(op);
+            if (v == LatticeValue.OVERDEFINED)
+                return LatticeValue.OVERDEFINED;
+            undef |= v == LatticeValue.UNDEF;
+            ops.add(v.constant);
+        }
+        if (undef)
+            return LatticeValue.UNDEF;
+        Constant folded = fold(inst, ops);
+        return folded != null ? LatticeValue.of(folded) : LatticeValue.OVERDEFINED;
+    }
+
+    /** 折叠失败（除零、不支持的类型等）返回 null */
+    private static Constant fold(Instruction inst, List<Constant> ops) {
+        Opcode op = inst.opCode();
+        Type type = inst.getType();
+        if (inst instanceof CastInst)
+            return foldCast(op, ops.get(0), type);
+        if (ops.get(0) instanceof ConstantInt a && ops.get(1) instanceof ConstantInt b) {
+            int x = a.getValue(), y = b.getValue();
+            if (inst instanceof ICmpInst)
+                return bool(switch (op) {
+                    case ICMP_EQ -> x == y;
+                    case ICMP_NE -> x != y;
+                    case ICMP_SGT -> x > y;
+                    case ICMP_SGE -> x >= y;
+                    case ICMP_SLT -> x < y;
+                    case ICMP_SLE -> x <= y;
+                    case ICMP_UGT -> Integer.compareUnsigned(x, y) > 0;
+                    case ICMP_UGE -> Integer.compareUnsigned(x, y) >= 0;
+                    case ICMP_ULT -> Integer.compareUnsigned(x, y) < 0;
+                    default -> Integer.compareUnsigned(x, y) <= 0;
+                });
+            if (!(type instanceof IntegerType it))
+                return null;
+            // i1 只折叠逻辑运算，其余运算的结果按 32 位计算
+            if (it.getBitWidth() != 32 && op != Opcode.AND && op != Opcode.OR && op != Opcode.XOR)
+                return null;
+            Integer r = switch (op) {
+                case ADD -> x + y;
+                case SUB -> x - y;
+                case MUL -> x * y;
+                case SDIV -> y == 0 ? null : x / y;
+                case SREM -> y == 0 ? null : x % y;
+                case UDIV -> y == 0 ? null : Integer.divideUnsigned(x, y);
+                case UREM -> y == 0 ? null : Integer.remainderUnsigned(x, y);
+                case SHL -> x << y;
+                case LSHR -> x >>> y;
+                case ASHR -> x >> y;
+                case AND -> x & y;
+                case OR -> x | y;
+                case XOR -> x ^ y;
+                default -> null;
+            };
+            return r == null ? null : new ConstantInt(it, r);
+        }
+        if (ops.get(0) instanceof ConstantFloat a && ops.get(1) instanceof ConstantFloat b) {
+            float x = a.getValue(), y = b.getValue();
+            if (inst instanceof FCmpInst) {
+                boolean ordered = !Float.isNaN(x) && !Float.isNaN(y);
+                return bool(switch (op) {
+                    case FCMP_OEQ -> x == y;
+                    case FCMP_ONE -> ordered && x != y;
+                    case FCMP_OGT -> x > y;
+                    case FCMP_OGE -> x >= y;
+                    case FCMP_OLT -> x < y;
+                    case FCMP_OLE -> x <= y;
+                    case FCMP_ORD -> ordered;
+                    default -> !ordered;
+                });
+            }
+            if (!(type instanceof FloatType ft))
+                return null;
+            return switch (op) {
+                case FADD -> new ConstantFloat(ft, x + y);
+                case FSUB -> new ConstantFloat(ft, x - y);
+                case FMUL -> new ConstantFloat(ft, x * y);
+                case FDIV -> new ConstantFloat(ft, x / y);
+                case FREM -> new ConstantFloat(ft, x % y);
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    private static Constant foldCast(Opcode op, Constant src, Type type) {
+        if (src instanceof ConstantInt ci && type instanceof IntegerType it) {
+            int width = ((IntegerType) ci.getType()).getBitWidth();
+            int v = ci.getValue();
+            return switch (op) {
+                case ZEXT -> new ConstantInt(it, width >= 32 ? v : v & ((1 << width) - 1));
+                case SEXT -> new ConstantInt(it, width >= 32 ? v : (v << (32 - width)) >> (32 - width));
+                case TRUNC -> new ConstantInt(it, it.getBitWidth() >= 32 ? v : v & ((1 << it.getBitWidth()) - 1));
+                default -> null;
+            };
+        }
+        if (src instanceof ConstantInt ci && type instanceof FloatType ft) {
+            return switch (op) {
+                case SITOFP -> new ConstantFloat(ft, (float) ci.getValue());
+                case BITCAST -> new ConstantFloat(ft, Float.intBitsToFloat(ci.getValue()));
+                default -> null;
+            };
+        }
+        if (src instanceof ConstantFloat cf && type instanceof IntegerType it && it.getBitWidth() == 32) {
+            return switch (op) {
+                case FPTOSI -> new ConstantInt(it, (int) cf.getValue());
+                case BITCAST -> new ConstantInt(it, Float.floatToRawIntBits(cf.getValue()));
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    private static ConstantInt bool(boolean b) {
+        return new ConstantInt(IntegerType.getI1(), b ? 1 : 0);
+    }
+
+    // ==================== 改写 ====================
+
+    private boolean rewrite(NLVMModule module) {
+        int folded = 0, branches = 0, stores = 0;
+        for (Function f : module.getFunctions()) {
+            if (f.isDeclaration())
+                continue;
+            for (Argument arg : f.getArguments()) {
+                LatticeValue v = values.get(arg);
+                if (v != null && v.isConstant() && !arg.getUses().isEmpty()) {
+                    arg.replaceAllUsesWith(v.constant);
+                    folded++;
+                }
+            }
+            for (var bbNode : f.getBlocks()) {
+                BasicBlock bb = bbNode.getVal();
+                if (!executable.contains(bb))
+                    continue;
+                for (var node = bb.getInstructions().getEntry(); node != null;) {
+                    Instruction inst = node.getVal();
+                    node = node.getNext();
+                    if (inst instanceof StoreInst store && constantGlobal(store.getPointer())) {
+                        bb.removeInstruction(store);
+                        stores++;
+                        continue;
+                    }
+                    LatticeValue v = values.get(inst);
+                    if (v == null || !v.isConstant() || inst.getType().isVoid())
+                        continue;
+                    inst.replaceAllUsesWith(v.constant);
+                    // 调用可能有副作用，只替换它的结果
+                    if (!(inst instanceof CallInst))
+                        bb.removeInstruction(inst);
+                    folded++;
+                }
+                if (foldBranch(bb))
+                    branches++;
+            }
+        }
+        // 不可执行块里的 store 同样写不进别的值，一并删掉
+        for (GlobalVariable gv : trackedGlobals) {
+            if (!constantGlobal(gv))
+                continue;
+            for (Use use : new ArrayList<>(gv.getUses())) {
+                if (use.getUser() instanceof StoreInst store && store.getParent() != null) {
+                    store.getParent().removeInstruction(store);
+                    stores++;
+                }
+            }
+        }
+        if (folded + branches + stores > 0)
+            log.info("IPSCCP: {} values folded, {} branches pruned, {} global stores removed",
+                    folded, branches, stores);
+        return folded + branches + stores > 0;
+    }
+
+    private boolean constantGlobal(Value ptr) {
+        return trackedGlobals.contains(ptr) && values.get(ptr).isConstant();
+    }
+
+    /** 条件为常量的分支改为无条件跳转，并断开另一条边 */
+    private boolean foldBranch(BasicBlock bb) {
+        var term = bb.getTerminator();
+        if (term == null || !(term.getVal() instanceof BranchInst br) || !br.isConditional())
+            return false;
+        Value cond = br.getCondition();
+        LatticeValue v = cond instanceof ConstantInt c ? LatticeValue.of(c) : values.get(cond);
+        if (v == null || !(v.constant instanceof ConstantInt c))
+            return false;
+        BasicBlock keep = c.getValue() != 0 ? br.getThenBlock() : br.getElseBlock();
+        BasicBlock drop = c.getValue() != 0 ? br.getElseBlock() : br.getThenBlock();
+        if (keep == drop)
+            return false;
+        bb.addInstructionBefore(new BranchInst(keep), br);
+        br.clearOperands();
+        br._getINode().removeSelf();
+        drop.removePredecessor(bb);
+        return true;
+    }
+}
@@ -60,8 +60,7 @@ public class LCSSAPass implements IRPass {
         log.info("=== LCSSA Processing function: {} ===", func.getName());
 
         // 计算支配信息
-        domAnalysis = new DominanceAnalysisPass(func);
-        domAnalysis.run();
+        domAnalysis = DominanceAnalysisPass.getOrCompute(func);
 
         // 计算循环信息
         loopAnalysis = new LoopInfoFullAnalysis();
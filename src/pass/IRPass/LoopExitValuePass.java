@@ -0,0 +1,506 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.type.IntegerType;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Use;
+import ir.value.User;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.Phi;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.Loop;
+import pass.IRPass.analysis.LoopInfo;
+import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.SCEV;
+import pass.IRPass.analysis.SCEVExpander;
+import pass.IRPass.analysis.ScalarEvolution;
+import util.LoggingManager;
+import util.logging.Logger;
+import util.IList.INode;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * 循环退出值替换：循环外用到的循环内的值若能写成迭代次数的闭式，就在出口块直接算出来，
+ * 循环本身没有副作用时随之变成死循环，交给 {@link DeadLoopEliminationPass} 整个删除。
+ * 支持的 header phi 递推（k 为迭代序号，回边值与 p 之差按 SCEV 计算）：
+ * <ul>
+ * <li>仿射：p += c（c 不变），p_k = S + k*c；</li>
+ * <li>二次：p += X，X 是本循环上的仿射递推 {a,+,b}（如 s += i、s = s - 2*i + 1），
+ * p_k = S + k*a + b*k(k-1)/2；</li>
+ * <li>几何：p *= c / p &lt;&lt;= c / p += p，迭代次数为常量时 p_k = S * c^k；</li>
+ * <li>取模：p = (p + X) % M，S、M 为常量且 0 &lt;= S &lt; M、X 非负且累加不溢出时，
+ * p_k = (S + ΣX) mod M；迭代次数为常量时编译期求值，否则只在 M 足够小（乘积不溢出 i32）时生成代码。</li>
+ * </ul>
+ * 迭代次数优先用 SCEV 的回边次数；算不出时（如 p *= 2 计数）若退出条件在常量递推上，
+ * 则在编译期逐次模拟至多 {@value #MAX_SIMULATED_ITERATIONS} 次求出。
+ * 所有运算都按 i32 补码回绕，与原循环逐次计算的结果一致。
+ */
+public class LoopExitValuePass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(LoopExitValuePass.class);
+
+    private static final int MAX_SIMULATED_ITERATIONS = 64;
+    /** 符号化取模闭式 ((k mod M) * (c mod M) + S) mod M 要求 (M-1)^2 + M 不超过 i32 */
+    private static final int MAX_SYMBOLIC_MODULUS = 46340;
+
+    private enum Kind {
+        AFFINE, QUADRATIC, GEOMETRIC, MODULAR
+    }
+
+    /**
+     * header phi 的闭式。start 是进入循环时的值；
+     * AFFINE / QUADRATIC：每次迭代加上 delta，delta 不变或是仿射递推；
+     * GEOMETRIC：每次乘以 factor；MODULAR：每次加上 delta 后对 modulus 取余。
+     */
+    private record ClosedForm(Kind kind, Value start, SCEV delta, int factor, int modulus) {
+    }
+
+    private final Map<Phi, Optional<ClosedForm>> forms = new HashMap<>();
+    private final Map<Value, Value> emitted = new HashMap<>();
+    private Loop loop;
+    private ScalarEvolution se;
+    private SCEVExpander expander;
+    /** 迭代次数：header phi 在最后一次执行退出判断时的迭代序号 */
+    private SCEV tripSCEV;
+    private Integer tripConst;
+    private Value tripValue;
+    private Instruction insertPoint;
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.LoopExitValue;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule m = NLVMModule.getModule();
+        for (Function f : m.getFunctions())
+            if (!f.isDeclaration())
+                runOnFunction(f);
+    }
+
+    private void runOnFunction(Function func) {
+        LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+        loopAnalysis.runOnFunction(func);
+        LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
+        if (loopInfo == null)
+            return;
+        se = new ScalarEvolution(func, loopInfo);
+        expander = new SCEVExpander(se);
+        // 内层优先：内层的退出值换成闭式后，外层的递推才可能被识别
+        List<Loop> loops = new ArrayList<>(loopInfo.getAllLoops());
+        loops.sort(Comparator.comparingInt(Loop::getLoopDepth).reversed());
+        for (Loop l : loops) {
+            se.forgetAll();
+            forms.clear();
+            emitted.clear();
+            loop = l;
+            rewriteExitValues();
+        }
+    }
+
+    private void rewriteExitValues() {
+        if (loop.getUniquePreheader() == null || loop.getUniqueLatch() == null)
+            return;
+        Set<BasicBlock> exits = loop.getExitBlocks();
+        if (exits.size() != 1)
+            return;
+        BasicBlock exit = exits.iterator().next();
+        if (exit.getPredecessors().size() != 1)
+            return;
+        BasicBlock exiting = exit.getPredecessors().iterator().next();
+        if (exiting != loop.getHeader() && exiting != loop.getUniqueLatch())
+            return;
+        if (hasSideEffect())
+            return;
+
+        // 循环外的使用：出口块中的 LCSSA phi 或被出口支配的普通指令
+        List<Use> outsideUses = new ArrayList<>();
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                for (Use use : node.getVal().getUses()) {
+                    if (use.getUser() instanceof Instruction user && user.getParent() != null
+                            && !loop.contains(user.getParent()))
+                        outsideUses.add(use);
+                }
+            }
+        }
+        if (outsideUses.isEmpty())
+            return;
+
+        if (!computeTripCount(exiting))
+            return;
+        // 全部能算出来才改写：只改一部分时循环仍然活着，反而多做了计算
+        for (Use use : outsideUses) {
+            if (!canEvaluate(use.getUser().getOperand(use.getOperandIndex())))
+                return;
+        }
+
+        insertPoint = exit.getFirstNonPhi();
+        tripValue = tripConst != null ? new ConstantInt(IntegerType.getI32(), tripConst)
+                : expander.expand(tripSCEV, insertPoint);
+        List<Phi> deadPhis = new ArrayList<>();
+        for (Use use : outsideUses) {
+            User user = use.getUser();
+            int index = use.getOperandIndex();
+            Value value = evaluate(user.getOperand(index));
+            if (user instanceof Phi phi && phi.getParent() == exit) {
+                phi.replaceAllUsesWith(value);
+                deadPhis.add(phi);
+            } else {
+                user.setOperand(index, value);
+            }
+        }
+        for (Phi phi : deadPhis) {
+            if (phi.getParent() != null)
+                exit.removeInstruction(phi);
+        }
+        log.debug("LoopExitValue: rewrote {} exit values of loop {}", outsideUses.size(),
+                loop.getHeader().getName());
+    }
+
+    private boolean hasSideEffect() {
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (inst.isSideEffect() || (inst.isTerminator() && !(inst instanceof BranchInst)))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    // ==================== 闭式识别 ====================
+
+    private ClosedForm formOf(Phi phi) {
+        Optional<ClosedForm> cached = forms.get(phi);
+        if (cached != null)
+            return cached.orElse(null);
+        forms.put(phi, Optional.empty());
+        ClosedForm form = classify(phi);
+        forms.put(phi, Optional.ofNullable(form));
+        return form;
+    }
+
+    private ClosedForm classify(Phi phi) {
+        if (phi.getParent() != loop.getHeader() || phi.getNumIncoming() != 2 || !phi.getType().isI32())
+            return null;
+        Value start = null, next = null;
+        for (int i = 0; i < 2; i++) {
+            if (loop.contains(phi.getIncomingBlock(i)))
+                next = phi.getIncomingValue(i);
+            else
+                start = phi.getIncomingValue(i);
+        }
+        if (start == null || next == null || !isInLoop(next))
+            return null;
+        if (next instanceof BinOperator bin) {
+            Value lhs = bin.getOperand(0), rhs = bin.getOperand(1);
+            switch (bin.opCode()) {
+                case ADD:
+                    if (lhs == phi && rhs == phi)
+                        return new ClosedForm(Kind.GEOMETRIC, start, null, 2, 0);
+                    break;
+                case MUL:
+                    if (lhs == phi && rhs instanceof ConstantInt c)
+                        return new ClosedForm(Kind.GEOMETRIC, start, null, c.getValue(), 0);
+                    if (rhs == phi && lhs instanceof ConstantInt c)
+                        return new ClosedForm(Kind.GEOMETRIC, start, null, c.getValue(), 0);
+                    return null;
+                case SHL:
+                    if (lhs == phi && rhs instanceof ConstantInt c && c.getValue() >= 0 && c.getValue() < 32)
+                        return new ClosedForm(Kind.GEOMETRIC, start, null, 1 << c.getValue(), 0);
+                    return null;
+                case SREM:
+                    return modular(phi, start, lhs, rhs);
+                default:
+                    break;
+            }
+        }
+        // 加性递推：回边值减去 phi 本身后不再含 phi
+        SCEV delta = deltaOf(phi, next);
+        if (delta == null)
+            return null;
+        return new ClosedForm(delta.isLoopInvariant(loop) ? Kind.AFFINE : Kind.QUADRATIC, start, delta, 0, 0);
+    }
+
+    /**
+     * next - phi 的 SCEV：循环不变量，或本循环上起点、步长都不变的仿射递推 {a,+,b}，且都能在出口处展开；
+     * 其它情形（仍含 phi、非仿射等）返回 null
+     */
+    private SCEV deltaOf(Phi phi, Value next) {
+        if (!ScalarEvolution.isSCEVable(next))
+            return null;
+        SCEV delta = se.getMinusSCEV(se.getSCEV(next), se.getSCEV(phi));
+        if (delta.isCouldNotCompute())
+            return null;
+        if (delta.isLoopInvariant(loop))
+            return expander.isExpandable(delta) ? delta : null;
+        if (delta instanceof SCEV.AddRec rec && rec.getLoop() == loop
+                && rec.getStart().isLoopInvariant(loop) && rec.getStep().isLoopInvariant(loop)
+                && expander.isExpandable(rec.getStart()) && expander.isExpandable(rec.getStep()))
+            return delta;
+        return null;
+    }
+
+    /** p = (p + X) % M：S、M 为常量，0 <= S < M，X 是非负常量或起点、步长都非负的常量仿射递推 */
+    private ClosedForm modular(Phi phi, Value start, Value sum, Value mod) {
+        if (!(mod instanceof ConstantInt m) || m.getValue() <= 0 || !(start instanceof ConstantInt s)
+                || s.getValue() < 0 || s.getValue() >= m.getValue() || !isInLoop(sum))
+            return null;
+        SCEV delta = deltaOf(phi, sum);
+        if (delta instanceof SCEV.Constant c) {
+            if (c.getValue() < 0)
+                return null;
+        } else if (!(delta instanceof SCEV.AddRec rec) || !(rec.getStart() instanceof SCEV.Constant a)
+                || a.getValue() < 0 || !(rec.getStep() instanceof SCEV.Constant b) || b.getValue() < 0) {
+            return null;
+        }
+        return new ClosedForm(Kind.MODULAR, start, delta, 0, m.getValue());
+    }
+
+    private boolean isInLoop(Value v) {
+        return v instanceof Instruction inst && inst.getParent() != null && loop.contains(inst.getParent());
+    }
+
+    // ==================== 迭代次数 ====================
+
+    private boolean computeTripCount(BasicBlock exiting) {
+        tripSCEV = se.getBackedgeTakenCount(loop);
+        tripConst = null;
+        if (!tripSCEV.isCouldNotCompute() && se.getExitingBlock(loop) == exiting) {
+            if (tripSCEV instanceof SCEV.Constant c)
+                tripConst = c.getValue();
+            return tripConst != null || expander.isExpandable(tripSCEV);
+        }
+        // 退出条件只依赖常量递推时逐次模拟
+        var termNode = exiting.getTerminator();
+        if (termNode == null || !(termNode.getVal() instanceof BranchInst br) || !br.isConditional()
+                || !(br.getCondition() instanceof ICmpInst cmp))
+            return false;
+        boolean continueWhenTrue = loop.contains(br.getThenBlock());
+        for (int k = 0; k < MAX_SIMULATED_ITERATIONS; k++) {
+            Integer l = constantAt(cmp.getOperand(0), k, 0);
+            Integer r = constantAt(cmp.getOperand(1), k, 0);
+            if (l == null || r == null)
+                return false;
+            if (compare(cmp.getOpcode(), l, r) != continueWhenTrue) {
+                tripConst = k;
+                tripSCEV = se.getConstant(k);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 第 k 次迭代时 v 的常量值（按 i32 回绕），不是常量时返回 null */
+    private Integer constantAt(Value v, int k, int depth) {
+        if (v instanceof ConstantInt c)
+            return c.getValue();
+        if (depth > 16 || !isInLoop(v))
+            return null;
+        if (v instanceof Phi phi) {
+            ClosedForm form = formOf(phi);
+            if (form == null || !(form.start() instanceof ConstantInt s))
+                return null;
+            return switch (form.kind()) {
+                case GEOMETRIC -> s.getValue() * pow(form.factor(), k);
+                case AFFINE -> form.delta() instanceof SCEV.Constant d ? s.getValue() + k * d.getValue() : null;
+                default -> null;
+            };
+        }
+        if (v instanceof BinOperator bin && bin.getType().isI32()) {
+            Integer l = constantAt(bin.getOperand(0), k, depth + 1);
+            Integer r = constantAt(bin.getOperand(1), k, depth + 1);
+            return l == null || r == null ? null : fold(bin.opCode(), l, r);
+        }
+        return null;
+    }
+
+    private static boolean compare(Opcode pred, int a, int b) {
+        return switch (pred) {
+            case ICMP_EQ -> a == b;
+            case ICMP_NE -> a != b;
+            case ICMP_SLT -> a < b;
+            case ICMP_SLE -> a <= b;
+            case ICMP_SGT -> a > b;
+            case ICMP_SGE -> a >= b;
+            case ICMP_ULT -> Integer.compareUnsigned(a, b) < 0;
+            case ICMP_ULE -> Integer.compareUnsigned(a, b) <= 0;
+            case ICMP_UGT -> Integer.compareUnsigned(a, b) > 0;
+            case ICMP_UGE -> Integer.compareUnsigned(a, b) >= 0;
+            default -> throw new IllegalArgumentException("Not an icmp predicate: " + pred);
+        };
+    }
+
+    /** base^exp（按 i32 回绕，快速幂） */
+    private static int pow(int base, int exp) {
+        int result = 1;
+        while (exp > 0) {
+            if ((exp & 1) != 0)
+                result *= base;
+            base *= base;
+            exp >>= 1;
+        }
+        return result;
+    }
+
+    private static Integer fold(Opcode op, int l, int r) {
+        return switch (op) {
+            case ADD -> l + r;
+            case SUB -> l - r;
+            case MUL -> l * r;
+            case SDIV -> r == 0 ? null : l / r;
+            case SREM -> r == 0 ? null : l % r;
+            case SHL -> l << r;
+            case ASHR -> l >> r;
+            case LSHR -> l >>> r;
+            case AND -> l & r;
+            case OR -> l | r;
+            case XOR -> l ^ r;
+            default -> null;
+        };
+    }
+
+    // ==================== 求值 ====================
+
+    /** v 在最后一次迭代时的值能否在出口处算出 */
+    private boolean canEvaluate(Value v) {
+        if (!isInLoop(v))
+            return true;
+        if (v instanceof Phi phi) {
+            ClosedForm form = formOf(phi);
+            if (form == null)
+                return false;
+            return switch (form.kind()) {
+                case AFFINE, QUADRATIC -> true;
+                case GEOMETRIC -> tripConst != null;
+                case MODULAR -> modularConstant(form) != null || isSymbolicModular(form);
+            };
+        }
+        if (v instanceof BinOperator bin && bin.getType().isI32() && fold(bin.opCode(), 1, 1) != null)
+            return canEvaluate(bin.getOperand(0)) && canEvaluate(bin.getOperand(1));
+        return false;
+    }
+
+    /** 迭代次数不是常量时，只有常量增量、模数足够小且 p + c 不溢出的取模递推能生成代码 */
+    private boolean isSymbolicModular(ClosedForm form) {
+        return tripConst == null && form.delta() instanceof SCEV.Constant c && form.modulus() <= MAX_SYMBOLIC_MODULUS
+                && (long) form.modulus() - 1 + c.getValue() <= Integer.MAX_VALUE;
+    }
+
+    private Value evaluate(Value v) {
+        if (!isInLoop(v))
+            return v;
+        Value cached = emitted.get(v);
+        if (cached != null)
+            return cached;
+        Value result;
+        if (v instanceof Phi phi) {
+            result = evaluatePhi(formOf(phi));
+        } else {
+            BinOperator bin = (BinOperator) v;
+            result = emit(bin.opCode(), evaluate(bin.getOperand(0)), evaluate(bin.getOperand(1)));
+        }
+        emitted.put(v, result);
+        return result;
+    }
+
+    private Value evaluatePhi(ClosedForm form) {
+        Value k = tripValue;
+        switch (form.kind()) {
+            case AFFINE: {
+                Value d = expander.expand(form.delta(), insertPoint);
+                return emit(Opcode.ADD, form.start(), emit(Opcode.MUL, k, d));
+            }
+            case QUADRATIC: {
+                // Σ_{j<k} (a + j*b) = k*a + b*k(k-1)/2
+                SCEV.AddRec rec = (SCEV.AddRec) form.delta();
+                Value a = expander.expand(rec.getStart(), insertPoint);
+                Value b = expander.expand(rec.getStep(), insertPoint);
+                Value total = emit(Opcode.ADD, emit(Opcode.MUL, k, a), emit(Opcode.MUL, b, halfProduct(k)));
+                return emit(Opcode.ADD, form.start(), total);
+            }
+            case GEOMETRIC:
+                return emit(Opcode.MUL, form.start(), constant(pow(form.factor(), tripConst)));
+            case MODULAR: {
+                Integer folded = modularConstant(form);
+                if (folded != null)
+                    return constant(folded);
+                int m = form.modulus();
+                int c = ((SCEV.Constant) form.delta()).getValue() % m;
+                Value km = emit(Opcode.SREM, k, constant(m));
+                Value sum = emit(Opcode.ADD, emit(Opcode.MUL, km, constant(c)), form.start());
+                return emit(Opcode.SREM, sum, constant(m));
+            }
+            default:
+                throw new IllegalStateException("unknown closed form " + form.kind());
+        }
+    }
+
+    /**
+     * k(k-1)/2 按 i32 回绕的精确值：k 与 k-1 中恰有一个偶数，先对它除以 2 再相乘，避免乘积溢出后再除出错。
+     * k 是迭代次数，非负。
+     */
+    private Value halfProduct(Value k) {
+        if (k instanceof ConstantInt c)
+            return constant((int) ((long) c.getValue() * (c.getValue() - 1) / 2));
+        Value km1 = emit(Opcode.SUB, k, constant(1));
+        Value even = emit(Opcode.MUL, emit(Opcode.SDIV, k, constant(2)), km1);
+        Value odd = emit(Opcode.MUL, k, emit(Opcode.SDIV, km1, constant(2)));
+        Value isOdd = emit(Opcode.AND, k, constant(1));
+        // isOdd ∈ {0,1}：even + isOdd * (odd - even)
+        return emit(Opcode.ADD, even, emit(Opcode.MUL, isOdd, emit(Opcode.SUB, odd, even)));
+    }
+
+    /**
+     * 迭代次数为常量时，取模递推在编译期的精确结果；累加过程中 p + X 可能溢出 i32 时返回 null。
+     * 0 <= p < M 且 X 非负，p + X 不溢出时每一步的 srem 都等于数学上的 mod。
+     */
+    private Integer modularConstant(ClosedForm form) {
+        if (tripConst == null)
+            return null;
+        long k = tripConst, m = form.modulus();
+        long s = ((ConstantInt) form.start()).getValue();
+        BigInteger total;
+        long maxDelta;
+        if (form.delta() instanceof SCEV.Constant c) {
+            total = BigInteger.valueOf(c.getValue()).multiply(BigInteger.valueOf(k));
+            maxDelta = c.getValue();
+        } else {
+            SCEV.AddRec rec = (SCEV.AddRec) form.delta();
+            long a = ((SCEV.Constant) rec.getStart()).getValue();
+            long b = ((SCEV.Constant) rec.getStep()).getValue();
+            total = BigInteger.valueOf(a).multiply(BigInteger.valueOf(k))
+                    .add(BigInteger.valueOf(b).multiply(BigInteger.valueOf(k * (k - 1) / 2)));
+            maxDelta = a + b * Math.max(k - 1, 0);
+        }
+        if (m - 1 + maxDelta > Integer.MAX_VALUE)
+            return null;
+        return total.add(BigInteger.valueOf(s)).mod(BigInteger.valueOf(m)).intValue();
+    }
+
+    private static ConstantInt constant(int value) {
+        return new ConstantInt(IntegerType.getI32(), value);
+    }
+
+    private Value emit(Opcode op, Value lhs, Value rhs) {
+        if (lhs instanceof ConstantInt l && rhs instanceof ConstantInt r) {
+            Integer folded = fold(op, l.getValue(), r.getValue());
+            if (folded != null)
+                return constant(folded);
+        }
+        BinOperator inst = new BinOperator("exitval", op, IntegerType.getI32(), lhs, rhs);
+        insertPoint.getParent().addInstructionBefore(inst, insertPoint);
+        return inst;
+    }
+}
@@ -9,9 +9,13 @@ import ir.value.instructions.Instruction;
 import ir.value.instructions.Phi;
 import pass.IRPassType;
 import pass.Pass;
+import pass.IRPass.analysis.DependenceAnalysis;
+import pass.IRPass.analysis.DependenceAnalysis.Dependence;
 import pass.IRPass.analysis.Loop;
 import pass.IRPass.analysis.LoopInfo;
 import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.SCEV;
+import pass.IRPass.analysis.ScalarEvolution;
 import util.LoggingManager;
 import util.logging.Logger;
 // import util.IList.INode;
@@ -20,8 +24,9 @@ import java.util.*;
 
 /**
  * 极简 Loop Fusion（仅当两个简单 for-loop 具有相同 preheader 与相同 trip 条件时）：
- * - 要求 succ 的 preheader == pred 的 exit，且两个循环的迭代变量上界与步长一致
+ * - 要求 succ 的 preheader == pred 的 exit，且两个循环的回边次数（SCEV）相同
  * - 合并方式：让 pred 的循环体直接落到 succ 的 header，并修复 phi
+ * - 依赖分析确认融合不会让 succ 的某次迭代早于它所依赖的 pred 迭代
  * 注意：本实现非常保守，仅处理最内层循环对，且仅处理简单的 for-loop。
  */
 public class LoopFusionPass implements Pass.IRPass {
@@ -47,6 +52,8 @@ public class LoopFusionPass implements Pass.IRPass {
         if (loopInfo == null)
             return;
         List<Loop> all = loopInfo.getAllLoops();
+        ScalarEvolution se = new ScalarEvolution(func, loopInfo);
+        DependenceAnalysis da = new DependenceAnalysis(se);
         // 寻找可融合的相邻最内层循环对
         for (Loop a : all) {
             if (!a.getSubLoops().isEmpty())
@@ -54,12 +61,12 @@ public class LoopFusionPass implements Pass.IRPass {
             for (Loop b : all) {
                 if (a == b || !b.getSubLoops().isEmpty())
                     continue;
-                tryFuse(a, b);
+                tryFuse(a, b, se, da);
             }
         }
     }
 
-    private void tryFuse(Loop pred, Loop succ) {
+    private void tryFuse(Loop pred, Loop succ, ScalarEvolution se, DependenceAnalysis da) {
         // 共同 preheader/exit 关系
         BasicBlock predExit = singleExit(pred);
         BasicBlock succPre = uniquePreheader(succ);
@@ -68,6 +75,11 @@ public class LoopFusionPass implements Pass.IRPass {
         if (predExit != succPre)
             return;
 
+        // 迭代次数必须可计算且相同
+        SCEV predCount = se.getBackedgeTakenCount(pred);
+        if (predCount.isCouldNotCompute() || !predCount.equals(se.getBackedgeTakenCount(succ)))
+            return;
+
         // 两个 header 的迭代 phi 结构需一致（简化：比较第一个 phi 的来自 preheader 的 incoming）
         Phi aPhi = firstPhi(pred.getHeader());
         Phi bPhi = firstPhi(succ.getHeader());
@@ -78,6 +90,9 @@ public class LoopFusionPass implements Pass.IRPass {
         if (aPre == null || bPre == null || aPre != bPre)
             return;
 
+        if (hasFusionPreventingDependence(pred, succ, da))
+            return;
+
         // 将 succ header 的非 phi 指令移动到 pred header 末尾（terminator 之前）
         Instruction predTerm = pred.getHeader().getTerminator() != null ? pred.getHeader().getTerminator().getVal()
                 : null;
@@ -107,6 +122,42 @@ public class LoopFusionPass implements Pass.IRPass {
                 br.setOperand(0, succ.getHeader());
             }
         }
+        se.forgetAll();
+    }
+
+    /**
+     * 融合后 succ 的第 k 次迭代紧跟在 pred 的第 k 次迭代之后执行。
+     * 把 succ 对齐到 pred 的迭代空间后，若存在 pred 第 i 次迭代与 succ 第 j 次迭代（j &lt; i）之间的依赖，
+     * 融合会颠倒它们的顺序。
+     */
+    private boolean hasFusionPreventingDependence(Loop pred, Loop succ, DependenceAnalysis da) {
+        List<Instruction> predAccesses = memoryAccesses(pred, da);
+        List<Instruction> succAccesses = memoryAccesses(succ, da);
+        Map<Loop, Loop> aligned = Map.of(succ, pred);
+        for (Instruction a : predAccesses) {
+            for (Instruction b : succAccesses) {
+                if (!DependenceAnalysis.isWrite(a) && !DependenceAnalysis.isWrite(b))
+                    continue;
+                Dependence dep = da.depends(a, b, aligned);
+                if (dep == null)
+                    continue;
+                int level = dep.getCommonLoops().indexOf(pred);
+                if (dep.isConfused() || level < 0 || (dep.getDirection(level) & DependenceAnalysis.GT) != 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Instruction> memoryAccesses(Loop loop, DependenceAnalysis da) {
+        List<Instruction> result = new ArrayList<>();
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (var node : bb.getInstructions()) {
+                if (da.isMemoryAccess(node.getVal()))
+                    result.add(node.getVal());
+            }
+        }
+        return result;
     }
 
     private BasicBlock singleExit(Loop loop) {
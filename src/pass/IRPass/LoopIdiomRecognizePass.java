@@ -0,0 +1,341 @@
+package pass.IRPass;
+
+import ir.Builder;
+import ir.NLVMModule;
+import ir.type.IntegerType;
+import ir.type.PointerType;
+import ir.type.Type;
+import ir.value.Argument;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.AllocaInst;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.FCmpInst;
+import ir.value.instructions.GEPInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.LoadInst;
+import ir.value.instructions.SelectInst;
+import ir.value.instructions.StoreInst;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.LoopInterchangePass.Control;
+import pass.IRPass.analysis.AliasAnalysis;
+import pass.IRPass.analysis.DominanceAnalysisPass;
+import pass.IRPass.analysis.Loop;
+import pass.IRPass.analysis.LoopInfo;
+import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.SCEV;
+import pass.IRPass.analysis.SCEVExpander;
+import pass.IRPass.analysis.ScalarEvolution;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.*;
+
+/**
+ * 循环惯用法识别（Loop Idiom Recognition）：逐元素写连续内存的循环整体换成运行时库的批量例程
+ * （sylib.c 中的 NEON 实现），大数组的初始化与拷贝按内存带宽执行，而不是每次迭代一条 str。
+ * <ul>
+ * <li>填充：a[i] = v（v 循环不变，包括清零）→ _sysy_memset_i32 / _sysy_memset_f32；</li>
+ * <li>拷贝：a[i] = b[i]（a、b 是确定不重叠的对象）→ _sysy_memcpy_i32 / _sysy_memcpy_f32；</li>
+ * <li>嵌套：内层换成调用后，若外层每次迭代恰好接着上一行写（行跨度 = 调用的元素数），
+ * 再把调用提到外层之前、元素数乘以外层次数，连续的多层嵌套最终只剩一次调用。</li>
+ * </ul>
+ * 循环体必须是 header → … → latch 的直线链，除控制部分与地址计算外只有这一处访存，
+ * 且循环内定义的值不在循环外使用。元素数已知且很少的循环留给展开与向量化。
+ */
+public class LoopIdiomRecognizePass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(LoopIdiomRecognizePass.class);
+
+    /** 元素数已知且少于该值时不替换：调用开销比展开后的几条 str 更贵 */
+    private static final int MIN_ELEMENTS = 32;
+
+    static final String MEMSET_I32 = "_sysy_memset_i32";
+    static final String MEMSET_F32 = "_sysy_memset_f32";
+    static final String MEMCPY_I32 = "_sysy_memcpy_i32";
+    static final String MEMCPY_F32 = "_sysy_memcpy_f32";
+
+    /**
+     * 识别出的惯用法：每次迭代向 dst 写 perIter 个元素，内容是不变量 value（填充）或从 src 读出（拷贝）
+     */
+    private record Idiom(String callee, Value dst, Value src, Value value, int perIter) {
+        boolean isCopy() {
+            return src != null;
+        }
+    }
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.LoopIdiomRecognize;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule m = NLVMModule.getModule();
+        for (Function f : m.getFunctions())
+            if (!f.isDeclaration())
+                runOnFunction(f);
+    }
+
+    private void runOnFunction(Function func) {
+        // 每替换一个循环都会删掉它的块，重算循环信息后再从最内层开始，外层才能看到内层留下的调用
+        while (true) {
+            LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+            loopAnalysis.runOnFunction(func);
+            LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
+            if (loopInfo == null)
+                return;
+            ScalarEvolution se = new ScalarEvolution(func, loopInfo);
+            List<Loop> loops = new ArrayList<>(loopInfo.getAllLoops());
+            loops.sort(Comparator.comparingInt(Loop::getLoopDepth).reversed());
+
+            boolean changed = false;
+            for (Loop loop : loops) {
+                if (loop.getSubLoops().isEmpty() && tryRecognize(loop, se)) {
+                    changed = true;
+                    break;
+                }
+            }
+            if (!changed)
+                return;
+            DominanceAnalysisPass.invalidate(func);
+        }
+    }
+
+    private boolean tryRecognize(Loop loop, ScalarEvolution se) {
+        Control c = LoopInterchangePass.matchControl(loop);
+        if (c == null)
+            return false;
+        // header 是唯一的出口，回边次数就是循环体的执行次数
+        SCEV btc = se.getBackedgeTakenCount(loop);
+        SCEVExpander expander = new SCEVExpander(se);
+        if (se.getExitingBlock(loop) != loop.getHeader() || !expander.isExpandable(btc))
+            return false;
+        List<Instruction> body = straightLineBody(c);
+        if (body == null || hasOutsideUse(loop))
+            return false;
+        Idiom idiom = match(body, c, se);
+        if (idiom == null)
+            return false;
+        int tripCount = se.getConstantBackedgeTakenCount(loop);
+        if (tripCount >= 0) {
+            long elements = (long) tripCount * idiom.perIter();
+            if (elements < MIN_ELEMENTS || elements > Integer.MAX_VALUE)
+                return false;
+        }
+
+        BasicBlock preheader = c.preheader();
+        Instruction term = preheader.getTerminator().getVal();
+        Map<Value, Value> valueMap = new HashMap<>();
+        valueMap.put(c.iv(), c.init());
+        Value dst = materialize(idiom.dst(), loop, valueMap, term);
+        Value second = idiom.isCopy() ? materialize(idiom.src(), loop, valueMap, term) : idiom.value();
+        Value count = expander.expand(btc, term);
+        if (idiom.perIter() != 1) {
+            if (count instanceof ConstantInt ci) {
+                count = new ConstantInt(IntegerType.getI32(), ci.getValue() * idiom.perIter());
+            } else {
+                BinOperator mul = new BinOperator("idiom.n", Opcode.MUL, IntegerType.getI32(), count,
+                        new ConstantInt(IntegerType.getI32(), idiom.perIter()));
+                preheader.addInstructionBefore(mul, term);
+                count = mul;
+            }
+        }
+        Function callee = NLVMModule.getModule().getOrDeclareLibFunc(idiom.callee());
+        preheader.addInstructionBefore(new CallInst(callee, List.of(dst, second, count), ""), term);
+
+        log.debug("LoopIdiom: loop {} -> {}", loop.getHeader().getName(), idiom.callee());
+        removeLoop(loop, preheader, c.br().getElseBlock());
+        return true;
+    }
+
+    // ==================== 匹配 ====================
+
+    /**
+     * 循环体从 header 的 then 一侧沿唯一后继走回 header，途中每块只有一个前驱，于是每条指令每次迭代恰好执行一次。
+     * 返回除控制部分（归纳变量、步进、比较与分支）之外的全部指令，不是直线链时返回 null。
+     */
+    private static List<Instruction> straightLineBody(Control c) {
+        Loop loop = c.loop();
+        BasicBlock header = loop.getHeader();
+        List<Instruction> body = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        visited.add(header);
+        collect(header, c, body);
+        BasicBlock cur = c.br().getThenBlock();
+        while (cur != header) {
+            if (!visited.add(cur) || cur.getPredecessors().size() != 1)
+                return null;
+            var termNode = cur.getTerminator();
+            if (termNode == null || !(termNode.getVal() instanceof BranchInst br) || br.isConditional())
+                return null;
+            collect(cur, c, body);
+            cur = br.getThenBlock();
+        }
+        return visited.size() == loop.getBlocks().size() ? body : null;
+    }
+
+    private static void collect(BasicBlock bb, Control c, List<Instruction> out) {
+        for (var node : bb.getInstructions()) {
+            Instruction inst = node.getVal();
+            if (inst == c.iv() || inst == c.inc() || inst == c.cmp() || inst.isTerminator())
+                continue;
+            out.add(inst);
+        }
+    }
+
+    private static boolean hasOutsideUse(Loop loop) {
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (var node : bb.getInstructions()) {
+                for (var use : node.getVal().getUses()) {
+                    if (use.getUser() instanceof Instruction user
+                            && (user.getParent() == null || !loop.contains(user.getParent())))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Idiom match(List<Instruction> body, Control c, ScalarEvolution se) {
+        Loop loop = c.loop();
+        Instruction effect = null;
+        List<LoadInst> loads = new ArrayList<>();
+        for (Instruction inst : body) {
+            if (inst instanceof StoreInst || inst instanceof CallInst) {
+                if (effect != null)
+                    return null;
+                effect = inst;
+            } else if (inst instanceof LoadInst ld) {
+                loads.add(ld);
+            } else if (!isPure(inst)) {
+                return null;
+            }
+        }
+        if (effect == null)
+            return null;
+
+        if (effect instanceof StoreInst st) {
+            Type elemTy = st.getValue().getType();
+            if (!elemTy.isI32() && !elemTy.isFloat())
+                return null;
+            Value dst = st.getPointer();
+            if (!hasStride(dst, 4, c, se))
+                return null;
+            Value v = st.getValue();
+            if (LoopInterchangePass.definedOutside(v, loop)) {
+                if (!loads.isEmpty())
+                    return null;
+                return new Idiom(elemTy.isFloat() ? MEMSET_F32 : MEMSET_I32, dst, null, v, 1);
+            }
+            if (v instanceof LoadInst ld && loads.size() == 1 && loads.get(0) == ld && ld.getUses().size() == 1
+                    && hasStride(ld.getPointer(), 4, c, se) && isDisjoint(dst, ld.getPointer()))
+                return new Idiom(elemTy.isFloat() ? MEMCPY_F32 : MEMCPY_I32, dst, ld.getPointer(), null, 1);
+            return null;
+        }
+
+        // 内层已替换成的调用：每次迭代写 n 个元素，行跨度恰为 n 时外层继续写的是紧接着的下一段
+        CallInst call = (CallInst) effect;
+        String name = call.getCalledFunction().getName();
+        boolean copy = name.equals(MEMCPY_I32) || name.equals(MEMCPY_F32);
+        if (!copy && !name.equals(MEMSET_I32) && !name.equals(MEMSET_F32))
+            return null;
+        if (!loads.isEmpty() || !(call.getArg(2) instanceof ConstantInt n) || n.getValue() <= 0)
+            return null;
+        int perIter = n.getValue();
+        long rowBytes = 4L * perIter;
+        if (!hasStride(call.getArg(0), rowBytes, c, se))
+            return null;
+        if (copy) {
+            if (!hasStride(call.getArg(1), rowBytes, c, se))
+                return null;
+            return new Idiom(name, call.getArg(0), call.getArg(1), null, perIter);
+        }
+        if (!LoopInterchangePass.definedOutside(call.getArg(1), loop))
+            return null;
+        return new Idiom(name, call.getArg(0), null, call.getArg(1), perIter);
+    }
+
+    private static boolean isPure(Instruction inst) {
+        return inst instanceof BinOperator || inst instanceof GEPInst || inst instanceof CastInst
+                || inst instanceof ICmpInst || inst instanceof FCmpInst || inst instanceof SelectInst;
+    }
+
+    /** ptr 每次迭代前进 bytes 字节，且能在 preheader 中按首次迭代重新算出 */
+    private static boolean hasStride(Value ptr, long bytes, Control c, ScalarEvolution se) {
+        if (!(ptr.getType() instanceof PointerType))
+            return false;
+        Long stride = LoopInterchangePass.byteStride(ptr, c.loop(), se);
+        return stride != null && stride == bytes && isRematerializable(ptr, c);
+    }
+
+    private static boolean isRematerializable(Value v, Control c) {
+        if (v == c.iv() || LoopInterchangePass.definedOutside(v, c.loop()))
+            return true;
+        if (!(v instanceof GEPInst || v instanceof BinOperator || v instanceof CastInst))
+            return false;
+        for (Value op : ((Instruction) v).getOperands()) {
+            if (!isRematerializable(op, c))
+                return false;
+        }
+        return true;
+    }
+
+    /** 拷贝的两端必须是不同的对象：重叠时逐元素拷贝与整块拷贝的结果不同 */
+    private static boolean isDisjoint(Value dst, Value src) {
+        Value a = AliasAnalysis.getUnderlyingObject(dst);
+        Value b = AliasAnalysis.getUnderlyingObject(src);
+        if (a == b)
+            return false;
+        if (AliasAnalysis.isIdentifiedObject(a) && AliasAnalysis.isIdentifiedObject(b))
+            return true;
+        // 参数不可能指向本函数的栈对象
+        return (a instanceof AllocaInst && b instanceof Argument) || (a instanceof Argument && b instanceof AllocaInst);
+    }
+
+    // ==================== 变换 ====================
+
+    /** 在 insertBefore 之前按 valueMap（归纳变量 → 初值）复制 v 的计算链 */
+    private static Value materialize(Value v, Loop loop, Map<Value, Value> valueMap, Instruction insertBefore) {
+        Value mapped = valueMap.get(v);
+        if (mapped != null)
+            return mapped;
+        if (LoopInterchangePass.definedOutside(v, loop))
+            return v;
+        Instruction inst = (Instruction) v;
+        for (Value op : inst.getOperands())
+            materialize(op, loop, valueMap, insertBefore);
+        Instruction copy = inst.clone(valueMap, Map.of());
+        insertBefore.getParent().addInstructionBefore(copy, insertBefore);
+        valueMap.put(inst, copy);
+        return copy;
+    }
+
+    /** preheader 直接跳到出口并删除循环的全部块；出口 phi 中来自 header 的值都定义在循环外 */
+    private static void removeLoop(Loop loop, BasicBlock preheader, BasicBlock exit) {
+        BasicBlock header = loop.getHeader();
+        preheader.removeInstruction(preheader.getTerminator().getVal());
+        preheader.removeSuccessor(header);
+        exit.replacePredecessor(header, preheader);
+        Builder b = new Builder(NLVMModule.getModule());
+        b.positionAtEnd(preheader);
+        b.buildBr(exit);
+
+        for (BasicBlock bb : new HashSet<>(loop.getBlocks())) {
+            for (BasicBlock succ : new HashSet<>(bb.getSuccessors()))
+                bb.removeSuccessor(succ);
+            for (BasicBlock pred : new HashSet<>(bb.getPredecessors()))
+                bb.removePredecessor(pred);
+            while (bb.getInstructions().getEntry() != null)
+                bb.removeInstruction(bb.getInstructions().getEntry().getVal());
+            bb._getINode().removeSelf();
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.type.ArrayType;
+import ir.type.PointerType;
+import ir.type.Type;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Use;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.GEPInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.LoadInst;
+import ir.value.instructions.Phi;
+import ir.value.instructions.StoreInst;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.AliasAnalysis;
+import pass.IRPass.analysis.DependenceAnalysis;
+import pass.IRPass.analysis.DependenceAnalysis.Dependence;
+import pass.IRPass.analysis.Loop;
+import pass.IRPass.analysis.LoopInfo;
+import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.SCEV;
+import pass.IRPass.analysis.ScalarEvolution;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.*;
+
+/**
+ * 循环交换：对两层完美嵌套的矩形循环，若把外层循环换到最内层能让更多访存变成
+ * 连续（单位步长）访问，且依赖方向允许，则交换两层循环的次序。
+ * <p>
+ * 只处理最内层的一对循环，要求：
+ * - 两层都是 header 判断退出的 for 形态，有唯一 preheader / latch，header 中只有归纳变量 phi
+ * - 归纳变量形如 iv = phi(init, iv + c)，与环外的边界做 icmp
+ * - 初值、边界都在外层循环之外定义（矩形迭代空间）
+ * - 外层除控制指令外只有可下沉到内层的纯计算（GCM 提到内层 preheader 的地址计算）
+ * <p>
+ * CFG 保持不变，交换通过对调两个归纳变量的角色完成：循环体中 i / j 互换，
+ * 初值、步长与退出比较也随之互换。
+ */
+public class LoopInterchangePass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(LoopInterchangePass.class);
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.LoopInterchange;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule m = NLVMModule.getModule();
+        for (Function f : m.getFunctions())
+            if (!f.isDeclaration())
+                runOnFunction(f);
+    }
+
+    private void runOnFunction(Function func) {
+        LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+        loopAnalysis.runOnFunction(func);
+        LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
+        if (loopInfo == null)
+            return;
+        ScalarEvolution se = new ScalarEvolution(func, loopInfo);
+        DependenceAnalysis da = new DependenceAnalysis(se);
+        for (Loop outer : new ArrayList<>(loopInfo.getAllLoops())) {
+            if (outer.getSubLoops().size() != 1)
+                continue;
+            Loop inner = outer.getSubLoops().get(0);
+            if (!inner.getSubLoops().isEmpty())
+                continue;
+            if (tryInterchange(outer, inner, se, da)) {
+                log.debug("interchanged loops {} / {} in {}", outer.getHeader().getName(),
+                        inner.getHeader().getName(), func.getName());
+                se.forgetAll();
+                da = new DependenceAnalysis(se);
+            }
+        }
+    }
+
+    /** 一层 for 循环的控制部分（循环分块复用） */
+    record Control(Loop loop, Phi iv, Value init, BinOperator inc, int stepIndex,
+            ICmpInst cmp, BranchInst br, BasicBlock preheader) {
+    }
+
+    private boolean tryInterchange(Loop outer, Loop inner, ScalarEvolution se, DependenceAnalysis da) {
+        Control c1 = matchControl(outer);
+        Control c2 = matchControl(inner);
+        if (c1 == null || c2 == null)
+            return false;
+        // 内层的初值与边界不能依赖外层归纳变量
+        if (!definedOutside(c2.init(), outer) || !definedOutside(boundOf(c2), outer))
+            return false;
+
+        List<Instruction> sink = new ArrayList<>();
+        if (!isPerfectNest(c1, c2, sink))
+            return false;
+        if (!usesConfined(c1, inner, sink) || !usesConfined(c2, inner, Collections.emptyList()))
+            return false;
+
+        if (hasInterchangePreventingDependence(outer, da))
+            return false;
+
+        int before = 0, after = 0;
+        for (BasicBlock bb : inner.getBlocks()) {
+            for (var node : bb.getInstructions()) {
+                Value ptr = pointerOf(node.getVal());
+                if (ptr == null)
+                    continue;
+                if (!isContiguous(ptr, inner, se))
+                    before++;
+                if (!isContiguous(ptr, outer, se))
+                    after++;
+            }
+        }
+        if (after >= before)
+            return false;
+
+        interchange(c1, c2, sink);
+        return true;
+    }
+
+    // ==================== 形态匹配 ====================
+
+    static Control matchControl(Loop loop) {
+        BasicBlock header = loop.getHeader();
+        BasicBlock pre = loop.getUniquePreheader();
+        BasicBlock latch = loop.getUniqueLatch();
+        if (pre == null || latch == null || latch == header)
+            return null;
+        // header 是唯一的出口块
+        for (BasicBlock bb : loop.getBlocks()) {
+            if (bb == header)
+                continue;
+            for (BasicBlock succ : bb.getSuccessors())
+                if (!loop.contains(succ))
+                    return null;
+        }
+        var termNode = header.getTerminator();
+        if (termNode == null || !(termNode.getVal() instanceof BranchInst br) || !br.isConditional())
+            return null;
+        if (!loop.contains(br.getThenBlock()) || loop.contains(br.getElseBlock()))
+            return null;
+        if (!(br.getCondition() instanceof ICmpInst cmp) || cmp.getParent() != header
+                || cmp.getUses().size() != 1)
+            return null;
+
+        Phi iv = null;
+        for (var node : header.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            if (iv != null)
+                return null;
+            iv = phi;
+        }
+        if (iv == null || iv.getNumIncoming() != 2)
+            return null;
+        Value init = null, next = null;
+        for (int k = 0; k < 2; k++) {
+            if (iv.getIncomingBlock(k) == pre)
+                init = iv.getIncomingValue(k);
+            else if (iv.getIncomingBlock(k) == latch)
+                next = iv.getIncomingValue(k);
+        }
+        if (init == null || !definedOutside(init, loop))
+            return null;
+        if (!(next instanceof BinOperator inc) || inc.opCode() != Opcode.ADD || inc.getUses().size() != 1)
+            return null;
+        int stepIndex;
+        if (inc.getOperand(0) == iv && inc.getOperand(1) instanceof ConstantInt)
+            stepIndex = 1;
+        else if (inc.getOperand(1) == iv && inc.getOperand(0) instanceof ConstantInt)
+            stepIndex = 0;
+        else
+            return null;
+
+        Value bound;
+        if (cmp.getOperand(0) == iv)
+            bound = cmp.getOperand(1);
+        else if (cmp.getOperand(1) == iv)
+            bound = cmp.getOperand(0);
+        else
+            return null;
+        if (!definedOutside(bound, loop))
+            return null;
+        return new Control(loop, iv, init, inc, stepIndex, cmp, br, pre);
+    }
+
+    static Value boundOf(Control c) {
+        return c.cmp().getOperand(0) == c.iv() ? c.cmp().getOperand(1) : c.cmp().getOperand(0);
+    }
+
+    static boolean definedOutside(Value v, Loop loop) {
+        return !(v instanceof Instruction inst) || inst.getParent() == null || !loop.contains(inst.getParent());
+    }
+
+    /**
+     * 外层中不属于内层的块只能是两条直线链：header → … → 内层 preheader → 内层 header，
+     * 以及内层出口 → … → 外层 latch → header。前一条链上允许纯计算（收集到 sink 中，交换时下沉到内层），
+     * 后一条链上只允许外层的步进。
+     */
+    static boolean isPerfectNest(Control c1, Control c2, List<Instruction> sink) {
+        Loop outer = c1.loop(), inner = c2.loop();
+        BasicBlock h1 = outer.getHeader(), h2 = inner.getHeader();
+        Set<BasicBlock> visited = new HashSet<>();
+
+        visited.add(h1);
+        for (var node : h1.getInstructions()) {
+            Instruction inst = node.getVal();
+            if (inst == c1.iv() || inst == c1.cmp() || inst == c1.br())
+                continue;
+            if (!isSinkable(inst))
+                return false;
+            sink.add(inst);
+        }
+        BasicBlock bb = c1.br().getThenBlock();
+        BasicBlock last = h1;
+        while (bb != h2) {
+            if (!visited.add(bb) || inner.contains(bb) || !outer.contains(bb))
+                return false;
+            for (var node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (inst instanceof Phi)
+                    return false;
+                if (inst instanceof BranchInst br) {
+                    if (br.isConditional())
+                        return false;
+                    continue;
+                }
+                if (inst == c1.inc() || !isSinkable(inst))
+                    return false;
+                sink.add(inst);
+            }
+            last = bb;
+            bb = ((BranchInst) bb.getTerminator().getVal()).getThenBlock();
+        }
+        if (last != c2.preheader())
+            return false;
+
+        bb = inner.getUniqueExit();
+        if (bb == null || bb != c2.br().getElseBlock())
+            return false;
+        while (bb != h1) {
+            if (!visited.add(bb) || inner.contains(bb) || !outer.contains(bb))
+                return false;
+            for (var node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (inst == c1.inc())
+                    continue;
+                if (!(inst instanceof BranchInst br) || br.isConditional())
+                    return false;
+            }
+            bb = ((BranchInst) bb.getTerminator().getVal()).getThenBlock();
+        }
+        return visited.size() + inner.getBlocks().size() == outer.getBlocks().size();
+    }
+
+    private static boolean isSinkable(Instruction inst) {
+        return inst instanceof GEPInst || inst instanceof CastInst
+                || (inst instanceof BinOperator bin && bin.opCode() != Opcode.SDIV && bin.opCode() != Opcode.SREM);
+    }
+
+    /** 归纳变量（以及下沉指令）只在控制指令、内层循环和其它下沉指令中使用 */
+    private static boolean usesConfined(Control c, Loop inner, List<Instruction> sink) {
+        List<Value> values = new ArrayList<>(sink);
+        values.add(c.iv());
+        for (Value v : values) {
+            for (Use use : v.getUses()) {
+                if (!(use.getUser() instanceof Instruction user))
+                    return false;
+                if (user == c.inc() || user == c.cmp() || sink.contains(user))
+                    continue;
+                if (user.getParent() == null || !inner.contains(user.getParent()))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== 合法性 ====================
+
+    /**
+     * 交换后方向向量中外层与内层两个分量对调。若某个依赖在更外层已经是严格的 '<' 或 '>'，
+     * 交换不影响它；否则出现 (<, >) 或 (>, <) 时，交换会让依赖反向，禁止交换。
+     */
+    private static boolean hasInterchangePreventingDependence(Loop outer, DependenceAnalysis da) {
+        for (Dependence dep : da.getDependences(outer)) {
+            if (dep.isConfused())
+                return true;
+            int level = dep.getCommonLoops().indexOf(outer);
+            if (level < 0 || level + 1 >= dep.getLevels())
+                return true;
+            for (int[] v : dep.getDirectionVectors()) {
+                boolean carriedOutside = false;
+                for (int k = 0; k < level; k++) {
+                    if (v[k] == DependenceAnalysis.LT || v[k] == DependenceAnalysis.GT) {
+                        carriedOutside = true;
+                        break;
+                    }
+                }
+                if (carriedOutside)
+                    continue;
+                int o = v[level], i = v[level + 1];
+                if ((o & DependenceAnalysis.LT) != 0 && (i & DependenceAnalysis.GT) != 0)
+                    return true;
+                if ((o & DependenceAnalysis.GT) != 0 && (i & DependenceAnalysis.LT) != 0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    // ==================== 收益 ====================
+
+    static Value pointerOf(Instruction inst) {
+        if (inst instanceof LoadInst ld)
+            return ld.getPointer();
+        if (inst instanceof StoreInst st)
+            return st.getPointer();
+        return null;
+    }
+
+    /** 以 loop 为最内层时，该访存每次迭代的地址变化不超过一个元素 */
+    private static boolean isContiguous(Value ptr, Loop loop, ScalarEvolution se) {
+        if (!(ptr.getType() instanceof PointerType pt))
+            return false;
+        long elemSize = AliasAnalysis.sizeOf(pt.getPointeeType());
+        Long stride = byteStride(ptr, loop, se);
+        return stride != null && elemSize != AliasAnalysis.UNKNOWN_SIZE && Math.abs(stride) <= elemSize;
+    }
+
+    /** 沿 GEP 链累加各维下标在 loop 上的系数乘以该维跨度；无法确定时返回 null */
+    static Long byteStride(Value ptr, Loop loop, ScalarEvolution se) {
+        long stride = 0;
+        Value cur = ptr;
+        while (cur instanceof GEPInst gep) {
+            if (!(gep.getPointer().getType() instanceof PointerType pt))
+                return null;
+            Type t = pt.getPointeeType();
+            for (int k = 0; k < gep.getNumIndices(); k++) {
+                if (k > 0) {
+                    if (!(t instanceof ArrayType at))
+                        return null;
+                    t = at.getElementType();
+                }
+                long scale = AliasAnalysis.sizeOf(t);
+                if (scale == AliasAnalysis.UNKNOWN_SIZE)
+                    return null;
+                Value idx = gep.getIndex(k);
+                Long coeff = ScalarEvolution.isSCEVable(idx) ? coefficient(se.getSCEV(idx), loop)
+                        : (definedOutside(idx, loop) ? Long.valueOf(0) : null);
+                if (coeff == null)
+                    return null;
+                stride += coeff * scale;
+            }
+            cur = gep.getPointer();
+        }
+        return definedOutside(cur, loop) ? stride : null;
+    }
+
+    /** 仿射表达式 s 中 loop 归纳变量的常数系数 */
+    private static Long coefficient(SCEV s, Loop loop) {
+        if (s.isLoopInvariant(loop))
+            return 0L;
+        if (!(s instanceof SCEV.AddRec rec))
+            return null;
+        if (rec.getLoop() == loop) {
+            if (rec.getStep() instanceof SCEV.Constant c && rec.getStart().isLoopInvariant(loop))
+                return (long) c.getValue();
+            return null;
+        }
+        if (!rec.getStep().isLoopInvariant(loop))
+            return null;
+        return coefficient(rec.getStart(), loop);
+    }
+
+    // ==================== 变换 ====================
+
+    private void interchange(Control c1, Control c2, List<Instruction> sink) {
+        Loop inner = c2.loop();
+        BasicBlock h2 = inner.getHeader();
+
+        // 外层的纯计算依赖 i，先下沉到内层 header，随后与循环体一起改写
+        Instruction anchor = h2.getFirstNonPhi();
+        for (Instruction inst : sink) {
+            inst.getParent().moveInstructionFrom(inst);
+            h2.addInstructionBefore(inst, anchor);
+        }
+
+        // 循环体中 i 与 j 互换
+        List<Use> iUses = new ArrayList<>(), jUses = new ArrayList<>();
+        for (Use use : c1.iv().getUses())
+            if (use.getUser() != c1.inc() && use.getUser() != c1.cmp())
+                iUses.add(use);
+        for (Use use : c2.iv().getUses())
+            if (use.getUser() != c2.inc() && use.getUser() != c2.cmp())
+                jUses.add(use);
+        for (Use use : iUses)
+            use.getUser().setOperand(use.getOperandIndex(), c2.iv());
+        for (Use use : jUses)
+            use.getUser().setOperand(use.getOperandIndex(), c1.iv());
+
+        // 初值与步长互换
+        setIncoming(c1.iv(), c1.preheader(), c2.init());
+        setIncoming(c2.iv(), c2.preheader(), c1.init());
+        Value step1 = c1.inc().getOperand(c1.stepIndex());
+        Value step2 = c2.inc().getOperand(c2.stepIndex());
+        c1.inc().setOperand(c1.stepIndex(), step2);
+        c2.inc().setOperand(c2.stepIndex(), step1);
+
+        // 退出比较互换：外层 header 按原内层的比较判断，反之亦然
+        ICmpInst cmp1 = rebuildCompare(c2.cmp(), c2.iv(), c1.iv(), c1.cmp().getName());
+        ICmpInst cmp2 = rebuildCompare(c1.cmp(), c1.iv(), c2.iv(), c2.cmp().getName());
+        replaceCompare(c1, cmp1);
+        replaceCompare(c2, cmp2);
+    }
+
+    private static void setIncoming(Phi phi, BasicBlock block, Value value) {
+        for (int k = 0; k < phi.getNumIncoming(); k++)
+            if (phi.getIncomingBlock(k) == block)
+                phi.setIncomingValue(k, value);
+    }
+
+    private static ICmpInst rebuildCompare(ICmpInst shape, Phi from, Phi to, String name) {
+        Value lhs = shape.getOperand(0) == from ? to : shape.getOperand(0);
+        Value rhs = shape.getOperand(1) == from ? to : shape.getOperand(1);
+        return new ICmpInst(shape.getOpcode(), name, shape.getType(), lhs, rhs);
+    }
+
+    private static void replaceCompare(Control c, ICmpInst cmp) {
+        c.br().getParent().addInstructionBefore(cmp, c.br());
+        c.br().setOperand(0, cmp);
+        ICmpInst old = c.cmp();
+        old.clearOperands();
+        old._getINode().removeSelf();
+    }
+}
@@ -14,6 +14,8 @@ import pass.IRPass.analysis.DominanceAnalysisPass;
 import pass.IRPass.analysis.Loop;
 import pass.IRPass.analysis.LoopInfo;
 import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.MemorySSA;
+import pass.IRPass.analysis.ModRefAnalysis;
 import util.LoggingManager;
 import util.logging.Logger;
 import util.IList.INode;
@@ -24,12 +26,16 @@ import java.util.*;
  * Loop Invariant Code Motion (LICM)
  * - 需要唯一 preheader
  * - 提升纯指令（算术/比较/类型/选择/GEP）
- * - 保守外提：GEP（操作数不变）与 Load（指针不变且无别名写/无调用）
+ * - 外提 GEP（操作数不变）与 Load（指针不变，且 MemorySSA 证明循环内没有可能改写该位置的写）
  * - 扫描整个循环体并迭代扩张不变集，保证正确性
  */
 public class LoopLICMPass implements Pass.IRPass {
     private static final Logger log = LoggingManager.getLogger(LoopLICMPass.class);
 
+    private DominanceAnalysisPass dom;
+    private MemorySSA mssa;
+    private ModRefAnalysis modRef;
+
     @Override
     public IRPassType getType() {
         return IRPassType.LoopLICMPass;
@@ -38,6 +44,8 @@ public class LoopLICMPass implements Pass.IRPass {
     @Override
     public void run() {
         NLVMModule module = NLVMModule.getModule();
+        // 调用只改写摘要中的全局与实参对象，循环里调用小函数时其余 load 仍可外提
+        modRef = ModRefAnalysis.compute(module);
         for (Function function : module.getFunctions()) {
             if (!function.isDeclaration()) {
                 runOnFunction(function);
@@ -46,8 +54,9 @@ public class LoopLICMPass implements Pass.IRPass {
     }
 
     private void runOnFunction(Function func) {
-        DominanceAnalysisPass dom = new DominanceAnalysisPass(func);
-        dom.run();
+        dom = DominanceAnalysisPass.getOrCompute(func);
+        // 外提只移动指令、不改 CFG，也不移动写操作，整个函数共用一份 MemorySSA
+        mssa = new MemorySSA(func, modRef);
         LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
         loopAnalysis.runOnFunction(func);
         LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
@@ -168,42 +177,25 @@ public class LoopLICMPass implements Pass.IRPass {
             if (loop.getBlocks().contains(pi.getParent()) && !invariants.contains(pi))
                 return false;
         }
-        // 基址必须可解析，且循环内对同一基址无 store；循环内也不应有调用（保守）
+        // 基址必须可解析，且外提后的投机执行是安全的
         Value base = getBasePointer(ptr);
         if (base == null)
             return false;
-        if (!isBaseSafeForHoist(base, loop))
-            return false;
-        if (loopHasCalls(loop))
-            return false;
-        // 循环内不允许对同一基址有写
-        if (hasStoreToBase(loop, base))
+        if (!isBaseSafeForHoist(base, loop) && !isGuaranteedToExecute(load.getParent(), loop))
             return false;
-        return true;
+        // 循环内（含调用）不允许有可能改写该位置的写
+        return !mssa.isClobberedInLoop(load, loop);
     }
 
-    private boolean loopHasCalls(Loop loop) {
-        for (BasicBlock bb : loop.getBlocks()) {
-            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
-                if (node.getVal() instanceof CallInst)
-                    return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean hasStoreToBase(Loop loop, Value base) {
-        for (BasicBlock bb : loop.getBlocks()) {
-            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
-                Instruction inst = node.getVal();
-                if (inst instanceof StoreInst st) {
-                    Value bp = getBasePointer(st.getPointer());
-                    if (bp != null && bp == base)
-                        return true;
-                }
+    /** 块支配所有 exiting 块：只要进入循环就一定会执行到 */
+    private boolean isGuaranteedToExecute(BasicBlock bb, Loop loop) {
+        for (BasicBlock block : loop.getBlocks()) {
+            for (BasicBlock succ : block.getSuccessors()) {
+                if (!loop.contains(succ) && !dom.dominates(bb, block))
+                    return false;
             }
         }
-        return false;
+        return true;
     }
 
     private Value getBasePointer(Value ptr) {
@@ -215,7 +207,9 @@ public class LoopLICMPass implements Pass.IRPass {
             return ptr;
         if (ptr instanceof AllocaInst)
             return ptr;
-        return null; // 其他来源（参数/不明 cast）先不放行
+        if (ptr instanceof Argument)
+            return ptr;
+        return null; // 其他来源（不明 cast 等）先不放行
     }
 
     private boolean isBaseSafeForHoist(Value base, Loop loop) {
@@ -223,9 +217,9 @@ public class LoopLICMPass implements Pass.IRPass {
             return gv.isConst(); // 仅常量全局允许
         }
         if (base instanceof AllocaInst) {
-            return true; // 栈对象可放行（结合 hasStoreToBase 做保护）
+            return true; // 栈对象可放行
         }
-        return false;
+        return false; // 可变全局与参数数组只在必然执行时外提
     }
 
     private BasicBlock getUniquePreheader(Loop loop) {
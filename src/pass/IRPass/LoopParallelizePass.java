@@ -0,0 +1,894 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.type.ArrayType;
+import ir.type.FloatType;
+import ir.type.FunctionType;
+import ir.type.IntegerType;
+import ir.type.PointerType;
+import ir.type.Type;
+import ir.type.VoidType;
+import ir.value.Argument;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Use;
+import ir.value.Value;
+import ir.value.constants.ConstantFloat;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.AllocaInst;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.FCmpInst;
+import ir.value.instructions.GEPInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.LoadInst;
+import ir.value.instructions.Phi;
+import ir.value.instructions.ReturnInst;
+import ir.value.instructions.SelectInst;
+import ir.value.instructions.StoreInst;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.DependenceAnalysis;
+import pass.IRPass.analysis.DependenceAnalysis.Dependence;
+import pass.IRPass.analysis.DominanceAnalysisPass;
+import pass.IRPass.analysis.Loop;
+import pass.IRPass.analysis.LoopInfo;
+import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.SCEV;
+import pass.IRPass.analysis.SCEVExpander;
+import pass.IRPass.analysis.ScalarEvolution;
+import pass.IRPass.analysis.SideEffectAnalysis;
+import util.LoggingManager;
+import util.logging.Logger;
+import util.IList.INode;
+
+import java.util.*;
+
+/**
+ * 自动并行化：迭代之间没有依赖的最外层循环整体搬到一个新函数（循环体函数）里，
+ * 原处换成一次 _sysy_parallel_for 调用，由运行时（sylib.c 中基于 pthread 的线程池）
+ * 把迭代区间 [lo, hi) 静态切成至多 {@value #SLOTS} 块、每块一个线程执行。
+ * <p>
+ * 条件：
+ * <ul>
+ * <li>唯一 preheader、唯一 latch，由 header 或 latch 处的比较控制退出，SCEV 能算出迭代次数；</li>
+ * <li>header phi 只有步长为正常数的归纳变量与归约：i32 加减（经内层循环、条件分支累加也可以）
+ * 或 i32 / float 的 min / max。浮点加法归约改变求和顺序，与向量化一样不做；</li>
+ * <li>循环内的调用都是纯函数；{@link DependenceAnalysis} 给出的依赖都不由本循环携带；</li>
+ * <li>循环外只用到归纳变量与归约的退出值。</li>
+ * </ul>
+ * 循环体函数的原型与 sylib.h 的 _sysy_par_body 一致：(lo, hi, tid, {@value #MAX_INT_ARGS} 个 long 槽位,
+ * {@value #MAX_FLOAT_ARGS} 个 float 槽位)，依次放归约部分和数组、整数 / 指针活跃值与浮点活跃值，
+ * 入口块再 inttoptr / trunc 回原类型；全局变量直接引用，不占参数。
+ * 优化期间调用处仍按原类型传递指针与整数，逃逸到运行时的栈对象对各个分析可见；
+ * 流水线末尾的 {@link IRPassType#ParallelForLowering} 才把它们扩成 long、补齐空槽位。每个归约在调用者栈上有一个长度为 {@value #SLOTS} 的部分和数组，
+ * 第 tid 块从单位元开始累积并写入第 tid 项，调用返回后与初值依次合并。
+ * <p>
+ * 收益：按 IR 指令条数估计每次迭代的工作量（回边次数未知的内层循环按 {@value #UNKNOWN_TRIP_COUNT} 次计），
+ * 运行时保证每块至少 {@value #MIN_WORK} 条，不够两块时直接在当前线程调用循环体函数。
+ */
+public class LoopParallelizePass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(LoopParallelizePass.class);
+
+    static final String PARALLEL_FOR = "_sysy_parallel_for";
+
+    /** 与 sylib.h 的 _SYSY_PAR_SLOTS 一致：最多的分块数，也是部分和数组的长度 */
+    private static final int SLOTS = 8;
+    /** 运行时转发的整数 / 指针参数与浮点参数个数（sylib.h 的 _sysy_par_body） */
+    private static final int MAX_INT_ARGS = 4;
+    private static final int MAX_FLOAT_ARGS = 8;
+    /** 每块至少的工作量：唤醒与汇合线程约几十微秒，块再小就得不偿失 */
+    private static final int MIN_WORK = 1 << 17;
+    private static final int UNKNOWN_TRIP_COUNT = 16;
+
+    private enum RecurKind {
+        ADD, MIN, MAX
+    }
+
+    /** header 中的归约 phi；exitValue 是出口处观察到的值（header 退出时为 phi 本身，latch 退出时为回边值） */
+    private record Reduction(Phi phi, RecurKind kind, Value start, Value exitValue) {
+    }
+
+    private static final class Plan {
+        Loop loop;
+        BasicBlock preheader;
+        BasicBlock exiting;
+        BasicBlock exit;
+        Phi iv;
+        Value start;
+        Value ivNext;
+        int step;
+        /** 只被退出分支使用的比较，循环体函数里换成与 hi 比较，不复制 */
+        ICmpInst exitCmp;
+        /** 循环体执行的次数，以及归纳变量在这么多次之后的值 */
+        SCEV count;
+        SCEV ivEnd;
+        long cost;
+        final List<Reduction> reductions = new ArrayList<>();
+        final List<Value> intArgs = new ArrayList<>();
+        final List<Value> floatArgs = new ArrayList<>();
+    }
+
+    /** 只把已有的 _sysy_parallel_for 调用按运行时原型扩宽实参，不再并行化 */
+    private final boolean lowerCalls;
+
+    public LoopParallelizePass() {
+        this(false);
+    }
+
+    public LoopParallelizePass(boolean lowerCalls) {
+        this.lowerCalls = lowerCalls;
+    }
+
+    @Override
+    public IRPassType getType() {
+        return lowerCalls ? IRPassType.ParallelForLowering : IRPassType.LoopParallelize;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule m = NLVMModule.getModule();
+        if (lowerCalls) {
+            for (Function f : m.getFunctions())
+                if (!f.isDeclaration())
+                    lowerCalls(f);
+            return;
+        }
+        boolean changed = false;
+        for (Function f : m.getFunctions())
+            if (!f.isDeclaration() && !isParallelBody(f))
+                changed |= runOnFunction(f);
+        if (changed) {
+            // 调用者改为调用运行时库，纯函数判定要重新计算
+            CallInst.invalidatePureCache();
+            SideEffectAnalysis.getInstance().reset();
+        }
+    }
+
+    /** f 是否已经是某次 _sysy_parallel_for 的循环体：不再嵌套并行 */
+    private static boolean isParallelBody(Function f) {
+        for (Use use : f.getUses()) {
+            if (use.getUser() instanceof CallInst call && call.getCalledFunction().getName().equals(PARALLEL_FOR))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean runOnFunction(Function func) {
+        new LCSSAPass().runOnFunction(func);
+        boolean changed = false;
+        // 每并行化一个循环都会删掉它的块，重算循环信息后再看剩下的最外层循环
+        while (true) {
+            LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+            loopAnalysis.runOnFunction(func);
+            LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
+            if (loopInfo == null)
+                return changed;
+            ScalarEvolution se = new ScalarEvolution(func, loopInfo);
+            DependenceAnalysis da = new DependenceAnalysis(se);
+            Plan plan = null;
+            for (Loop loop : loopInfo.getTopLevelLoops()) {
+                plan = analyze(loop, se, da);
+                if (plan != null)
+                    break;
+            }
+            if (plan == null)
+                return changed;
+            outline(plan, se);
+            DominanceAnalysisPass.invalidate(func);
+            changed = true;
+        }
+    }
+
+    // ==================== 合法性与收益 ====================
+
+    private Plan analyze(Loop loop, ScalarEvolution se, DependenceAnalysis da) {
+        Plan p = new Plan();
+        p.loop = loop;
+        p.preheader = loop.getUniquePreheader();
+        BasicBlock latch = loop.getUniqueLatch();
+        BasicBlock header = loop.getHeader();
+        SCEV btc = se.getBackedgeTakenCount(loop);
+        if (p.preheader == null || latch == null || btc.isCouldNotCompute())
+            return null;
+        p.exiting = se.getExitingBlock(loop);
+        p.exit = loop.getUniqueExit();
+        if (p.exiting == null || p.exit == null || p.exit.getPredecessors().size() != 1)
+            return null;
+        BranchInst exitBr = (BranchInst) p.exiting.getTerminator().getVal();
+        if (exitBr.getCondition() instanceof ICmpInst cmp && cmp.getParent() == p.exiting
+                && cmp.getUses().size() == 1)
+            p.exitCmp = cmp;
+
+        for (INode<Instruction, BasicBlock> node : header.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            if (p.iv == null && inductionStep(phi, loop, se) > 0) {
+                p.iv = phi;
+                p.step = inductionStep(phi, loop, se);
+                p.start = incoming(phi, p.preheader);
+                p.ivNext = incoming(phi, latch);
+                continue;
+            }
+            Reduction r = matchReduction(phi, loop, p, latch);
+            if (r == null)
+                return null;
+            p.reductions.add(r);
+        }
+        if (p.iv == null)
+            return null;
+        // 不写内存、归约结果也没人用的循环是死循环，留给 DeadLoopElimination 删除
+        if (!writesMemory(loop) && p.reductions.stream().noneMatch(r -> isUsedAfterLoop(r.exitValue(), p.exit)))
+            return null;
+
+        // 执行循环体的次数：header 退出时为回边次数，latch 退出时多一次
+        p.count = p.exiting == header ? btc : se.getAddExpr(btc, se.getConstant(1));
+        p.ivEnd = se.getAddExpr(se.getSCEV(p.start), se.getMulExpr(p.count, se.getConstant(p.step)));
+        SCEVExpander expander = new SCEVExpander(se);
+        if (!expander.isExpandable(p.ivEnd) || (p.step != 1 && !expander.isExpandable(p.count)))
+            return null;
+
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                if (node.getVal() instanceof CallInst call && !call.isPure())
+                    return null;
+            }
+        }
+        if (!hasOnlyExitValueUses(p) || !collectLiveIns(p))
+            return null;
+        for (Dependence dep : da.getDependences(loop)) {
+            if (dep.isCarriedBy(0))
+                return null;
+        }
+
+        p.cost = iterationCost(loop, se);
+        int iterations = se.getConstantBackedgeTakenCount(loop);
+        if (iterations >= 0) {
+            if (p.exiting != header)
+                iterations++;
+            if ((long) iterations * p.cost < 2L * MIN_WORK)
+                return null;
+        }
+        return p;
+    }
+
+    private static Value incoming(Phi phi, BasicBlock from) {
+        for (int i = 0; i < phi.getNumIncoming(); i++) {
+            if (phi.getIncomingBlock(i) == from)
+                return phi.getIncomingValue(i);
+        }
+        return null;
+    }
+
+    private static boolean writesMemory(Loop loop) {
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                if (node.getVal() instanceof StoreInst)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /** 出口处有 LCSSA phi 取 v，且这个 phi 还有使用者 */
+    private static boolean isUsedAfterLoop(Value v, BasicBlock exit) {
+        for (Use use : v.getUses()) {
+            if (use.getUser() instanceof Phi phi && phi.getParent() == exit && !phi.getUses().isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    /** 步长为正常数的 i32 归纳变量返回步长，否则返回 0 */
+    private static int inductionStep(Phi phi, Loop loop, ScalarEvolution se) {
+        if (phi.getType().isI32() && se.getSCEV(phi) instanceof SCEV.AddRec rec && rec.getLoop() == loop
+                && rec.getStep() instanceof SCEV.Constant c && c.getValue() > 0)
+            return c.getValue();
+        return 0;
+    }
+
+    private Reduction matchReduction(Phi phi, Loop loop, Plan p, BasicBlock latch) {
+        if (phi.getNumIncoming() != 2)
+            return null;
+        Value start = incoming(phi, p.preheader);
+        Value next = incoming(phi, latch);
+        Set<Value> chain = chainOf(phi, loop);
+        if (start == null || next == null || chain == null || !chain.contains(next))
+            return null;
+        Value exitValue = p.exiting == loop.getHeader() ? phi : next;
+        if (phi.getType().isI32() && isAddChain(phi, chain))
+            return new Reduction(phi, RecurKind.ADD, start, exitValue);
+        if (phi.getType().isI32() || phi.getType().isFloat()) {
+            RecurKind kind = matchMinMax(phi, chain);
+            if (kind != null)
+                return new Reduction(phi, kind, start, exitValue);
+        }
+        return null;
+    }
+
+    /** phi 在循环内的前向闭包：由它（经任意条指令）计算出的循环内的值 */
+    private static Set<Value> chainOf(Phi phi, Loop loop) {
+        Set<Value> chain = new LinkedHashSet<>();
+        Deque<Value> worklist = new ArrayDeque<>();
+        chain.add(phi);
+        worklist.add(phi);
+        while (!worklist.isEmpty()) {
+            for (Use use : worklist.poll().getUses()) {
+                if (!(use.getUser() instanceof Instruction user) || user.getParent() == null)
+                    return null;
+                if (loop.contains(user.getParent()) && chain.add(user))
+                    worklist.add(user);
+            }
+        }
+        return chain;
+    }
+
+    private static boolean allIncomingIn(Phi phi, Set<Value> chain) {
+        for (int i = 0; i < phi.getNumIncoming(); i++) {
+            if (!chain.contains(phi.getIncomingValue(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 闭包里都是“某个派生值 ± 与 phi 无关的值”，或是在派生值之间选择的 phi / select（条件与 phi 无关）：
+     * 每次迭代的贡献与进入时的部分和无关，分块各自从 0 累加再求和即可。
+     */
+    private static boolean isAddChain(Phi phi, Set<Value> chain) {
+        for (Value v : chain) {
+            if (v == phi)
+                continue;
+            boolean ok;
+            if (v instanceof BinOperator bin && bin.opCode() == Opcode.ADD)
+                ok = chain.contains(bin.getOperand(0)) != chain.contains(bin.getOperand(1));
+            else if (v instanceof BinOperator bin && bin.opCode() == Opcode.SUB)
+                ok = chain.contains(bin.getOperand(0)) && !chain.contains(bin.getOperand(1));
+            else if (v instanceof Phi inner)
+                ok = allIncomingIn(inner, chain);
+            else if (v instanceof SelectInst sel)
+                ok = !chain.contains(sel.getCondition()) && chain.contains(sel.getTrueValue())
+                        && chain.contains(sel.getFalseValue());
+            else
+                ok = false;
+            if (!ok)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * 闭包里除了传递用的 phi，只有形如“m 与 x 比较，按结果在 m、x 中取一个”的更新：
+     * select (m pred x), ... 或者由该比较控制的条件分支汇合处的 phi（IfToSelect 之前的形态），
+     * 比较只用于这次选择。所有更新方向一致时是 min / max 归约。
+     */
+    private static RecurKind matchMinMax(Phi phi, Set<Value> chain) {
+        RecurKind kind = null;
+        for (Value v : chain) {
+            // 分支只可能经由比较进入闭包，已由 isUpdateCompare 检查
+            if (v == phi || v instanceof BranchInst || (v instanceof Phi inner && allIncomingIn(inner, chain)))
+                continue;
+            RecurKind k;
+            if (v instanceof ICmpInst || v instanceof FCmpInst) {
+                if (!isUpdateCompare((Instruction) v, chain))
+                    return null;
+                continue;
+            } else if (v instanceof SelectInst sel) {
+                Value m = sel.getTrueValue();
+                Value x = sel.getFalseValue();
+                boolean pickXOnTrue = chain.contains(x);
+                if (pickXOnTrue) {
+                    m = x;
+                    x = sel.getTrueValue();
+                }
+                k = chain.contains(m) && !chain.contains(x) ? updateKind(sel.getCondition(), m, x, pickXOnTrue) : null;
+            } else if (v instanceof Phi join) {
+                k = guardedUpdateKind(join, chain);
+            } else {
+                return null;
+            }
+            if (k == null || (kind != null && kind != k))
+                return null;
+            kind = k;
+        }
+        return kind;
+    }
+
+    /**
+     * 恰有一个操作数来自闭包，结果只作 select 的条件，或是两边（经空的中转块）汇合到同一块的分支条件：
+     * 比较结果除了挑选更新值之外不影响别的计算。
+     */
+    private static boolean isUpdateCompare(Instruction cmp, Set<Value> chain) {
+        if (chain.contains(cmp.getOperand(0)) == chain.contains(cmp.getOperand(1)))
+            return false;
+        for (Use use : cmp.getUses()) {
+            Value user = use.getUser();
+            if (user instanceof SelectInst sel && sel.getCondition() == cmp && sel.getTrueValue() != cmp
+                    && sel.getFalseValue() != cmp)
+                continue;
+            if (!(user instanceof BranchInst br) || !br.isConditional()
+                    || forwardTarget(br.getThenBlock()) != forwardTarget(br.getElseBlock()))
+                return false;
+        }
+        return true;
+    }
+
+    /** 只有一条无条件跳转、只有一个前驱的中转块跳向的块；其它块返回自身 */
+    private static BasicBlock forwardTarget(BasicBlock bb) {
+        if (bb.getInstructions().getNumNode() == 1 && bb.getPredecessors().size() == 1
+                && bb.getTerminator().getVal() instanceof BranchInst br && !br.isConditional())
+            return br.getThenBlock();
+        return bb;
+    }
+
+    /**
+     * join = phi [m, from], [x, from']，两条边来自同一个以 cmp(m, x) 为条件的分支：
+     * 一边直接由分支块到达，另一边（或两边）经过只有一条跳转的空块。
+     */
+    private static RecurKind guardedUpdateKind(Phi join, Set<Value> chain) {
+        if (join.getNumIncoming() != 2)
+            return null;
+        int mIdx = chain.contains(join.getIncomingValue(0)) ? 0 : 1;
+        Value m = join.getIncomingValue(mIdx);
+        Value x = join.getIncomingValue(1 - mIdx);
+        if (!chain.contains(m) || chain.contains(x))
+            return null;
+        BasicBlock[] branchBlock = new BasicBlock[2];
+        Boolean[] onTrue = new Boolean[2];
+        for (int i = 0; i < 2; i++) {
+            BasicBlock from = join.getIncomingBlock(i);
+            BasicBlock to = join.getParent();
+            if (!(from.getTerminator().getVal() instanceof BranchInst br))
+                return null;
+            if (!br.isConditional()) {
+                // 空的中转块：唯一的前驱才是分支块
+                if (from.getInstructions().getNumNode() != 1 || from.getPredecessors().size() != 1)
+                    return null;
+                to = from;
+                from = from.getPredecessors().iterator().next();
+                if (!(from.getTerminator().getVal() instanceof BranchInst outer) || !outer.isConditional())
+                    return null;
+                br = outer;
+            }
+            if (br.getThenBlock() == br.getElseBlock())
+                return null;
+            branchBlock[i] = from;
+            onTrue[i] = br.getThenBlock() == to;
+        }
+        if (branchBlock[0] != branchBlock[1] || onTrue[0].equals(onTrue[1]))
+            return null;
+        BranchInst br = (BranchInst) branchBlock[0].getTerminator().getVal();
+        return updateKind(br.getCondition(), m, x, onTrue[1 - mIdx]);
+    }
+
+    /** cmp 比较的恰是 m 与 x；比较为真时取 x（pickXOnTrue）或取 m，据此判断是 min 还是 max */
+    private static RecurKind updateKind(Value cond, Value m, Value x, boolean pickXOnTrue) {
+        Opcode pred;
+        if (cond instanceof ICmpInst icmp)
+            pred = icmp.getOpcode();
+        else if (cond instanceof FCmpInst fcmp)
+            pred = fcmp.getOpcode();
+        else
+            return null;
+        Instruction cmp = (Instruction) cond;
+        boolean xGreater;
+        switch (pred) {
+            case ICMP_SGT, ICMP_SGE, FCMP_OGT, FCMP_OGE -> xGreater = true;
+            case ICMP_SLT, ICMP_SLE, FCMP_OLT, FCMP_OLE -> xGreater = false;
+            default -> {
+                return null;
+            }
+        }
+        if (cmp.getOperand(0) == m && cmp.getOperand(1) == x)
+            xGreater = !xGreater;
+        else if (cmp.getOperand(0) != x || cmp.getOperand(1) != m)
+            return null;
+        return xGreater == pickXOnTrue ? RecurKind.MAX : RecurKind.MIN;
+    }
+
+    /** 循环内定义的值在循环外只以归纳变量、归约的退出值出现在出口 phi 中 */
+    private static boolean hasOnlyExitValueUses(Plan p) {
+        Set<Value> allowed = new HashSet<>();
+        allowed.add(p.iv);
+        if (p.exiting != p.loop.getHeader())
+            allowed.add(p.ivNext);
+        for (Reduction r : p.reductions)
+            allowed.add(r.exitValue());
+        for (BasicBlock bb : p.loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                for (Use use : inst.getUses()) {
+                    if (!(use.getUser() instanceof Instruction user) || user.getParent() == null)
+                        return false;
+                    if (p.loop.contains(user.getParent()))
+                        continue;
+                    if (!(user instanceof Phi) || user.getParent() != p.exit || !allowed.contains(inst))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 收集循环内用到的、定义在循环外的值。步长为 1 的归纳变量与加法归约的初值由 lo 与 0 代替，
+     * 只被退出分支使用的比较不复制，它们的操作数都不需要传入。
+     */
+    private static boolean collectLiveIns(Plan p) {
+        Set<Phi> replacedStart = new HashSet<>();
+        if (p.step == 1)
+            replacedStart.add(p.iv);
+        for (Reduction r : p.reductions)
+            if (r.kind() == RecurKind.ADD)
+                replacedStart.add(r.phi());
+        Set<Value> liveIns = new LinkedHashSet<>();
+        for (BasicBlock bb : p.loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (inst == p.exitCmp)
+                    continue;
+                for (int i = 0; i < inst.getNumOperands(); i++) {
+                    if (inst instanceof Phi phi && replacedStart.contains(phi)
+                            && phi.getIncomingBlock(i / 2) == p.preheader)
+                        continue;
+                    Value op = inst.getOperand(i);
+                    if (op instanceof Argument
+                            || (op instanceof Instruction def && !p.loop.contains(def.getParent())))
+                        liveIns.add(op);
+                }
+            }
+        }
+        for (Value v : liveIns) {
+            Type type = v.getType();
+            if (type.isFloat())
+                p.floatArgs.add(v);
+            else if (type.isInteger() || type.isPointer())
+                p.intArgs.add(v);
+            else
+                return false;
+        }
+        return p.reductions.size() + p.intArgs.size() <= MAX_INT_ARGS && p.floatArgs.size() <= MAX_FLOAT_ARGS;
+    }
+
+    /** 一次迭代的指令条数，内层循环乘以其执行次数 */
+    private static long iterationCost(Loop loop, ScalarEvolution se) {
+        long cost = 0;
+        for (BasicBlock bb : loop.getBlocks()) {
+            if (se.getLoopInfo().getLoopFor(bb) == loop)
+                cost += bb.getInstructions().getNumNode();
+        }
+        for (Loop sub : loop.getSubLoops()) {
+            int btc = se.getConstantBackedgeTakenCount(sub);
+            long trip = btc >= 0 ? btc + 1L : UNKNOWN_TRIP_COUNT;
+            cost += trip * iterationCost(sub, se);
+        }
+        return Math.max(cost, 1);
+    }
+
+    // ==================== 变换 ====================
+
+    private void outline(Plan p, ScalarEvolution se) {
+        Function func = p.loop.getHeader().getParent();
+        NLVMModule module = func.getParent();
+        Function body = createBody(p, module.getUniqueGlobalName(func.getName() + ".par"));
+
+        // preheader：部分和数组置单位元，算出 hi，调用运行时
+        Instruction term = p.preheader.getTerminator().getVal();
+        IntegerType i32 = IntegerType.getI32();
+        List<AllocaInst> partials = new ArrayList<>();
+        for (Reduction r : p.reductions) {
+            AllocaInst slots = new AllocaInst(module, ArrayType.get(r.phi().getType(), SLOTS),
+                    func.getUniqueName("par.part"));
+            insertAlloca(func, slots);
+            partials.add(slots);
+            Value identity = r.kind() == RecurKind.ADD ? ConstantInt.constZero() : r.start();
+            for (int k = 0; k < SLOTS; k++)
+                p.preheader.addInstructionBefore(new StoreInst(slot(slots, k, term), identity), term);
+        }
+        // 步长为 1 时直接按归纳变量的取值区间分块，否则按迭代序号 [0, count) 分块
+        SCEVExpander expander = new SCEVExpander(se);
+        Value ivEnd = expander.expand(p.ivEnd, term);
+        Value lo = p.step == 1 ? p.start : ConstantInt.constZero();
+        Value hi = p.step == 1 ? ivEnd : expander.expand(p.count, term);
+        long grain = Math.max(1, (MIN_WORK + p.cost - 1) / p.cost);
+        List<Value> args = new ArrayList<>(List.of(body, lo, hi, new ConstantInt(i32, (int) grain)));
+        for (AllocaInst slots : partials)
+            args.add(slot(slots, 0, term));
+        args.addAll(p.intArgs);
+        args.addAll(p.floatArgs);
+        Function runtime = module.getOrDeclareLibFunc(PARALLEL_FOR);
+        p.preheader.addInstructionBefore(new CallInst(runtime, args, ""), term);
+
+        // 合并部分和，得到出口处各值
+        Map<Value, Value> exitValues = new HashMap<>();
+        for (int j = 0; j < p.reductions.size(); j++) {
+            Reduction r = p.reductions.get(j);
+            Value acc = r.start();
+            for (int k = 0; k < SLOTS; k++) {
+                LoadInst part = new LoadInst(slot(partials.get(j), k, term), "par.ld");
+                p.preheader.addInstructionBefore(part, term);
+                acc = combine(r, acc, part, p.preheader, term);
+            }
+            exitValues.put(r.exitValue(), acc);
+        }
+        if (p.exiting == p.loop.getHeader()) {
+            exitValues.put(p.iv, ivEnd);
+        } else {
+            exitValues.put(p.ivNext, ivEnd);
+            if (p.iv.getUses().stream().anyMatch(u -> u.getUser() instanceof Phi phi && phi.getParent() == p.exit)) {
+                BinOperator last = new BinOperator("par.last", Opcode.SUB, i32, ivEnd, new ConstantInt(i32, p.step));
+                p.preheader.addInstructionBefore(last, term);
+                exitValues.put(p.iv, last);
+            }
+        }
+
+        bypassLoop(p);
+        for (INode<Instruction, BasicBlock> node : p.exit.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                Value mapped = exitValues.get(phi.getIncomingValue(i));
+                if (phi.getIncomingBlock(i) == p.preheader && mapped != null)
+                    phi.setIncomingValue(i, mapped);
+            }
+        }
+        deleteLoop(p);
+        log.debug("Parallelize: loop {} in {} -> {}", p.loop.getHeader().getName(), func.getName(), body.getName());
+    }
+
+    /**
+     * 生成循环体函数：entry → 循环的副本（归纳变量从 lo 开始，退出条件改为与 hi 比较）→ exit，
+     * exit 把各归约的部分和写到第 tid 项后返回。步长不为 1 时 lo、hi 是迭代序号，
+     * entry 先换算成 start + lo * step、start + hi * step。
+     */
+    private Function createBody(Plan p, String name) {
+        IntegerType i32 = IntegerType.getI32();
+        List<Type> params = new ArrayList<>(List.of(i32, i32, i32));
+        params.addAll(Collections.nCopies(MAX_INT_ARGS, IntegerType.getI64()));
+        params.addAll(Collections.nCopies(MAX_FLOAT_ARGS, FloatType.getFloat()));
+        Function body = NLVMModule.getModule().addFunction(name, FunctionType.get(VoidType.getVoid(), params));
+        List<Argument> formals = body.getArguments();
+        formals.get(0).setName("lo");
+        formals.get(1).setName("hi");
+        formals.get(2).setName("tid");
+
+        // long 槽位在入口块换回原类型
+        BasicBlock entry = body.appendBasicBlock("entry");
+        List<Value> partials = new ArrayList<>();
+        Map<Value, Value> valueMap = new HashMap<>();
+        int next = 3;
+        for (Reduction r : p.reductions)
+            partials.add(narrow(entry, formals.get(next++), PointerType.get(r.phi().getType())));
+        for (Value v : p.intArgs)
+            valueMap.put(v, narrow(entry, formals.get(next++), v.getType()));
+        next = 3 + MAX_INT_ARGS;
+        for (Value v : p.floatArgs)
+            valueMap.put(v, formals.get(next++));
+
+        Value lo = formals.get(0);
+        Value hi = formals.get(1);
+        if (p.step != 1) {
+            Value start = valueMap.getOrDefault(p.start, p.start);
+            lo = scaleIndex(entry, start, lo, p.step);
+            hi = scaleIndex(entry, start, hi, p.step);
+        }
+        Map<BasicBlock, BasicBlock> blockMap = cloneLoop(p, body, entry, lo, valueMap);
+        BasicBlock exit = blockMap.get(p.exit);
+
+        BasicBlock headerCopy = blockMap.get(p.loop.getHeader());
+        entry.addInstruction(new BranchInst(headerCopy));
+        entry.setSuccessor(headerCopy);
+
+        BasicBlock exitingCopy = blockMap.get(p.exiting);
+        BranchInst br = (BranchInst) exitingCopy.getTerminator().getVal();
+        Value ivAtExit = valueMap.get(p.exiting == p.loop.getHeader() ? p.iv : p.ivNext);
+        boolean continueOnTrue = br.getThenBlock() != exit;
+        ICmpInst cond = new ICmpInst(continueOnTrue ? Opcode.ICMP_SLT : Opcode.ICMP_SGE, "par.cond",
+                IntegerType.getI1(), ivAtExit, hi);
+        exitingCopy.addInstructionBefore(cond, br);
+        br.setOperand(0, cond);
+
+        for (int j = 0; j < p.reductions.size(); j++) {
+            GEPInst ptr = new GEPInst(partials.get(j), List.of(formals.get(2)), true, "par.slot");
+            exit.addInstruction(ptr);
+            exit.addInstruction(new StoreInst(ptr, valueMap.get(p.reductions.get(j).exitValue())));
+        }
+        exit.addInstruction(new ReturnInst(null));
+        return body;
+    }
+
+    /** long 槽位转回 type：指针 inttoptr，窄整数 trunc，追加在 bb 末尾 */
+    private static Value narrow(BasicBlock bb, Value slot, Type type) {
+        if (type.isI64())
+            return slot;
+        Opcode op = type.isPointer() ? Opcode.INTTOPTR : Opcode.TRUNC;
+        CastInst cast = new CastInst(op, slot, type, bb.getParent().getUniqueName("par.arg"));
+        bb.addInstruction(cast);
+        return cast;
+    }
+
+    /**
+     * 按运行时的定长原型改写 func 中的 _sysy_parallel_for 调用：整数 / 指针实参扩成 long，
+     * 浮点实参排在 long 槽位之后，空槽位补 0 / 0.0。放在流水线末尾，之前的分析都能看到指针实参。
+     */
+    private static void lowerCalls(Function func) {
+        List<CallInst> calls = new ArrayList<>();
+        for (INode<BasicBlock, Function> bbNode : func.getBlocks())
+            for (INode<Instruction, BasicBlock> node : bbNode.getVal().getInstructions())
+                if (node.getVal() instanceof CallInst call && call.getCalledFunction().getName().equals(PARALLEL_FOR)
+                        && call.getNumArgs() != call.getCalledFunction().getFunctionType().getParamTypes().size())
+                    calls.add(call);
+        IntegerType i64 = IntegerType.getI64();
+        for (CallInst call : calls) {
+            List<Value> args = new ArrayList<>(call.getArgs().subList(0, 4));
+            List<Value> floats = new ArrayList<>();
+            int ints = 0;
+            for (Value v : call.getArgs().subList(4, call.getNumArgs())) {
+                if (v.getType().isFloat()) {
+                    floats.add(v);
+                    continue;
+                }
+                ints++;
+                if (v.getType().isI64()) {
+                    args.add(v);
+                } else if (v instanceof ConstantInt c) {
+                    args.add(new ConstantInt(i64, c.getValue()));
+                } else {
+                    CastInst wide = new CastInst(v.getType().isPointer() ? Opcode.PTRTOINT : Opcode.SEXT, v, i64,
+                            func.getUniqueName("par.arg"));
+                    call.getParent().addInstructionBefore(wide, call);
+                    args.add(wide);
+                }
+            }
+            for (int k = ints; k < MAX_INT_ARGS; k++)
+                args.add(new ConstantInt(i64, 0));
+            args.addAll(floats);
+            for (int k = floats.size(); k < MAX_FLOAT_ARGS; k++)
+                args.add(new ConstantFloat(FloatType.getFloat(), 0.0f));
+            BasicBlock bb = call.getParent();
+            bb.addInstructionBefore(new CallInst(call.getCalledFunction(), args, ""), call);
+            bb.removeInstruction(call);
+        }
+    }
+
+    /** start + index * step，追加在 bb 末尾 */
+    private static Value scaleIndex(BasicBlock bb, Value start, Value index, int step) {
+        IntegerType i32 = IntegerType.getI32();
+        BinOperator mul = new BinOperator("par.mul", Opcode.MUL, i32, index, new ConstantInt(i32, step));
+        bb.addInstruction(mul);
+        BinOperator add = new BinOperator("par.idx", Opcode.ADD, i32, start, mul);
+        bb.addInstruction(add);
+        return add;
+    }
+
+    /**
+     * 按 header 出发的 DFS 先序把循环复制到 body（支配者先于被支配者），preheader 对应 entry，
+     * 出口块对应新建的 exit；phi 的 incoming 可能来自后复制的块，整体复制完再填。
+     */
+    private static Map<BasicBlock, BasicBlock> cloneLoop(Plan p, Function body, BasicBlock entry, Value lo,
+            Map<Value, Value> valueMap) {
+        List<BasicBlock> order = new ArrayList<>();
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        stack.push(p.loop.getHeader());
+        while (!stack.isEmpty()) {
+            BasicBlock bb = stack.pop();
+            if (!visited.add(bb))
+                continue;
+            order.add(bb);
+            for (BasicBlock succ : bb.getSuccessors())
+                if (p.loop.contains(succ) && !visited.contains(succ))
+                    stack.push(succ);
+        }
+        Map<BasicBlock, BasicBlock> blockMap = new HashMap<>();
+        for (BasicBlock bb : order)
+            blockMap.put(bb, body.appendBasicBlock("par.body"));
+        blockMap.put(p.preheader, entry);
+        blockMap.put(p.exit, body.appendBasicBlock("exit"));
+
+        List<Phi> phis = new ArrayList<>();
+        for (BasicBlock bb : order) {
+            BasicBlock copy = blockMap.get(bb);
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (inst == p.exitCmp)
+                    continue;
+                if (inst instanceof Phi phi) {
+                    Phi newPhi = new Phi(phi.getType(), body.getUniqueName("par.phi"));
+                    copy.insertPhi(newPhi);
+                    valueMap.put(phi, newPhi);
+                    phis.add(phi);
+                    continue;
+                }
+                Instruction newInst = inst.clone(valueMap, blockMap);
+                if (newInst.getName() != null && !newInst.getName().isEmpty())
+                    newInst.setName(body.getUniqueName("par.v"));
+                copy.addInstruction(newInst);
+                valueMap.put(inst, newInst);
+                if (newInst instanceof BranchInst br) {
+                    copy.setSuccessor(br.getThenBlock());
+                    if (br.isConditional())
+                        copy.setSuccessor(br.getElseBlock());
+                }
+            }
+        }
+        Map<Phi, Value> startOverride = new HashMap<>();
+        startOverride.put(p.iv, lo);
+        for (Reduction r : p.reductions)
+            if (r.kind() == RecurKind.ADD)
+                startOverride.put(r.phi(), ConstantInt.constZero());
+        for (Phi phi : phis) {
+            Phi newPhi = (Phi) valueMap.get(phi);
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                Value v = phi.getIncomingValue(i);
+                BasicBlock from = phi.getIncomingBlock(i);
+                if (from == p.preheader && startOverride.containsKey(phi))
+                    v = startOverride.get(phi);
+                newPhi.addIncoming(valueMap.getOrDefault(v, v), blockMap.get(from));
+            }
+        }
+        return blockMap;
+    }
+
+    private static GEPInst slot(AllocaInst slots, int k, Instruction insertBefore) {
+        GEPInst gep = new GEPInst(slots, List.of(ConstantInt.constZero(), new ConstantInt(IntegerType.getI32(), k)),
+                true, "par.slot");
+        insertBefore.getParent().addInstructionBefore(gep, insertBefore);
+        return gep;
+    }
+
+    /** 与 Builder.buildAlloca 相同：放在入口块已有的 alloca 之后 */
+    private static void insertAlloca(Function func, AllocaInst alloca) {
+        BasicBlock entry = func.getEntryBlock();
+        for (INode<Instruction, BasicBlock> node : entry.getInstructions()) {
+            if (!(node.getVal() instanceof AllocaInst)) {
+                entry.addInstructionBefore(alloca, node.getVal());
+                return;
+            }
+        }
+        entry.addInstruction(alloca);
+    }
+
+    private static Value combine(Reduction r, Value acc, Value part, BasicBlock bb, Instruction insertBefore) {
+        Type type = r.phi().getType();
+        if (r.kind() == RecurKind.ADD) {
+            BinOperator add = new BinOperator("par.sum", Opcode.ADD, type, acc, part);
+            bb.addInstructionBefore(add, insertBefore);
+            return add;
+        }
+        boolean min = r.kind() == RecurKind.MIN;
+        Instruction cmp = type.isFloat()
+                ? new FCmpInst(min ? Opcode.FCMP_OLT : Opcode.FCMP_OGT, "par.cmp", IntegerType.getI1(), acc, part)
+                : new ICmpInst(min ? Opcode.ICMP_SLT : Opcode.ICMP_SGT, "par.cmp", IntegerType.getI1(), acc, part);
+        bb.addInstructionBefore(cmp, insertBefore);
+        SelectInst sel = new SelectInst(cmp, acc, part, "par.sel");
+        bb.addInstructionBefore(sel, insertBefore);
+        return sel;
+    }
+
+    /** preheader 直接跳到出口，出口 phi 原先来自 exiting 的一项改为来自 preheader */
+    private static void bypassLoop(Plan p) {
+        BasicBlock header = p.loop.getHeader();
+        p.preheader.removeInstruction(p.preheader.getTerminator().getVal());
+        p.preheader.removeSuccessor(header);
+        p.exit.replacePredecessor(p.exiting, p.preheader);
+        p.preheader.addInstruction(new BranchInst(p.exit));
+        p.preheader.setSuccessor(p.exit);
+    }
+
+    private static void deleteLoop(Plan p) {
+        for (BasicBlock bb : new HashSet<>(p.loop.getBlocks())) {
+            for (BasicBlock succ : new HashSet<>(bb.getSuccessors()))
+                bb.removeSuccessor(succ);
+            for (BasicBlock pred : new HashSet<>(bb.getPredecessors()))
+                bb.removePredecessor(pred);
+            while (bb.getInstructions().getEntry() != null)
+                bb.removeInstruction(bb.getInstructions().getEntry().getVal());
+            bb._getINode().removeSelf();
+        }
+    }
+}
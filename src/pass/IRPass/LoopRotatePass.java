@@ -14,7 +14,9 @@ import pass.IRPass.analysis.Loop;
 import pass.IRPass.analysis.LoopInfo;
 import pass.IRPass.analysis.LoopInfoFullAnalysis;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -124,20 +126,39 @@ public class LoopRotatePass implements Pass.IRPass {
         // header 的 terminator 删除，并使 header 只保留 phi，然后无条件跳入旧 then（稳态入口）
         header.removeInstruction(headerTerm);
         // 清空 header 旧的 successors 集，避免与新的无条件跳转不一致
-        header.removeAllSuccessors();
+        List<DominanceAnalysisPass.Update> domUpdates = new ArrayList<>();
+        for (BasicBlock succ : new ArrayList<>(header.getSuccessors())) {
+            header.removeSuccessor(succ);
+            domUpdates.add(DominanceAnalysisPass.Update.delete(header, succ));
+        }
         BranchInst hdrBr = new BranchInst(oldThen);
         header.addInstruction(hdrBr);
         // 更新 CFG：preheader->header 改为 preheader->body；header->oldThen
-        preheader.removeSuccessor(header);
-        preheader.setSuccessor(body);
-        header.setSuccessor(oldThen);
-        body.setSuccessor(oldThen);
-        body.setSuccessor(oldElse);
+        removeEdge(preheader, header, domUpdates);
+        addEdge(preheader, body, domUpdates);
+        addEdge(header, oldThen, domUpdates);
+        addEdge(body, oldThen, domUpdates);
+        addEdge(body, oldElse, domUpdates);
+        DominanceAnalysisPass.updateCached(F, domUpdates);
         System.out
                 .println("[LoopRotate] rotated loop header=" + header.getName() + " preheader=" + preheader.getName());
         return true;
     }
 
+    private void removeEdge(BasicBlock from, BasicBlock to, List<DominanceAnalysisPass.Update> updates) {
+        if (from.getSuccessors().contains(to)) {
+            from.removeSuccessor(to);
+            updates.add(DominanceAnalysisPass.Update.delete(from, to));
+        }
+    }
+
+    private void addEdge(BasicBlock from, BasicBlock to, List<DominanceAnalysisPass.Update> updates) {
+        if (!from.getSuccessors().contains(to)) {
+            from.setSuccessor(to);
+            updates.add(DominanceAnalysisPass.Update.insert(from, to));
+        }
+    }
+
     private boolean containsPhi(BasicBlock bb) {
         if (bb == null)
             return false;
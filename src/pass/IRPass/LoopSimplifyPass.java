@@ -45,8 +45,7 @@ public class LoopSimplifyPass implements Pass.IRPass {
     }
 
     private void runOnFunction(Function f) {
-        DominanceAnalysisPass dom = new DominanceAnalysisPass(f);
-        dom.run();
+        DominanceAnalysisPass dom = DominanceAnalysisPass.getOrCompute(f);
         LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
         loopAnalysis.runOnFunction(f);
         LoopInfo loopInfo = loopAnalysis.getLoopInfo(f);
@@ -4,9 +4,8 @@ import ir.Builder;
 import ir.NLVMModule;
 import ir.value.BasicBlock;
 import ir.value.Function;
+import ir.value.Opcode;
 import ir.value.Value;
-import ir.value.constants.ConstantInt;
-// import ir.value.instructions.GEPInst;
 import ir.value.instructions.BinOperator;
 import ir.value.instructions.Instruction;
 import ir.value.instructions.Phi;
@@ -15,6 +14,9 @@ import pass.Pass;
 import pass.IRPass.analysis.Loop;
 import pass.IRPass.analysis.LoopInfo;
 import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.SCEV;
+import pass.IRPass.analysis.SCEVExpander;
+import pass.IRPass.analysis.ScalarEvolution;
 import util.LoggingManager;
 import util.logging.Logger;
 import util.IList.INode;
@@ -22,9 +24,11 @@ import util.IList.INode;
 import java.util.*;
 
 /**
- * Loop Strength Reduction（极简版）：
- * - 把循环内形如 mul i, C 的表达式替换为在 header 处引入迭代的“加法累加”phi
- * - 仅处理 i 为循环迭代变量（header 中的 phi），且 C 为常量
+ * Loop Strength Reduction（基于 SCEV）：
+ * - 循环内的 mul 若在 {@link ScalarEvolution} 中是本循环上的仿射递推 {start,+,step}，
+ * 就在 header 引入累加 phi x = [start, preheader], [x + step, latch] 替换它
+ * - start/step 在 preheader 展开，可以是任意循环不变量（不再限于 i*C、初值 0）
+ * - SCEV 相同的多条 mul 共用一个 phi
  */
 public class LoopStrengthReductionPass implements Pass.IRPass {
     private static final Logger log = LoggingManager.getLogger(LoopStrengthReductionPass.class);
@@ -49,168 +53,72 @@ public class LoopStrengthReductionPass implements Pass.IRPass {
         LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
         if (loopInfo == null)
             return;
+        ScalarEvolution se = new ScalarEvolution(func, loopInfo);
         for (Loop top : loopInfo.getTopLevelLoops())
-            applyRec(top);
+            applyRec(top, se);
     }
 
-    private void applyRec(Loop loop) {
+    private void applyRec(Loop loop, ScalarEvolution se) {
         for (Loop sub : loop.getSubLoops())
-            applyRec(sub);
-        applyOnLoop(loop);
+            applyRec(sub, se);
+        applyOnLoop(loop, se);
     }
 
-    private void applyOnLoop(Loop loop) {
+    private void applyOnLoop(Loop loop, ScalarEvolution se) {
         BasicBlock header = loop.getHeader();
-        List<Phi> headerPhis = collectHeaderPhis(header);
-        if (headerPhis.isEmpty())
+        BasicBlock preheader = loop.getUniquePreheader();
+        BasicBlock latch = loop.getUniqueLatch();
+        if (preheader == null || latch == null || preheader.getTerminator() == null
+                || latch.getTerminator() == null)
             return;
-        Phi indVar = headerPhis.get(0); // 保守选择第一个作为迭代变量候选
 
-        // 识别乘法 i*C 的场景 - 只处理真正的迭代变量乘法
-        List<Instruction> candidates = new ArrayList<>();
+        // 识别本循环上的仿射 mul：{start,+,step}<loop>，且 start/step 能在 preheader 展开
+        SCEVExpander expander = new SCEVExpander(se);
+        Map<Instruction, SCEV.AddRec> candidates = new LinkedHashMap<>();
         for (BasicBlock bb : loop.getBlocks()) {
             for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
                 Instruction inst = node.getVal();
-                switch (inst.opCode()) {
-                    case MUL -> {
-                        Value a = inst.getOperand(0), b = inst.getOperand(1);
-                        // 严格检查：只有当乘法的一个操作数是循环迭代变量（header phi）时才进行 LSR
-                        // 并且这个 phi 必须是简单的迭代模式（如 i = i + 1）
-                        if ((a == indVar && b instanceof ConstantInt && isSimpleIterationPhi(indVar, loop)) ||
-                                (b == indVar && a instanceof ConstantInt && isSimpleIterationPhi(indVar, loop))) {
-                            candidates.add(inst);
-                        }
-                    }
-                    default -> {
-                    }
+                if (inst.opCode() != Opcode.MUL || !ScalarEvolution.isSCEVable(inst))
+                    continue;
+                if (se.getSCEV(inst) instanceof SCEV.AddRec rec && rec.getLoop() == loop
+                        && expander.isExpandable(rec.getStart()) && expander.isExpandable(rec.getStep())) {
+                    candidates.put(inst, rec);
                 }
             }
         }
         if (candidates.isEmpty())
             return;
 
-        // 将 i*C 用“累加”替换：在 header 新增一个 phi x，x_pre=0，x_latch=x+stepC
+        Instruction preTerm = preheader.getTerminator().getVal();
+        Instruction latchTerm = latch.getTerminator().getVal();
         Builder builder = new Builder(NLVMModule.getModule());
         builder.positionAtEnd(header);
-        for (Instruction mul : candidates) {
-            ConstantInt c = (ConstantInt) (mul.getOperand(0) == indVar ? mul.getOperand(1) : mul.getOperand(0));
-            // 新建一个 phi: x = phi [0, preheader], [x+stepC, latch]
-            int currentMulIndex = globalMulIndex++; // 使用全局唯一索引
-            Phi x = builder.buildPhi(mul.getType(), "lsr.mul." + currentMulIndex);
-            // 需要确定 preheader 与 latch
-            int preIdx = -1, latIdx = -1;
-            for (int i = 0; i < indVar.getNumIncoming(); i++) {
-                if (!loop.getBlocks().contains(indVar.getIncomingBlock(i)))
-                    preIdx = i;
-                else
-                    latIdx = i;
+        Map<SCEV, Phi> replacements = new HashMap<>();
+        for (Map.Entry<Instruction, SCEV.AddRec> e : candidates.entrySet()) {
+            Instruction mul = e.getKey();
+            SCEV.AddRec rec = e.getValue();
+            Phi x = replacements.get(rec);
+            if (x == null) {
+                int currentMulIndex = globalMulIndex++; // 使用全局唯一索引
+                Value start = expander.expand(rec.getStart(), preTerm);
+                Value step = expander.expand(rec.getStep(), preTerm);
+                if (start == null || step == null)
+                    continue;
+                // x = phi [start, preheader], [x + step, latch]
+                x = builder.buildPhi(mul.getType(), "lsr.mul." + currentMulIndex);
+                BinOperator xNext = new BinOperator("lsr.add." + currentMulIndex,
+                        Opcode.ADD, x.getType(), x, step);
+                latch.addInstructionBefore(xNext, latchTerm);
+                x.addIncoming(start, preheader);
+                x.addIncoming(xNext, latch);
+                replacements.put(rec, x);
+                log.debug("LSR: {} = {} in loop {}", mul.getName(), rec, header.getName());
             }
-            if (preIdx == -1 || latIdx == -1) {
-                continue;
-            }
-            x.addIncoming(ConstantInt.constZero(), indVar.getIncomingBlock(preIdx));
-            // x+stepC - 插入到 latch 块的 terminator 之前
-            BasicBlock latchBlock = indVar.getIncomingBlock(latIdx);
-            Instruction terminator = latchBlock.getTerminator() != null ? latchBlock.getTerminator().getVal() : null;
-
-            // 手动创建指令并插入到正确位置
-            Value stepValue = getStepValue(indVar, loop);
-            BinOperator stepC = new BinOperator("lsr.stepC." + currentMulIndex,
-                    ir.value.Opcode.MUL, stepValue.getType(), stepValue, c);
-
-            // 先插入 stepC 指令
-            if (terminator != null) {
-                latchBlock.addInstructionBefore(stepC, terminator);
-            } else {
-                latchBlock.addInstruction(stepC);
-            }
-
-            // 然后创建并插入 xNext 指令（现在 stepC 已经在 IR 中了）
-            BinOperator xNext = new BinOperator("lsr.add." + currentMulIndex,
-                    ir.value.Opcode.ADD, x.getType(), x, stepC);
-
-            if (terminator != null) {
-                latchBlock.addInstructionBefore(xNext, terminator);
-            } else {
-                latchBlock.addInstruction(xNext);
-            }
-
-            x.addIncoming(xNext, latchBlock);
-            // 用 x 替换 i*C
+            // 用 x 替换 mul
             mul.replaceAllUsesWith(x);
             mul.getParent().removeInstruction(mul);
         }
-    }
-
-    private Value getStepValue(Phi indVar, Loop loop) {
-        // 取 latch incoming 中 indVar 的增量：假定形如 add indVar, C
-        for (int i = 0; i < indVar.getNumIncoming(); i++) {
-            if (loop.getBlocks().contains(indVar.getIncomingBlock(i))) {
-                Value v = indVar.getIncomingValue(i);
-                if (v instanceof Instruction inc) {
-                    if (inc.opCode() == ir.value.Opcode.ADD || inc.opCode() == ir.value.Opcode.SUB) {
-                        return inc.getOperand(0) == indVar ? inc.getOperand(1) : inc.getOperand(0);
-                    }
-                }
-            }
-        }
-        return ConstantInt.constZero();
-    }
-
-    /**
-     * 检查一个 phi 是否是简单的迭代变量（如 i = i + step）
-     * 简单迭代变量的特征：
-     * 1. 有两个 incoming 值
-     * 2. 一个来自 preheader（初始值）
-     * 3. 一个来自 latch（更新值），且更新值是 phi + 常量
-     */
-    private boolean isSimpleIterationPhi(Phi phi, Loop loop) {
-        if (phi.getNumIncoming() != 2) {
-            return false;
-        }
-
-        // 找到 preheader 和 latch 的 incoming
-        int preheaderIdx = -1, latchIdx = -1;
-        for (int i = 0; i < phi.getNumIncoming(); i++) {
-            BasicBlock incomingBlock = phi.getIncomingBlock(i);
-            if (!loop.getBlocks().contains(incomingBlock)) {
-                preheaderIdx = i;
-            } else {
-                latchIdx = i;
-            }
-        }
-
-        if (preheaderIdx == -1 || latchIdx == -1) {
-            return false;
-        }
-
-        // 检查 latch 的 incoming 值是否是 phi + 常量的形式
-        Value latchValue = phi.getIncomingValue(latchIdx);
-        if (!(latchValue instanceof BinOperator)) {
-            return false;
-        }
-
-        BinOperator binOp = (BinOperator) latchValue;
-        if (binOp.opCode() != ir.value.Opcode.ADD) {
-            return false;
-        }
-
-        // 检查是否是 phi + 常量 或 常量 + phi
-        Value op0 = binOp.getOperand(0);
-        Value op1 = binOp.getOperand(1);
-
-        return (op0 == phi && op1 instanceof ConstantInt) ||
-                (op1 == phi && op0 instanceof ConstantInt);
-    }
-
-    private List<Phi> collectHeaderPhis(BasicBlock header) {
-        List<Phi> phis = new ArrayList<>();
-        for (INode<Instruction, BasicBlock> node : header.getInstructions()) {
-            if (node.getVal() instanceof Phi p)
-                phis.add(p);
-            else
-                break;
-        }
-        return phis;
+        // 新增的 phi 改变了循环内的值，外层循环需重新分析
+        se.forgetAll();
     }
 }
@@ -0,0 +1,368 @@
+package pass.IRPass;
+
+import ir.Builder;
+import ir.NLVMModule;
+import ir.type.IntegerType;
+import ir.type.PointerType;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Use;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.Phi;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.LoopInterchangePass.Control;
+import pass.IRPass.analysis.AliasAnalysis;
+import pass.IRPass.analysis.DependenceAnalysis;
+import pass.IRPass.analysis.DependenceAnalysis.Dependence;
+import pass.IRPass.analysis.DominanceAnalysisPass;
+import pass.IRPass.analysis.Loop;
+import pass.IRPass.analysis.LoopInfo;
+import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.ScalarEvolution;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.*;
+
+/**
+ * 循环分块（cache blocking）：对 2~3 层完美嵌套的矩形循环带做 strip-mining，
+ * 把各层的块循环提到整个循环带之外，使一个块的数据在被反复使用期间留在缓存中。
+ * <p>
+ * <pre>
+ * for i in [0, N)            for jj in [0, M) step T
+ *   for j in [0, M)     =&gt;     for i in [0, N)
+ *     body                       for j in [jj, min(jj + T, M))
+ *                                  body
+ * </pre>
+ * 块大小由缓存模型给出：最内两层的块（T × T，每个数组一块）占 L1 的一半，
+ * 三层时最外层的块与内层块组成的面板占 L2 的一半。常量范围不超过块大小的层不分块。
+ * <p>
+ * 形态要求与 {@link LoopInterchangePass} 相同（header 判断退出、步长 1 的 slt 比较、
+ * 初值与边界在循环带外定义），合法性要求循环带完全可置换：依赖方向向量在带内
+ * 不能同时出现 '&lt;' 与 '&gt;'。min 上界用 select 表示，交给后续 InstCombine / GVN 清理。
+ */
+public class LoopTilingPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(LoopTilingPass.class);
+
+    /** 目标缓存容量（字节） */
+    private static final long DEFAULT_L1_SIZE = 64 * 1024;
+    private static final long DEFAULT_L2_SIZE = 1024 * 1024;
+    private static final long CACHE_LINE_SIZE = 64;
+    private static final int MIN_TILE = 8;
+    private static final int MAX_TILE = 1024;
+    private static final int MAX_BAND_DEPTH = 3;
+
+    private final long l1Size;
+    private final long l2Size;
+
+    public LoopTilingPass() {
+        this(DEFAULT_L1_SIZE, DEFAULT_L2_SIZE);
+    }
+
+    public LoopTilingPass(long l1Size, long l2Size) {
+        this.l1Size = l1Size;
+        this.l2Size = l2Size;
+    }
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.LoopTiling;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule m = NLVMModule.getModule();
+        for (Function f : m.getFunctions())
+            if (!f.isDeclaration())
+                runOnFunction(f);
+    }
+
+    private void runOnFunction(Function func) {
+        LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+        loopAnalysis.runOnFunction(func);
+        LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
+        if (loopInfo == null)
+            return;
+        // 从每个最内层循环向外取单子循环链作为循环带；各循环带互不相交
+        List<List<Loop>> bands = new ArrayList<>();
+        for (Loop loop : loopInfo.getAllLoops()) {
+            if (!loop.getSubLoops().isEmpty())
+                continue;
+            LinkedList<Loop> band = new LinkedList<>();
+            band.add(loop);
+            Loop parent = loop.getParentLoop();
+            while (parent != null && parent.getSubLoops().size() == 1 && band.size() < MAX_BAND_DEPTH) {
+                band.addFirst(parent);
+                parent = parent.getParentLoop();
+            }
+            if (band.size() >= 2)
+                bands.add(band);
+        }
+
+        ScalarEvolution se = new ScalarEvolution(func, loopInfo);
+        DependenceAnalysis da = new DependenceAnalysis(se);
+        for (List<Loop> band : bands) {
+            if (tryTile(band, se, da)) {
+                se.forgetAll();
+                da = new DependenceAnalysis(se);
+            }
+        }
+    }
+
+    private boolean tryTile(List<Loop> band, ScalarEvolution se, DependenceAnalysis da) {
+        int depth = band.size();
+        Loop outermost = band.get(0), innermost = band.get(depth - 1);
+        List<Control> controls = new ArrayList<>();
+        for (Loop loop : band) {
+            Control c = LoopInterchangePass.matchControl(loop);
+            if (c == null || !isUnitStepLessThan(c))
+                return false;
+            if (!LoopInterchangePass.definedOutside(c.init(), outermost)
+                    || !LoopInterchangePass.definedOutside(LoopInterchangePass.boundOf(c), outermost))
+                return false;
+            controls.add(c);
+        }
+        // 外层循环中只能有纯计算：分块后它们会按块重复执行
+        for (int d = 0; d + 1 < depth; d++) {
+            if (!LoopInterchangePass.isPerfectNest(controls.get(d), controls.get(d + 1), new ArrayList<>()))
+                return false;
+        }
+        // 归纳变量的最终值会变化，不能在本层循环外使用
+        for (Control c : controls) {
+            for (Use use : c.iv().getUses()) {
+                if (!(use.getUser() instanceof Instruction user) || user.getParent() == null
+                        || !c.loop().contains(user.getParent()))
+                    return false;
+            }
+        }
+        BasicBlock exit = controls.get(0).br().getElseBlock();
+        if (exit.getFirstInstruction() instanceof Phi)
+            return false;
+
+        if (hasTilingPreventingDependence(outermost, depth, da))
+            return false;
+
+        // ---- 缓存模型 ----
+        List<Value> pointers = new ArrayList<>();
+        for (BasicBlock bb : innermost.getBlocks()) {
+            for (var node : bb.getInstructions()) {
+                Value ptr = LoopInterchangePass.pointerOf(node.getVal());
+                if (ptr != null)
+                    pointers.add(ptr);
+            }
+        }
+        if (pointers.isEmpty())
+            return false;
+        Set<Value> arrays = new HashSet<>();
+        long elemSize = 1;
+        for (Value ptr : pointers) {
+            arrays.add(AliasAnalysis.getUnderlyingObject(ptr));
+            if (ptr.getType() instanceof PointerType pt)
+                elemSize = Math.max(elemSize, AliasAnalysis.sizeOf(pt.getPointeeType()));
+        }
+        long bytesPerPoint = arrays.size() * elemSize;
+
+        long[] extents = new long[depth];
+        for (int d = 0; d < depth; d++) {
+            int btc = se.getConstantBackedgeTakenCount(band.get(d));
+            extents[d] = btc < 0 ? Long.MAX_VALUE : btc + 1L;
+        }
+        if (!hasReuseBeyondL1(band, pointers, extents, bytesPerPoint, se))
+            return false;
+
+        int inner = tileSize(l1Size / 2, bytesPerPoint, 1);
+        int[] tiles = new int[depth];
+        for (int d = 0; d < depth; d++)
+            tiles[d] = d == 0 && depth == MAX_BAND_DEPTH ? tileSize(l2Size / 2, bytesPerPoint * inner, 0) : inner;
+        boolean tiled = false;
+        for (int d = 0; d < depth; d++) {
+            if (tiles[d] == 0 || extents[d] <= tiles[d])
+                tiles[d] = 0;
+            else if (d > 0)
+                tiled = true;
+        }
+        // 只有最外层分块时只是 strip-mining，没有收益
+        if (!tiled)
+            return false;
+
+        tile(controls, tiles);
+        log.debug("tiled loop band at {} with tiles {}", outermost.getHeader().getName(), Arrays.toString(tiles));
+        return true;
+    }
+
+    /** iv 从 init 起步长 1，条件为 iv &lt; bound */
+    private static boolean isUnitStepLessThan(Control c) {
+        if (!(c.inc().getOperand(c.stepIndex()) instanceof ConstantInt step) || step.getValue() != 1)
+            return false;
+        Opcode op = c.cmp().getOpcode();
+        return (op == Opcode.ICMP_SLT && c.cmp().getOperand(0) == c.iv())
+                || (op == Opcode.ICMP_SGT && c.cmp().getOperand(1) == c.iv());
+    }
+
+    /**
+     * 循环带完全可置换：不被更外层严格携带的依赖，其方向向量在带内不能一层含 '&lt;'、
+     * 另一层含 '&gt;'（单层的 '*' 仍可置换）。
+     */
+    private static boolean hasTilingPreventingDependence(Loop outermost, int depth, DependenceAnalysis da) {
+        for (Dependence dep : da.getDependences(outermost)) {
+            if (dep.isConfused())
+                return true;
+            int level = dep.getCommonLoops().indexOf(outermost);
+            if (level < 0 || level + depth > dep.getLevels())
+                return true;
+            for (int[] v : dep.getDirectionVectors()) {
+                boolean carriedOutside = false;
+                for (int k = 0; k < level; k++) {
+                    if (v[k] == DependenceAnalysis.LT || v[k] == DependenceAnalysis.GT) {
+                        carriedOutside = true;
+                        break;
+                    }
+                }
+                if (carriedOutside)
+                    continue;
+                for (int p = level; p < level + depth; p++) {
+                    if ((v[p] & DependenceAnalysis.LT) == 0)
+                        continue;
+                    for (int q = level; q < level + depth; q++) {
+                        if (q != p && (v[q] & DependenceAnalysis.GT) != 0)
+                            return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 存在跨某个非最内层循环的复用，且两次复用之间内层循环触及的数据超过 L1 时分块才有收益。
+     * 复用指时间复用（访存地址与该层无关），或空间复用（该层步长小于一个缓存行，
+     * 而最内层步长跨行，如转置中按列读取的数组）。范围未知的层按足够大处理。
+     */
+    private boolean hasReuseBeyondL1(List<Loop> band, List<Value> pointers, long[] extents, long bytesPerPoint,
+            ScalarEvolution se) {
+        for (int d = 0; d + 1 < band.size(); d++) {
+            long footprint = bytesPerPoint;
+            for (int e = d + 1; e < band.size() && footprint <= l1Size; e++)
+                footprint = extents[e] == Long.MAX_VALUE ? Long.MAX_VALUE : footprint * extents[e];
+            if (footprint <= l1Size)
+                continue;
+            for (Value ptr : pointers) {
+                Long stride = LoopInterchangePass.byteStride(ptr, band.get(d), se);
+                if (stride == null)
+                    continue;
+                if (stride == 0)
+                    return true;
+                Long innerStride = LoopInterchangePass.byteStride(ptr, band.get(band.size() - 1), se);
+                if (Math.abs(stride) < CACHE_LINE_SIZE
+                        && (innerStride == null || Math.abs(innerStride) >= CACHE_LINE_SIZE))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 满足 perTile × T^(power+1) ≤ budget 的最大 2 的幂 T，即 power = 1 时为方块边长，
+     * power = 0 时为给定另一边后的面板宽度；小于 MIN_TILE 时返回 0 表示不分块。
+     */
+    private static int tileSize(long budget, long perTile, int power) {
+        int t = MAX_TILE;
+        while (t >= MIN_TILE) {
+            long bytes = perTile * t;
+            for (int k = 0; k < power; k++)
+                bytes *= t;
+            if (bytes <= budget)
+                return t;
+            t >>= 1;
+        }
+        return 0;
+    }
+
+    // ==================== 变换 ====================
+
+    /**
+     * preheader → tile.hdr(d0) → … → tile.hdr(dk) → tile.ub → 原循环带 → tile.lat(dk) → … → tile.lat(d0)，
+     * tile.hdr(d0) 的退出边接原出口。tile.ub 计算各分块层的上界 min(tt + T, bound)。
+     */
+    private void tile(List<Control> controls, int[] tiles) {
+        Control outer = controls.get(0);
+        BasicBlock preheader = outer.preheader();
+        BasicBlock header = outer.loop().getHeader();
+        BasicBlock exit = outer.br().getElseBlock();
+        Function function = header.getParent();
+        var cfgSnapshot = DominanceAnalysisPass.snapshot(function, List.of(preheader, header));
+        Builder builder = new Builder(function.getParent());
+
+        List<Integer> levels = new ArrayList<>();
+        for (int d = 0; d < tiles.length; d++)
+            if (tiles[d] > 0)
+                levels.add(d);
+        List<BasicBlock> headers = new ArrayList<>(), latches = new ArrayList<>();
+        for (int k = 0; k < levels.size(); k++) {
+            headers.add(function.appendBasicBlock("tile.hdr"));
+            latches.add(function.appendBasicBlock("tile.lat"));
+        }
+        BasicBlock ubBlock = function.appendBasicBlock("tile.ub");
+        List<BasicBlock> newBlocks = new ArrayList<>(headers);
+        newBlocks.addAll(latches);
+        newBlocks.add(ubBlock);
+
+        // preheader 改为进入最外层块循环；原循环带的出口改为最内层块循环的 latch
+        Instruction preTerm = preheader.getTerminator().getVal();
+        for (int i = 0; i < preTerm.getNumOperands(); i++) {
+            if (preTerm.getOperand(i) == header)
+                preTerm.setOperand(i, headers.get(0));
+        }
+        preheader.setSuccessor(headers.get(0));
+        header.replacePredecessor(preheader, ubBlock);
+        exit.replacePredecessor(header, headers.get(0));
+        outer.br().setOperand(2, latches.get(latches.size() - 1));
+        header.setSuccessor(latches.get(latches.size() - 1));
+
+        Map<Integer, Phi> tileIvs = new HashMap<>();
+        for (int k = 0; k < levels.size(); k++) {
+            int d = levels.get(k);
+            Control c = controls.get(d);
+            ConstantInt size = new ConstantInt(IntegerType.getI32(), tiles[d]);
+            BasicBlock hdr = headers.get(k), lat = latches.get(k);
+            BasicBlock enter = k == 0 ? preheader : headers.get(k - 1);
+            BasicBlock body = k + 1 < levels.size() ? headers.get(k + 1) : ubBlock;
+            BasicBlock leave = k == 0 ? exit : latches.get(k - 1);
+
+            Phi tt = new Phi(IntegerType.getI32(), function.getUniqueName("tile.iv"));
+            hdr.insertPhi(tt);
+            tileIvs.put(d, tt);
+            builder.positionAtEnd(hdr);
+            Value cond = builder.buildICmpSLT(tt, LoopInterchangePass.boundOf(c), "tile.cmp");
+            builder.buildCondBr(cond, body, leave);
+            builder.positionAtEnd(lat);
+            Value next = builder.buildAdd(tt, size, "tile.iv");
+            builder.buildBr(hdr);
+            tt.addIncoming(c.init(), enter);
+            tt.addIncoming(next, lat);
+        }
+
+        // 块内循环：从块起点开始，到 min(tt + T, bound) 结束
+        builder.positionAtEnd(ubBlock);
+        for (int d : levels) {
+            Control c = controls.get(d);
+            Phi tt = tileIvs.get(d);
+            Value bound = LoopInterchangePass.boundOf(c);
+            Value hi = builder.buildAdd(tt, new ConstantInt(IntegerType.getI32(), tiles[d]), "tile.hi");
+            Value lt = builder.buildICmpSLT(hi, bound, "tile.lt");
+            Value ub = builder.buildSelect(lt, hi, bound, "tile.ub");
+            for (int k = 0; k < c.iv().getNumIncoming(); k++) {
+                if (!c.loop().contains(c.iv().getIncomingBlock(k)))
+                    c.iv().setIncomingValue(k, tt);
+            }
+            c.cmp().setOperand(c.cmp().getOperand(0) == c.iv() ? 1 : 0, ub);
+        }
+        builder.buildBr(header);
+
+        DominanceAnalysisPass.updateCached(cfgSnapshot, newBlocks);
+    }
+}
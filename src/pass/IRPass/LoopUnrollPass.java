@@ -1,7 +1,9 @@
 package pass.IRPass;
 
+import driver.Config;
 import ir.Builder;
 import ir.NLVMModule;
+import ir.type.IntegerType;
 import ir.value.BasicBlock;
 import ir.value.Function;
 import ir.value.Opcode;
@@ -17,11 +19,32 @@ import util.IList.INode;
 
 import java.util.*;
 
+/**
+ * 循环展开。
+ * <ul>
+ * <li>完全展开（LoopUnrollPass）：常量次数不超过 {@link #MAX_UNROLL} 的循环展开成直线代码</li>
+ * <li>部分 / 运行时展开（LoopPartialUnroll）：其余的最内层循环按代价选出展开因子 k，
+ * 在原循环前插入每次迭代执行 k 份循环体的展开循环，原循环作为余数循环处理剩下的不足 k 次迭代；
+ * 常量次数与运行时才知道的次数（n = getint()）走同一套变换</li>
+ * </ul>
+ * 循环内允许出现纯函数调用；会被向量化的循环不做部分展开，留给 LoopVectorizePass。
+ */
 public class LoopUnrollPass implements Pass.IRPass {
     private static final int MAX_UNROLL = 150;
     private static final int MAX_LOOP_SIZE = 5000;
+    // 估计执行频率很低的循环，展开后的代码量上限
+    private static final int COLD_MAX_LOOP_SIZE = 500;
+    // 部分展开后循环体的指令数上限与最大展开因子
+    private static final int PARTIAL_UNROLL_SIZE = 128;
+    private static final int MAX_PARTIAL_FACTOR = 8;
+
+    // false：常量次数的完全展开；true：部分 / 运行时展开
+    private final boolean partial;
 
     private LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+    private ScalarEvolution scev;
+    // 展开前计算的块频率；展开只会新增克隆块，已有块的估计对后续的冷热判断仍然够用
+    private BlockFrequencyAnalysis blockFrequency;
     private boolean isUnrolled = false;
 
     private BasicBlock header;
@@ -30,10 +53,20 @@ public class LoopUnrollPass implements Pass.IRPass {
     private BasicBlock latch;
 
     private Map<Value, Value> cloneMap = new HashMap<>();
+    // 本次展开新建的块，用于支配树的增量更新
+    private final List<BasicBlock> clonedBlocks = new ArrayList<>();
+
+    public LoopUnrollPass() {
+        this(false);
+    }
+
+    public LoopUnrollPass(boolean partial) {
+        this.partial = partial;
+    }
 
     @Override
     public IRPassType getType() {
-        return IRPassType.LoopUnrollPass;
+        return partial ? IRPassType.LoopPartialUnroll : IRPassType.LoopUnrollPass;
     }
 
     @Override
@@ -62,11 +95,15 @@ public class LoopUnrollPass implements Pass.IRPass {
 
         if (loopInfo == null)
             return;
+        scev = new ScalarEvolution(function, loopInfo);
+        blockFrequency = new BlockFrequencyAnalysis(new BranchProbabilityAnalysis(function, loopInfo, scev));
 
         // System.out.println(
         // "[LoopUnrollPass] total loops (dfs order) = " +
         // computeDfsLoops(loopInfo.getTopLevelLoops()).size());
         List<Loop> allLoops = computeDfsLoops(loopInfo.getTopLevelLoops());
+        // 不做向量化时（输出 LLVM IR），原本留给向量化的循环也按部分展开处理
+        LoopVectorizePass vectorizer = partial && !Config.getInstance().emitLLVM ? new LoopVectorizePass() : null;
 
         for (Loop loop : allLoops) {
             // 跳过包含 Alloca 的循环，避免栈分配在循环内导致崩溃
@@ -75,7 +112,10 @@ public class LoopUnrollPass implements Pass.IRPass {
                    //     + " due to Alloca/Call inside loop");
                 continue;
             }
-            constLoopUnroll(loop);
+            if (partial)
+                partialLoopUnroll(loop, vectorizer);
+            else
+                constLoopUnroll(loop);
         }
     }
 
@@ -98,39 +138,10 @@ public class LoopUnrollPass implements Pass.IRPass {
             return;
         }
 
-        InductionVarInfo inductionInfo = analyzeInductionVariable(loop);
-        if (inductionInfo == null) {
-            // System.out.println("[LoopUnrollPass] Failed to analyze induction variable");
-            return;
-        }
-
-        if (!(inductionInfo.init instanceof ConstantInt) ||
-                !(inductionInfo.step instanceof ConstantInt) ||
-                !(inductionInfo.end instanceof ConstantInt)) {
-            // System.out.println("[LoopUnrollPass] Not all induction variable values are
-            // constants");
-            return;
-        }
-
-        int init = ((ConstantInt) inductionInfo.init).getValue();
-        int step = ((ConstantInt) inductionInfo.step).getValue();
-        int end = ((ConstantInt) inductionInfo.end).getValue();
-
-        if (step == 0) {
-            // System.out.println("[LoopUnrollPass] Step is zero");
-            return;
-        }
-
-        int loopTimes = computeLoopTimes(init, end, step, inductionInfo.aluOp, inductionInfo.cmpOp);
-        if (loopTimes <= 0) {
+        int loopTimes = computeLoopTimes(loop);
+        if (loopTimes <= 0 || loopTimes > MAX_UNROLL) {
             // System.out.println("[LoopUnrollPass] Invalid loop times: " + loopTimes);
             return;
-        } else {
-            if (loopTimes > MAX_UNROLL) {
-                // System.out.println("[LoopUnrollPass] Loop times too large: " + loopTimes + "
-                // > " + MAX_UNROLL);
-                return;
-            }
         }
 
         if (!initUnroll(loop, loopTimes)) {
@@ -142,11 +153,235 @@ public class LoopUnrollPass implements Pass.IRPass {
         // loop.getHeader().getName()
         // + ", times=" + loopTimes);
         isUnrolled = true;
+        // 展开改动的边都从循环块或克隆块出发，按前后差异更新缓存的支配树
+        var cfgSnapshot = DominanceAnalysisPass.snapshot(header.getParent(), loop.getBlocks());
+        clonedBlocks.clear();
         handleUnroll(loop, loopTimes);
+        DominanceAnalysisPass.updateCached(cfgSnapshot, clonedBlocks);
+        scev.forgetAll();
         // System.out.println("[LoopUnrollPass] Completed unroll for loop at header=" +
         // loop.getHeader().getName());
     }
 
+    private void partialLoopUnroll(Loop loop, LoopVectorizePass vectorizer) {
+        // 只要求 header 是唯一的退出块：循环体内的分支（包括跳到 latch 的 if）原样复制即可
+        BasicBlock preheader = loop.getUniquePreheader();
+        if (!loop.getSubLoops().isEmpty() || !loop.isLoopSimplifyForm() || preheader == null
+                || loop.getUniqueLatch() == null || loop.getUniqueExit() == null
+                || scev.getExitingBlock(loop) != loop.getHeader() || blockFrequency.isCold(loop.getHeader()))
+            return;
+        SCEV btc = scev.getBackedgeTakenCount(loop);
+        if (!new SCEVExpander(scev).isExpandable(btc))
+            return;
+        int factor = choosePartialFactor(loop, btc);
+        if (factor < 2 || (vectorizer != null && vectorizer.willVectorize(loop, scev)))
+            return;
+
+        runtimeUnroll(loop, preheader, btc, factor);
+        scev.forgetAll();
+    }
+
+    /**
+     * 展开因子取 2 的幂，使展开后的循环体不超过 {@link #PARTIAL_UNROLL_SIZE} 条指令；
+     * 常量次数时展开循环至少要跑两趟，否则收益抵不过余数循环与前后的准备。
+     */
+    private int choosePartialFactor(Loop loop, SCEV btc) {
+        int size = 0;
+        for (BasicBlock block : loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : block.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (!(inst instanceof Phi) && !inst.isTerminator())
+                    size++;
+            }
+        }
+        int factor = MAX_PARTIAL_FACTOR;
+        while (factor >= 2 && (long) factor * Math.max(size, 1) > PARTIAL_UNROLL_SIZE)
+            factor /= 2;
+        if (btc instanceof SCEV.Constant c) {
+            while (factor >= 2 && c.getValue() < 2 * factor)
+                factor /= 2;
+        }
+        return factor;
+    }
+
+    /**
+     * 运行时展开：展开循环执行 ⌊回边次数 / factor⌋ × factor 次迭代，每趟依次执行 factor 份循环体
+     * （header 的退出判断在这些迭代里必然不成立，复制时改为直接进入循环体）；
+     * 原循环保持不变，从展开循环停下的位置继续，退出块看到的仍是原循环的值。
+     * <pre>
+     * preheader → unr.ph → unr.hdr ⇄ 循环体 × factor
+     *                        ↓
+     *                     unr.mid → header（原循环）⇄ ... → exit
+     * </pre>
+     */
+    private void runtimeUnroll(Loop loop, BasicBlock preheader, SCEV btc, int factor) {
+        BasicBlock loopHeader = loop.getHeader();
+        BasicBlock loopLatch = loop.getUniqueLatch();
+        Function function = loopHeader.getParent();
+        var cfgSnapshot = DominanceAnalysisPass.snapshot(function, List.of(preheader));
+
+        BasicBlock unrPh = function.appendBasicBlock("unr.ph");
+        BasicBlock unrHeader = function.appendBasicBlock("unr.hdr");
+        BasicBlock unrMid = function.appendBasicBlock("unr.mid");
+        List<BasicBlock> newBlocks = new ArrayList<>(List.of(unrPh, unrHeader, unrMid));
+
+        List<Phi> headerPhis = getAllPhisIn(List.of(loopHeader));
+        Map<Phi, Value> startValues = new HashMap<>();
+        Map<Phi, Value> latchValues = new HashMap<>();
+        for (Phi phi : headerPhis) {
+            startValues.put(phi, incomingFrom(phi, preheader));
+            latchValues.put(phi, incomingFrom(phi, loopLatch));
+        }
+        BasicBlock loopNext = null;
+        for (BasicBlock succ : loopHeader.getSuccessors()) {
+            if (loop.contains(succ))
+                loopNext = succ;
+        }
+
+        // preheader → unr.ph；unr.mid 取代 preheader 成为原 header 的前驱
+        Instruction preTerm = getTerminator(preheader);
+        for (int i = 0; i < preTerm.getNumOperands(); i++) {
+            if (preTerm.getOperand(i) == loopHeader)
+                preTerm.setOperand(i, unrPh);
+        }
+        preheader.setSuccessor(unrPh);
+        loopHeader.replacePredecessor(preheader, unrMid);
+        Builder builder = new Builder(function.getParent());
+        builder.positionAtEnd(unrMid);
+        builder.buildBr(loopHeader);
+        builder.positionAtEnd(unrPh);
+        builder.buildBr(unrHeader);
+
+        // 展开循环的迭代次数：回边次数向下取整到 factor 的倍数
+        Value unrCount;
+        if (btc instanceof SCEV.Constant c) {
+            unrCount = new ConstantInt(IntegerType.getI32(), c.getValue() & -factor);
+        } else {
+            Instruction phTerm = getTerminator(unrPh);
+            Value count = new SCEVExpander(scev).expand(btc, phTerm);
+            Instruction masked = new BinOperator("unr.tc", Opcode.AND, IntegerType.getI32(), count,
+                    new ConstantInt(IntegerType.getI32(), -factor));
+            unrPh.addInstructionBefore(masked, phTerm);
+            unrCount = masked;
+        }
+
+        // 每份循环体一组克隆块
+        List<BasicBlock> blocks = computeDfsBlocksFromEntry(loopHeader, loop);
+        List<Map<BasicBlock, BasicBlock>> blockMaps = new ArrayList<>();
+        for (int k = 0; k < factor; k++) {
+            Map<BasicBlock, BasicBlock> blockMap = new HashMap<>();
+            for (BasicBlock block : blocks) {
+                BasicBlock copy = function.appendBasicBlock(block.getName() + ".unr." + k);
+                blockMap.put(block, copy);
+                newBlocks.add(copy);
+            }
+            blockMaps.add(blockMap);
+        }
+
+        Phi counter = new Phi(IntegerType.getI32(), function.getUniqueName("unr.cnt"));
+        unrHeader.insertPhi(counter);
+        Map<Phi, Phi> unrPhis = new LinkedHashMap<>();
+        for (Phi phi : headerPhis) {
+            Phi unrPhi = new Phi(phi.getType(), function.getUniqueName("unr.iv"));
+            unrHeader.insertPhi(unrPhi);
+            unrPhis.put(phi, unrPhi);
+        }
+        builder.positionAtEnd(unrHeader);
+        Value cond = builder.buildICmpSLT(counter, unrCount, "unr.cmp");
+        Value counterNext = builder.buildAdd(counter, new ConstantInt(IntegerType.getI32(), factor), "unr.cnt");
+        builder.buildCondBr(cond, blockMaps.get(0).get(loopHeader), unrMid);
+
+        Map<Value, Value> valueMap = new HashMap<>();
+        for (int k = 0; k < factor; k++) {
+            Map<BasicBlock, BasicBlock> blockMap = blockMaps.get(k);
+            BasicBlock nextCopy = k + 1 < factor ? blockMaps.get(k + 1).get(loopHeader) : unrHeader;
+            Map<Value, Value> prevMap = valueMap;
+            valueMap = new HashMap<>();
+            for (Phi phi : headerPhis) {
+                Value latchValue = latchValues.get(phi);
+                valueMap.put(phi, k == 0 ? unrPhis.get(phi) : prevMap.getOrDefault(latchValue, latchValue));
+            }
+            cloneLoopCopy(loop, blocks, blockMap, valueMap, loopNext, nextCopy);
+        }
+
+        BasicBlock lastLatch = blockMaps.get(factor - 1).get(loopLatch);
+        counter.addIncoming(new ConstantInt(IntegerType.getI32(), 0), unrPh);
+        counter.addIncoming(counterNext, lastLatch);
+        for (Phi phi : headerPhis) {
+            Phi unrPhi = unrPhis.get(phi);
+            Value latchValue = latchValues.get(phi);
+            unrPhi.addIncoming(startValues.get(phi), unrPh);
+            unrPhi.addIncoming(valueMap.getOrDefault(latchValue, latchValue), lastLatch);
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                if (phi.getIncomingBlock(i) == unrMid)
+                    phi.setIncomingValue(i, unrPhi);
+            }
+        }
+
+        DominanceAnalysisPass.updateCached(cfgSnapshot, newBlocks);
+    }
+
+    /**
+     * 复制一份循环体：header 的 phi 由 valueMap 给出，header 的退出分支改为直接进入循环体，
+     * 回边改为跳到下一份的 header（最后一份跳回 unr.hdr）。
+     * 循环体内部 phi 的来源可能在 DFS 序中靠后的块里，等整份复制完再填。
+     */
+    private void cloneLoopCopy(Loop loop, List<BasicBlock> blocks, Map<BasicBlock, BasicBlock> blockMap,
+            Map<Value, Value> valueMap, BasicBlock loopNext, BasicBlock nextCopy) {
+        BasicBlock loopHeader = loop.getHeader();
+        BasicBlock headerCopy = blockMap.get(loopHeader);
+        List<Phi> bodyPhis = new ArrayList<>();
+        for (BasicBlock block : blocks) {
+            BasicBlock copy = blockMap.get(block);
+            for (INode<Instruction, BasicBlock> node : block.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (inst instanceof Phi phi) {
+                    if (block == loopHeader)
+                        continue;
+                    Phi newPhi = new Phi(phi.getType(), copy.getParent().getUniqueName("unr.phi"));
+                    copy.insertPhi(newPhi);
+                    valueMap.put(phi, newPhi);
+                    bodyPhis.add(phi);
+                    continue;
+                }
+                Instruction newInst;
+                if (block == loopHeader && inst.isTerminator()) {
+                    BasicBlock target = loopNext == loopHeader ? nextCopy : blockMap.get(loopNext);
+                    newInst = new BranchInst(target);
+                } else {
+                    newInst = inst.clone(valueMap, blockMap);
+                }
+                copy.addInstruction(newInst);
+                valueMap.put(inst, newInst);
+                if (newInst instanceof BranchInst br) {
+                    // 回边：跳到下一份循环体
+                    for (int i = 0; i < br.getNumOperands(); i++) {
+                        if (br.getOperand(i) == headerCopy)
+                            br.setOperand(i, nextCopy);
+                    }
+                    copy.setSuccessor(br.getThenBlock());
+                    if (br.isConditional())
+                        copy.setSuccessor(br.getElseBlock());
+                }
+            }
+        }
+        for (Phi phi : bodyPhis) {
+            Phi newPhi = (Phi) valueMap.get(phi);
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                Value v = phi.getIncomingValue(i);
+                newPhi.addIncoming(valueMap.getOrDefault(v, v), blockMap.get(phi.getIncomingBlock(i)));
+            }
+        }
+    }
+
+    private static Value incomingFrom(Phi phi, BasicBlock block) {
+        for (int i = 0; i < phi.getNumIncoming(); i++) {
+            if (phi.getIncomingBlock(i) == block)
+                return phi.getIncomingValue(i);
+        }
+        return null;
+    }
+
     /**
      * 若循环任意块内包含 Alloca 指令，则跳过展开（避免将栈分配置于循环头/循环体导致重复分配和崩溃）。
      */
@@ -163,12 +398,13 @@ public class LoopUnrollPass implements Pass.IRPass {
     }
 
     /**
-     * 若循环内包含函数调用，保守跳过展开（参考常见实现，避免副作用/递归路径问题）。
+     * 若循环内包含有副作用的函数调用，保守跳过展开（参考常见实现，避免副作用/递归路径问题）。
+     * 纯函数调用复制多份不改变语义，不影响展开。
      */
     private boolean loopContainsCall(Loop loop) {
         for (BasicBlock bb : loop.getBlocks()) {
             for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
-                if (node.getVal() instanceof CallInst) {
+                if (node.getVal() instanceof CallInst call && !call.isPure()) {
                     return true;
                 }
             }
@@ -193,8 +429,32 @@ public class LoopUnrollPass implements Pass.IRPass {
             return false;
         }
 
-        // 检查是否有简单的归纳变量
-        return analyzeInductionVariable(loop) != null;
+        // 退出判断必须在 header（展开时按 header 的条件分支切出循环体）
+        Instruction terminator = getTerminator(loop.getHeader());
+        return terminator instanceof BranchInst br && br.isConditional();
+    }
+
+    /**
+     * 循环体的执行次数：header 退出的循环里等于回边执行次数，优先由 SCEV 给出；
+     * SCEV 只描述仿射递推，i *= C 这类几何递推仍按原有方式求解。
+     */
+    private int computeLoopTimes(Loop loop) {
+        if (scev.getExitingBlock(loop) == loop.getHeader()) {
+            int count = scev.getConstantBackedgeTakenCount(loop);
+            if (count >= 0)
+                return count;
+        }
+        InductionVarInfo inductionInfo = analyzeInductionVariable(loop);
+        if (inductionInfo == null || inductionInfo.aluOp != Opcode.MUL) {
+            return -1;
+        }
+        if (!(inductionInfo.init instanceof ConstantInt init) ||
+                !(inductionInfo.step instanceof ConstantInt step) ||
+                !(inductionInfo.end instanceof ConstantInt end)) {
+            return -1;
+        }
+        return computeLoopTimes(init.getValue(), end.getValue(), step.getValue(),
+                inductionInfo.aluOp, inductionInfo.cmpOp);
     }
 
     private static class InductionVarInfo {
@@ -402,7 +662,8 @@ public class LoopUnrollPass implements Pass.IRPass {
     private boolean initUnroll(Loop loop, int loopTimes) {
 
         int loopSize = computeLoopSize(loop);
-        if ((long) loopTimes * loopSize > MAX_LOOP_SIZE) {
+        int budget = blockFrequency.isCold(loop.getHeader()) ? COLD_MAX_LOOP_SIZE : MAX_LOOP_SIZE;
+        if ((long) loopTimes * loopSize > budget) {
             return false;
         }
 
@@ -538,6 +799,7 @@ public class LoopUnrollPass implements Pass.IRPass {
                 BasicBlock clonedBlock = function.appendBasicBlock(block.getName() + ".unroll." + curLoopTime);
                 cloneMap.put(block, clonedBlock);
                 blockMap.put(block, clonedBlock);
+                clonedBlocks.add(clonedBlock);
                 // System.out.println(
                 // "[LoopUnrollPass] Created cloned block: " + clonedBlock.getName() + " for " +
                 // block.getName());
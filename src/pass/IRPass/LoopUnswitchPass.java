@@ -0,0 +1,414 @@
+package pass.IRPass;
+
+import ir.Builder;
+import ir.NLVMModule;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.UndefValue;
+import ir.value.Use;
+import ir.value.Value;
+import ir.value.constants.Constant;
+import ir.value.instructions.AllocaInst;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.Phi;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.DominanceAnalysisPass;
+import pass.IRPass.analysis.Loop;
+import pass.IRPass.analysis.LoopInfo;
+import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import util.LoggingManager;
+import util.logging.Logger;
+import util.IList.INode;
+
+import java.util.*;
+
+/**
+ * 循环外提判断（Loop Unswitching）：条件在循环内不变的分支每次迭代都要重新判断，
+ * 还会挡住展开与向量化。把判断提到循环之前：
+ * <ul>
+ * <li>平凡情形：分支一侧直接离开循环，且从 header 到该分支没有副作用，
+ * 只需在 preheader 之后判断一次，循环内的分支改为无条件跳转，不复制代码；</li>
+ * <li>一般情形：复制整个循环，两个副本中该分支分别固定走 then / else，
+ * 按条件在进入前选择其一。循环大小与函数内的复制总量都有上限。</li>
+ * </ul>
+ * 开始前用 {@link LCSSAPass} 把循环外的使用收拢到出口 phi，复制时只需给出口 phi
+ * 补上副本一侧的 incoming，LCSSA 形态保持不变。
+ */
+public class LoopUnswitchPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(LoopUnswitchPass.class);
+
+    /** 一般情形下允许复制的循环大小（指令条数） */
+    private static final int UNSWITCH_SIZE = 100;
+    /** 每个函数因复制新增的指令总数上限 */
+    private static final int FUNCTION_GROWTH_BUDGET = 400;
+    private static final int MAX_UNSWITCH_PER_FUNCTION = 8;
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.LoopUnswitch;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule m = NLVMModule.getModule();
+        for (Function f : m.getFunctions())
+            if (!f.isDeclaration())
+                runOnFunction(f);
+    }
+
+    private void runOnFunction(Function func) {
+        new LCSSAPass().runOnFunction(func);
+        int budget = FUNCTION_GROWTH_BUDGET;
+        for (int round = 0; round < MAX_UNSWITCH_PER_FUNCTION; round++) {
+            LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+            loopAnalysis.runOnFunction(func);
+            LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
+            if (loopInfo == null)
+                return;
+            // 内层优先：内层循环外提后最可能被展开或向量化
+            List<Loop> loops = new ArrayList<>(loopInfo.getAllLoops());
+            loops.sort(Comparator.comparingInt(Loop::getLoopDepth).reversed());
+
+            boolean changed = false;
+            for (Loop loop : loops) {
+                if (tryTrivialUnswitch(loop)) {
+                    changed = true;
+                    break;
+                }
+            }
+            if (!changed) {
+                for (Loop loop : loops) {
+                    int size = loopSize(loop);
+                    if (size > UNSWITCH_SIZE || size > budget)
+                        continue;
+                    if (tryNonTrivialUnswitch(loop)) {
+                        budget -= size;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            if (!changed)
+                return;
+            DominanceAnalysisPass.invalidate(func);
+        }
+    }
+
+    // ==================== 候选分支 ====================
+
+    /** 条件在循环内不变（且不是常量，常量分支交给常量传播）的条件分支 */
+    private static boolean isInvariantBranch(Instruction term, Loop loop) {
+        if (!(term instanceof BranchInst br) || !br.isConditional() || br.getThenBlock() == br.getElseBlock())
+            return false;
+        Value cond = br.getCondition();
+        if (cond instanceof Constant)
+            return false;
+        return !(cond instanceof Instruction inst) || (inst.getParent() != null && !loop.contains(inst.getParent()));
+    }
+
+    private static BranchInst terminatorOf(BasicBlock bb) {
+        var node = bb.getTerminator();
+        return node != null && node.getVal() instanceof BranchInst br ? br : null;
+    }
+
+    // ==================== 平凡情形 ====================
+
+    /**
+     * 分支一侧是出口 E（无 phi），且从 header 走到该分支的路径上没有副作用、途中的其它出口也都是 E：
+     * 条件成立时第一次迭代就会无副作用地走到 E，于是可以在进入循环前直接判断。
+     */
+    private boolean tryTrivialUnswitch(Loop loop) {
+        BasicBlock preheader = loop.getUniquePreheader();
+        if (preheader == null)
+            return false;
+        for (BasicBlock bb : loop.getBlocks()) {
+            BranchInst br = terminatorOf(bb);
+            if (br == null || !isInvariantBranch(br, loop))
+                continue;
+            boolean thenExits = !loop.contains(br.getThenBlock());
+            boolean elseExits = !loop.contains(br.getElseBlock());
+            if (thenExits == elseExits)
+                continue;
+            BasicBlock exit = thenExits ? br.getThenBlock() : br.getElseBlock();
+            BasicBlock stay = thenExits ? br.getElseBlock() : br.getThenBlock();
+            if (exit.getFirstInstruction() instanceof Phi || !reachesWithoutSideEffects(loop, bb, exit))
+                continue;
+
+            // preheader → us.sw：条件走出口一侧时直接跳到 E
+            BasicBlock header = loop.getHeader();
+            Function func = header.getParent();
+            BasicBlock sw = func.appendBasicBlock("us.sw");
+            retarget(preheader, header, sw);
+            header.replacePredecessor(preheader, sw);
+            Builder builder = new Builder(func.getParent());
+            builder.positionAtEnd(sw);
+            if (thenExits)
+                builder.buildCondBr(br.getCondition(), exit, header);
+            else
+                builder.buildCondBr(br.getCondition(), header, exit);
+
+            replaceWithUnconditional(br, stay, exit);
+            log.debug("trivially unswitched loop {} in {}", header.getName(), func.getName());
+            return true;
+        }
+        return false;
+    }
+
+    /** header 到 target 的直线路径上无副作用，途中离开循环的边都指向 exit */
+    private static boolean reachesWithoutSideEffects(Loop loop, BasicBlock target, BasicBlock exit) {
+        Set<BasicBlock> visited = new HashSet<>();
+        BasicBlock cur = loop.getHeader();
+        while (true) {
+            if (!visited.add(cur))
+                return false;
+            for (INode<Instruction, BasicBlock> node : cur.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (!inst.isTerminator() && inst.isSideEffect())
+                    return false;
+            }
+            if (cur == target)
+                return true;
+            BranchInst br = terminatorOf(cur);
+            if (br == null)
+                return false;
+            BasicBlock next;
+            if (!br.isConditional()) {
+                next = br.getThenBlock();
+            } else if (br.getElseBlock() == exit && loop.contains(br.getThenBlock())) {
+                next = br.getThenBlock();
+            } else if (br.getThenBlock() == exit && loop.contains(br.getElseBlock())) {
+                next = br.getElseBlock();
+            } else {
+                return false;
+            }
+            if (!loop.contains(next))
+                return false;
+            cur = next;
+        }
+    }
+
+    // ==================== 一般情形 ====================
+
+    private boolean tryNonTrivialUnswitch(Loop loop) {
+        BasicBlock preheader = loop.getUniquePreheader();
+        if (preheader == null || !isClosed(loop) || containsAlloca(loop))
+            return false;
+        BasicBlock branchBlock = null;
+        for (BasicBlock bb : loop.getBlocks()) {
+            BranchInst br = terminatorOf(bb);
+            if (br != null && isInvariantBranch(br, loop)) {
+                branchBlock = bb;
+                break;
+            }
+        }
+        if (branchBlock == null)
+            return false;
+
+        BasicBlock header = loop.getHeader();
+        Function func = header.getParent();
+        Map<BasicBlock, BasicBlock> blockMap = new HashMap<>();
+        Map<Value, Value> valueMap = new HashMap<>();
+        cloneLoop(loop, blockMap, valueMap);
+
+        // preheader → us.sw → (us.ph → 原循环 | us.ph → 副本)
+        BasicBlock sw = func.appendBasicBlock("us.sw");
+        BasicBlock thenPh = func.appendBasicBlock("us.ph");
+        BasicBlock elsePh = func.appendBasicBlock("us.ph");
+        BasicBlock headerCopy = blockMap.get(header);
+        retarget(preheader, header, sw);
+        header.replacePredecessor(preheader, thenPh);
+        for (INode<Instruction, BasicBlock> node : headerCopy.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                if (phi.getIncomingBlock(i) == preheader)
+                    phi.setIncomingBlock(i, elsePh);
+            }
+        }
+        BranchInst br = terminatorOf(branchBlock);
+        Value cond = br.getCondition();
+        Builder builder = new Builder(func.getParent());
+        builder.positionAtEnd(sw);
+        builder.buildCondBr(cond, thenPh, elsePh);
+        builder.positionAtEnd(thenPh);
+        builder.buildBr(header);
+        builder.positionAtEnd(elsePh);
+        builder.buildBr(headerCopy);
+
+        // 出口 phi 补上来自副本的 incoming
+        for (BasicBlock exit : exitBlocks(loop)) {
+            for (INode<Instruction, BasicBlock> node : exit.getInstructions()) {
+                if (!(node.getVal() instanceof Phi phi))
+                    break;
+                int n = phi.getNumIncoming();
+                for (int i = 0; i < n; i++) {
+                    BasicBlock from = phi.getIncomingBlock(i);
+                    if (!loop.contains(from))
+                        continue;
+                    Value v = phi.getIncomingValue(i);
+                    phi.addIncoming(valueMap.getOrDefault(v, v), blockMap.get(from));
+                }
+            }
+        }
+
+        // 原循环固定走 then，副本固定走 else
+        BranchInst brCopy = terminatorOf(blockMap.get(branchBlock));
+        replaceWithUnconditional(br, br.getThenBlock(), br.getElseBlock());
+        replaceWithUnconditional(brCopy, brCopy.getElseBlock(), brCopy.getThenBlock());
+
+        List<BasicBlock> candidates = new ArrayList<>(loop.getBlocks());
+        candidates.addAll(blockMap.values());
+        removeUnreachable(func, candidates);
+        log.debug("unswitched loop {} in {} on {}", header.getName(), func.getName(), cond.getName());
+        return true;
+    }
+
+    /** 循环内定义的值在循环外只被出口 phi 使用（LCSSA） */
+    private static boolean isClosed(Loop loop) {
+        Set<BasicBlock> exits = exitBlocks(loop);
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                for (Use use : node.getVal().getUses()) {
+                    if (!(use.getUser() instanceof Instruction user) || user.getParent() == null)
+                        return false;
+                    if (loop.contains(user.getParent()))
+                        continue;
+                    if (!(user instanceof Phi phi) || !exits.contains(phi.getParent())
+                            || !loop.contains(phi.getIncomingBlock(use.getOperandIndex() / 2)))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Set<BasicBlock> exitBlocks(Loop loop) {
+        Set<BasicBlock> exits = new LinkedHashSet<>();
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (BasicBlock succ : bb.getSuccessors())
+                if (!loop.contains(succ))
+                    exits.add(succ);
+        }
+        return exits;
+    }
+
+    /**
+     * 按 header 出发的 DFS 先序复制循环（支配者先于被支配者，普通指令的操作数已在 valueMap 中）；
+     * phi 的 incoming 可能来自后复制的块，整体复制完再填。
+     */
+    private static void cloneLoop(Loop loop, Map<BasicBlock, BasicBlock> blockMap, Map<Value, Value> valueMap) {
+        Function func = loop.getHeader().getParent();
+        List<BasicBlock> order = new ArrayList<>();
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        stack.push(loop.getHeader());
+        while (!stack.isEmpty()) {
+            BasicBlock bb = stack.pop();
+            if (!visited.add(bb))
+                continue;
+            order.add(bb);
+            for (BasicBlock succ : bb.getSuccessors())
+                if (loop.contains(succ) && !visited.contains(succ))
+                    stack.push(succ);
+        }
+        for (BasicBlock bb : order)
+            blockMap.put(bb, func.appendBasicBlock(bb.getName() + ".us"));
+
+        List<Phi> phis = new ArrayList<>();
+        for (BasicBlock bb : order) {
+            BasicBlock copy = blockMap.get(bb);
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (inst instanceof Phi phi) {
+                    Phi newPhi = new Phi(phi.getType(), func.getUniqueName(phi.getName()));
+                    copy.insertPhi(newPhi);
+                    valueMap.put(phi, newPhi);
+                    phis.add(phi);
+                    continue;
+                }
+                Instruction newInst = inst.clone(valueMap, blockMap);
+                copy.addInstruction(newInst);
+                valueMap.put(inst, newInst);
+                if (newInst instanceof BranchInst br) {
+                    copy.setSuccessor(br.getThenBlock());
+                    if (br.isConditional())
+                        copy.setSuccessor(br.getElseBlock());
+                }
+            }
+        }
+        for (Phi phi : phis) {
+            Phi newPhi = (Phi) valueMap.get(phi);
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                Value v = phi.getIncomingValue(i);
+                BasicBlock from = phi.getIncomingBlock(i);
+                newPhi.addIncoming(valueMap.getOrDefault(v, v), blockMap.getOrDefault(from, from));
+            }
+        }
+    }
+
+    // ==================== 工具 ====================
+
+    private static void retarget(BasicBlock block, BasicBlock from, BasicBlock to) {
+        Instruction term = block.getTerminator().getVal();
+        for (int i = 0; i < term.getNumOperands(); i++) {
+            if (term.getOperand(i) == from)
+                term.setOperand(i, to);
+        }
+        block.setSuccessor(to);
+    }
+
+    /** 把条件分支换成跳到 keep 的无条件分支，并断开到 drop 的边 */
+    private static void replaceWithUnconditional(BranchInst br, BasicBlock keep, BasicBlock drop) {
+        BasicBlock bb = br.getParent();
+        bb.addInstructionBefore(new BranchInst(keep), br);
+        br.clearOperands();
+        br._getINode().removeSelf();
+        drop.removePredecessor(bb);
+    }
+
+    /** 删除 candidates 中从入口不可达的块 */
+    private static void removeUnreachable(Function func, List<BasicBlock> candidates) {
+        Set<BasicBlock> reachable = new HashSet<>();
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        worklist.add(func.getEntryBlock());
+        reachable.add(func.getEntryBlock());
+        while (!worklist.isEmpty()) {
+            for (BasicBlock succ : worklist.poll().getSuccessors())
+                if (reachable.add(succ))
+                    worklist.add(succ);
+        }
+        for (BasicBlock bb : candidates) {
+            if (reachable.contains(bb))
+                continue;
+            for (BasicBlock succ : new ArrayList<>(bb.getSuccessors()))
+                succ.removePredecessor(bb);
+            for (BasicBlock pred : new ArrayList<>(bb.getPredecessors()))
+                bb.removePredecessor(pred);
+            while (bb.getInstructions().getNumNode() > 0) {
+                Instruction inst = bb.getInstructions().getEntry().getVal();
+                inst.replaceAllUsesWith(UndefValue.get(inst.getType()));
+                inst.clearOperands();
+                inst._getINode().removeSelf();
+            }
+            bb._getINode().removeSelf();
+        }
+    }
+
+    private static int loopSize(Loop loop) {
+        int size = 0;
+        for (BasicBlock bb : loop.getBlocks())
+            size += bb.getInstructions().getNumNode();
+        return size;
+    }
+
+    private static boolean containsAlloca(Loop loop) {
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (INode<Instruction, BasicBlock> node : bb.getInstructions())
+                if (node.getVal() instanceof AllocaInst)
+                    return true;
+        }
+        return false;
+    }
+}
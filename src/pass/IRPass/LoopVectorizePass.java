@@ -0,0 +1,769 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.type.FloatType;
+import ir.type.IntegerType;
+import ir.type.PointerType;
+import ir.type.Type;
+import ir.type.VectorType;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.UndefValue;
+import ir.value.Use;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.*;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.DependenceAnalysis;
+import pass.IRPass.analysis.DependenceAnalysis.Dependence;
+import pass.IRPass.analysis.DominanceAnalysisPass;
+import pass.IRPass.analysis.Loop;
+import pass.IRPass.analysis.LoopInfo;
+import pass.IRPass.analysis.LoopInfoFullAnalysis;
+import pass.IRPass.analysis.SCEV;
+import pass.IRPass.analysis.SCEVExpander;
+import pass.IRPass.analysis.ScalarEvolution;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.*;
+
+/**
+ * 最内层循环向量化（VF = 4，元素为 i32 / float）。
+ * <p>
+ * 处理的循环形态：唯一 preheader，header 只含 phi、退出比较与条件分支，循环体是唯一的 latch 块。
+ * header 中的每个 phi 必须是
+ * <ul>
+ * <li>归纳变量：{@link ScalarEvolution} 中步长为常量的仿射递推</li>
+ * <li>归约：r = r + x、r = r - x（i32），或由 icmp / fcmp + select 构成的 min / max（i32 / float）。
+ * 浮点加法归约会改变求和顺序，结果与标量不一致，因此不做</li>
+ * </ul>
+ * 访存必须是单位步长：GEP 的最后一维下标是本循环上步长为 1 的递推，其余部分循环不变；
+ * 访存之间的依赖由 {@link DependenceAnalysis} 判定，回向依赖距离不小于 VF 时才合法。
+ * <p>
+ * 变换：在原循环前插入向量循环，执行 ⌊回边次数 / 4⌋ × 4 次迭代；
+ * 原循环保持不变，作为标量尾循环从向量循环停下的位置继续，归约的部分和在两者之间横向合并。
+ * <pre>
+ * preheader → vec.ph → vec.hdr ⇄ vec.body
+ *                        ↓
+ *                     vec.mid → header（原循环）⇄ body → exit
+ * </pre>
+ */
+public class LoopVectorizePass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(LoopVectorizePass.class);
+
+    private static final int VF = 4;
+    // 回边次数为常量且小于该值时不向量化：向量循环至多执行一次，抵不过前后的准备与合并开销
+    private static final int MIN_TRIP_COUNT = 2 * VF;
+    // 向量循环每次迭代的固定开销：计数器自增、比较、分支
+    private static final int VECTOR_LOOP_OVERHEAD = 3;
+    // 标量循环每次迭代的固定开销：比较、分支
+    private static final int SCALAR_LOOP_OVERHEAD = 2;
+
+    private enum RecurKind {
+        ADD, SUB, MIN, MAX
+    }
+
+    /** header 中的归约 phi */
+    private static final class Reduction {
+        final Phi phi;
+        final RecurKind kind;
+        final Instruction next; // 回边上的值
+        final Value operand; // 每次迭代并入的值
+        final Set<Instruction> chain; // 组成归约运算的指令
+
+        Reduction(Phi phi, RecurKind kind, Instruction next, Value operand, Set<Instruction> chain) {
+            this.phi = phi;
+            this.kind = kind;
+            this.next = next;
+            this.operand = operand;
+            this.chain = chain;
+        }
+    }
+
+    /** 合法性分析的结果 */
+    private static final class Plan {
+        Loop loop;
+        BasicBlock preheader;
+        BasicBlock header;
+        BasicBlock body;
+        SCEV backedgeTakenCount;
+        final Map<Phi, Integer> inductions = new LinkedHashMap<>();
+        final Map<Phi, Reduction> reductions = new LinkedHashMap<>();
+        final List<StoreInst> stores = new ArrayList<>();
+        // 向量循环中需要的向量形式 / 标量（lane 0）形式
+        final Map<Value, Boolean> widenable = new HashMap<>();
+        final Map<Value, Boolean> scalarizable = new HashMap<>();
+        final Set<Instruction> needVector = new LinkedHashSet<>();
+        final Set<Instruction> needScalar = new LinkedHashSet<>();
+    }
+
+    private ScalarEvolution se;
+    private DependenceAnalysis da;
+
+    // 代码生成状态
+    private Plan plan;
+    private Instruction phTerm;
+    private Instruction bodyTerm;
+    private BasicBlock vecHeader;
+    private BasicBlock vecBody;
+    private final Map<Value, Value> scalarMap = new HashMap<>();
+    private final Map<Value, Value> vectorMap = new HashMap<>();
+    private final Map<Value, Value> splats = new HashMap<>();
+    // 向量化的归纳变量 phi 及其每次向量迭代的增量
+    private final Map<Phi, Value> vectorIVSteps = new LinkedHashMap<>();
+    // 归纳变量 / 归约 phi 的入口值（CFG 改写后 phi 不再有来自 preheader 的输入）
+    private final Map<Phi, Value> startValues = new HashMap<>();
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.LoopVectorize;
+    }
+
+    @Override
+    public void run() {
+        for (Function f : NLVMModule.getModule().getFunctions()) {
+            if (!f.isDeclaration())
+                runOnFunction(f);
+        }
+    }
+
+    private void runOnFunction(Function func) {
+        LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+        loopAnalysis.runOnFunction(func);
+        LoopInfo loopInfo = loopAnalysis.getLoopInfo(func);
+        if (loopInfo == null)
+            return;
+        se = new ScalarEvolution(func, loopInfo);
+        da = new DependenceAnalysis(se);
+
+        // 先收集全部候选：向量化只新增块、不改动其他最内层循环的块
+        List<Loop> innermost = new ArrayList<>();
+        for (Loop loop : loopInfo.getAllLoops()) {
+            if (loop.getSubLoops().isEmpty())
+                innermost.add(loop);
+        }
+        for (Loop loop : innermost) {
+            Plan p = analyze(loop);
+            if (p == null || !isProfitable(p))
+                continue;
+            vectorize(p);
+            se.forgetAll();
+            log.debug("LoopVectorize: vectorized loop {} in {}", loop.getHeader().getName(), func.getName());
+        }
+    }
+
+    /** 循环是否满足向量化条件且有收益；LoopUnrollPass 据此把这类循环留给向量化 */
+    boolean willVectorize(Loop loop, ScalarEvolution se) {
+        this.se = se;
+        this.da = new DependenceAnalysis(se);
+        Plan p = analyze(loop);
+        return p != null && isProfitable(p);
+    }
+
+    // ==================== 合法性 ====================
+
+    private Plan analyze(Loop loop) {
+        Plan p = new Plan();
+        p.loop = loop;
+        p.header = loop.getHeader();
+        p.preheader = loop.getUniquePreheader();
+        p.body = loop.getUniqueLatch();
+        if (p.preheader == null || p.body == null || p.body == p.header || loop.getBlocks().size() != 2)
+            return null;
+        if (loop.getUniqueExit() == null || se.getExitingBlock(loop) != p.header)
+            return null;
+        p.backedgeTakenCount = se.getBackedgeTakenCount(loop);
+        if (p.backedgeTakenCount.isCouldNotCompute()
+                || !new SCEVExpander(se).isExpandable(p.backedgeTakenCount))
+            return null;
+        if (!(terminatorOf(p.body) instanceof BranchInst latchBr) || latchBr.isConditional())
+            return null;
+
+        // header：phi + 退出比较 + 条件分支
+        for (var node : p.header.getInstructions()) {
+            Instruction inst = node.getVal();
+            if (inst instanceof Phi || inst.isTerminator())
+                continue;
+            if (!(inst instanceof ICmpInst) || inst != ((BranchInst) terminatorOf(p.header)).getCondition())
+                return null;
+        }
+        for (var node : p.header.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            if (!classifyInduction(p, phi) && !classifyReduction(p, phi))
+                return null;
+        }
+
+        // 循环体：除归约链外只允许无副作用的运算与单位步长的 store
+        Set<Instruction> chainInsts = new HashSet<>();
+        for (Reduction r : p.reductions.values())
+            chainInsts.addAll(r.chain);
+        for (var node : p.body.getInstructions()) {
+            Instruction inst = node.getVal();
+            if (inst.isTerminator() || chainInsts.contains(inst))
+                continue;
+            if (inst instanceof StoreInst store) {
+                if (!isConsecutive(p, store.getPointer()) || !markScalar(p, store.getPointer())
+                        || !markVector(p, store.getValue()))
+                    return null;
+                p.stores.add(store);
+            } else if (!(inst instanceof BinOperator || inst instanceof GEPInst || inst instanceof CastInst
+                    || inst instanceof ICmpInst || inst instanceof FCmpInst || inst instanceof SelectInst
+                    || inst instanceof LoadInst)) {
+                return null;
+            }
+        }
+        for (Reduction r : p.reductions.values()) {
+            if (!markVector(p, r.operand))
+                return null;
+        }
+        if (p.stores.isEmpty() && p.reductions.isEmpty())
+            return null;
+        if (!checkDependences(p))
+            return null;
+        return p;
+    }
+
+    /** 步长为常量的 i32 仿射递推 */
+    private boolean classifyInduction(Plan p, Phi phi) {
+        if (!phi.getType().isI32() || phi.getNumIncoming() != 2)
+            return false;
+        if (!(se.getSCEV(phi) instanceof SCEV.AddRec rec) || rec.getLoop() != p.loop
+                || !(rec.getStep() instanceof SCEV.Constant step))
+            return false;
+        p.inductions.put(phi, step.getValue());
+        return true;
+    }
+
+    private boolean classifyReduction(Plan p, Phi phi) {
+        Type type = phi.getType();
+        if (!(type.isI32() || type.isFloat()) || phi.getNumIncoming() != 2)
+            return false;
+        if (!(incomingFrom(phi, p.body) instanceof Instruction next) || next.getParent() != p.body)
+            return false;
+
+        Reduction r = null;
+        if (next instanceof BinOperator bin && type.isI32()) {
+            if (bin.opCode() == Opcode.ADD && (bin.getOperand(0) == phi) != (bin.getOperand(1) == phi)) {
+                Value x = bin.getOperand(0) == phi ? bin.getOperand(1) : bin.getOperand(0);
+                r = new Reduction(phi, RecurKind.ADD, bin, x, Set.of(bin));
+            } else if (bin.opCode() == Opcode.SUB && bin.getOperand(0) == phi && bin.getOperand(1) != phi) {
+                r = new Reduction(phi, RecurKind.SUB, bin, bin.getOperand(1), Set.of(bin));
+            }
+        } else if (next instanceof SelectInst sel && sel.getCondition() instanceof Instruction cmp
+                && cmp.getParent() == p.body && (cmp instanceof ICmpInst || cmp instanceof FCmpInst)) {
+            r = matchMinMax(phi, sel, cmp);
+        }
+        if (r == null)
+            return false;
+
+        // 部分和只能在循环外被观察：phi 与链上的中间值不得被循环内的其他指令使用
+        for (Use use : phi.getUses()) {
+            if (use.getUser() instanceof Instruction user && p.loop.contains(user.getParent())
+                    && !r.chain.contains(user))
+                return false;
+        }
+        for (Instruction inst : r.chain) {
+            for (Use use : inst.getUses()) {
+                if (use.getUser() != phi && !r.chain.contains(use.getUser()))
+                    return false;
+            }
+        }
+        p.reductions.put(phi, r);
+        return true;
+    }
+
+    /** select (p pred q), a, b，其中 {p, q} = {a, b} = {phi, x} */
+    private Reduction matchMinMax(Phi phi, SelectInst sel, Instruction cmp) {
+        Opcode pred = cmp instanceof ICmpInst icmp ? icmp.getOpcode() : ((FCmpInst) cmp).getOpcode();
+        boolean less;
+        switch (pred) {
+            case ICMP_SLT, ICMP_SLE, FCMP_OLT, FCMP_OLE -> less = true;
+            case ICMP_SGT, ICMP_SGE, FCMP_OGT, FCMP_OGE -> less = false;
+            default -> {
+                return null;
+            }
+        }
+        Value lhs = cmp.getOperand(0);
+        Value rhs = cmp.getOperand(1);
+        Value a = sel.getTrueValue();
+        Value b = sel.getFalseValue();
+        if (lhs == rhs || (lhs != phi && rhs != phi))
+            return null;
+        boolean picksLhs;
+        if (a == lhs && b == rhs)
+            picksLhs = true;
+        else if (a == rhs && b == lhs)
+            picksLhs = false;
+        else
+            return null;
+        // lhs < rhs 时取 lhs 即最小值
+        RecurKind kind = picksLhs == less ? RecurKind.MIN : RecurKind.MAX;
+        Value x = lhs == phi ? rhs : lhs;
+        return new Reduction(phi, kind, sel, x, Set.of(cmp, sel));
+    }
+
+    private boolean isInLoop(Plan p, Value v) {
+        return v instanceof Instruction inst && inst.getParent() != null && p.loop.contains(inst.getParent());
+    }
+
+    /** 值在循环内不变：定义在循环外，或由循环不变量经无副作用的运算得到 */
+    private boolean isInvariant(Plan p, Value v) {
+        if (!isInLoop(p, v))
+            return true;
+        if (!(v instanceof BinOperator || v instanceof GEPInst || v instanceof CastInst))
+            return false;
+        for (Value op : ((Instruction) v).getOperands()) {
+            if (!isInvariant(p, op))
+                return false;
+        }
+        return true;
+    }
+
+    /** 指针是循环内的 GEP，指向 i32 / float，最后一维下标每次迭代加 1，其余部分不变 */
+    private boolean isConsecutive(Plan p, Value ptr) {
+        if (!(ptr instanceof GEPInst gep) || !isInLoop(p, gep))
+            return false;
+        Type elem = ((PointerType) gep.getType()).getPointeeType();
+        if (!elem.isI32() && !elem.isFloat())
+            return false;
+        int last = gep.getNumIndices() - 1;
+        Value idx = gep.getIndex(last);
+        if (!ScalarEvolution.isSCEVable(idx) || !(se.getSCEV(idx) instanceof SCEV.AddRec rec)
+                || rec.getLoop() != p.loop || !(rec.getStep() instanceof SCEV.Constant c) || c.getValue() != 1)
+            return false;
+        if (!isInvariant(p, gep.getPointer()))
+            return false;
+        for (int i = 0; i < last; i++) {
+            if (!isInvariant(p, gep.getIndex(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /** 能否在向量循环中算出 v 在 lane 0 上的标量值；可以时记录需要生成的指令 */
+    private boolean markScalar(Plan p, Value v) {
+        if (!isInLoop(p, v))
+            return true;
+        Boolean cached = p.scalarizable.get(v);
+        if (cached != null)
+            return cached;
+        Instruction inst = (Instruction) v;
+        boolean ok;
+        if (inst instanceof Phi phi) {
+            ok = p.inductions.containsKey(phi);
+        } else if (inst.getParent() == p.body
+                && (inst instanceof BinOperator || inst instanceof GEPInst || inst instanceof CastInst)) {
+            ok = true;
+            for (Value op : inst.getOperands())
+                ok &= markScalar(p, op);
+            if (ok)
+                p.needScalar.add(inst);
+        } else {
+            ok = false;
+        }
+        p.scalarizable.put(v, ok);
+        return ok;
+    }
+
+    /** 能否在向量循环中算出 v 的 4 个 lane；可以时记录需要生成的指令 */
+    private boolean markVector(Plan p, Value v) {
+        if (!isInLoop(p, v))
+            return isVectorElement(v.getType());
+        Boolean cached = p.widenable.get(v);
+        if (cached != null)
+            return cached;
+        Instruction inst = (Instruction) v;
+        boolean ok;
+        if (inst instanceof Phi phi) {
+            ok = p.inductions.containsKey(phi);
+        } else if (inst.getParent() != p.body) {
+            ok = false;
+        } else if (inst instanceof LoadInst load) {
+            ok = isConsecutive(p, load.getPointer()) && markScalar(p, load.getPointer());
+        } else if (inst instanceof BinOperator bin) {
+            ok = vectorOpcode(bin) != null && markVector(p, bin.getOperand(0))
+                    && (bin.opCode() == Opcode.SHL || markVector(p, bin.getOperand(1)));
+        } else {
+            ok = false;
+        }
+        if (ok && !(inst instanceof Phi))
+            p.needVector.add(inst);
+        p.widenable.put(v, ok);
+        return ok;
+    }
+
+    private static boolean isVectorElement(Type t) {
+        return t.isI32() || t.isFloat();
+    }
+
+    /** 对应的向量运算；shl 只接受常量位移，按乘以 2^k 处理 */
+    private static Opcode vectorOpcode(BinOperator bin) {
+        Type t = bin.getType();
+        return switch (bin.opCode()) {
+            case ADD -> t.isI32() ? Opcode.VADD : null;
+            case SUB -> t.isI32() ? Opcode.VSUB : null;
+            case MUL -> t.isI32() ? Opcode.VMUL : null;
+            case SHL -> t.isI32() && bin.getOperand(1) instanceof ConstantInt c && c.getValue() >= 0
+                    && c.getValue() < 31 ? Opcode.VMUL : null;
+            case FADD -> Opcode.VADD;
+            case FSUB -> Opcode.VSUB;
+            case FMUL -> Opcode.VMUL;
+            case FDIV -> Opcode.VDIV;
+            default -> null;
+        };
+    }
+
+    /**
+     * 向量循环把相邻 VF 次迭代里的同一条访存指令放在一起执行。
+     * 程序顺序在前的 a 与在后的 b 之间，若 b 的迭代可能早于 a 的迭代（方向 '>'），
+     * 依赖就是从 b 流向 a 的回向依赖，只有距离不小于 VF 时两次访问才落在不同的向量迭代中。
+     */
+    private boolean checkDependences(Plan p) {
+        List<Instruction> accesses = new ArrayList<>();
+        for (var node : p.body.getInstructions()) {
+            if (da.isMemoryAccess(node.getVal()))
+                accesses.add(node.getVal());
+        }
+        for (int i = 0; i < accesses.size(); i++) {
+            for (int j = i; j < accesses.size(); j++) {
+                Instruction a = accesses.get(i);
+                Instruction b = accesses.get(j);
+                if (!DependenceAnalysis.isWrite(a) && !DependenceAnalysis.isWrite(b))
+                    continue;
+                Dependence dep = da.depends(a, b);
+                if (dep == null)
+                    continue;
+                int level = dep.getCommonLoops().indexOf(p.loop);
+                if (dep.isConfused() || level < 0)
+                    return false;
+                for (int[] dir : dep.getDirectionVectors()) {
+                    boolean outerEqual = true;
+                    for (int k = 0; k < level; k++)
+                        outerEqual &= (dir[k] & DependenceAnalysis.EQ) != 0;
+                    if (!outerEqual || (dir[level] & DependenceAnalysis.GT) == 0)
+                        continue;
+                    Integer distance = dep.getDistance(level);
+                    if (distance == null || -distance < VF)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // ==================== 代价 ====================
+
+    private boolean isProfitable(Plan p) {
+        if (p.backedgeTakenCount instanceof SCEV.Constant c && c.getValue() < MIN_TRIP_COUNT)
+            return false;
+        int scalarCost = SCALAR_LOOP_OVERHEAD;
+        for (var node : p.body.getInstructions()) {
+            if (!node.getVal().isTerminator())
+                scalarCost++;
+        }
+        int vectorCost = VECTOR_LOOP_OVERHEAD + p.needVector.size() + p.needScalar.size() + p.stores.size()
+                + p.reductions.size() + p.inductions.size();
+        // 参与向量运算的归纳变量需要额外维护一个向量 phi
+        for (Phi iv : p.inductions.keySet()) {
+            if (Boolean.TRUE.equals(p.widenable.get(iv)))
+                vectorCost++;
+        }
+        return vectorCost < scalarCost * VF;
+    }
+
+    // ==================== 变换 ====================
+
+    private void vectorize(Plan p) {
+        plan = p;
+        scalarMap.clear();
+        vectorMap.clear();
+        splats.clear();
+        vectorIVSteps.clear();
+        startValues.clear();
+
+        Function func = p.header.getParent();
+        var cfgSnapshot = DominanceAnalysisPass.snapshot(func, List.of(p.preheader));
+        BasicBlock vecPh = func.appendBasicBlock("vec.ph");
+        vecHeader = func.appendBasicBlock("vec.hdr");
+        vecBody = func.appendBasicBlock("vec.body");
+        BasicBlock vecMid = func.appendBasicBlock("vec.mid");
+
+        // 入口值在改动 CFG 之前取出
+        for (Phi phi : p.inductions.keySet())
+            startValues.put(phi, incomingFrom(phi, p.preheader));
+        for (Phi phi : p.reductions.keySet())
+            startValues.put(phi, incomingFrom(phi, p.preheader));
+
+        // preheader → vec.ph；vec.mid 取代 preheader 成为原 header 的前驱
+        retarget(p.preheader, p.header, vecPh);
+        p.header.replacePredecessor(p.preheader, vecMid);
+        phTerm = branch(vecPh, vecHeader);
+        bodyTerm = branch(vecBody, vecHeader);
+        Instruction midTerm = new BranchInst(p.header);
+        vecMid.addInstruction(midTerm);
+
+        // 向量迭代次数：回边次数向下取整到 VF 的倍数
+        Value vecCount;
+        if (p.backedgeTakenCount instanceof SCEV.Constant c) {
+            vecCount = i32(c.getValue() & -VF);
+        } else {
+            Value btc = new SCEVExpander(se).expand(p.backedgeTakenCount, phTerm);
+            vecCount = insert(new BinOperator("vec.tc", Opcode.AND, IntegerType.getI32(), btc, i32(-VF)), phTerm);
+        }
+
+        // vec.hdr：计数器与标量归纳变量
+        Phi counter = newPhi(IntegerType.getI32(), "vec.cnt");
+        ICmpInst cmp = new ICmpInst(Opcode.ICMP_SLT, "vec.cmp", IntegerType.getI1(), counter, vecCount);
+        vecHeader.addInstruction(cmp);
+        vecHeader.addInstruction(new BranchInst(cmp, vecBody, vecMid));
+        vecHeader.setSuccessor(vecBody);
+        vecHeader.setSuccessor(vecMid);
+
+        Map<Phi, Phi> scalarIVs = new LinkedHashMap<>();
+        for (Map.Entry<Phi, Integer> e : p.inductions.entrySet()) {
+            Phi iv = newPhi(e.getKey().getType(), "vec.iv");
+            scalarIVs.put(e.getKey(), iv);
+            scalarMap.put(e.getKey(), iv);
+        }
+        Map<Phi, Phi> accumulators = new LinkedHashMap<>();
+        for (Reduction r : p.reductions.values())
+            accumulators.put(r.phi, newPhi(vectorTypeOf(r.phi.getType()), "vec.acc"));
+
+        // vec.body：按程序顺序生成，保持访存的先后关系
+        Map<Phi, Value> accNext = new HashMap<>();
+        for (var node : p.body.getInstructions()) {
+            Instruction inst = node.getVal();
+            if (p.needScalar.contains(inst))
+                getScalar(inst);
+            if (p.needVector.contains(inst))
+                getVector(inst);
+            if (inst instanceof StoreInst store && p.stores.contains(store)) {
+                Value ptr = vectorPointer(store.getPointer());
+                insert(new VectorStoreInst(getVector(store.getValue()), ptr), bodyTerm);
+            }
+            for (Reduction r : p.reductions.values()) {
+                if (r.next == inst)
+                    accNext.put(r.phi, insert(reductionOp(r.kind, accumulators.get(r.phi),
+                            getVector(r.operand)), bodyTerm));
+            }
+        }
+
+        // 回边上的值
+        Value counterNext = insert(new BinOperator("vec.cnt", Opcode.ADD, IntegerType.getI32(), counter, i32(VF)),
+                bodyTerm);
+        counter.addIncoming(i32(0), vecPh);
+        counter.addIncoming(counterNext, vecBody);
+        for (Map.Entry<Phi, Phi> e : scalarIVs.entrySet()) {
+            Phi iv = e.getValue();
+            Value ivNext = insert(new BinOperator("vec.iv", Opcode.ADD, IntegerType.getI32(), iv,
+                    i32(p.inductions.get(e.getKey()) * VF)), bodyTerm);
+            iv.addIncoming(startValues.get(e.getKey()), vecPh);
+            iv.addIncoming(ivNext, vecBody);
+        }
+        for (Map.Entry<Phi, Value> e : vectorIVSteps.entrySet()) {
+            Phi viv = e.getKey();
+            Value vivNext = insert(new VectorAddInst(viv, e.getValue(), "vec.viv"), bodyTerm);
+            viv.addIncoming(vivNext, vecBody);
+        }
+        for (Reduction r : p.reductions.values()) {
+            Phi acc = accumulators.get(r.phi);
+            acc.addIncoming(reductionInit(r, startValues.get(r.phi)), vecPh);
+            acc.addIncoming(accNext.get(r.phi), vecBody);
+        }
+
+        // vec.mid：横向合并部分和，原循环从向量循环停下的位置继续
+        for (var node : p.header.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            Value resume = scalarIVs.containsKey(phi) ? scalarIVs.get(phi)
+                    : horizontalReduce(p.reductions.get(phi), accumulators.get(phi), midTerm);
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                if (phi.getIncomingBlock(i) == vecMid)
+                    phi.setIncomingValue(i, resume);
+            }
+        }
+
+        DominanceAnalysisPass.updateCached(cfgSnapshot, List.of(vecPh, vecHeader, vecBody, vecMid));
+        plan = null;
+    }
+
+    /** v 在当前向量迭代 lane 0 上的值 */
+    private Value getScalar(Value v) {
+        if (!isInLoop(plan, v))
+            return v;
+        Value cached = scalarMap.get(v);
+        if (cached != null)
+            return cached;
+        Instruction inst = (Instruction) v;
+        Map<Value, Value> operandMap = new HashMap<>();
+        for (Value op : inst.getOperands())
+            operandMap.put(op, getScalar(op));
+        Instruction clone = inst.clone(operandMap, Collections.emptyMap());
+        insert(clone, bodyTerm);
+        scalarMap.put(v, clone);
+        return clone;
+    }
+
+    /** v 在当前向量迭代 4 个 lane 上的值 */
+    private Value getVector(Value v) {
+        Value cached = vectorMap.get(v);
+        if (cached != null)
+            return cached;
+        Value result;
+        if (!isInLoop(plan, v)) {
+            result = splat(v);
+        } else if (v instanceof Phi iv) {
+            result = vectorInduction(iv);
+        } else if (v instanceof LoadInst load) {
+            result = insert(new VectorLoadInst(vectorPointer(load.getPointer()), "vec.ld"), bodyTerm);
+        } else {
+            BinOperator bin = (BinOperator) v;
+            Value lhs = getVector(bin.getOperand(0));
+            Value rhs = bin.opCode() == Opcode.SHL
+                    ? splat(i32(1 << ((ConstantInt) bin.getOperand(1)).getValue()))
+                    : getVector(bin.getOperand(1));
+            result = insert(switch (vectorOpcode(bin)) {
+                case VADD -> new VectorAddInst(lhs, rhs, "vec.op");
+                case VSUB -> new VectorSubInst(lhs, rhs, "vec.op");
+                case VMUL -> new VectorMulInst(lhs, rhs, "vec.op");
+                default -> new VectorDivInst(lhs, rhs, "vec.op");
+            }, bodyTerm);
+        }
+        vectorMap.put(v, result);
+        return result;
+    }
+
+    /** 归纳变量的向量形式：<start, start+c, start+2c, start+3c>，每次向量迭代加 splat(4c) */
+    private Value vectorInduction(Phi iv) {
+        int step = plan.inductions.get(iv);
+        Value start = splat(startValues.get(iv));
+        Value lanes = buildVector(IntegerType.getI32(), List.of(i32(0), i32(step), i32(2 * step), i32(3 * step)));
+        Value init = insert(new VectorAddInst(start, lanes, "vec.viv"), phTerm);
+        Phi viv = newPhi(vectorTypeOf(iv.getType()), "vec.viv");
+        viv.addIncoming(init, phTerm.getParent());
+        vectorIVSteps.put(viv, splat(i32(step * VF)));
+        return viv;
+    }
+
+    /** 标量 GEP 在 lane 0 的地址，转换为向量指针 */
+    private Value vectorPointer(Value ptr) {
+        Value scalar = getScalar(ptr);
+        Type elem = ((PointerType) ptr.getType()).getPointeeType();
+        return insert(new CastInst(Opcode.BITCAST, scalar, PointerType.get(vectorTypeOf(elem)), "vec.ptr"),
+                bodyTerm);
+    }
+
+    /** 循环不变量广播为向量，生成在 vec.ph 中 */
+    private Value splat(Value v) {
+        Value cached = splats.get(v);
+        if (cached != null)
+            return cached;
+        Value result = buildVector(v.getType(), Collections.nCopies(VF, v));
+        splats.put(v, result);
+        return result;
+    }
+
+    private Value buildVector(Type elem, List<Value> lanes) {
+        Value vec = UndefValue.get(vectorTypeOf(elem));
+        for (int i = 0; i < lanes.size(); i++)
+            vec = insert(new VectorInsertInst(vec, lanes.get(i), i32(i), "vec.ins"), phTerm);
+        return vec;
+    }
+
+    private Instruction reductionOp(RecurKind kind, Value acc, Value x) {
+        return switch (kind) {
+            case ADD -> new VectorAddInst(acc, x, "vec.red");
+            case SUB -> new VectorSubInst(acc, x, "vec.red");
+            case MIN -> new VectorMinInst(acc, x, "vec.red");
+            case MAX -> new VectorMaxInst(acc, x, "vec.red");
+        };
+    }
+
+    /** 加减归约：初值放在 lane 0，其余 lane 为 0；min / max：初值广播到所有 lane */
+    private Value reductionInit(Reduction r, Value start) {
+        if (r.kind == RecurKind.MIN || r.kind == RecurKind.MAX)
+            return splat(start);
+        return buildVector(start.getType(), List.of(start, i32(0), i32(0), i32(0)));
+    }
+
+    /** 在 insertBefore 之前把 4 个 lane 合并成一个标量：((l0 op l1) op (l2 op l3)) */
+    private Value horizontalReduce(Reduction r, Value acc, Instruction insertBefore) {
+        List<Value> lanes = new ArrayList<>();
+        for (int i = 0; i < VF; i++)
+            lanes.add(insert(new VectorExtractInst(acc, i32(i), "vec.ext"), insertBefore));
+        while (lanes.size() > 1) {
+            List<Value> next = new ArrayList<>();
+            for (int i = 0; i < lanes.size(); i += 2)
+                next.add(combine(r, lanes.get(i), lanes.get(i + 1), insertBefore));
+            lanes = next;
+        }
+        return lanes.get(0);
+    }
+
+    private Value combine(Reduction r, Value a, Value b, Instruction insertBefore) {
+        Type type = a.getType();
+        if (r.kind == RecurKind.ADD || r.kind == RecurKind.SUB)
+            return insert(new BinOperator("vec.red", Opcode.ADD, type, a, b), insertBefore);
+        boolean min = r.kind == RecurKind.MIN;
+        Instruction cmp = type.isFloat()
+                ? new FCmpInst(min ? Opcode.FCMP_OLT : Opcode.FCMP_OGT, "vec.cmp", IntegerType.getI1(), a, b)
+                : new ICmpInst(min ? Opcode.ICMP_SLT : Opcode.ICMP_SGT, "vec.cmp", IntegerType.getI1(), a, b);
+        insert(cmp, insertBefore);
+        return insert(new SelectInst(cmp, a, b, "vec.red"), insertBefore);
+    }
+
+    // ==================== 工具 ====================
+
+    private static VectorType vectorTypeOf(Type elem) {
+        return new VectorType(elem.isFloat() ? FloatType.getFloat() : IntegerType.getI32(), VF);
+    }
+
+    private static ConstantInt i32(int v) {
+        return new ConstantInt(IntegerType.getI32(), v);
+    }
+
+    private static Instruction insert(Instruction inst, Instruction before) {
+        before.getParent().addInstructionBefore(inst, before);
+        return inst;
+    }
+
+    private Phi newPhi(Type type, String name) {
+        Phi phi = new Phi(type, vecHeader.getParent().getUniqueName(name));
+        vecHeader.insertPhi(phi);
+        return phi;
+    }
+
+    private static Instruction branch(BasicBlock from, BasicBlock to) {
+        Instruction br = new BranchInst(to);
+        from.addInstruction(br);
+        from.setSuccessor(to);
+        return br;
+    }
+
+    /** 把 block 的 terminator 中指向 from 的目标改为 to（CFG 的前驱关系由调用方维护） */
+    private static void retarget(BasicBlock block, BasicBlock from, BasicBlock to) {
+        BranchInst br = (BranchInst) terminatorOf(block);
+        for (int i = 0; i < br.getNumOperands(); i++) {
+            if (br.getOperand(i) == from)
+                br.setOperand(i, to);
+        }
+        block.setSuccessor(to);
+    }
+
+    private static Instruction terminatorOf(BasicBlock bb) {
+        var node = bb.getTerminator();
+        return node == null ? null : node.getVal();
+    }
+
+    private static Value incomingFrom(Phi phi, BasicBlock block) {
+        for (int i = 0; i < phi.getNumIncoming(); i++) {
+            if (phi.getIncomingBlock(i) == block)
+                return phi.getIncomingValue(i);
+        }
+        return null;
+    }
+}
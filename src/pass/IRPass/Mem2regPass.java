@@ -58,8 +58,7 @@ public class Mem2regPass implements IRPass {
         }
 
         // Step 2: 计算支配信息
-        DominanceAnalysisPass domAnalysis = new DominanceAnalysisPass(func);
-        domAnalysis.run();
+        DominanceAnalysisPass domAnalysis = DominanceAnalysisPass.getOrCompute(func);
 
         // Step 3: 收集定义点
         ArrayList<Set<BasicBlock>> defBlocks = new ArrayList<>();
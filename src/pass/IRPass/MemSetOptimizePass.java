@@ -37,8 +37,7 @@ public class MemSetOptimizePass implements IRPass {
         // 构建 Loop 信息（暂未直接使用，但保持与 BUAA 类似的前置分析流程）
         LoopInfoFullAnalysis lifa = new LoopInfoFullAnalysis();
         lifa.runOnFunction(f);
-        DominanceAnalysisPass dom = new DominanceAnalysisPass(f);
-        dom.run();
+        DominanceAnalysisPass dom = DominanceAnalysisPass.getOrCompute(f);
 
         // 遍历块，保守识别形如 双层for：gep(base,0,i,j) + store 0 或 gep(base,0,i,j) + store getint()
         // 把该数组对应的 load 标记为“可供数组GVN使用”（这里通过记录 hash 实现）
@@ -9,6 +9,7 @@ import ir.value.instructions.Instruction;
 import ir.value.instructions.Phi;
 import pass.IRPassType;
 import pass.Pass;
+import pass.IRPass.analysis.DominanceAnalysisPass;
 import util.IList;
 import util.LoggingManager;
 import util.logging.Logger;
@@ -18,7 +19,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class MergeBlocksPass implements Pass.IRPass {
+public class MergeBlocksPass implements Pass.FunctionPass {
     private final Logger log = LoggingManager.getLogger(this.getClass());
     private boolean enableLog = false;
 
@@ -32,16 +33,21 @@ public class MergeBlocksPass implements Pass.IRPass {
         NLVMModule module = NLVMModule.getModule();
         for (Function function : module.getFunctions()) {
             if (!function.isDeclaration()) {
-                boolean changed;
-                do {
-                    // System.out.println("before: " + function.toNLVM());
-                    changed = runOnFunction(function);
-                    // System.out.println("after: " + function.toNLVM());
-                } while (changed);
+                run(function);
             }
         }
     }
 
+    @Override
+    public void run(Function function) {
+        boolean changed;
+        do {
+            // System.out.println("before: " + function.toNLVM());
+            changed = runOnFunction(function);
+            // System.out.println("after: " + function.toNLVM());
+        } while (changed);
+    }
+
     private boolean runOnFunction(Function function) {
         boolean changed = false;
         changed |= eliminateSingleIncomingPhis(function);
@@ -157,7 +163,9 @@ public class MergeBlocksPass implements Pass.IRPass {
             }
 
             // 4) 更新 CFG：将 successor 的所有后继改接到 block；并断开 successor 与前驱/后继
+            List<DominanceAnalysisPass.Update> domUpdates = new ArrayList<>();
             successor.removePredecessor(block);
+            domUpdates.add(DominanceAnalysisPass.Update.delete(block, successor));
             for (BasicBlock succSucc : new ArrayList<>(successor.getSuccessors())) {
                 // 后继中的 PHI 原本来自 successor 的 incoming block 改为 block
                 for (IList.INode<Instruction, BasicBlock> instNode : succSucc.getInstructions()) {
@@ -171,8 +179,13 @@ public class MergeBlocksPass implements Pass.IRPass {
                     }
                 }
                 succSucc.removePredecessor(successor);
-                block.setSuccessor(succSucc);
+                domUpdates.add(DominanceAnalysisPass.Update.delete(successor, succSucc));
+                if (!block.getSuccessors().contains(succSucc)) {
+                    block.setSuccessor(succSucc);
+                    domUpdates.add(DominanceAnalysisPass.Update.insert(block, succSucc));
+                }
             }
+            DominanceAnalysisPass.updateCached(function, domUpdates);
 
             // 5) 从函数块列表中移除 successor
             successor._getINode().removeSelf();
@@ -0,0 +1,404 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Value;
+import ir.value.constants.Constant;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.GEPInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.LoadInst;
+import ir.value.instructions.Phi;
+import ir.value.instructions.SelectInst;
+import ir.value.instructions.StoreInst;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.AliasAnalysis;
+import pass.IRPass.analysis.AliasAnalysis.AliasResult;
+import pass.IRPass.analysis.AliasAnalysis.MemoryLocation;
+import pass.IRPass.analysis.DominanceAnalysisPass;
+import pass.IRPass.analysis.MemorySSA;
+import pass.IRPass.analysis.MemorySSA.MemoryAccess;
+import pass.IRPass.analysis.MemorySSA.MemoryDef;
+import pass.IRPass.analysis.MemorySSA.MemoryPhi;
+import pass.IRPass.analysis.MemorySSA.MemoryUseOrDef;
+import pass.IRPass.analysis.ModRefAnalysis;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.*;
+
+/**
+ * 部分冗余消除（简化的 GVN-PRE）。
+ * <p>
+ * {@link GVNPass} 的标量编号只在块内有效，这里按逆后序遍历整个函数，维护“表达式 → 已有的值”：
+ * <ul>
+ * <li>完全冗余：已有的同值表达式支配当前指令，直接替换；</li>
+ * <li>部分冗余：当前指令在汇合块中，把它的操作数经本块 phi 翻译到各前驱，若只有一个前驱的末尾
+ * 没有可用的值，就在这个前驱补算一份（关键边先拆出新块），原指令换成合并各前驱值的 phi。
+ * 循环头的 preheader 缺少、回边上可用的正是该指令本身时，效果是把不变的计算提到循环之前。</li>
+ * </ul>
+ * 处理标量算术、类型转换、select 与 GEP 地址计算。比较结果要和分支留在同一块，后端才能把比较与跳转合并，不处理。
+ * <p>
+ * Load 按（地址，MemorySSA 给出的 clobber）编号：前驱末尾该位置的 clobber 是 must-alias 的 store，
+ * 或者同一 clobber 下已经读过同一地址，就认为值可用。完全冗余的 load 已由 GVN 消除，这里只做汇合块。
+ * <p>
+ * 补算只发生在通往汇合块的边上，原指令在这条路径上本来就要执行，所以不会引入新的除零或越界访问；
+ * 不在回边上补算：那样只是把计算从循环头挪到 latch，循环内的工作量并不减少。
+ */
+public class PartialRedundancyEliminationPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(PartialRedundancyEliminationPass.class);
+
+    /** GEP 等地址按结构判等，与 GVN 的 load 编号一致 */
+    private record LoadKey(Object address, MemoryAccess clobber) {
+    }
+
+    private ModRefAnalysis modRef;
+    private DominanceAnalysisPass dom;
+    private MemorySSA mssa;
+    /** 编号 → 已出现的值（指令或取代它的 phi），按逆后序加入，表中的值在加入时都位于当前块之前 */
+    private final Map<Object, List<Value>> leaders = new HashMap<>();
+    /** 拆关键边得到的块 → 原来的前驱；MemoryPhi 的入边仍以原前驱为键 */
+    private final Map<BasicBlock, BasicBlock> splitFrom = new HashMap<>();
+    /** 插入过 phi 的块：原指令的操作数 phi、以及随后 load 被合并掉的地址 phi 都可能不再有人用 */
+    private final Set<BasicBlock> mergeBlocks = new LinkedHashSet<>();
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.PRE;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule module = NLVMModule.getModule();
+        modRef = ModRefAnalysis.compute(module);
+        for (Function func : module.getFunctions()) {
+            if (!func.isDeclaration())
+                runOnFunction(func);
+        }
+    }
+
+    private void runOnFunction(Function func) {
+        dom = DominanceAnalysisPass.getOrCompute(func);
+        // 只插入 load 与 phi、删除 load，不动写操作，整个函数共用一份 MemorySSA
+        mssa = new MemorySSA(func, modRef);
+        leaders.clear();
+        splitFrom.clear();
+        mergeBlocks.clear();
+        int eliminated = 0;
+        for (BasicBlock bb : new ArrayList<>(dom.getReversePostOrder())) {
+            for (var node = bb.getInstructions().getEntry(); node != null;) {
+                Instruction inst = node.getVal();
+                node = node.getNext();
+                if (inst instanceof LoadInst load) {
+                    if (processLoad(load))
+                        eliminated++;
+                } else if (isExpression(inst)) {
+                    if (processExpression(inst))
+                        eliminated++;
+                }
+            }
+        }
+        removeDeadPhis();
+        if (eliminated > 0)
+            log.info("PRE: {} redundant instructions removed in {}", eliminated, func.getName());
+    }
+
+    private static boolean isExpression(Instruction inst) {
+        return inst instanceof BinOperator || inst instanceof CastInst || inst instanceof GEPInst
+                || inst instanceof SelectInst;
+    }
+
+    // ==================== 标量表达式 ====================
+
+    private boolean processExpression(Instruction inst) {
+        BasicBlock bb = inst.getParent();
+        Object key = expressionKey(inst, inst.getOperands());
+        for (Value leader : leaders.getOrDefault(key, List.of())) {
+            if (isAvailableIn(leader, bb)) {
+                inst.replaceAllUsesWith(leader);
+                bb.removeInstruction(inst);
+                return true;
+            }
+        }
+        if (tryExpressionPRE(inst, key))
+            return true;
+        addLeader(key, inst);
+        return false;
+    }
+
+    private boolean tryExpressionPRE(Instruction inst, Object key) {
+        BasicBlock bb = inst.getParent();
+        if (bb.getPredecessors().size() < 2)
+            return false;
+        Map<BasicBlock, Value> available = new HashMap<>();
+        BasicBlock missing = null;
+        Map<Value, Value> missingMap = null;
+        for (BasicBlock pred : bb.getPredecessors()) {
+            Map<Value, Value> phiMap = phiTranslation(bb, pred);
+            if (phiMap == null)
+                return false;
+            List<Value> operands = new ArrayList<>();
+            for (Value op : inst.getOperands()) {
+                // 本块中非 phi 的值在前驱里还不存在
+                if (op instanceof Instruction opInst && !(op instanceof Phi) && opInst.getParent() == bb)
+                    return false;
+                operands.add(phiMap.getOrDefault(op, op));
+            }
+            Object predKey = expressionKey(inst, operands);
+            Value value = availableAtEnd(predKey, pred);
+            // 经回边回到本块：操作数不随 phi 变化时，上一次执行的结果就是可用的值
+            if (value == null && predKey.equals(key) && dom.dominates(bb, pred))
+                value = inst;
+            if (value != null) {
+                available.put(pred, value);
+            } else if (missing == null) {
+                missing = pred;
+                missingMap = phiMap;
+            } else {
+                return false;
+            }
+        }
+        if (available.isEmpty())
+            return false;
+        if (missing != null) {
+            if (dom.dominates(bb, missing))
+                return false;
+            Instruction copy = inst.clone(missingMap, new HashMap<>());
+            BasicBlock at = edgeBlock(missing, bb);
+            at.addInstructionBefore(copy, at.getTerminator().getVal());
+            available.put(at, copy);
+            addLeader(expressionKey(copy, copy.getOperands()), copy);
+        }
+        addLeader(key, mergeWithPhi(inst, available));
+        return true;
+    }
+
+    /** 编号：操作码、结果类型与操作数；常量按值，可交换运算的操作数排成固定顺序 */
+    private static Object expressionKey(Instruction inst, List<Value> operands) {
+        List<Object> ops = new ArrayList<>();
+        for (Value op : operands)
+            ops.add(op instanceof Constant c ? c.getHash() : op);
+        if (inst instanceof BinOperator bin && bin.isCommutative() && order(ops.get(0)) > order(ops.get(1)))
+            Collections.swap(ops, 0, 1);
+        return List.of(inst.opCode(), inst.getType().getHash(), ops);
+    }
+
+    private static long order(Object operand) {
+        // 常量排在后面，其它值按对象身份
+        return operand instanceof String s ? Integer.MAX_VALUE + (long) (s.hashCode() & 0x7fffffff)
+                : System.identityHashCode(operand);
+    }
+
+    // ==================== Load ====================
+
+    private boolean processLoad(LoadInst load) {
+        MemoryAccess clobber = mssa.getClobberingAccess(load);
+        if (clobber == null)
+            return false;
+        LoadKey key = new LoadKey(addressKey(load.getPointer()), clobber);
+        if (tryLoadPRE(load, clobber))
+            return true;
+        addLeader(key, load);
+        return false;
+    }
+
+    private boolean tryLoadPRE(LoadInst load, MemoryAccess clobber) {
+        BasicBlock bb = load.getParent();
+        if (bb.getPredecessors().size() < 2)
+            return false;
+        Value ptr = load.getPointer();
+        if (ptr instanceof Instruction ptrInst && !(ptr instanceof Phi) && ptrInst.getParent() == bb)
+            return false;
+        MemoryAccess entryState = memoryStateAtEntry(load);
+        if (entryState == null)
+            return false;
+        Map<BasicBlock, Value> available = new HashMap<>();
+        BasicBlock missing = null;
+        Value missingPtr = null;
+        MemoryAccess missingClobber = null;
+        for (BasicBlock pred : bb.getPredecessors()) {
+            Map<Value, Value> phiMap = phiTranslation(bb, pred);
+            if (phiMap == null)
+                return false;
+            Value predPtr = phiMap.getOrDefault(ptr, ptr);
+            MemoryAccess state = entryState;
+            if (entryState instanceof MemoryPhi phi && phi.getBlock() == bb)
+                state = phi.getIncoming().get(splitFrom.getOrDefault(pred, pred));
+            if (state == null)
+                return false;
+            MemoryLocation loc = MemoryLocation.of(predPtr, load.getType());
+            MemoryAccess predClobber = mssa.getClobberingAccess(state, loc);
+            Value value = forwardedStore(predClobber, loc, load);
+            if (value == null)
+                value = availableAtEnd(new LoadKey(addressKey(predPtr), predClobber), pred);
+            if (value == null && predPtr == ptr && predClobber == clobber && dom.dominates(bb, pred))
+                value = load;
+            if (value != null) {
+                available.put(pred, value);
+            } else if (missing == null) {
+                missing = pred;
+                missingPtr = predPtr;
+                missingClobber = predClobber;
+            } else {
+                return false;
+            }
+        }
+        if (available.isEmpty())
+            return false;
+        if (missing != null) {
+            if (dom.dominates(bb, missing))
+                return false;
+            LoadInst copy = new LoadInst(missingPtr, "pre.ld");
+            BasicBlock at = edgeBlock(missing, bb);
+            at.addInstructionBefore(copy, at.getTerminator().getVal());
+            available.put(at, copy);
+            addLeader(new LoadKey(addressKey(missingPtr), missingClobber), copy);
+        }
+        mssa.removeAccess(load);
+        addLeader(new LoadKey(addressKey(ptr), clobber), mergeWithPhi(load, available));
+        return true;
+    }
+
+    /**
+     * 块入口的内存版本：从 load 向上越过本块中不会改写其位置的 def。
+     * 结果是本块的 MemoryPhi 时各前驱的版本取其入边；块内有可能改写该位置的 def 时返回 null。
+     */
+    private MemoryAccess memoryStateAtEntry(LoadInst load) {
+        MemoryUseOrDef access = mssa.getMemoryAccess(load);
+        if (access == null)
+            return null;
+        MemoryLocation loc = MemorySSA.getLocation(load);
+        MemoryAccess cur = access.getDefiningAccess();
+        while (cur instanceof MemoryDef def && def.getInstruction() != null
+                && def.getBlock() == load.getParent()) {
+            if (mssa.clobbers(def, loc, false))
+                return null;
+            cur = def.getDefiningAccess();
+        }
+        return cur;
+    }
+
+    /** clobber 是写同一位置、同一类型的 store 时，前驱末尾该位置的值就是 store 的值 */
+    private static Value forwardedStore(MemoryAccess clobber, MemoryLocation loc, LoadInst load) {
+        if (clobber instanceof MemoryDef def && def.getInstruction() instanceof StoreInst st
+                && st.getValue().getType().equals(load.getType())
+                && AliasAnalysis.alias(MemorySSA.getLocation(st), loc) == AliasResult.MUST)
+            return st.getValue();
+        return null;
+    }
+
+    private static Object addressKey(Value ptr) {
+        if (ptr instanceof Constant c)
+            return c.getHash();
+        if (!(ptr instanceof GEPInst gep))
+            return ptr;
+        List<Object> key = new ArrayList<>();
+        key.add(addressKey(gep.getPointer()));
+        for (Value idx : gep.getIndices())
+            key.add(idx instanceof Constant c ? c.getHash() : idx);
+        return key;
+    }
+
+    // ==================== 公共部分 ====================
+
+    private void addLeader(Object key, Value value) {
+        leaders.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+    }
+
+    /** 在 pred 末尾可用的同编号值：它所在的块支配 pred */
+    private Value availableAtEnd(Object key, BasicBlock pred) {
+        for (Value leader : leaders.getOrDefault(key, List.of())) {
+            if (isAvailableIn(leader, pred))
+                return leader;
+        }
+        return null;
+    }
+
+    /** 指令所在的块支配 bb 时在 bb 中可用；参数、常量处处可用 */
+    private boolean isAvailableIn(Value value, BasicBlock bb) {
+        return !(value instanceof Instruction inst) || dom.dominates(inst.getParent(), bb);
+    }
+
+    /** bb 中 phi 在 pred 入边上的取值；同一前驱有多条入边时返回 null */
+    private static Map<Value, Value> phiTranslation(BasicBlock bb, BasicBlock pred) {
+        Map<Value, Value> map = new HashMap<>();
+        for (var node : bb.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                if (phi.getIncomingBlock(i) != pred)
+                    continue;
+                if (map.containsKey(phi))
+                    return null;
+                map.put(phi, phi.getIncomingValue(i));
+            }
+        }
+        return map;
+    }
+
+    /** 用合并各前驱可用值的 phi 取代 inst；各前驱的值相同时直接用这个值 */
+    private Value mergeWithPhi(Instruction inst, Map<BasicBlock, Value> available) {
+        BasicBlock bb = inst.getParent();
+        Set<Value> distinct = new HashSet<>(available.values());
+        Value result;
+        if (distinct.size() == 1 && !distinct.contains(inst)) {
+            result = distinct.iterator().next();
+        } else {
+            Phi phi = new Phi(inst.getType(), bb.getParent().getUniqueName("pre"));
+            bb.insertPhi(phi);
+            for (BasicBlock pred : bb.getPredecessors()) {
+                Value v = available.get(pred);
+                phi.addIncoming(v == inst ? phi : v, pred);
+            }
+            result = phi;
+            mergeBlocks.add(bb);
+        }
+        inst.replaceAllUsesWith(result);
+        bb.removeInstruction(inst);
+        return result;
+    }
+
+    private void removeDeadPhis() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock bb : mergeBlocks) {
+                for (var node = bb.getInstructions().getEntry(); node != null;) {
+                    Instruction inst = node.getVal();
+                    node = node.getNext();
+                    if (!(inst instanceof Phi phi))
+                        break;
+                    if (phi.getUses().stream().allMatch(use -> use.getUser() == phi)) {
+                        bb.removeInstruction(phi);
+                        changed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /** 在边 pred -> succ 上插入计算的位置：pred 只有这一个后继时就是 pred，否则拆开关键边 */
+    private BasicBlock edgeBlock(BasicBlock pred, BasicBlock succ) {
+        if (pred.getSuccessors().size() == 1)
+            return pred;
+        Function func = succ.getParent();
+        var snapshot = DominanceAnalysisPass.snapshot(func, List.of(pred));
+        BasicBlock split = func.appendBasicBlock("pre.edge");
+        Instruction term = pred.getTerminator().getVal();
+        for (int i = 0; i < term.getNumOperands(); i++) {
+            if (term.getOperand(i) == succ)
+                term.setOperand(i, split);
+        }
+        succ.replacePredecessor(pred, split);
+        pred.setSuccessor(split);
+        split.addInstruction(new BranchInst(succ));
+        DominanceAnalysisPass.updateCached(snapshot, List.of(split));
+        dom = DominanceAnalysisPass.getOrCompute(func);
+        splitFrom.put(split, splitFrom.getOrDefault(pred, pred));
+        return split;
+    }
+}
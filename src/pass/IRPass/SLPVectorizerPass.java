@@ -0,0 +1,517 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.type.FloatType;
+import ir.type.IntegerType;
+import ir.type.PointerType;
+import ir.type.Type;
+import ir.type.VectorType;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.UndefValue;
+import ir.value.Use;
+import ir.value.Value;
+import ir.value.constants.Constant;
+import ir.value.constants.ConstantFloat;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.*;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.AliasAnalysis;
+import pass.IRPass.analysis.AliasAnalysis.MemoryLocation;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.*;
+
+/**
+ * 直线代码的超字级并行（SLP）向量化，宽度 4，元素为 i32 / float。
+ * <p>
+ * 种子：同一基本块内写入相邻地址（a[k]、a[k + 1]、a[k + 2]、a[k + 3]，由 GEP 链分解出的常量距离判定）的
+ * 4 条标量 store。从 4 个被存储的值出发，逐层把“同构”的 4 元组打包成一个向量结点：
+ * <ul>
+ * <li>同一运算的 4 条二元运算（add / sub / mul / 常量左移，fadd / fsub / fmul / fdiv），可交换运算按需交换操作数</li>
+ * <li>读取相邻地址的 4 条 load → 一条向量 load</li>
+ * <li>4 个相同的值 → 广播；其余情况 → 逐 lane insert 拼装（gather）</li>
+ * </ul>
+ * 向量代码放在组内最后一条 store 处：组内的 store 和树中的 load 都被推迟到该位置执行，
+ * 其间不能有与之别名的其他访存或调用。
+ * <p>
+ * 代价模型以指令条数计：标量侧为可删除的树中指令与 4 条 store，
+ * 向量侧为每个向量结点一条、gather 每个 lane 一条 insert、每个树外使用一条 extract。
+ * 树外使用若出现在插入点之前，则保留该标量指令（不计入收益）。
+ * 适合跑在 LoopUnrollPass 之后：完全展开的循环体正是这类相邻的直线代码。
+ */
+public class SLPVectorizerPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(SLPVectorizerPass.class);
+
+    private static final int VF = 4;
+    private static final int ELEM_SIZE = 4;
+    // 递归打包的最大深度，超出部分按 gather 处理
+    private static final int MAX_DEPTH = 8;
+
+    private enum Kind {
+        VECTOR_OP, LOAD, SPLAT, GATHER
+    }
+
+    /** 一个 4 元组结点：lanes[i] 是第 i 个 lane 上的标量值 */
+    private static final class Node {
+        final List<Value> lanes;
+        final Kind kind;
+        final List<Node> operands = new ArrayList<>();
+        Value vector; // 生成的向量值
+
+        Node(List<Value> lanes, Kind kind) {
+            this.lanes = lanes;
+            this.kind = kind;
+        }
+    }
+
+    private BasicBlock block;
+    private final Map<Instruction, Integer> position = new HashMap<>();
+    // 以 lane 元组去重的结点
+    private final Map<List<Value>, Node> nodes = new HashMap<>();
+    // 被打包进向量结点的标量指令 -> (结点, lane)
+    private final Map<Instruction, Node> owner = new HashMap<>();
+    private final Map<Instruction, Integer> ownerLane = new HashMap<>();
+    // 作为 gather / 广播的 lane 出现的值
+    private final Set<Value> gathered = new HashSet<>();
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.SLPVectorizer;
+    }
+
+    @Override
+    public void run() {
+        for (Function f : NLVMModule.getModule().getFunctions()) {
+            if (f.isDeclaration())
+                continue;
+            for (var bbNode : f.getBlocks())
+                runOnBlock(bbNode.getVal());
+        }
+    }
+
+    private void runOnBlock(BasicBlock bb) {
+        block = bb;
+        for (List<StoreInst> group : collectSeeds()) {
+            // 每次成功的变换都会插入/删除指令，位置需要重新编号
+            numberInstructions();
+            if (tryVectorize(group))
+                log.debug("SLPVectorizer: vectorized a store group in block {} of {}", bb.getName(),
+                        bb.getParent().getName());
+        }
+    }
+
+    private void numberInstructions() {
+        position.clear();
+        int idx = 0;
+        for (var node : block.getInstructions())
+            position.put(node.getVal(), idx++);
+    }
+
+    // ==================== 种子 ====================
+
+    /** 按底层对象分桶，再按相同的变量偏移部分归组，找出常量偏移依次相差 4 字节的 4 条 store */
+    private List<List<StoreInst>> collectSeeds() {
+        Map<Value, List<List<StoreInst>>> buckets = new LinkedHashMap<>();
+        for (var node : block.getInstructions()) {
+            if (!(node.getVal() instanceof StoreInst st) || !isElementType(st.getValue().getType()))
+                continue;
+            Value base = AliasAnalysis.getUnderlyingObject(st.getPointer());
+            List<List<StoreInst>> chains = buckets.computeIfAbsent(base, k -> new ArrayList<>());
+            List<StoreInst> chain = null;
+            for (List<StoreInst> c : chains) {
+                if (AliasAnalysis.constantDistance(c.get(0).getPointer(), st.getPointer()) != null) {
+                    chain = c;
+                    break;
+                }
+            }
+            if (chain == null)
+                chains.add(chain = new ArrayList<>());
+            chain.add(st);
+        }
+
+        List<List<StoreInst>> groups = new ArrayList<>();
+        for (List<List<StoreInst>> chains : buckets.values()) {
+            for (List<StoreInst> chain : chains) {
+                if (chain.size() < VF)
+                    continue;
+                // 同一地址被写多次时，谁先谁后牵涉到覆盖顺序，这些地址不参与打包
+                TreeMap<Long, StoreInst> byOffset = new TreeMap<>();
+                Set<Long> conflicts = new HashSet<>();
+                Value anchor = chain.get(0).getPointer();
+                for (StoreInst st : chain) {
+                    long off = AliasAnalysis.constantDistance(anchor, st.getPointer());
+                    if (byOffset.putIfAbsent(off, st) != null)
+                        conflicts.add(off);
+                }
+                byOffset.keySet().removeAll(conflicts);
+
+                List<StoreInst> run = new ArrayList<>();
+                long prev = 0;
+                for (var e : byOffset.entrySet()) {
+                    boolean sameType = run.isEmpty()
+                            || run.get(0).getValue().getType().equals(e.getValue().getValue().getType());
+                    if (!run.isEmpty() && (e.getKey() != prev + ELEM_SIZE || !sameType))
+                        run.clear();
+                    run.add(e.getValue());
+                    prev = e.getKey();
+                    if (run.size() == VF) {
+                        groups.add(new ArrayList<>(run));
+                        run.clear();
+                    }
+                }
+            }
+        }
+        return groups;
+    }
+
+    // ==================== 建树 ====================
+
+    private boolean tryVectorize(List<StoreInst> group) {
+        nodes.clear();
+        owner.clear();
+        ownerLane.clear();
+        gathered.clear();
+
+        StoreInst last = group.get(0);
+        for (StoreInst st : group) {
+            if (position.get(st) > position.get(last))
+                last = st;
+        }
+        int insertPos = position.get(last);
+
+        List<Value> values = new ArrayList<>();
+        for (StoreInst st : group)
+            values.add(st.getValue());
+        Node root = build(values, 0);
+        if (!isLegal(group, insertPos))
+            return false;
+
+        // 树外使用：插入点之后（或其他块）的用 extract，插入点之前的只能保留标量
+        Set<Instruction> stores = new HashSet<>(group);
+        Set<Instruction> keep = new HashSet<>();
+        Set<Instruction> extract = new LinkedHashSet<>();
+        for (Instruction inst : owner.keySet()) {
+            if (gathered.contains(inst)) {
+                keep.add(inst);
+                continue;
+            }
+            for (Use use : inst.getUses()) {
+                Value user = use.getUser();
+                if (owner.containsKey(user) || stores.contains(user))
+                    continue;
+                Integer pos = position.get(user);
+                if (pos != null && pos < insertPos)
+                    keep.add(inst);
+                else
+                    extract.add(inst);
+            }
+        }
+        Deque<Instruction> worklist = new ArrayDeque<>(keep);
+        while (!worklist.isEmpty()) {
+            Instruction inst = worklist.poll();
+            for (Value op : inst.getOperands()) {
+                if (op instanceof Instruction opInst && owner.containsKey(opInst) && keep.add(opInst))
+                    worklist.add(opInst);
+            }
+        }
+        extract.removeAll(keep);
+
+        int scalarCost = owner.size() - keep.size() + VF;
+        int vectorCost = 1 + extract.size();
+        for (Node n : nodes.values())
+            vectorCost += nodeCost(n);
+        if (vectorCost >= scalarCost)
+            return false;
+
+        emit(root, group, last, extract);
+        return true;
+    }
+
+    private Node build(List<Value> lanes, int depth) {
+        Node cached = nodes.get(lanes);
+        if (cached != null)
+            return cached;
+
+        Node node;
+        Value first = lanes.get(0);
+        if (lanes.stream().allMatch(v -> sameValue(v, first))) {
+            node = gather(lanes, Kind.SPLAT);
+        } else if (depth < MAX_DEPTH && isPackable(lanes) && first instanceof BinOperator bin0
+                && vectorOpcode(bin0) != null && lanes.stream().allMatch(v -> v instanceof BinOperator b
+                        && b.opCode() == bin0.opCode() && b.getType().equals(bin0.getType()))) {
+            node = new Node(lanes, Kind.VECTOR_OP);
+            claim(node);
+            List<Value> lhs = new ArrayList<>();
+            List<Value> rhs = new ArrayList<>();
+            // 常量左移按乘以 2^c 打包，相同的乘数共用一个常量，便于识别为广播
+            Map<Integer, Value> multipliers = new HashMap<>();
+            for (Value v : lanes) {
+                BinOperator b = (BinOperator) v;
+                Value l = b.getOperand(0), r = b.getOperand(1);
+                if (b.opCode() == Opcode.SHL)
+                    r = multipliers.computeIfAbsent(((ConstantInt) r).getValue(), c -> i32(1 << c));
+                if (b.isCommutative() && !lhs.isEmpty() && !similar(lhs.get(0), l) && similar(lhs.get(0), r)) {
+                    Value t = l;
+                    l = r;
+                    r = t;
+                }
+                lhs.add(l);
+                rhs.add(r);
+            }
+            nodes.put(lanes, node);
+            node.operands.add(build(lhs, depth + 1));
+            node.operands.add(build(rhs, depth + 1));
+            return node;
+        } else if (isPackable(lanes) && isConsecutiveLoads(lanes)) {
+            node = new Node(lanes, Kind.LOAD);
+            claim(node);
+        } else {
+            node = gather(lanes, Kind.GATHER);
+        }
+        nodes.put(lanes, node);
+        return node;
+    }
+
+    private Node gather(List<Value> lanes, Kind kind) {
+        gathered.addAll(lanes);
+        return new Node(lanes, kind);
+    }
+
+    private void claim(Node node) {
+        for (int i = 0; i < VF; i++) {
+            Instruction inst = (Instruction) node.lanes.get(i);
+            owner.put(inst, node);
+            ownerLane.put(inst, i);
+        }
+    }
+
+    /** 4 个互不相同、位于本块且尚未被打包的指令 */
+    private boolean isPackable(List<Value> lanes) {
+        Set<Value> seen = new HashSet<>();
+        for (Value v : lanes) {
+            if (!(v instanceof Instruction inst) || inst.getParent() != block || owner.containsKey(inst)
+                    || !seen.add(v))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isConsecutiveLoads(List<Value> lanes) {
+        if (!(lanes.get(0) instanceof LoadInst first) || !isElementType(first.getType()))
+            return false;
+        for (int i = 1; i < VF; i++) {
+            if (!(lanes.get(i) instanceof LoadInst ld) || !ld.getType().equals(first.getType()))
+                return false;
+            Long dist = AliasAnalysis.constantDistance(first.getPointer(), ld.getPointer());
+            if (dist == null || dist != (long) i * ELEM_SIZE)
+                return false;
+        }
+        return true;
+    }
+
+    /** 交换可交换运算的操作数时用来对齐 lane 的粗略相似性 */
+    private static boolean similar(Value a, Value b) {
+        if (a == b)
+            return true;
+        if (a instanceof LoadInst && b instanceof LoadInst)
+            return true;
+        if (a instanceof Constant && b instanceof Constant)
+            return true;
+        return a instanceof BinOperator x && b instanceof BinOperator y && x.opCode() == y.opCode();
+    }
+
+    /** 同一个值，或数值相等的常量 */
+    private static boolean sameValue(Value a, Value b) {
+        if (a == b)
+            return true;
+        if (a instanceof ConstantInt x && b instanceof ConstantInt y)
+            return x.getValue() == y.getValue() && x.getType().equals(y.getType());
+        return a instanceof ConstantFloat x && b instanceof ConstantFloat y
+                && Float.floatToIntBits(x.getValue()) == Float.floatToIntBits(y.getValue());
+    }
+
+    private static int nodeCost(Node n) {
+        if (n.kind != Kind.GATHER)
+            return 1;
+        // 逐 lane insert；常量 0 的 lane 由清零的初值提供
+        int cost = 0;
+        for (Value v : n.lanes) {
+            if (!(v instanceof ConstantInt c && c.getValue() == 0)
+                    && !(v instanceof ConstantFloat f && Float.floatToIntBits(f.getValue()) == 0))
+                cost++;
+        }
+        return Math.max(cost, 1);
+    }
+
+    // ==================== 合法性 ====================
+
+    /**
+     * 组内 store 与树中 load 都推迟到插入点执行：
+     * store 越过的访存不能与之别名（load、组外 store）、调用不能读写它；
+     * load 越过的组外 store 不能与之别名、调用不能改写它。组内 store 在向量 load 之后执行，顺序不变。
+     */
+    private boolean isLegal(List<StoreInst> group, int insertPos) {
+        Set<Instruction> stores = new HashSet<>(group);
+        List<Instruction> between = new ArrayList<>();
+        int lo = insertPos;
+        for (StoreInst st : group)
+            lo = Math.min(lo, position.get(st));
+        for (Instruction inst : owner.keySet()) {
+            if (inst instanceof LoadInst)
+                lo = Math.min(lo, position.get(inst));
+        }
+        for (var node : block.getInstructions()) {
+            int pos = position.get(node.getVal());
+            if (pos > lo && pos < insertPos)
+                between.add(node.getVal());
+        }
+
+        for (StoreInst st : group) {
+            MemoryLocation loc = MemoryLocation.of(st.getPointer(), st.getValue().getType());
+            int from = position.get(st);
+            for (Instruction inst : between) {
+                if (position.get(inst) <= from || stores.contains(inst))
+                    continue;
+                if (inst instanceof LoadInst ld && AliasAnalysis.mayAlias(loc, MemoryLocation.of(ld.getPointer(), ld.getType())))
+                    return false;
+                if (clobbers(inst, loc) || inst instanceof CallInst call && AliasAnalysis.callMayRef(call, loc))
+                    return false;
+                if (inst instanceof VectorLoadInst vl && AliasAnalysis.mayAlias(loc,
+                        new MemoryLocation(vl.getPointerOperand(), VF * ELEM_SIZE)))
+                    return false;
+            }
+        }
+        for (Instruction tree : owner.keySet()) {
+            if (!(tree instanceof LoadInst ld))
+                continue;
+            MemoryLocation loc = MemoryLocation.of(ld.getPointer(), ld.getType());
+            int from = position.get(ld);
+            for (Instruction inst : between) {
+                if (position.get(inst) > from && !stores.contains(inst) && clobbers(inst, loc))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /** inst 是否可能改写 loc */
+    private static boolean clobbers(Instruction inst, MemoryLocation loc) {
+        if (inst instanceof StoreInst st)
+            return AliasAnalysis.mayAlias(loc, MemoryLocation.of(st.getPointer(), st.getValue().getType()));
+        if (inst instanceof VectorStoreInst vs)
+            return AliasAnalysis.mayAlias(loc, new MemoryLocation(vs.getPointerOperand(), VF * ELEM_SIZE));
+        if (inst instanceof CallInst call)
+            return AliasAnalysis.callMayModify(call, loc);
+        return false;
+    }
+
+    // ==================== 变换 ====================
+
+    private void emit(Node root, List<StoreInst> group, StoreInst before, Set<Instruction> extract) {
+        Value vec = emitNode(root, before);
+        Value ptr = vectorPointer(group.get(0).getPointer(), vec.getType(), before);
+        insert(new VectorStoreInst(vec, ptr), before);
+
+        for (Instruction inst : extract) {
+            Node n = owner.get(inst);
+            Instruction ext = insert(new VectorExtractInst(n.vector, i32(ownerLane.get(inst)), "slp.ext"), before);
+            inst.replaceAllUsesWith(ext);
+        }
+
+        // 删除组内 store 后，清理失去全部使用的标量指令及其地址计算
+        Deque<Instruction> worklist = new ArrayDeque<>(owner.keySet());
+        for (StoreInst st : group) {
+            if (st.getPointer() instanceof Instruction ptrInst)
+                worklist.add(ptrInst);
+            block.removeInstruction(st);
+        }
+        Set<Instruction> erased = new HashSet<>();
+        while (!worklist.isEmpty()) {
+            Instruction inst = worklist.poll();
+            if (erased.contains(inst) || !inst.getUses().isEmpty()
+                    || !(owner.containsKey(inst) || inst instanceof GEPInst || inst instanceof CastInst))
+                continue;
+            for (Value op : inst.getOperands()) {
+                if (op instanceof Instruction opInst)
+                    worklist.add(opInst);
+            }
+            inst.clearOperands();
+            inst._getINode().removeSelf();
+            erased.add(inst);
+        }
+    }
+
+    private Value emitNode(Node n, Instruction before) {
+        if (n.vector != null)
+            return n.vector;
+        Type elem = n.lanes.get(0).getType();
+        n.vector = switch (n.kind) {
+            case VECTOR_OP -> {
+                Value lhs = emitNode(n.operands.get(0), before);
+                Value rhs = emitNode(n.operands.get(1), before);
+                yield insert(switch (((BinOperator) n.lanes.get(0)).opCode()) {
+                    case ADD, FADD -> new VectorAddInst(lhs, rhs, "slp.op");
+                    case SUB, FSUB -> new VectorSubInst(lhs, rhs, "slp.op");
+                    case MUL, FMUL, SHL -> new VectorMulInst(lhs, rhs, "slp.op");
+                    default -> new VectorDivInst(lhs, rhs, "slp.op");
+                }, before);
+            }
+            case LOAD -> {
+                Value ptr = vectorPointer(((LoadInst) n.lanes.get(0)).getPointer(), vectorTypeOf(elem), before);
+                yield insert(new VectorLoadInst(ptr, "slp.load"), before);
+            }
+            case SPLAT, GATHER -> {
+                Value vec = UndefValue.get(vectorTypeOf(elem));
+                for (int i = 0; i < VF; i++) {
+                    Value lane = n.kind == Kind.SPLAT ? n.lanes.get(0) : n.lanes.get(i);
+                    vec = insert(new VectorInsertInst(vec, lane, i32(i), "slp.ins"), before);
+                }
+                yield vec;
+            }
+        };
+        return n.vector;
+    }
+
+    private static Value vectorPointer(Value scalarPtr, Type vectorType, Instruction before) {
+        return insert(new CastInst(Opcode.BITCAST, scalarPtr, PointerType.get(vectorType), "slp.ptr"), before);
+    }
+
+    // ==================== 工具 ====================
+
+    private static Opcode vectorOpcode(BinOperator bin) {
+        Type t = bin.getType();
+        return switch (bin.opCode()) {
+            case ADD -> t.isI32() ? Opcode.VADD : null;
+            case SUB -> t.isI32() ? Opcode.VSUB : null;
+            case MUL -> t.isI32() ? Opcode.VMUL : null;
+            case SHL -> t.isI32() && bin.getOperand(1) instanceof ConstantInt c && c.getValue() >= 0
+                    && c.getValue() < 31 ? Opcode.VMUL : null;
+            case FADD -> Opcode.VADD;
+            case FSUB -> Opcode.VSUB;
+            case FMUL -> Opcode.VMUL;
+            case FDIV -> Opcode.VDIV;
+            default -> null;
+        };
+    }
+
+    private static boolean isElementType(Type t) {
+        return t.isI32() || t.isFloat();
+    }
+
+    private static VectorType vectorTypeOf(Type elem) {
+        return new VectorType(elem.isFloat() ? FloatType.getFloat() : IntegerType.getI32(), VF);
+    }
+
+    private static ConstantInt i32(int v) {
+        return new ConstantInt(IntegerType.getI32(), v);
+    }
+
+    private static Instruction insert(Instruction inst, Instruction before) {
+        before.getParent().addInstructionBefore(inst, before);
+        return inst;
+    }
+}
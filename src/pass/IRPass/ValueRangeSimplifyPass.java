@@ -0,0 +1,128 @@
+package pass.IRPass;
+
+import ir.NLVMModule;
+import ir.type.IntegerType;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import pass.IRPassType;
+import pass.Pass;
+import pass.IRPass.analysis.ValueRangeAnalysis;
+import pass.IRPass.analysis.ValueRangeAnalysis.Range;
+import util.LoggingManager;
+import util.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 {@link ValueRangeAnalysis} 的化简：
+ * - icmp 在所在块中恒真 / 恒假：替换为常量，由此变成常量条件的分支交给随后的 DeadCodeElimination 删除
+ * - srem x, 2^k 且 x 非负：改为 and x, 2^k-1（省掉符号修正）；|x| 小于除数时结果就是 x
+ * - sdiv x, 2^k 且 x 非负：改为 lshr x, k；0 ≤ x &lt; 除数时结果为 0
+ * - InstCombine 已把 2^k 除法 / 取余展开成带符号修正的序列时，取符号的 ashr x, 31 在 x 非负时为 0，
+ *   修正项随之由 InstCombine 折叠掉
+ * 分析在改写前一次算好；每条改写都保持值不变，因此不会让其余结论失效。
+ */
+public class ValueRangeSimplifyPass implements Pass.IRPass {
+    private static final Logger log = LoggingManager.getLogger(ValueRangeSimplifyPass.class);
+
+    @Override
+    public IRPassType getType() {
+        return IRPassType.ValueRangeSimplify;
+    }
+
+    @Override
+    public void run() {
+        NLVMModule m = NLVMModule.getModule();
+        for (Function f : m.getFunctions()) {
+            if (!f.isDeclaration())
+                runOnFunction(f);
+        }
+    }
+
+    private void runOnFunction(Function func) {
+        ValueRangeAnalysis vra = ValueRangeAnalysis.compute(func);
+        List<Instruction> insts = new ArrayList<>();
+        for (var bbNode : func.getBlocks()) {
+            for (var instNode : bbNode.getVal().getInstructions())
+                insts.add(instNode.getVal());
+        }
+        int changed = 0;
+        for (Instruction inst : insts) {
+            if (inst instanceof ICmpInst cmp) {
+                Boolean result = vra.evaluateICmp(cmp);
+                if (result != null) {
+                    replace(cmp, new ConstantInt(IntegerType.getI1(), result ? 1 : 0));
+                    changed++;
+                }
+            } else if (inst instanceof BinOperator bin && isI32(bin)
+                    && (bin.getOpcode() == Opcode.SREM || bin.getOpcode() == Opcode.SDIV)) {
+                if (simplifyDivRem(bin, vra))
+                    changed++;
+            } else if (inst instanceof BinOperator bin && isI32(bin) && isSignBitExtract(bin)
+                    && vra.isKnownNonNegative(bin.getOperand(0), bin.getParent())) {
+                replace(bin, new ConstantInt(IntegerType.getI32(), 0));
+                changed++;
+            }
+        }
+        if (changed > 0)
+            log.debug("{}: {} instructions simplified by value ranges", func.getName(), changed);
+    }
+
+    private boolean simplifyDivRem(BinOperator bin, ValueRangeAnalysis vra) {
+        if (!(bin.getOperand(1) instanceof ConstantInt ci))
+            return false;
+        int c = ci.getValue();
+        if (c <= 1)
+            return false;
+        Value x = bin.getOperand(0);
+        BasicBlock bb = bin.getParent();
+        Range r = vra.getRangeAt(x, bb);
+        boolean isRem = bin.getOpcode() == Opcode.SREM;
+
+        // |x| < c：srem 得到 x 本身；非负时 sdiv 得到 0
+        if (r.getLower() > -c && r.getUpper() < c) {
+            if (isRem) {
+                replace(bin, x);
+                return true;
+            }
+            if (r.isNonNegative()) {
+                replace(bin, new ConstantInt(IntegerType.getI32(), 0));
+                return true;
+            }
+        }
+        if (!r.isNonNegative() || (c & (c - 1)) != 0)
+            return false;
+
+        BinOperator repl = isRem
+                ? new BinOperator(bb.getParent().getUniqueName("vr.and"), Opcode.AND, bin.getType(), x,
+                        new ConstantInt(IntegerType.getI32(), c - 1))
+                : new BinOperator(bb.getParent().getUniqueName("vr.lshr"), Opcode.LSHR, bin.getType(), x,
+                        new ConstantInt(IntegerType.getI32(), Integer.numberOfTrailingZeros(c)));
+        bb.addInstructionBefore(repl, bin);
+        replace(bin, repl);
+        return true;
+    }
+
+    /** ashr x, 31 / lshr x, 31：只取决于符号位 */
+    private static boolean isSignBitExtract(BinOperator bin) {
+        return (bin.getOpcode() == Opcode.ASHR || bin.getOpcode() == Opcode.LSHR)
+                && bin.getOperand(1) instanceof ConstantInt sh && sh.getValue() == 31;
+    }
+
+    private static void replace(Instruction inst, Value v) {
+        log.debug("Replace {} -> {}", inst.toNLVM(), v.getReference());
+        inst.replaceAllUsesWith(v);
+        inst.getParent().removeInstruction(inst);
+    }
+
+    private static boolean isI32(Value v) {
+        return v.getType() instanceof IntegerType it && it.getBitWidth() == 32;
+    }
+}
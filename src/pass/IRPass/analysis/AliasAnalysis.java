@@ -0,0 +1,265 @@
+package pass.IRPass.analysis;
+
+import ir.type.ArrayType;
+import ir.type.IntegerType;
+import ir.type.PointerType;
+import ir.type.Type;
+import ir.type.VectorType;
+import ir.value.Argument;
+import ir.value.GlobalVariable;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.AllocaInst;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.GEPInst;
+import ir.value.instructions.Instruction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于下标的别名判定（alias oracle）。
+ * <p>
+ * 指针被分解为 基对象 + 线性偏移（Σ 变量 × 系数 + 常量字节偏移）：
+ * <ul>
+ * <li>不同的 alloca / 全局变量互不别名；alloca 与参数指针互不别名</li>
+ * <li>同一基对象、变量部分完全相同时，按常量偏移与访问大小判断是否重叠，
+ * 例如 a[i][0] 与 a[i][1]、a[i] 与 a[i + 1] 互不别名</li>
+ * <li>其余情况保守地返回 MAY</li>
+ * </ul>
+ * 整数下标中的 add/sub 常量会被剥离进常量偏移。
+ */
+public final class AliasAnalysis {
+    public enum AliasResult {
+        NO, MAY, MUST
+    }
+
+    /** 访问大小未知（如整块 memset、向量访问的保守处理） */
+    public static final long UNKNOWN_SIZE = -1;
+
+    /** 一次内存访问的位置：起始指针与访问字节数 */
+    public record MemoryLocation(Value pointer, long size) {
+        public static MemoryLocation of(Value pointer, Type accessType) {
+            return new MemoryLocation(pointer, sizeOf(accessType));
+        }
+    }
+
+    /** 指针分解结果：base + Σ terms + constant（单位：字节） */
+    private record Decomposed(Value base, Map<Value, Long> terms, long constant) {
+    }
+
+    private AliasAnalysis() {
+    }
+
+    public static AliasResult alias(MemoryLocation a, MemoryLocation b) {
+        return alias(a, b, false);
+    }
+
+    /**
+     * @param crossIteration 两次访问可能位于循环的不同迭代（查询路径经过了回边）。
+     *                       此时同一个 SSA 值在两处的动态值可能不同，含指令变量的偏移不能直接比较
+     */
+    public static AliasResult alias(MemoryLocation a, MemoryLocation b, boolean crossIteration) {
+        if (a.pointer() == b.pointer() && !crossIteration) {
+            return a.size() == b.size() && a.size() != UNKNOWN_SIZE ? AliasResult.MUST : AliasResult.MAY;
+        }
+        Decomposed da = decompose(a.pointer());
+        Decomposed db = decompose(b.pointer());
+        if (da.base() != db.base()) {
+            return mayAliasObjects(da.base(), db.base()) ? AliasResult.MAY : AliasResult.NO;
+        }
+        if (!da.terms().equals(db.terms()))
+            return AliasResult.MAY;
+        if (crossIteration && (da.base() instanceof Instruction
+                || da.terms().keySet().stream().anyMatch(v -> v instanceof Instruction)))
+            return AliasResult.MAY;
+        long diff = db.constant() - da.constant();
+        if (diff == 0 && a.size() == b.size() && a.size() != UNKNOWN_SIZE)
+            return AliasResult.MUST;
+        // [0, sizeA) 与 [diff, diff + sizeB) 不相交
+        if (diff >= 0 && a.size() != UNKNOWN_SIZE && diff >= a.size())
+            return AliasResult.NO;
+        if (diff < 0 && b.size() != UNKNOWN_SIZE && -diff >= b.size())
+            return AliasResult.NO;
+        return AliasResult.MAY;
+    }
+
+    public static boolean mayAlias(MemoryLocation a, MemoryLocation b) {
+        return alias(a, b) != AliasResult.NO;
+    }
+
+    /**
+     * b 相对 a 的常量字节距离：两指针分解后基对象与变量部分完全相同时返回 b - a，否则返回 null。
+     * 用于判断两次访问是否在内存中相邻（如 a[i]、a[i + 1]）。
+     */
+    public static Long constantDistance(Value a, Value b) {
+        if (a == b)
+            return 0L;
+        Decomposed da = decompose(a);
+        Decomposed db = decompose(b);
+        if (da.base() != db.base() || !da.terms().equals(db.terms()))
+            return null;
+        return db.constant() - da.constant();
+    }
+
+    /** 沿 GEP / bitcast 回溯到底层对象（alloca、全局变量、参数或无法继续分解的值） */
+    public static Value getUnderlyingObject(Value ptr) {
+        Value cur = ptr;
+        while (true) {
+            if (cur instanceof GEPInst gep) {
+                cur = gep.getPointer();
+            } else if (cur instanceof CastInst cast && cast.opCode() == Opcode.BITCAST) {
+                cur = cast.getOperand(0);
+            } else {
+                return cur;
+            }
+        }
+    }
+
+    /** alloca 或全局变量：地址唯一确定的对象 */
+    public static boolean isIdentifiedObject(Value v) {
+        return v instanceof AllocaInst || v instanceof GlobalVariable;
+    }
+
+    /**
+     * 调用是否可能改写 loc。
+     * 非纯调用可以改写任何全局变量和参数指向的内存；本函数的 alloca 只有作为实参传出时才可能被改写。
+     */
+    public static boolean callMayModify(CallInst call, MemoryLocation loc) {
+        return callMayModify(call, loc, null);
+    }
+
+    /** 有 mod/ref 摘要时，只有被调函数（及其调用的函数）写到的全局变量和实参对象才算被改写 */
+    public static boolean callMayModify(CallInst call, MemoryLocation loc, ModRefAnalysis modRef) {
+        if (call.isPure())
+            return false;
+        if (modRef != null)
+            return modRef.getModRefInfo(call, loc).isMod();
+        Value base = getUnderlyingObject(loc.pointer());
+        if (base instanceof AllocaInst)
+            return isPassedToCall(base, call);
+        return true;
+    }
+
+    /** 调用是否可能读取 loc（纯函数也可能读取实参数组） */
+    public static boolean callMayRef(CallInst call, MemoryLocation loc) {
+        return callMayRef(call, loc, null);
+    }
+
+    public static boolean callMayRef(CallInst call, MemoryLocation loc, ModRefAnalysis modRef) {
+        if (modRef != null)
+            return modRef.getModRefInfo(call, loc).isRef();
+        Value base = getUnderlyingObject(loc.pointer());
+        if (base instanceof AllocaInst)
+            return isPassedToCall(base, call);
+        if (call.isPure()) {
+            // 纯函数只读取实参指向的内存（以及常量全局）
+            for (Value arg : call.getArgs()) {
+                if (arg.getType() instanceof PointerType
+                        && mayAliasObjects(getUnderlyingObject(arg), base))
+                    return true;
+            }
+            return base instanceof GlobalVariable gv && gv.isConst();
+        }
+        return true;
+    }
+
+    private static boolean isPassedToCall(Value object, CallInst call) {
+        for (Value arg : call.getArgs()) {
+            if (arg.getType() instanceof PointerType && getUnderlyingObject(arg) == object)
+                return true;
+        }
+        return false;
+    }
+
+    /** 两个不同的底层对象是否可能重叠 */
+    static boolean mayAliasObjects(Value a, Value b) {
+        if (a == b)
+            return true;
+        if (isIdentifiedObject(a) && isIdentifiedObject(b))
+            return false;
+        // 参数不可能指向被调函数自己的栈对象
+        if ((a instanceof AllocaInst && isArgumentPointer(b)) || (isArgumentPointer(a) && b instanceof AllocaInst))
+            return false;
+        return true;
+    }
+
+    /** 指针参数，或由整数参数 inttoptr 得到的指针（并行循环体的 long 槽位） */
+    private static boolean isArgumentPointer(Value v) {
+        if (v instanceof CastInst cast && cast.opCode() == Opcode.INTTOPTR)
+            v = cast.getOperand(0);
+        return v instanceof Argument;
+    }
+
+    /** 无法分解的指针以自身为基对象，只会与自身比较出 MUST */
+    private static Decomposed decompose(Value ptr) {
+        Map<Value, Long> terms = new HashMap<>();
+        long constant = 0;
+        Value cur = ptr;
+        while (true) {
+            if (cur instanceof GEPInst gep) {
+                if (!(gep.getPointer().getType() instanceof PointerType pt))
+                    break;
+                Type t = pt.getPointeeType();
+                for (int i = 0; i < gep.getNumIndices(); i++) {
+                    if (i > 0) {
+                        if (t instanceof ArrayType at)
+                            t = at.getElementType();
+                        else
+                            return new Decomposed(ptr, new HashMap<>(), 0);
+                    }
+                    long scale = sizeOf(t);
+                    if (scale == UNKNOWN_SIZE)
+                        return new Decomposed(ptr, new HashMap<>(), 0);
+                    constant += addIndex(gep.getIndex(i), scale, terms);
+                }
+                cur = gep.getPointer();
+            } else if (cur instanceof CastInst cast && cast.opCode() == Opcode.BITCAST) {
+                cur = cast.getOperand(0);
+            } else {
+                break;
+            }
+        }
+        terms.values().removeIf(s -> s == 0);
+        return new Decomposed(cur, terms, constant);
+    }
+
+    /** 把 idx * scale 累加进 terms，返回剥离出的常量部分 */
+    private static long addIndex(Value idx, long scale, Map<Value, Long> terms) {
+        if (idx instanceof ConstantInt c)
+            return c.getValue() * scale;
+        if (idx instanceof BinOperator bin) {
+            if (bin.opCode() == Opcode.ADD) {
+                if (bin.getOperand(1) instanceof ConstantInt c)
+                    return addIndex(bin.getOperand(0), scale, terms) + c.getValue() * scale;
+                if (bin.getOperand(0) instanceof ConstantInt c)
+                    return addIndex(bin.getOperand(1), scale, terms) + c.getValue() * scale;
+            } else if (bin.opCode() == Opcode.SUB && bin.getOperand(1) instanceof ConstantInt c) {
+                return addIndex(bin.getOperand(0), scale, terms) - c.getValue() * scale;
+            }
+        }
+        terms.merge(idx, scale, Long::sum);
+        return 0;
+    }
+
+    public static long sizeOf(Type t) {
+        if (t instanceof IntegerType it)
+            return Math.max(1, it.getBitWidth() / 8);
+        if (t.isFloat())
+            return 4;
+        if (t.isPointer())
+            return 8;
+        if (t instanceof ArrayType at) {
+            long elem = sizeOf(at.getElementType());
+            return elem == UNKNOWN_SIZE ? UNKNOWN_SIZE : elem * at.getLength();
+        }
+        if (t instanceof VectorType vt) {
+            long elem = sizeOf(vt.getElementType());
+            return elem == UNKNOWN_SIZE ? UNKNOWN_SIZE : elem * vt.getNumElements();
+        }
+        return UNKNOWN_SIZE;
+    }
+}
@@ -106,8 +106,7 @@ public class ArrayAliasAnalysis implements Pass.IRPass {
     public void runAnalysis(Function function) {
         // Step 1: Prerequisite - Dominance Analysis
         logger.info("--- [Phase 1] Running Dominance Analysis ---");
-        this.domAnalysis = new DominanceAnalysisPass(function);
-        domAnalysis.run();
+        this.domAnalysis = DominanceAnalysisPass.getOrCompute(function);
 
         // Step 2: Collect all array partitions and their initial definitions
         ArrayList<ArrayDefUses> arrays = new ArrayList<>();
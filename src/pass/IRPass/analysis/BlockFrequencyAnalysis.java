@@ -0,0 +1,134 @@
+package pass.IRPass.analysis;
+
+import ir.value.BasicBlock;
+import ir.value.Function;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 静态块频率估计（Wu–Larus 传播）。
+ * <p>
+ * 以 {@link BranchProbabilityAnalysis} 给出的边概率为输入，由内向外处理循环：
+ * <ul>
+ * <li>把循环头频率设为 1，按逆后序在循环体内传播（忽略回边），回到循环头的边频率之和即为“循环概率” c</li>
+ * <li>循环头的放大倍数为 1 / (1 - c)；回边次数为常量时分支概率已按它给出，放大倍数即 回边次数 + 1</li>
+ * <li>最后从函数入口（频率 1）出发整体传播一遍，遇到循环头时乘以其放大倍数</li>
+ * </ul>
+ * 结果是相对入口的期望执行次数，只用于比较冷热，不保证与真实剖面一致。
+ * IR 修改后需要重新计算。
+ */
+public class BlockFrequencyAnalysis {
+    // 单层循环放大倍数的上限，避免深层嵌套时频率溢出
+    private static final double MAX_LOOP_SCALE = 1024.0;
+    // 频率低于入口的该比例视为冷块
+    private static final double COLD_RATIO = 1.0 / 16.0;
+
+    private final Function function;
+    private final BranchProbabilityAnalysis bpi;
+    private final List<BasicBlock> rpo;
+    private final Map<BasicBlock, Double> frequency = new HashMap<>();
+    private final Map<BasicBlock, Double> loopScale = new HashMap<>();
+
+    public BlockFrequencyAnalysis(BranchProbabilityAnalysis bpi) {
+        this.function = bpi.getFunction();
+        this.bpi = bpi;
+        this.rpo = DominanceAnalysisPass.getOrCompute(function).getReversePostOrder();
+        LoopInfo loopInfo = bpi.getLoopInfo();
+        if (loopInfo != null) {
+            for (Loop top : loopInfo.getTopLevelLoops())
+                computeLoopScales(top);
+        }
+        if (!rpo.isEmpty())
+            propagate(null, rpo.get(0), frequency);
+    }
+
+    /** 为函数计算循环信息、分支概率与块频率 */
+    public static BlockFrequencyAnalysis compute(Function function) {
+        return new BlockFrequencyAnalysis(BranchProbabilityAnalysis.compute(function));
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public BranchProbabilityAnalysis getBranchProbability() {
+        return bpi;
+    }
+
+    /** 相对函数入口的估计执行次数；不可达块为 0 */
+    public double getBlockFrequency(BasicBlock bb) {
+        return frequency.getOrDefault(bb, 0.0);
+    }
+
+    public double getEdgeFrequency(BasicBlock from, BasicBlock to) {
+        return getBlockFrequency(from) * bpi.getEdgeProbability(from, to);
+    }
+
+    /** 循环头每次进入循环后的期望执行次数；非循环头为 1 */
+    public double getLoopScale(BasicBlock header) {
+        return loopScale.getOrDefault(header, 1.0);
+    }
+
+    public boolean isCold(BasicBlock bb) {
+        return getBlockFrequency(bb) < COLD_RATIO;
+    }
+
+    private void computeLoopScales(Loop loop) {
+        for (Loop sub : loop.getSubLoops())
+            computeLoopScales(sub);
+
+        Map<BasicBlock, Double> local = new HashMap<>();
+        propagate(loop, loop.getHeader(), local);
+        double cyclic = 0;
+        for (BasicBlock pred : loop.getHeader().getPredecessors()) {
+            if (loop.contains(pred))
+                cyclic += local.getOrDefault(pred, 0.0) * bpi.getEdgeProbability(pred, loop.getHeader());
+        }
+        double scale = cyclic >= 1.0 ? MAX_LOOP_SCALE : 1.0 / (1.0 - cyclic);
+        loopScale.put(loop.getHeader(), Math.max(1.0, Math.min(scale, MAX_LOOP_SCALE)));
+    }
+
+    /**
+     * 从 start（频率 1）出发按逆后序传播；scope 非空时只处理该循环内的块，
+     * 且 start 自身的回边不计入。内层循环头按已求得的放大倍数放大。
+     */
+    private void propagate(Loop scope, BasicBlock start, Map<BasicBlock, Double> freq) {
+        List<BasicBlock> order = new ArrayList<>();
+        boolean started = false;
+        for (BasicBlock bb : rpo) {
+            if (bb == start)
+                started = true;
+            if (started && (scope == null || scope.contains(bb)))
+                order.add(bb);
+        }
+        for (BasicBlock bb : order) {
+            double f;
+            if (bb == start) {
+                f = 1.0;
+            } else {
+                f = 0;
+                for (BasicBlock pred : bb.getPredecessors()) {
+                    if (isBackEdge(pred, bb))
+                        continue;
+                    f += freq.getOrDefault(pred, 0.0) * bpi.getEdgeProbability(pred, bb);
+                }
+            }
+            if (bb != start || scope == null)
+                f *= getLoopScale(bb);
+            freq.put(bb, f);
+        }
+    }
+
+    private boolean isBackEdge(BasicBlock from, BasicBlock to) {
+        LoopInfo loopInfo = bpi.getLoopInfo();
+        if (loopInfo == null || !loopInfo.isLoopHeader(to))
+            return false;
+        Loop loop = loopInfo.getLoopFor(to);
+        while (loop != null && loop.getHeader() != to)
+            loop = loop.getParentLoop();
+        return loop != null && loop.contains(from);
+    }
+}
@@ -0,0 +1,212 @@
+package pass.IRPass.analysis;
+
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.constants.ConstantFloat;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.FCmpInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.ReturnInst;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 静态分支概率估计（Ball–Larus 启发式）。
+ * <p>
+ * 对每条条件分支给出走向 then / else 的概率：
+ * <ul>
+ * <li>循环启发式：留在循环内（回边或不离开循环）的一侧取 31/32，命中时不再看其它规则；
+ * SCEV 能给出控制退出的块及常量回边次数 n 时改用 n / (n + 1)</li>
+ * <li>返回启发式：只经过无条件跳转就到达 ret 的一侧不太可能执行</li>
+ * <li>零值比较：x == 0 不太可能，x &lt; 0 不太可能，x &gt; 0 较可能</li>
+ * <li>浮点相等比较不太可能成立</li>
+ * </ul>
+ * 多条启发式同时命中时用 Dempster–Shafer 规则合并。无条件分支的概率为 1。
+ */
+public class BranchProbabilityAnalysis {
+    // 循环启发式：留在循环中的概率
+    public static final double LOOP_TAKEN = 31.0 / 32.0;
+    private static final double RETURN_TAKEN = 0.28;
+    private static final double ZERO_EQ_TAKEN = 0.375;
+    private static final double ZERO_LT_TAKEN = 0.375;
+    private static final double FLOAT_EQ_TAKEN = 0.375;
+
+    private final Function function;
+    private final LoopInfo loopInfo;
+    private final ScalarEvolution scev;
+    // 条件分支所在块 -> 走向 then 的概率
+    private final Map<BasicBlock, Double> thenProbability = new HashMap<>();
+
+    public BranchProbabilityAnalysis(Function function, LoopInfo loopInfo) {
+        this(function, loopInfo, null);
+    }
+
+    /** scev 可为 null，此时循环分支一律使用固定的 31/32 */
+    public BranchProbabilityAnalysis(Function function, LoopInfo loopInfo, ScalarEvolution scev) {
+        this.function = function;
+        this.loopInfo = loopInfo;
+        this.scev = scev;
+        for (var bbNode : function.getBlocks()) {
+            BasicBlock bb = bbNode.getVal();
+            if (bb.getTerminator() != null && bb.getTerminator().getVal() instanceof BranchInst br
+                    && br.isConditional() && br.getThenBlock() != br.getElseBlock())
+                thenProbability.put(bb, estimate(bb, br));
+        }
+    }
+
+    /** 为函数计算循环信息、标量演化并估计分支概率 */
+    public static BranchProbabilityAnalysis compute(Function function) {
+        ScalarEvolution scev = ScalarEvolution.compute(function);
+        return new BranchProbabilityAnalysis(function, scev.getLoopInfo(), scev);
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public LoopInfo getLoopInfo() {
+        return loopInfo;
+    }
+
+    /** 控制从 from 的末尾转到 to 的概率；to 不是 from 的后继时为 0 */
+    public double getEdgeProbability(BasicBlock from, BasicBlock to) {
+        if (from.getTerminator() == null || !(from.getTerminator().getVal() instanceof BranchInst br))
+            return 0.0;
+        if (!br.isConditional())
+            return br.getOperand(0) == to ? 1.0 : 0.0;
+        if (br.getThenBlock() == br.getElseBlock())
+            return br.getThenBlock() == to ? 1.0 : 0.0;
+        double p = thenProbability.getOrDefault(from, 0.5);
+        if (br.getThenBlock() == to)
+            return p;
+        if (br.getElseBlock() == to)
+            return 1.0 - p;
+        return 0.0;
+    }
+
+    private double estimate(BasicBlock bb, BranchInst br) {
+        BasicBlock thenBB = br.getThenBlock();
+        BasicBlock elseBB = br.getElseBlock();
+
+        Double loop = loopHeuristic(bb, thenBB, elseBB);
+        if (loop != null)
+            return loop;
+
+        double p = 0.5;
+        Double ret = returnHeuristic(thenBB, elseBB);
+        if (ret != null)
+            p = combine(p, ret);
+        Double cmp = compareHeuristic(br.getCondition());
+        if (cmp != null)
+            p = combine(p, cmp);
+        return p;
+    }
+
+    /** 一侧是回边 / 留在循环内、另一侧离开循环时，偏向留在循环内 */
+    private Double loopHeuristic(BasicBlock bb, BasicBlock thenBB, BasicBlock elseBB) {
+        if (loopInfo == null)
+            return null;
+        Loop loop = loopInfo.getLoopFor(bb);
+        if (loop == null)
+            return null;
+        double stay = LOOP_TAKEN;
+        if (scev != null && scev.getExitingBlock(loop) == bb) {
+            int btc = scev.getConstantBackedgeTakenCount(loop);
+            if (btc >= 0)
+                stay = btc / (btc + 1.0);
+        }
+        boolean thenBack = isBackEdge(thenBB, loop);
+        boolean elseBack = isBackEdge(elseBB, loop);
+        if (thenBack != elseBack)
+            return thenBack ? stay : 1.0 - stay;
+        boolean thenExit = !loop.contains(thenBB);
+        boolean elseExit = !loop.contains(elseBB);
+        if (thenExit != elseExit)
+            return thenExit ? 1.0 - stay : stay;
+        return null;
+    }
+
+    private boolean isBackEdge(BasicBlock target, Loop loop) {
+        for (Loop l = loop; l != null; l = l.getParentLoop()) {
+            if (l.getHeader() == target)
+                return true;
+        }
+        return false;
+    }
+
+    private Double returnHeuristic(BasicBlock thenBB, BasicBlock elseBB) {
+        boolean thenRet = reachesReturn(thenBB);
+        boolean elseRet = reachesReturn(elseBB);
+        if (thenRet == elseRet)
+            return null;
+        return thenRet ? RETURN_TAKEN : 1.0 - RETURN_TAKEN;
+    }
+
+    /** 从 bb 出发仅经过无条件跳转即可到达 ret */
+    private boolean reachesReturn(BasicBlock bb) {
+        Set<BasicBlock> seen = new HashSet<>();
+        while (bb != null && seen.add(bb)) {
+            if (bb.getTerminator() == null)
+                return false;
+            Instruction term = bb.getTerminator().getVal();
+            if (term instanceof ReturnInst)
+                return true;
+            if (term instanceof BranchInst br && !br.isConditional()) {
+                bb = (BasicBlock) br.getOperand(0);
+                // 回到循环头说明是 continue，不是提前返回
+                if (loopInfo != null && loopInfo.isLoopHeader(bb))
+                    return false;
+                continue;
+            }
+            return false;
+        }
+        return false;
+    }
+
+    private Double compareHeuristic(Value cond) {
+        if (cond instanceof ICmpInst cmp) {
+            Opcode op = cmp.getOpcode();
+            Value lhs = cmp.getOperand(0);
+            Value rhs = cmp.getOperand(1);
+            if (isZero(lhs) && !isZero(rhs)) {
+                op = ScalarEvolution.swappedPredicate(op);
+            } else if (!isZero(rhs)) {
+                return null;
+            }
+            return switch (op) {
+                case ICMP_EQ -> ZERO_EQ_TAKEN;
+                case ICMP_NE -> 1.0 - ZERO_EQ_TAKEN;
+                case ICMP_SLT, ICMP_SLE -> ZERO_LT_TAKEN;
+                case ICMP_SGT, ICMP_SGE -> 1.0 - ZERO_LT_TAKEN;
+                default -> null;
+            };
+        }
+        if (cond instanceof FCmpInst cmp) {
+            return switch (cmp.getOpcode()) {
+                case FCMP_OEQ -> FLOAT_EQ_TAKEN;
+                case FCMP_ONE -> 1.0 - FLOAT_EQ_TAKEN;
+                default -> null;
+            };
+        }
+        return null;
+    }
+
+    private static boolean isZero(Value v) {
+        return (v instanceof ConstantInt ci && ci.getValue() == 0)
+                || (v instanceof ConstantFloat cf && cf.getValue() == 0.0f);
+    }
+
+    /** Dempster–Shafer 合并两个独立证据 */
+    private static double combine(double p1, double p2) {
+        double t = p1 * p2;
+        double f = (1.0 - p1) * (1.0 - p2);
+        return t / (t + f);
+    }
+}
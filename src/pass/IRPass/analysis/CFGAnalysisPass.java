@@ -9,7 +9,12 @@ import pass.IRPassType;
 import pass.Pass;
 import util.IList.INode;
 
-public class CFGAnalysisPass implements Pass.IRPass {
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class CFGAnalysisPass implements Pass.FunctionPass {
 
     @Override
     public IRPassType getType() {
@@ -26,7 +31,44 @@ public class CFGAnalysisPass implements Pass.IRPass {
         }
     }
 
+    @Override
+    public void run(Function function) {
+        runOnFunction(function);
+    }
+
     private void runOnFunction(Function function) {
+        // 先按 terminator 求出应有的后继；与现有 CFG 一致时不做修改，
+        // 避免无谓地递增 CFG 版本号、使缓存的支配树失效
+        Map<BasicBlock, Set<BasicBlock>> expected = new HashMap<>();
+        boolean same = true;
+        for (INode<BasicBlock, Function> bbNode : function.getBlocks()) {
+            BasicBlock block = bbNode.getVal();
+            Set<BasicBlock> succs = computeSuccessors(block);
+            expected.put(block, succs);
+            if (!succs.equals(block.getSuccessors())) {
+                same = false;
+            }
+        }
+        if (same) {
+            for (INode<BasicBlock, Function> bbNode : function.getBlocks()) {
+                BasicBlock block = bbNode.getVal();
+                for (BasicBlock pred : block.getPredecessors()) {
+                    Set<BasicBlock> predSuccs = expected.get(pred);
+                    if (predSuccs == null || !predSuccs.contains(block)) {
+                        same = false;
+                        break;
+                    }
+                }
+                if (!same) {
+                    break;
+                }
+            }
+        }
+        if (same) {
+            return;
+        }
+        function.bumpCfgVersion();
+
         // Clear existing CFG info to ensure correctness
         for (INode<BasicBlock, Function> bbNode : function.getBlocks()) {
             BasicBlock block = bbNode.getVal();
@@ -37,32 +79,35 @@ public class CFGAnalysisPass implements Pass.IRPass {
         // Rebuild the CFG by analyzing terminator instructions
         for (INode<BasicBlock, Function> bbNode : function.getBlocks()) {
             BasicBlock block = bbNode.getVal();
-            INode<Instruction, BasicBlock> terminatorNode = block.getTerminator();
-
-            if (terminatorNode == null) {
-                // Block is not properly terminated, has no successors
-                continue;
+            for (BasicBlock succ : expected.get(block)) {
+                block.getSuccessors().add(succ);
+                succ.getPredecessors().add(block);
             }
-            Instruction terminator = terminatorNode.getVal();
+        }
+    }
 
-            if (terminator instanceof BranchInst) {
-                BranchInst branch = (BranchInst) terminator;
-                if (branch.isConditional()) {
-                    // Conditional branch has two successors
-                    BasicBlock thenBlock = branch.getThenBlock();
-                    BasicBlock elseBlock = branch.getElseBlock();
-                    block.setSuccessor(thenBlock);
-                    thenBlock.setPredecessor(block);
-                    block.setSuccessor(elseBlock);
-                    elseBlock.setPredecessor(block);
-                } else {
-                    // Unconditional branch has one successor
-                    BasicBlock thenBlock = branch.getThenBlock();
-                    block.setSuccessor(thenBlock);
-                    thenBlock.setPredecessor(block);
-                }
+    private Set<BasicBlock> computeSuccessors(BasicBlock block) {
+        Set<BasicBlock> succs = new HashSet<>();
+        INode<Instruction, BasicBlock> terminatorNode = block.getTerminator();
+
+        if (terminatorNode == null) {
+            // Block is not properly terminated, has no successors
+            return succs;
+        }
+        Instruction terminator = terminatorNode.getVal();
+
+        if (terminator instanceof BranchInst) {
+            BranchInst branch = (BranchInst) terminator;
+            if (branch.isConditional()) {
+                // Conditional branch has two successors
+                succs.add(branch.getThenBlock());
+                succs.add(branch.getElseBlock());
+            } else {
+                // Unconditional branch has one successor
+                succs.add(branch.getThenBlock());
             }
-            // ReturnInst has no successors, so we do nothing.
         }
+        // ReturnInst has no successors, so we do nothing.
+        return succs;
     }
 }
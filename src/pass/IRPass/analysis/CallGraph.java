@@ -0,0 +1,204 @@
+package pass.IRPass.analysis;
+
+import ir.NLVMModule;
+import ir.value.Function;
+import ir.value.instructions.CallInst;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 模块级调用图。
+ * <p>
+ * 节点为模块中的全部函数（含外部声明），边为直接调用，并记录每个函数体内的调用点。
+ * 定义的函数用 Tarjan 求强连通分量，按被调者在前的自底向上顺序给出。
+ * <p>
+ * 增量维护：改写某个函数体（如内联）后调用 {@link #refreshFunction} 重扫它的出边，
+ * 删除函数时调用 {@link #removeFunction}；强连通分量在下次查询时重新计算。
+ */
+public final class CallGraph {
+    private final NLVMModule module;
+    private final Map<Function, Set<Function>> callees = new LinkedHashMap<>();
+    private final Map<Function, Set<Function>> callers = new HashMap<>();
+    private final Map<Function, List<CallInst>> callSites = new HashMap<>();
+    // null 表示需要重新计算
+    private List<List<Function>> sccs;
+    private Map<Function, List<Function>> sccOf;
+
+    private CallGraph(NLVMModule module) {
+        this.module = module;
+    }
+
+    public static CallGraph compute(NLVMModule module) {
+        CallGraph cg = new CallGraph(module);
+        for (Function f : module.getFunctions()) {
+            if (f != null)
+                cg.addNode(f);
+        }
+        for (Function f : module.getFunctions()) {
+            if (f != null && !f.isDeclaration())
+                cg.scanFunction(f);
+        }
+        return cg;
+    }
+
+    // ==================== 查询 ====================
+
+    /** f 直接调用的函数（含外部声明） */
+    public Set<Function> getCallees(Function f) {
+        return Collections.unmodifiableSet(callees.getOrDefault(f, Collections.emptySet()));
+    }
+
+    /** 直接调用 f 的函数 */
+    public Set<Function> getCallers(Function f) {
+        return Collections.unmodifiableSet(callers.getOrDefault(f, Collections.emptySet()));
+    }
+
+    /** f 函数体内的全部调用指令 */
+    public List<CallInst> getCallSites(Function f) {
+        return Collections.unmodifiableList(callSites.getOrDefault(f, Collections.emptyList()));
+    }
+
+    /** 所有调用 callee 的指令 */
+    public List<CallInst> getCallSitesOf(Function callee) {
+        List<CallInst> result = new ArrayList<>();
+        for (Function caller : getCallers(callee)) {
+            for (CallInst call : getCallSites(caller)) {
+                if (call.getCalledFunction() == callee)
+                    result.add(call);
+            }
+        }
+        return result;
+    }
+
+    /** 定义的函数的强连通分量，被调者所在的分量排在前面 */
+    public List<List<Function>> getBottomUpSCCs() {
+        if (sccs == null)
+            computeSCCs();
+        return Collections.unmodifiableList(sccs);
+    }
+
+    /** f 所在的强连通分量；外部声明返回空表 */
+    public List<Function> getSCC(Function f) {
+        if (sccs == null)
+            computeSCCs();
+        return sccOf.getOrDefault(f, Collections.emptyList());
+    }
+
+    /** 直接或经由同一分量内的其它函数调用自身 */
+    public boolean isRecursive(Function f) {
+        return getSCC(f).size() > 1 || getCallees(f).contains(f);
+    }
+
+    // ==================== 增量更新 ====================
+
+    /** 重新扫描 f 的函数体，更新它的出边与调用点 */
+    public void refreshFunction(Function f) {
+        for (Function callee : callees.getOrDefault(f, Collections.emptySet())) {
+            Set<Function> cs = callers.get(callee);
+            if (cs != null)
+                cs.remove(f);
+        }
+        addNode(f);
+        callees.get(f).clear();
+        callSites.get(f).clear();
+        if (!f.isDeclaration())
+            scanFunction(f);
+        sccs = null;
+    }
+
+    /** 函数已从模块中删除：去掉它的节点和全部关联的边 */
+    public void removeFunction(Function f) {
+        for (Function callee : callees.getOrDefault(f, Collections.emptySet())) {
+            Set<Function> cs = callers.get(callee);
+            if (cs != null)
+                cs.remove(f);
+        }
+        for (Function caller : callers.getOrDefault(f, Collections.emptySet())) {
+            Set<Function> cs = callees.get(caller);
+            if (cs != null && caller != f)
+                cs.remove(f);
+        }
+        callees.remove(f);
+        callers.remove(f);
+        callSites.remove(f);
+        sccs = null;
+    }
+
+    // ==================== 构建 ====================
+
+    private void addNode(Function f) {
+        callees.computeIfAbsent(f, k -> new LinkedHashSet<>());
+        callers.computeIfAbsent(f, k -> new LinkedHashSet<>());
+        callSites.computeIfAbsent(f, k -> new ArrayList<>());
+    }
+
+    private void scanFunction(Function f) {
+        for (var bbNode : f.getBlocks()) {
+            for (var instNode : bbNode.getVal().getInstructions()) {
+                if (instNode.getVal() instanceof CallInst call && call.getCalledFunction() != null) {
+                    Function callee = call.getCalledFunction();
+                    addNode(callee);
+                    callees.get(f).add(callee);
+                    callers.get(callee).add(f);
+                    callSites.get(f).add(call);
+                }
+            }
+        }
+    }
+
+    /** Tarjan 求强连通分量，输出顺序即被调者在前的自底向上顺序 */
+    private void computeSCCs() {
+        sccs = new ArrayList<>();
+        sccOf = new HashMap<>();
+        Map<Function, Integer> index = new HashMap<>();
+        Map<Function, Integer> low = new HashMap<>();
+        ArrayDeque<Function> stack = new ArrayDeque<>();
+        Set<Function> onStack = new HashSet<>();
+        int[] counter = { 0 };
+        for (Function f : module.getFunctions()) {
+            if (f != null && !f.isDeclaration() && callees.containsKey(f) && !index.containsKey(f))
+                strongConnect(f, index, low, stack, onStack, counter);
+        }
+    }
+
+    private void strongConnect(Function f, Map<Function, Integer> index, Map<Function, Integer> low,
+            ArrayDeque<Function> stack, Set<Function> onStack, int[] counter) {
+        index.put(f, counter[0]);
+        low.put(f, counter[0]);
+        counter[0]++;
+        stack.push(f);
+        onStack.add(f);
+        for (Function callee : callees.get(f)) {
+            if (callee.isDeclaration() || !callees.containsKey(callee))
+                continue;
+            if (!index.containsKey(callee)) {
+                strongConnect(callee, index, low, stack, onStack, counter);
+                low.put(f, Math.min(low.get(f), low.get(callee)));
+            } else if (onStack.contains(callee)) {
+                low.put(f, Math.min(low.get(f), index.get(callee)));
+            }
+        }
+        if (low.get(f).equals(index.get(f))) {
+            List<Function> scc = new ArrayList<>();
+            Function g;
+            do {
+                g = stack.pop();
+                onStack.remove(g);
+                scc.add(g);
+            } while (g != f);
+            List<Function> view = Collections.unmodifiableList(scc);
+            sccs.add(view);
+            for (Function member : scc)
+                sccOf.put(member, view);
+        }
+    }
+}
@@ -0,0 +1,702 @@
+package pass.IRPass.analysis;
+
+import ir.type.ArrayType;
+import ir.type.PointerType;
+import ir.type.Type;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Value;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.GEPInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.LoadInst;
+import ir.value.instructions.StoreInst;
+import ir.value.instructions.VectorLoadInst;
+import ir.value.instructions.VectorStoreInst;
+import pass.IRPass.analysis.AliasAnalysis.MemoryLocation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 循环嵌套中的数组依赖分析。
+ * <p>
+ * 访存地址按 GEP 链拆成逐维下标，每个下标用 {@link ScalarEvolution} 表示为
+ * Σ coeff<sub>k</sub> × i<sub>k</sub> + 循环不变部分，其中 i<sub>k</sub> 是第 k 层循环的归一化迭代号（0..回边次数）。
+ * 两次访问的每一维依次做：
+ * <ul>
+ * <li>ZIV：两侧都不含迭代变量，常量差非零即无依赖</li>
+ * <li>强 SIV：只含同一层、系数相同的迭代变量，直接得到依赖距离</li>
+ * <li>GCD：系数的最大公约数不整除常量差即无依赖（按方向向量中的 '=' 合并系数）</li>
+ * <li>Banerjee：按方向向量求左侧的取值区间，常量差落在区间外即无依赖</li>
+ * </ul>
+ * 方向向量在公共循环上逐层细化（&lt;、=、&gt;），所有维都可行的向量才会保留。
+ * <p>
+ * 方向与距离描述的是 dst 的迭代号相对 src 的迭代号：'&lt;' 表示 src 所在迭代早于 dst，
+ * 距离 = dst 迭代号 - src 迭代号。结果不做规范化，字典序为负的向量表示依赖实际从 dst 流向 src。
+ * <p>
+ * 逐维比较假定除最外维以外的下标不越界（与 C 的数组语义一致）；两次访问的数组形状不同时退化为比较线性字节偏移。
+ */
+public class DependenceAnalysis {
+    public static final int LT = 1;
+    public static final int EQ = 2;
+    public static final int GT = 4;
+    public static final int ALL = LT | EQ | GT;
+
+    /** 参与逐层细化的最大公共循环深度，更深的层直接记为 '*' */
+    private static final int MAX_REFINE_DEPTH = 5;
+
+    public enum DependenceKind {
+        FLOW, ANTI, OUTPUT, INPUT
+    }
+
+    public static final class Dependence {
+        private final Instruction src;
+        private final Instruction dst;
+        private final DependenceKind kind;
+        private final List<Loop> commonLoops;
+        private final List<int[]> directionVectors;
+        private final Integer[] distances;
+        private final boolean confused;
+
+        Dependence(Instruction src, Instruction dst, List<Loop> commonLoops, List<int[]> directionVectors,
+                Integer[] distances, boolean confused) {
+            this.src = src;
+            this.dst = dst;
+            this.kind = kindOf(src, dst);
+            this.commonLoops = commonLoops;
+            this.directionVectors = directionVectors;
+            this.distances = distances;
+            this.confused = confused;
+        }
+
+        public Instruction getSrc() {
+            return src;
+        }
+
+        public Instruction getDst() {
+            return dst;
+        }
+
+        public DependenceKind getKind() {
+            return kind;
+        }
+
+        /** 公共循环，由外到内，下标即层号 */
+        public List<Loop> getCommonLoops() {
+            return commonLoops;
+        }
+
+        public int getLevels() {
+            return commonLoops.size();
+        }
+
+        /** 无法分析（调用、不同形状的未知指针等），所有方向都可能 */
+        public boolean isConfused() {
+            return confused;
+        }
+
+        /** 所有可行方向向量，每个元素是 LT / EQ / GT 的组合 */
+        public List<int[]> getDirectionVectors() {
+            return directionVectors;
+        }
+
+        /** 第 level 层上所有可行方向的并集 */
+        public int getDirection(int level) {
+            int dir = 0;
+            for (int[] v : directionVectors)
+                dir |= v[level];
+            return dir;
+        }
+
+        /** 第 level 层的常量依赖距离，未知时为 null */
+        public Integer getDistance(int level) {
+            return distances[level];
+        }
+
+        /** 是否只在同一次迭代内发生（所有层都是 '='） */
+        public boolean isLoopIndependent() {
+            for (int level = 0; level < getLevels(); level++) {
+                if (getDirection(level) != EQ)
+                    return false;
+            }
+            return true;
+        }
+
+        /** 是否由第 level 层循环携带：存在外层全为 '='、该层不为 '=' 的向量 */
+        public boolean isCarriedBy(int level) {
+            for (int[] v : directionVectors) {
+                boolean outerEqual = true;
+                for (int k = 0; k < level; k++)
+                    outerEqual &= v[k] == EQ;
+                if (outerEqual && (v[level] & (LT | GT)) != 0)
+                    return true;
+            }
+            return false;
+        }
+
+        private static DependenceKind kindOf(Instruction src, Instruction dst) {
+            boolean srcWrite = isWrite(src);
+            boolean dstWrite = isWrite(dst);
+            if (srcWrite && dstWrite)
+                return DependenceKind.OUTPUT;
+            if (srcWrite)
+                return DependenceKind.FLOW;
+            return dstWrite ? DependenceKind.ANTI : DependenceKind.INPUT;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(kind.name().toLowerCase());
+            if (confused)
+                sb.append(" confused");
+            sb.append(" [");
+            for (int level = 0; level < getLevels(); level++) {
+                if (level > 0)
+                    sb.append(", ");
+                sb.append(distances[level] != null ? distances[level].toString()
+                        : directionString(getDirection(level)));
+            }
+            return sb.append("] ").append(src.toNLVM()).append(" -> ").append(dst.toNLVM()).toString();
+        }
+    }
+
+    public static String directionString(int dir) {
+        return switch (dir) {
+            case LT -> "<";
+            case EQ -> "=";
+            case GT -> ">";
+            case LT | EQ -> "<=";
+            case GT | EQ -> ">=";
+            case LT | GT -> "<>";
+            case ALL -> "*";
+            default -> "none";
+        };
+    }
+
+    private final ScalarEvolution se;
+    private final LoopInfo loopInfo;
+    private final ModRefAnalysis modRef;
+
+    public DependenceAnalysis(ScalarEvolution se) {
+        this(se, null);
+    }
+
+    public DependenceAnalysis(ScalarEvolution se, ModRefAnalysis modRef) {
+        this.se = se;
+        this.loopInfo = se.getLoopInfo();
+        this.modRef = modRef;
+    }
+
+    public static DependenceAnalysis compute(Function function) {
+        return new DependenceAnalysis(ScalarEvolution.compute(function));
+    }
+
+    // ==================== 对外接口 ====================
+
+    /** 循环（含子循环）中至少一方是写的所有依赖，按块顺序成对给出 */
+    public List<Dependence> getDependences(Loop nest) {
+        List<Instruction> accesses = new ArrayList<>();
+        for (var bbNode : se.getFunction().getBlocks()) {
+            BasicBlock bb = bbNode.getVal();
+            if (!nest.contains(bb))
+                continue;
+            for (var node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                if (isMemoryAccess(inst))
+                    accesses.add(inst);
+            }
+        }
+        List<Dependence> result = new ArrayList<>();
+        for (int i = 0; i < accesses.size(); i++) {
+            for (int j = i; j < accesses.size(); j++) {
+                Instruction a = accesses.get(i);
+                Instruction b = accesses.get(j);
+                if (!isWrite(a) && !isWrite(b))
+                    continue;
+                Dependence dep = depends(a, b);
+                if (dep != null)
+                    result.add(dep);
+            }
+        }
+        return result;
+    }
+
+    public Dependence depends(Instruction src, Instruction dst) {
+        return depends(src, dst, Collections.emptyMap());
+    }
+
+    /**
+     * 判断 src 与 dst 之间是否可能存在依赖，不存在时返回 null。
+     *
+     * @param alignedLoops 把 dst 所在的某些循环视作 src 所在的对应循环（同一迭代空间），
+     *                     用于判断两个相邻循环融合后的依赖方向
+     */
+    public Dependence depends(Instruction src, Instruction dst, Map<Loop, Loop> alignedLoops) {
+        if (!isMemoryAccess(src) || !isMemoryAccess(dst))
+            return null;
+        List<Loop> srcNest = loopNest(src.getParent(), Collections.emptyMap());
+        List<Loop> dstNest = loopNest(dst.getParent(), alignedLoops);
+        List<Loop> common = new ArrayList<>();
+        for (int k = 0; k < Math.min(srcNest.size(), dstNest.size()) && srcNest.get(k) == dstNest.get(k); k++)
+            common.add(srcNest.get(k));
+
+        if (src instanceof CallInst || dst instanceof CallInst) {
+            if (!callMayDepend(src, dst))
+                return null;
+            return confused(src, dst, common);
+        }
+
+        MemoryLocation srcLoc = MemorySSA.getLocation(src);
+        MemoryLocation dstLoc = MemorySSA.getLocation(dst);
+        Value srcBase = AliasAnalysis.getUnderlyingObject(srcLoc.pointer());
+        Value dstBase = AliasAnalysis.getUnderlyingObject(dstLoc.pointer());
+        if (srcBase != dstBase) {
+            if (!AliasAnalysis.mayAliasObjects(srcBase, dstBase))
+                return null;
+            return confused(src, dst, common);
+        }
+        // 基址本身在循环内变化时，不同迭代的同一下标指向不同位置
+        if (definedInNest(srcBase, srcNest) || definedInNest(srcBase, dstNest))
+            return confused(src, dst, common);
+        // 向量访问或访问宽度不同时，逐维比较不成立
+        if (srcLoc.size() != dstLoc.size() || srcLoc.size() == AliasAnalysis.UNKNOWN_SIZE
+                || src instanceof VectorLoadInst || src instanceof VectorStoreInst
+                || dst instanceof VectorLoadInst || dst instanceof VectorStoreInst)
+            return confused(src, dst, common);
+
+        List<Subscript> srcSubs = subscripts(srcLoc.pointer());
+        List<Subscript> dstSubs = subscripts(dstLoc.pointer());
+        if (srcSubs == null || dstSubs == null)
+            return confused(src, dst, common);
+        if (!sameShape(srcSubs, dstSubs)) {
+            srcSubs = List.of(flatten(srcSubs));
+            dstSubs = List.of(flatten(dstSubs));
+        }
+
+        IterationSpace space = iterationSpace(src, dst, srcNest, dstNest, common);
+        List<Pair> pairs = new ArrayList<>();
+        for (int d = 0; d < srcSubs.size(); d++) {
+            Pair p = buildPair(srcSubs.get(d).index(), dstSubs.get(d).index(), space, srcNest, dstNest,
+                    alignedLoops);
+            if (p == null)
+                continue; // 该维无法分析，不提供约束
+            pairs.add(p);
+        }
+        return test(src, dst, common, pairs);
+    }
+
+    // ==================== 访问分类 ====================
+
+    public boolean isMemoryAccess(Instruction inst) {
+        if (inst instanceof LoadInst || inst instanceof StoreInst || inst instanceof VectorLoadInst
+                || inst instanceof VectorStoreInst)
+            return true;
+        if (inst instanceof CallInst call) {
+            if (modRef != null && modRef.getSummary(call.getCalledFunction()) != null) {
+                ModRefAnalysis.Summary s = modRef.getSummary(call.getCalledFunction());
+                return s.mayMod() || s.mayRef();
+            }
+            return !call.isPure() || call.getArgs().stream().anyMatch(a -> a.getType() instanceof PointerType);
+        }
+        return false;
+    }
+
+    public static boolean isWrite(Instruction inst) {
+        return inst instanceof StoreInst || inst instanceof VectorStoreInst
+                || (inst instanceof CallInst call && !call.isPure());
+    }
+
+    private boolean callMayDepend(Instruction src, Instruction dst) {
+        if (src instanceof CallInst && dst instanceof CallInst)
+            return true;
+        CallInst call = (CallInst) (src instanceof CallInst ? src : dst);
+        Instruction other = src instanceof CallInst ? dst : src;
+        MemoryLocation loc = MemorySSA.getLocation(other);
+        if (isWrite(other))
+            return AliasAnalysis.callMayRef(call, loc, modRef) || AliasAnalysis.callMayModify(call, loc, modRef);
+        return AliasAnalysis.callMayModify(call, loc, modRef);
+    }
+
+    private Dependence confused(Instruction src, Instruction dst, List<Loop> common) {
+        int[] all = new int[common.size()];
+        java.util.Arrays.fill(all, ALL);
+        return new Dependence(src, dst, common, List.of(all), new Integer[common.size()], true);
+    }
+
+    private static boolean definedInNest(Value v, List<Loop> nest) {
+        return v instanceof Instruction inst && !nest.isEmpty() && inst.getParent() != null
+                && nest.get(0).contains(inst.getParent());
+    }
+
+    /** 包含 bb 的循环，由外到内；alignedLoops 中的循环替换为对应循环 */
+    private List<Loop> loopNest(BasicBlock bb, Map<Loop, Loop> alignedLoops) {
+        List<Loop> nest = new ArrayList<>();
+        for (Loop l = loopInfo == null ? null : loopInfo.getLoopFor(bb); l != null; l = l.getParentLoop())
+            nest.add(alignedLoops.getOrDefault(l, l));
+        Collections.reverse(nest);
+        return nest;
+    }
+
+    // ==================== 下标 ====================
+
+    /** 一维下标：索引值与该维一个单位对应的字节数 */
+    private record Subscript(SCEV index, long scale) {
+    }
+
+    /**
+     * 沿 GEP 链从基对象向外展开逐维下标。每个 GEP 的首个索引与上一维的下标相加（指针算术），
+     * 其余索引各自成为新的一维。
+     */
+    private List<Subscript> subscripts(Value ptr) {
+        List<GEPInst> chain = new ArrayList<>();
+        Value cur = ptr;
+        while (cur instanceof GEPInst gep) {
+            chain.add(gep);
+            cur = gep.getPointer();
+        }
+        Collections.reverse(chain);
+        List<Subscript> subs = new ArrayList<>();
+        for (GEPInst gep : chain) {
+            if (!(gep.getPointer().getType() instanceof PointerType pt))
+                return null;
+            Type t = pt.getPointeeType();
+            for (int i = 0; i < gep.getNumIndices(); i++) {
+                if (i > 0) {
+                    if (!(t instanceof ArrayType at))
+                        return null;
+                    t = at.getElementType();
+                }
+                long scale = AliasAnalysis.sizeOf(t);
+                if (scale == AliasAnalysis.UNKNOWN_SIZE)
+                    return null;
+                SCEV idx = se.getSCEV(gep.getIndex(i));
+                if (i == 0 && !subs.isEmpty()) {
+                    Subscript last = subs.remove(subs.size() - 1);
+                    if (last.scale() != scale)
+                        return null;
+                    subs.add(new Subscript(se.getAddExpr(last.index(), idx), scale));
+                } else {
+                    subs.add(new Subscript(idx, scale));
+                }
+            }
+        }
+        if (subs.isEmpty())
+            subs.add(new Subscript(se.getConstant(0), 1));
+        return subs;
+    }
+
+    private static boolean sameShape(List<Subscript> a, List<Subscript> b) {
+        if (a.size() != b.size())
+            return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).scale() != b.get(i).scale())
+                return false;
+        }
+        return true;
+    }
+
+    /** 线性字节偏移 Σ index × scale */
+    private Subscript flatten(List<Subscript> subs) {
+        SCEV sum = se.getConstant(0);
+        for (Subscript s : subs)
+            sum = se.getAddExpr(sum, se.getMulExpr(s.index(), se.getConstant((int) s.scale())));
+        return new Subscript(sum, 1);
+    }
+
+    // ==================== 测试 ====================
+
+    /**
+     * 一维下标对：src = Σ srcCoeff[k] × i<sub>k</sub> + R1，dst = Σ dstCoeff[k] × j<sub>k</sub> + R2，
+     * 依赖方程为 Σ srcCoeff × i - Σ dstCoeff × j = delta（= R2 - R1），变量顺序同 {@link IterationSpace}。
+     */
+    private record Pair(long[] srcCoeff, long[] dstCoeff, long[] bound, int commonLevels, long delta) {
+    }
+
+    /**
+     * 依赖方程中的迭代变量：公共层在前，随后是只属于 src / 只属于 dst 的循环；
+     * bounds 为各变量的上界（未知为 -1）
+     */
+    private record IterationSpace(List<Loop> vars, int commonLevels, int srcOnlyEnd, long[] bounds) {
+    }
+
+    private IterationSpace iterationSpace(Instruction src, Instruction dst, List<Loop> srcNest, List<Loop> dstNest,
+            List<Loop> common) {
+        List<Loop> srcReal = loopNest(src.getParent(), Collections.emptyMap());
+        List<Loop> dstReal = loopNest(dst.getParent(), Collections.emptyMap());
+        List<Loop> vars = new ArrayList<>(common);
+        List<Long> bounds = new ArrayList<>();
+        for (int k = 0; k < common.size(); k++) {
+            long a = iterationBound(srcReal.get(k), src);
+            long b = iterationBound(dstReal.get(k), dst);
+            bounds.add(a < 0 || b < 0 ? -1 : Math.max(a, b));
+        }
+        for (int k = common.size(); k < srcNest.size(); k++) {
+            vars.add(srcNest.get(k));
+            bounds.add(iterationBound(srcReal.get(k), src));
+        }
+        int srcOnlyEnd = vars.size();
+        for (int k = common.size(); k < dstNest.size(); k++) {
+            vars.add(dstNest.get(k));
+            bounds.add(iterationBound(dstReal.get(k), dst));
+        }
+        return new IterationSpace(vars, common.size(), srcOnlyEnd,
+                bounds.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * inst 在循环 l 中最大的迭代号，未知时为 -1。
+     * 在 header 判断退出的循环里，header 之外的块比回边次数少执行一次。
+     */
+    private long iterationBound(Loop l, Instruction inst) {
+        int btc = se.getConstantBackedgeTakenCount(l);
+        if (btc < 0)
+            return -1;
+        if (se.getExitingBlock(l) == l.getHeader() && inst.getParent() != l.getHeader())
+            return btc - 1;
+        return btc;
+    }
+
+    /** 提取仿射系数；含非常量步长、不属于所在嵌套的递推或循环内变化的余项时返回 null */
+    private Pair buildPair(SCEV srcIdx, SCEV dstIdx, IterationSpace space, List<Loop> srcNest, List<Loop> dstNest,
+            Map<Loop, Loop> alignedLoops) {
+        Map<Loop, Long> srcTerms = new HashMap<>();
+        Map<Loop, Long> dstTerms = new HashMap<>();
+        List<SCEV> srcRest = new ArrayList<>();
+        List<SCEV> dstRest = new ArrayList<>();
+        if (!split(srcIdx, srcTerms, srcRest, Collections.emptyMap())
+                || !split(dstIdx, dstTerms, dstRest, alignedLoops))
+            return null;
+        for (Loop l : srcTerms.keySet())
+            if (!srcNest.contains(l))
+                return null;
+        for (Loop l : dstTerms.keySet())
+            if (!dstNest.contains(l))
+                return null;
+        SCEV r1 = se.getAddExpr(srcRest);
+        SCEV r2 = se.getAddExpr(dstRest);
+        if (!invariantIn(r1, srcNest) || !invariantIn(r2, dstNest))
+            return null;
+        if (!(se.getMinusSCEV(r2, r1) instanceof SCEV.Constant delta))
+            return null;
+
+        int n = space.vars().size();
+        long[] sc = new long[n];
+        long[] dc = new long[n];
+        for (int k = 0; k < n; k++) {
+            Loop l = space.vars().get(k);
+            if (k < space.srcOnlyEnd())
+                sc[k] = srcTerms.getOrDefault(l, 0L);
+            if (k < space.commonLevels() || k >= space.srcOnlyEnd())
+                dc[k] = dstTerms.getOrDefault(l, 0L);
+        }
+        return new Pair(sc, dc, space.bounds(), space.commonLevels(), delta.getValue());
+    }
+
+    /** 把 AddRec 拆成各层循环的常量系数，余项放入 rest */
+    private boolean split(SCEV s, Map<Loop, Long> terms, List<SCEV> rest, Map<Loop, Loop> alignedLoops) {
+        if (s.isCouldNotCompute())
+            return false;
+        if (s instanceof SCEV.AddRec rec) {
+            if (!(rec.getStep() instanceof SCEV.Constant step))
+                return false;
+            Loop l = alignedLoops.getOrDefault(rec.getLoop(), rec.getLoop());
+            terms.merge(l, (long) step.getValue(), Long::sum);
+            return split(rec.getStart(), terms, rest, alignedLoops);
+        }
+        if (s.getKind() == SCEV.Kind.ADD) {
+            for (SCEV op : s.getOperands()) {
+                if (!split(op, terms, rest, alignedLoops))
+                    return false;
+            }
+            return true;
+        }
+        if (s.containsAddRec())
+            return false;
+        rest.add(s);
+        return true;
+    }
+
+    private static boolean invariantIn(SCEV s, List<Loop> nest) {
+        for (Loop l : nest) {
+            if (!s.isLoopInvariant(l))
+                return false;
+        }
+        return true;
+    }
+
+    private Dependence test(Instruction src, Instruction dst, List<Loop> common, List<Pair> pairs) {
+        int levels = common.size();
+        Integer[] distances = new Integer[levels];
+        int[] initial = new int[levels];
+        java.util.Arrays.fill(initial, ALL);
+
+        // 强 SIV：只有第 k 层、两侧系数相同 => 距离确定
+        for (Pair p : pairs) {
+            int k = singleStrongLevel(p);
+            if (k < 0)
+                continue;
+            long c = p.srcCoeff()[k];
+            if (p.delta() % c != 0)
+                return null;
+            long dist = -p.delta() / c;
+            if (p.bound()[k] >= 0 && Math.abs(dist) > p.bound()[k])
+                return null;
+            if (distances[k] != null && distances[k] != dist)
+                return null;
+            distances[k] = (int) dist;
+            initial[k] &= dist > 0 ? LT : dist == 0 ? EQ : GT;
+        }
+
+        List<int[]> vectors = new ArrayList<>();
+        refine(initial, 0, pairs, vectors);
+        if (vectors.isEmpty())
+            return null;
+        for (int k = 0; k < levels; k++) {
+            if (distances[k] == null) {
+                int dir = 0;
+                for (int[] v : vectors)
+                    dir |= v[k];
+                if (dir == EQ)
+                    distances[k] = 0;
+            }
+        }
+        return new Dependence(src, dst, common, vectors, distances, false);
+    }
+
+    private static int singleStrongLevel(Pair p) {
+        int found = -1;
+        for (int k = 0; k < p.srcCoeff().length; k++) {
+            if (p.srcCoeff()[k] == 0 && p.dstCoeff()[k] == 0)
+                continue;
+            if (found >= 0 || k >= p.commonLevels() || p.srcCoeff()[k] != p.dstCoeff()[k])
+                return -1;
+            found = k;
+        }
+        return found;
+    }
+
+    /** 逐层把 '*' 细化为 &lt;、=、&gt;，剪掉 GCD / Banerjee 判定不可行的分支 */
+    private void refine(int[] dirs, int level, List<Pair> pairs, List<int[]> out) {
+        if (!feasible(dirs, pairs))
+            return;
+        if (level >= dirs.length || level >= MAX_REFINE_DEPTH) {
+            out.add(dirs.clone());
+            return;
+        }
+        int allowed = dirs[level];
+        for (int d : new int[] { LT, EQ, GT }) {
+            if ((allowed & d) == 0)
+                continue;
+            dirs[level] = d;
+            refine(dirs, level + 1, pairs, out);
+        }
+        dirs[level] = allowed;
+    }
+
+    private static boolean feasible(int[] dirs, List<Pair> pairs) {
+        for (Pair p : pairs) {
+            if (!gcdTest(p, dirs) || !banerjeeTest(p, dirs))
+                return false;
+        }
+        return true;
+    }
+
+    /** '=' 层上 i = j，系数合并为 srcCoeff - dstCoeff */
+    private static boolean gcdTest(Pair p, int[] dirs) {
+        long g = 0;
+        for (int k = 0; k < p.srcCoeff().length; k++) {
+            if (k < p.commonLevels() && dirs[k] == EQ) {
+                g = gcd(g, p.srcCoeff()[k] - p.dstCoeff()[k]);
+            } else {
+                g = gcd(g, p.srcCoeff()[k]);
+                g = gcd(g, p.dstCoeff()[k]);
+            }
+        }
+        if (g == 0)
+            return p.delta() == 0;
+        return p.delta() % g == 0;
+    }
+
+    /** Banerjee 不等式：在方向约束下求 Σ (a·i - b·j) 的上下界 */
+    private static boolean banerjeeTest(Pair p, int[] dirs) {
+        long lo = 0;
+        long hi = 0;
+        boolean loInf = false;
+        boolean hiInf = false;
+        for (int k = 0; k < p.srcCoeff().length; k++) {
+            long a = p.srcCoeff()[k];
+            long b = p.dstCoeff()[k];
+            long u = p.bound()[k];
+            int dir = k < p.commonLevels() ? dirs[k] : ALL;
+            if (u == 0 && (dir & EQ) == 0 && k < p.commonLevels())
+                return false; // 只有一次迭代，不可能跨迭代
+            if (a == 0 && b == 0)
+                continue;
+            if (u < 0) {
+                loInf = true;
+                hiInf = true;
+                continue;
+            }
+            long[] range = termRange(a, b, u, dir);
+            if (range == null)
+                return false;
+            lo += range[0];
+            hi += range[1];
+        }
+        return (loInf || lo <= p.delta()) && (hiInf || p.delta() <= hi);
+    }
+
+    /**
+     * a·i - b·j 在 0 ≤ i, j ≤ u 且满足方向约束时的取值范围（线性函数的极值在可行域顶点取得），
+     * 可行域为空时返回 null
+     */
+    private static long[] termRange(long a, long b, long u, int dir) {
+        List<long[]> vertices = new ArrayList<>();
+        if ((dir & (LT | EQ | GT)) == ALL) {
+            vertices.add(new long[] { 0, 0 });
+            vertices.add(new long[] { u, 0 });
+            vertices.add(new long[] { 0, u });
+            vertices.add(new long[] { u, u });
+        } else {
+            if ((dir & EQ) != 0) {
+                vertices.add(new long[] { 0, 0 });
+                vertices.add(new long[] { u, u });
+            }
+            if ((dir & LT) != 0 && u >= 1) {
+                vertices.add(new long[] { 0, 1 });
+                vertices.add(new long[] { 0, u });
+                vertices.add(new long[] { u - 1, u });
+            }
+            if ((dir & GT) != 0 && u >= 1) {
+                vertices.add(new long[] { 1, 0 });
+                vertices.add(new long[] { u, 0 });
+                vertices.add(new long[] { u, u - 1 });
+            }
+        }
+        if (vertices.isEmpty())
+            return null;
+        long lo = Long.MAX_VALUE;
+        long hi = Long.MIN_VALUE;
+        for (long[] v : vertices) {
+            long val = a * v[0] - b * v[1];
+            lo = Math.min(lo, val);
+            hi = Math.max(hi, val);
+        }
+        return new long[] { lo, hi };
+    }
+
+    private static long gcd(long a, long b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
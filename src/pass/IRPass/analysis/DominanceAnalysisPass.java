@@ -2,133 +2,274 @@ package pass.IRPass.analysis;
 
 import ir.value.BasicBlock;
 import ir.value.Function;
-import util.IList.INode;
 
 import java.util.*;
 
+/**
+ * 支配分析：Cooper–Harvey–Kennedy 迭代算法（"A Simple, Fast Dominance Algorithm"）。
+ * <p>
+ * 在逆后序编号上求 idom（两指针沿 idom 链求交），随后构建支配树并做一次 DFS，
+ * 记录每个块的先序/后序编号，dominates(a, b) 只需比较区间，O(1)。
+ * 内存与基本块数线性相关，不再保存完整的支配者集合。
+ * <p>
+ * 增量更新：变换 pass 修改 CFG 后通过 {@link #applyUpdates}（或 {@link #updateCached}）
+ * 报告增删的边，只在受影响的支配子树内重新求 idom。
+ * 每个函数的缓存实例由 {@link #getOrCompute} 提供，函数的 CFG 版本号变化且未被报告时自动重算。
+ */
 public class DominanceAnalysisPass {
+    public enum UpdateKind {
+        INSERT, DELETE
+    }
+
+    /** 一条 CFG 边的变化；报告时 CFG 必须已经是修改后的状态 */
+    public record Update(UpdateKind kind, BasicBlock from, BasicBlock to) {
+        public static Update insert(BasicBlock from, BasicBlock to) {
+            return new Update(UpdateKind.INSERT, from, to);
+        }
+
+        public static Update delete(BasicBlock from, BasicBlock to) {
+            return new Update(UpdateKind.DELETE, from, to);
+        }
+    }
+
+    // 每个函数一份缓存的支配树
+    private static final Map<Function, DominanceAnalysisPass> CACHE = new WeakHashMap<>();
+
     private Function function;
-    private Map<BasicBlock, Set<BasicBlock>> dominators;
     private Map<BasicBlock, BasicBlock> immediateDominators;
     private Map<BasicBlock, Set<BasicBlock>> dominanceFrontier;
     private Map<BasicBlock, List<BasicBlock>> domTreeChildren;
 
+    // 可达块的编号（初次计算时即 RPO 序号，增量更新后追加），同时用于判断可达性
+    private Map<BasicBlock, Integer> number;
+    private Map<BasicBlock, Integer> level;
+    private int nextNumber;
+    // 逆后序：只包含从入口可达的块，rpo[0] 为入口
+    private List<BasicBlock> rpo;
+    // 支配树 DFS 区间：a 支配 b 当且仅当 pre[a] <= pre[b] && post[b] <= post[a]
+    private Map<BasicBlock, Integer> preorder;
+    private Map<BasicBlock, Integer> postorder;
+
+    // 增量更新后区间 / RPO / DF 按需重建
+    private boolean intervalsValid;
+    private boolean rpoValid;
+    private boolean frontierValid;
+
+    // 分析结果对应的 CFG 版本与入口
+    private long cfgVersion = -1;
+    private BasicBlock root;
+
     public DominanceAnalysisPass(Function func) {
         this.function = func;
-        this.dominators = new HashMap<>();
         this.immediateDominators = new HashMap<>();
         this.dominanceFrontier = new HashMap<>();
         this.domTreeChildren = new HashMap<>();
+        this.number = new HashMap<>();
+        this.level = new HashMap<>();
+        this.rpo = new ArrayList<>();
+        this.preorder = new HashMap<>();
+        this.postorder = new HashMap<>();
+    }
+
+    /**
+     * 取函数的缓存支配树；CFG 自上次计算/更新以来有未报告的修改时重新计算
+     */
+    public static DominanceAnalysisPass getOrCompute(Function func) {
+        DominanceAnalysisPass dom = CACHE.computeIfAbsent(func, DominanceAnalysisPass::new);
+        if (!dom.isUpToDate()) {
+            dom.run();
+        }
+        return dom;
+    }
+
+    /**
+     * 变换 pass 修改 CFG 后调用：若该函数有缓存的支配树，则增量更新它
+     */
+    public static void updateCached(Function func, List<Update> updates) {
+        DominanceAnalysisPass dom = CACHE.get(func);
+        // 缓存已过期（有未报告的修改）时不急于重算，留给下一次 getOrCompute
+        if (dom != null && dom.cfgVersion + updates.size() == func.getCfgVersion()) {
+            dom.applyUpdates(updates);
+        }
+    }
+
+    /**
+     * 修改前记录一组块的后继集合。适用于编辑次数多、逐条报告不便的变换（如循环展开）：
+     * 修改后用 {@link #updateCached(CfgSnapshot, Collection)} 按净变化更新。
+     * 调用方需保证所有被改动的边都以快照中的块或之后传入的新块为起点。
+     */
+    public static CfgSnapshot snapshot(Function func, Collection<BasicBlock> blocks) {
+        Map<BasicBlock, Set<BasicBlock>> succs = new HashMap<>();
+        for (BasicBlock bb : blocks) {
+            succs.put(bb, new HashSet<>(bb.getSuccessors()));
+        }
+        return new CfgSnapshot(func, func.getCfgVersion(), succs);
+    }
+
+    public record CfgSnapshot(Function function, long cfgVersion, Map<BasicBlock, Set<BasicBlock>> successors) {
+    }
+
+    /**
+     * 以快照为基准求净的增删边并增量更新缓存；newBlocks 为修改期间新建的块
+     */
+    public static void updateCached(CfgSnapshot snapshot, Collection<BasicBlock> newBlocks) {
+        DominanceAnalysisPass dom = CACHE.get(snapshot.function());
+        if (dom == null || dom.cfgVersion != snapshot.cfgVersion())
+            return;
+        List<Update> updates = new ArrayList<>();
+        Set<BasicBlock> sources = new LinkedHashSet<>(snapshot.successors().keySet());
+        sources.addAll(newBlocks);
+        for (BasicBlock bb : sources) {
+            Set<BasicBlock> before = snapshot.successors().getOrDefault(bb, Collections.emptySet());
+            Set<BasicBlock> after = bb.getSuccessors();
+            for (BasicBlock succ : before) {
+                if (!after.contains(succ))
+                    updates.add(Update.delete(bb, succ));
+            }
+            for (BasicBlock succ : after) {
+                if (!before.contains(succ))
+                    updates.add(Update.insert(bb, succ));
+            }
+        }
+        dom.applyNetUpdates(updates);
+    }
+
+    public static void invalidate(Function func) {
+        CACHE.remove(func);
+    }
+
+    public boolean isUpToDate() {
+        return function != null && cfgVersion == function.getCfgVersion()
+                && root == function.getEntryBlock();
     }
 
     // 允许重复使用同一实例分析不同函数
     public void runOnFunction(Function func) {
         this.function = func;
-        this.dominators.clear();
-        this.immediateDominators.clear();
-        this.dominanceFrontier.clear();
-        this.domTreeChildren.clear();
         run();
     }
 
     public void run() {
+        immediateDominators.clear();
+        dominanceFrontier.clear();
+        domTreeChildren.clear();
+        number.clear();
+        level.clear();
+        rpo.clear();
+        preorder.clear();
+        postorder.clear();
+        nextNumber = 0;
         if (function == null)
             return;
-        computeDominators();
+        cfgVersion = function.getCfgVersion();
+        root = function.getEntryBlock();
+        computeReversePostOrder();
+        for (BasicBlock bb : rpo) {
+            number.put(bb, nextNumber++);
+        }
+        rpoValid = true;
         computeImmediateDominators();
         materializeDomTreeFields();
+        computeDomTreeIntervals();
         computeDominanceFrontier();
     }
 
-    private void computeDominators() {
-        // 仅对从真实入口可达的基本块计算支配关系，避免错误的“多入口”导致 idom 为空
+    /**
+     * 仅对从真实入口可达的基本块编号，避免错误的“多入口”导致 idom 为空
+     */
+    private void computeReversePostOrder() {
+        rpo.clear();
         BasicBlock entry = function.getEntryBlock();
         if (entry == null)
             return;
-        // 收集可达块
-        HashSet<BasicBlock> reachable = new HashSet<>();
-        ArrayDeque<BasicBlock> dq = new ArrayDeque<>();
-        reachable.add(entry);
-        dq.add(entry);
-        while (!dq.isEmpty()) {
-            BasicBlock cur = dq.poll();
-            for (BasicBlock succ : cur.getSuccessors()) {
-                if (reachable.add(succ))
-                    dq.add(succ);
-            }
+        List<BasicBlock> post = postOrderFrom(entry, bb -> true);
+        for (int i = post.size() - 1; i >= 0; i--) {
+            rpo.add(post.get(i));
         }
-        List<BasicBlock> blocks = new ArrayList<>(reachable);
-        if (blocks.isEmpty())
-            return;
+    }
 
-        // 初始化
-        for (BasicBlock bb : blocks) {
-            if (bb == entry) {
-                dominators.put(bb, Set.of(bb));
+    // 迭代式 DFS 后序，避免数千个块时递归过深；filter 限定可进入的块
+    private static List<BasicBlock> postOrderFrom(BasicBlock start,
+            java.util.function.Predicate<BasicBlock> filter) {
+        List<BasicBlock> post = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<Iterator<BasicBlock>> iters = new ArrayDeque<>();
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        visited.add(start);
+        stack.push(start);
+        iters.push(start.getSuccessors().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<BasicBlock> it = iters.peek();
+            if (it.hasNext()) {
+                BasicBlock succ = it.next();
+                if (filter.test(succ) && visited.add(succ)) {
+                    stack.push(succ);
+                    iters.push(succ.getSuccessors().iterator());
+                }
             } else {
-                dominators.put(bb, new HashSet<>(blocks));
+                post.add(stack.pop());
+                iters.pop();
             }
         }
+        return post;
+    }
 
-        // 迭代计算
+    private void computeImmediateDominators() {
+        int[] doms = solveIdoms(rpo);
+        for (int b = 1; b < rpo.size(); b++) {
+            if (doms[b] != -1) {
+                immediateDominators.put(rpo.get(b), rpo.get(doms[b]));
+            }
+        }
+    }
+
+    /**
+     * 在给定的逆后序（order[0] 为根）上做 CHK 迭代，返回每个位置的 idom 下标；
+     * 不在 order 中的前驱视为不可达而忽略
+     */
+    private static int[] solveIdoms(List<BasicBlock> order) {
+        int n = order.size();
+        int[] doms = new int[n];
+        if (n == 0)
+            return doms;
+        Map<BasicBlock, Integer> index = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            index.put(order.get(i), i);
+        }
+        Arrays.fill(doms, -1);
+        doms[0] = 0;
+
+        // 按 RPO 迭代到不动点；可归约 CFG 通常两轮即可收敛
         boolean changed = true;
         while (changed) {
             changed = false;
-            for (BasicBlock bb : blocks) {
-                if (bb == entry)
-                    continue;
-                Set<BasicBlock> newDom = new HashSet<>(blocks);
-                // 计算所有“可达前驱”的支配者交集（忽略不可达/未登记的前驱，防止 NPE）
-                for (BasicBlock pred : bb.getPredecessors()) {
-                    Set<BasicBlock> predDom = dominators.get(pred);
-                    if (predDom == null)
-                        continue; // pred 不在可达子图内
-                    newDom.retainAll(predDom);
+            for (int b = 1; b < n; b++) {
+                int newIdom = -1;
+                // 忽略不可达/尚未处理的前驱，防止 NPE
+                for (BasicBlock pred : order.get(b).getPredecessors()) {
+                    Integer p = index.get(pred);
+                    if (p == null || doms[p] == -1)
+                        continue;
+                    newIdom = newIdom == -1 ? p : intersect(doms, p, newIdom);
                 }
-                newDom.add(bb);
-                if (!newDom.equals(dominators.get(bb))) {
-                    dominators.put(bb, newDom);
+                if (newIdom != -1 && doms[b] != newIdom) {
+                    doms[b] = newIdom;
                     changed = true;
                 }
             }
         }
+        return doms;
     }
 
-    private void computeImmediateDominators() {
-        // 仅在已计算的可达子图上求 idom
-        if (dominators.isEmpty())
-            return;
-        BasicBlock entry = function.getEntryBlock();
-        if (entry == null)
-            return;
-        List<BasicBlock> blocks = new ArrayList<>(dominators.keySet());
-        if (blocks.isEmpty())
-            return;
-
-        for (BasicBlock bb : blocks) {
-            if (bb == entry)
-                continue;
-            Set<BasicBlock> doms = new HashSet<>(dominators.get(bb));
-            doms.remove(bb);
-            // 找到直接支配者
-            BasicBlock idom = null;
-            for (BasicBlock candidate : doms) {
-                boolean isImmediate = true;
-                for (BasicBlock other : doms) {
-                    if (other != candidate && dominators.get(other).contains(candidate)) {
-                        isImmediate = false;
-                        break;
-                    }
-                }
-                if (isImmediate) {
-                    idom = candidate;
-                    break;
-                }
-            }
-            if (idom != null) {
-                immediateDominators.put(bb, idom);
-            }
+    // 沿 idom 链向上，RPO 编号大的一方先走，直到相遇
+    private static int intersect(int[] doms, int a, int b) {
+        while (a != b) {
+            while (a > b)
+                a = doms[a];
+            while (b > a)
+                b = doms[b];
         }
+        return a;
     }
 
     // 将分析结果写回 BasicBlock 字段，并构建支配树孩子列表
@@ -147,66 +288,291 @@ public class DominanceAnalysisPass {
         // 构建孩子列表
         for (var bbNode : function.getBlocks()) {
             BasicBlock bb = bbNode.getVal();
-            BasicBlock idom = bb.getIdom();
+            BasicBlock idom = immediateDominators.get(bb);
             if (idom != null) {
                 domTreeChildren.computeIfAbsent(idom, k -> new ArrayList<>()).add(bb);
             }
         }
-        // 设定 domLevel（从真实入口广度优先）
-        BasicBlock entry = function.getEntryBlock();
-        if (entry == null)
+        // RPO 中 idom 总在孩子之前，顺序扫描即可设定 domLevel
+        for (BasicBlock bb : rpo) {
+            BasicBlock idom = immediateDominators.get(bb);
+            int lvl = idom == null ? 0 : level.get(idom) + 1;
+            level.put(bb, lvl);
+            bb.setDomLevel(lvl);
+        }
+    }
+
+    private void computeDomTreeIntervals() {
+        preorder.clear();
+        postorder.clear();
+        intervalsValid = true;
+        if (root == null || !number.containsKey(root))
             return;
-        Deque<BasicBlock> dq = new ArrayDeque<>();
-        entry.setDomLevel(0);
-        dq.add(entry);
-        while (!dq.isEmpty()) {
-            BasicBlock cur = dq.poll();
-            int curLvl = cur.getDomLevel();
-            for (BasicBlock child : domTreeChildren.getOrDefault(cur, Collections.emptyList())) {
-                child.setDomLevel(curLvl + 1);
-                dq.add(child);
+        int clock = 0;
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Deque<Iterator<BasicBlock>> iters = new ArrayDeque<>();
+        preorder.put(root, clock++);
+        stack.push(root);
+        iters.push(getDomTreeChildren(root).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<BasicBlock> it = iters.peek();
+            if (it.hasNext()) {
+                BasicBlock child = it.next();
+                preorder.put(child, clock++);
+                stack.push(child);
+                iters.push(getDomTreeChildren(child).iterator());
+            } else {
+                postorder.put(stack.pop(), clock++);
+                iters.pop();
             }
         }
     }
 
     private void computeDominanceFrontier() {
+        dominanceFrontier.clear();
+        frontierValid = true;
         // 仅对可达子图计算 DF
-        List<BasicBlock> blocks = new ArrayList<>(dominators.keySet());
-        for (BasicBlock bb : blocks) {
+        for (BasicBlock bb : number.keySet()) {
             dominanceFrontier.put(bb, new HashSet<>());
         }
-        for (BasicBlock bb : blocks) {
+        for (BasicBlock bb : number.keySet()) {
             if (bb.getPredecessors().size() >= 2) {
+                BasicBlock idom = immediateDominators.get(bb);
                 for (BasicBlock pred : bb.getPredecessors()) {
+                    if (!number.containsKey(pred))
+                        continue;
                     BasicBlock runner = pred;
-                    while (runner != immediateDominators.get(bb)) {
+                    while (runner != null && runner != idom) {
                         dominanceFrontier.get(runner).add(bb);
                         runner = immediateDominators.get(runner);
-                        if (runner == null)
-                            break;
                     }
                 }
             }
         }
     }
 
+    // ==================== 增量更新 ====================
+
+    public void insertEdge(BasicBlock from, BasicBlock to) {
+        applyUpdates(List.of(Update.insert(from, to)));
+    }
+
+    public void deleteEdge(BasicBlock from, BasicBlock to) {
+        applyUpdates(List.of(Update.delete(from, to)));
+    }
+
+    /**
+     * 批量应用 CFG 边的变化（CFG 已是修改后的状态）。
+     * <p>
+     * 要求本实例在这些修改之前是最新的：每条 Update 恰好对应一次边的增删，
+     * 否则（有未报告的修改、重复报告等）直接整体重算，保证结果总是正确。
+     */
+    public void applyUpdates(List<Update> updates) {
+        if (function == null)
+            return;
+        if (cfgVersion + updates.size() != function.getCfgVersion()) {
+            run();
+            return;
+        }
+        applyNetUpdates(updates);
+    }
+
+    /** updates 已是相对本实例的完整净变化，不再核对版本号计数 */
+    private void applyNetUpdates(List<Update> updates) {
+        if (root != function.getEntryBlock()
+                || (!updates.isEmpty() && !updateRegion(updates))) {
+            run();
+            return;
+        }
+        cfgVersion = function.getCfgVersion();
+    }
+
+    /**
+     * 所有变化边的端点都位于旧支配树中 R（端点的最近公共祖先）的子树内。
+     * 此时 R 仍支配原子树中的可达块，子树外块的 idom 不变，
+     * 只需以 R 为根在“旧子树 ∪ 新可达块”上重新跑 CHK。
+     *
+     * @return false 表示新可达或新不可达的块连到了子树外，需要整体重算
+     */
+    private boolean updateRegion(List<Update> updates) {
+        BasicBlock regionRoot = null;
+        for (Update u : updates) {
+            for (BasicBlock bb : new BasicBlock[] { u.from(), u.to() }) {
+                if (!number.containsKey(bb))
+                    continue;
+                regionRoot = regionRoot == null ? bb : findNearestCommonDominator(regionRoot, bb);
+            }
+        }
+        if (regionRoot == null)
+            return true; // 所有变化都在不可达区域内
+        if (regionRoot == root)
+            return false;
+
+        // 旧子树
+        Set<BasicBlock> oldRegion = new HashSet<>();
+        Deque<BasicBlock> work = new ArrayDeque<>();
+        work.push(regionRoot);
+        while (!work.isEmpty()) {
+            BasicBlock bb = work.pop();
+            oldRegion.add(bb);
+            for (BasicBlock child : getDomTreeChildren(bb)) {
+                work.push(child);
+            }
+        }
+
+        // 只进入旧子树内或原本不可达的块
+        List<BasicBlock> post = postOrderFrom(regionRoot,
+                bb -> !number.containsKey(bb) || oldRegion.contains(bb));
+        List<BasicBlock> order = new ArrayList<>(post.size());
+        for (int i = post.size() - 1; i >= 0; i--) {
+            order.add(post.get(i));
+        }
+        // 新可达块若连向子树外的可达块，区域假设不成立
+        for (BasicBlock bb : order) {
+            if (number.containsKey(bb))
+                continue;
+            for (BasicBlock succ : bb.getSuccessors()) {
+                if (number.containsKey(succ) && !oldRegion.contains(succ))
+                    return false;
+            }
+        }
+
+        // 旧子树中变得不可达的块若仍连向子树外，外面块的 idom 可能随之改变
+        Set<BasicBlock> reached = new HashSet<>(order);
+        for (BasicBlock bb : oldRegion) {
+            if (reached.contains(bb))
+                continue;
+            for (BasicBlock succ : bb.getSuccessors()) {
+                if (number.containsKey(succ) && !oldRegion.contains(succ))
+                    return false;
+            }
+        }
+
+        int[] doms = solveIdoms(order);
+
+        // 旧子树中不再可达的块从树上摘除
+        for (BasicBlock bb : oldRegion) {
+            if (!reached.contains(bb)) {
+                number.remove(bb);
+                level.remove(bb);
+                immediateDominators.remove(bb);
+                dominanceFrontier.remove(bb);
+                bb.setIdom(null);
+                bb.setDomLevel(0);
+            }
+            domTreeChildren.put(bb, new ArrayList<>());
+        }
+
+        // 写回：根保持原编号与 idom，其余按局部 RPO 重新编号（都大于根的编号）
+        for (int i = 1; i < order.size(); i++) {
+            BasicBlock bb = order.get(i);
+            BasicBlock idom = order.get(doms[i]);
+            number.put(bb, nextNumber++);
+            immediateDominators.put(bb, idom);
+            domTreeChildren.computeIfAbsent(idom, k -> new ArrayList<>()).add(bb);
+            int lvl = level.get(idom) + 1;
+            level.put(bb, lvl);
+            bb.setIdom(idom);
+            bb.setDomLevel(lvl);
+        }
+
+        intervalsValid = false;
+        rpoValid = false;
+        frontierValid = false;
+        return true;
+    }
+
+    /** 支配树上 a、b 的最近公共祖先 */
+    public BasicBlock findNearestCommonDominator(BasicBlock a, BasicBlock b) {
+        if (!number.containsKey(a) || !number.containsKey(b))
+            return null;
+        while (level.get(a) > level.get(b))
+            a = immediateDominators.get(a);
+        while (level.get(b) > level.get(a))
+            b = immediateDominators.get(b);
+        while (a != b) {
+            a = immediateDominators.get(a);
+            b = immediateDominators.get(b);
+        }
+        return a;
+    }
+
+    private void ensureIntervals() {
+        if (!intervalsValid)
+            computeDomTreeIntervals();
+    }
+
+    private void ensureFrontier() {
+        if (!frontierValid)
+            computeDominanceFrontier();
+    }
+
+    private void ensureRpo() {
+        if (!rpoValid) {
+            computeReversePostOrder();
+            rpoValid = true;
+        }
+    }
+
+    // ==================== 查询 ====================
+
     public Set<BasicBlock> getDominanceFrontier(BasicBlock bb) {
+        ensureFrontier();
         return dominanceFrontier.getOrDefault(bb, new HashSet<>());
     }
 
+    /** a 是否支配 b（自反）；任一方不可达时返回 false */
     public boolean dominates(BasicBlock a, BasicBlock b) {
-        return dominators.getOrDefault(b, Collections.emptySet()).contains(a);
+        ensureIntervals();
+        Integer preA = preorder.get(a);
+        Integer preB = preorder.get(b);
+        if (preA == null || preB == null)
+            return false;
+        return preA <= preB && postorder.get(b) <= postorder.get(a);
+    }
+
+    /** a 是否严格支配 b */
+    public boolean strictlyDominates(BasicBlock a, BasicBlock b) {
+        return a != b && dominates(a, b);
     }
 
     public BasicBlock getImmediateDominator(BasicBlock bb) {
         return immediateDominators.get(bb);
     }
 
+    /**
+     * 沿 idom 链收集 bb 的全部支配者（含自身），O(支配树深度)；
+     * 只需判定关系时请用 dominates
+     */
     public Set<BasicBlock> getDominators(BasicBlock bb) {
-        return dominators.getOrDefault(bb, new HashSet<>());
+        Set<BasicBlock> result = new HashSet<>();
+        if (!number.containsKey(bb))
+            return result;
+        for (BasicBlock cur = bb; cur != null; cur = immediateDominators.get(cur)) {
+            result.add(cur);
+        }
+        return result;
     }
 
     public List<BasicBlock> getDomTreeChildren(BasicBlock bb) {
         return domTreeChildren.getOrDefault(bb, Collections.emptyList());
     }
+
+    /** 可达块的逆后序，首元素为入口 */
+    public List<BasicBlock> getReversePostOrder() {
+        ensureRpo();
+        return Collections.unmodifiableList(rpo);
+    }
+
+    /** 支配树先序编号，不可达块返回 -1 */
+    public int getPreorderNumber(BasicBlock bb) {
+        ensureIntervals();
+        return preorder.getOrDefault(bb, -1);
+    }
+
+    /** 支配树后序编号，不可达块返回 -1 */
+    public int getPostorderNumber(BasicBlock bb) {
+        ensureIntervals();
+        return postorder.getOrDefault(bb, -1);
+    }
 }
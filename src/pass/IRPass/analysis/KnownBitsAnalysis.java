@@ -0,0 +1,348 @@
+package pass.IRPass.analysis;
+
+import ir.type.IntegerType;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.Phi;
+import ir.value.instructions.SelectInst;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按需计算的已知位分析（known-zero / known-one），只处理 i32 与 i1。
+ * <p>
+ * 对一个值沿 use-def 链向上递归，最多 {@link #MAX_DEPTH} 层，覆盖：
+ * <ul>
+ * <li>常量；and / or / xor；按常量移位的 shl / lshr / ashr；乘以 2^k；add / sub 逐位推进位；mul 的低位 0</li>
+ * <li>srem / urem 2^k 的低位；zext / sext / trunc</li>
+ * <li>select 取两侧的交集；phi 取各入边的交集，环上的 phi 先乐观假设再迭代到不动点</li>
+ * </ul>
+ * 不缓存跨查询的结果：调用方（如 InstCombine）会不断改写 IR，每次查询都按当前 IR 计算。
+ */
+public final class KnownBitsAnalysis {
+    private static final int MAX_DEPTH = 6;
+    // 环上 phi 的迭代上限；未收敛时退回“全未知”
+    private static final int MAX_PHI_ROUNDS = 4;
+
+    /** zero / one 中置位的 bit 分别已知为 0 / 1；只使用低 width 位 */
+    public record KnownBits(int zero, int one, int width) {
+        public static KnownBits unknown(int width) {
+            return new KnownBits(0, 0, width);
+        }
+
+        public static KnownBits constant(int value, int width) {
+            int m = mask(width);
+            return new KnownBits(~value & m, value & m, width);
+        }
+
+        public boolean isConstant() {
+            return (zero | one) == mask(width);
+        }
+
+        public int getConstant() {
+            return one;
+        }
+
+        public boolean isSignBitZero() {
+            return (zero & signBit(width)) != 0;
+        }
+
+        public boolean isSignBitOne() {
+            return (one & signBit(width)) != 0;
+        }
+
+        /** 两个事实同时成立时不应冲突；冲突说明处于不可达路径 */
+        public boolean hasConflict() {
+            return (zero & one) != 0;
+        }
+
+        /** 两侧都成立的事实（select / phi 的合流） */
+        public KnownBits meet(KnownBits o) {
+            return new KnownBits(zero & o.zero, one & o.one, width);
+        }
+
+        /** 把未知位取最小 / 最大得到的有符号范围 */
+        public long signedMin() {
+            int v = one;
+            if (!isSignBitZero())
+                v |= signBit(width);
+            return toSigned(v, width);
+        }
+
+        public long signedMax() {
+            int v = ~zero & mask(width);
+            if (!isSignBitOne())
+                v &= ~signBit(width);
+            return toSigned(v, width);
+        }
+
+        public long unsignedMin() {
+            return Integer.toUnsignedLong(one);
+        }
+
+        public long unsignedMax() {
+            return Integer.toUnsignedLong(~zero & mask(width));
+        }
+
+        /** 低位连续已知为 0 的位数 */
+        public int countMinTrailingZeros() {
+            return Math.min(Integer.numberOfTrailingZeros(~zero), width);
+        }
+
+        private KnownBits clip() {
+            int m = mask(width);
+            return new KnownBits(zero & m, one & m, width);
+        }
+    }
+
+    private final Map<Phi, KnownBits> phiAssumptions = new HashMap<>();
+
+    private KnownBitsAnalysis() {
+    }
+
+    /** 计算 v 的已知位；非 i32 / i1 的值返回 null */
+    public static KnownBits computeKnownBits(Value v) {
+        int width = widthOf(v);
+        if (width == 0)
+            return null;
+        KnownBits kb = new KnownBitsAnalysis().compute(v, width, 0);
+        // 冲突只会出现在不可达的路径上，不据此做任何推断
+        return kb.hasConflict() ? KnownBits.unknown(width) : kb;
+    }
+
+    /** mask 中的位在 v 中均已知为 0 */
+    public static boolean maskedValueIsZero(Value v, int mask) {
+        KnownBits kb = computeKnownBits(v);
+        return kb != null && (mask & ~kb.zero()) == 0;
+    }
+
+    public static boolean isKnownNonNegative(Value v) {
+        KnownBits kb = computeKnownBits(v);
+        return kb != null && kb.isSignBitZero();
+    }
+
+    private KnownBits compute(Value v, int width, int depth) {
+        if (v instanceof ConstantInt ci)
+            return KnownBits.constant(ci.getValue(), width);
+        if (depth >= MAX_DEPTH)
+            return KnownBits.unknown(width);
+
+        if (v instanceof BinOperator bin)
+            return computeBinary(bin, width, depth);
+        if (v instanceof CastInst cast)
+            return computeCast(cast, width, depth);
+        if (v instanceof SelectInst sel) {
+            KnownBits t = compute(sel.getTrueValue(), width, depth + 1);
+            if (t.zero() == 0 && t.one() == 0)
+                return t;
+            return t.meet(compute(sel.getFalseValue(), width, depth + 1));
+        }
+        if (v instanceof Phi phi)
+            return computePhi(phi, width, depth);
+        return KnownBits.unknown(width);
+    }
+
+    private KnownBits computeBinary(BinOperator bin, int width, int depth) {
+        Value lhs = bin.getOperand(0), rhs = bin.getOperand(1);
+        Opcode op = bin.getOpcode();
+        switch (op) {
+            case AND, OR, XOR -> {
+                KnownBits a = compute(lhs, width, depth + 1);
+                KnownBits b = compute(rhs, width, depth + 1);
+                return switch (op) {
+                    case AND -> new KnownBits(a.zero() | b.zero(), a.one() & b.one(), width);
+                    case OR -> new KnownBits(a.zero() & b.zero(), a.one() | b.one(), width);
+                    default -> new KnownBits((a.zero() & b.zero()) | (a.one() & b.one()),
+                            (a.zero() & b.one()) | (a.one() & b.zero()), width);
+                };
+            }
+            case SHL, LSHR, ASHR -> {
+                Integer k = shiftAmount(rhs, width);
+                if (k == null)
+                    return KnownBits.unknown(width);
+                KnownBits a = compute(lhs, width, depth + 1);
+                return shift(op, a, k);
+            }
+            case MUL -> {
+                Integer k = powerOfTwoShift(rhs, width);
+                if (k != null)
+                    return shift(Opcode.SHL, compute(lhs, width, depth + 1), k);
+                k = powerOfTwoShift(lhs, width);
+                if (k != null)
+                    return shift(Opcode.SHL, compute(rhs, width, depth + 1), k);
+                // 一般乘法：低位 0 的个数可以相加
+                KnownBits a = compute(lhs, width, depth + 1);
+                KnownBits b = compute(rhs, width, depth + 1);
+                return lowZeros(a.countMinTrailingZeros() + b.countMinTrailingZeros(), width);
+            }
+            case ADD, SUB -> {
+                KnownBits a = compute(lhs, width, depth + 1);
+                KnownBits b = compute(rhs, width, depth + 1);
+                // a - b = a + ~b + 1
+                if (op == Opcode.SUB)
+                    return addWithCarry(a, new KnownBits(b.one(), b.zero(), width), false, true);
+                return addWithCarry(a, b, true, false);
+            }
+            case SREM, UREM -> {
+                // srem 的结果符号跟随被除数，除数取绝对值即可
+                Integer k = powerOfTwoShift(rhs, width);
+                if (k == null && op == Opcode.SREM && rhs instanceof ConstantInt c)
+                    k = powerOfTwoShift(-c.getValue(), width);
+                if (k == null)
+                    return KnownBits.unknown(width);
+                // 余数与被除数的低 k 位相同；被除数非负（或无符号取余）时高位为 0
+                KnownBits a = compute(lhs, width, depth + 1);
+                int m = lowMask(k);
+                KnownBits r = new KnownBits(a.zero() & m, a.one() & m, width);
+                // 低 k 位全为 0 时余数就是 0（srem 也不例外）
+                if (op == Opcode.UREM || a.isSignBitZero() || (a.zero() & m) == m)
+                    r = new KnownBits(r.zero() | (~m & mask(width)), r.one(), width);
+                return r;
+            }
+            default -> {
+                return KnownBits.unknown(width);
+            }
+        }
+    }
+
+    private KnownBits computeCast(CastInst cast, int width, int depth) {
+        Value src = cast.getValue();
+        int srcWidth = widthOf(src);
+        if (srcWidth == 0)
+            return KnownBits.unknown(width);
+        KnownBits s = compute(src, srcWidth, depth + 1);
+        int srcMask = mask(srcWidth);
+        return switch (cast.getOpcode()) {
+            case ZEXT -> new KnownBits(s.zero() | (~srcMask & mask(width)), s.one(), width);
+            case SEXT -> {
+                int high = ~srcMask & mask(width);
+                if (s.isSignBitZero())
+                    yield new KnownBits(s.zero() | high, s.one(), width);
+                if (s.isSignBitOne())
+                    yield new KnownBits(s.zero(), s.one() | high, width);
+                yield new KnownBits(s.zero(), s.one(), width);
+            }
+            case TRUNC -> new KnownBits(s.zero(), s.one(), width).clip();
+            default -> KnownBits.unknown(width);
+        };
+    }
+
+    /**
+     * phi 取各入边的交集。若求值过程中又回到自身（环），先假设它“全部已知且无约束”，
+     * 用得到的结果替换假设重新计算，直到结果不再变化：此时结论对每次迭代都成立。
+     */
+    private KnownBits computePhi(Phi phi, int width, int depth) {
+        KnownBits assumed = phiAssumptions.get(phi);
+        if (assumed != null)
+            return assumed;
+        if (phi.getNumIncoming() == 0)
+            return KnownBits.unknown(width);
+
+        int m = mask(width);
+        assumed = new KnownBits(m, m, width);
+        for (int round = 0; round < MAX_PHI_ROUNDS; round++) {
+            phiAssumptions.put(phi, assumed);
+            KnownBits result = null;
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                Value in = phi.getIncomingValue(i);
+                if (in == phi)
+                    continue;
+                KnownBits kb = compute(in, width, depth + 1);
+                result = result == null ? kb : result.meet(kb);
+                if (result.zero() == 0 && result.one() == 0)
+                    break;
+            }
+            if (result == null)
+                result = KnownBits.unknown(width);
+            if (result.equals(assumed)) {
+                phiAssumptions.remove(phi);
+                return result;
+            }
+            assumed = result;
+        }
+        phiAssumptions.remove(phi);
+        return KnownBits.unknown(width);
+    }
+
+    private static KnownBits shift(Opcode op, KnownBits a, int k) {
+        int width = a.width();
+        int m = mask(width);
+        return switch (op) {
+            case SHL -> new KnownBits((a.zero() << k) | lowMask(k), a.one() << k, width).clip();
+            case LSHR -> new KnownBits((a.zero() >>> k) | (~(m >>> k) & m), a.one() >>> k, width);
+            default -> {
+                // ashr：符号位已知时向右复制，否则高位未知
+                int zero = a.zero() >>> k;
+                int one = a.one() >>> k;
+                int high = ~(m >>> k) & m;
+                if (a.isSignBitZero())
+                    zero |= high;
+                else if (a.isSignBitOne())
+                    one |= high;
+                yield new KnownBits(zero, one, width);
+            }
+        };
+    }
+
+    /**
+     * 加法的已知位：分别用两侧可能的最大值 / 最小值相加，得到每一位进位的已知情况；
+     * 某一位两个加数与进位都已知时，和的这一位才已知。
+     */
+    private static KnownBits addWithCarry(KnownBits a, KnownBits b, boolean carryZero, boolean carryOne) {
+        int width = a.width();
+        int possibleSumZero = ~a.zero() + ~b.zero() + (carryZero ? 0 : 1);
+        int possibleSumOne = a.one() + b.one() + (carryOne ? 1 : 0);
+        int carryKnownZero = ~(possibleSumZero ^ a.zero() ^ b.zero());
+        int carryKnownOne = possibleSumOne ^ a.one() ^ b.one();
+        int known = (a.zero() | a.one()) & (b.zero() | b.one()) & (carryKnownZero | carryKnownOne);
+        return new KnownBits(~possibleSumZero & known, possibleSumOne & known, width).clip();
+    }
+
+    private static KnownBits lowZeros(int n, int width) {
+        return new KnownBits(lowMask(Math.min(n, width)), 0, width);
+    }
+
+    private static Integer shiftAmount(Value v, int width) {
+        if (v instanceof ConstantInt ci && ci.getValue() >= 0 && ci.getValue() < width)
+            return ci.getValue();
+        return null;
+    }
+
+    private static Integer powerOfTwoShift(Value v, int width) {
+        return v instanceof ConstantInt ci ? powerOfTwoShift(ci.getValue(), width) : null;
+    }
+
+    private static Integer powerOfTwoShift(int c, int width) {
+        if (c > 0 && (c & (c - 1)) == 0) {
+            int k = Integer.numberOfTrailingZeros(c);
+            return k < width ? k : null;
+        }
+        return null;
+    }
+
+    private static int widthOf(Value v) {
+        if (v.getType() instanceof IntegerType it && (it.getBitWidth() == 32 || it.getBitWidth() == 1))
+            return it.getBitWidth();
+        return 0;
+    }
+
+    private static int mask(int width) {
+        return width >= 32 ? -1 : (1 << width) - 1;
+    }
+
+    private static int lowMask(int n) {
+        return n >= 32 ? -1 : (1 << n) - 1;
+    }
+
+    private static int signBit(int width) {
+        return 1 << (width - 1);
+    }
+
+    private static long toSigned(int v, int width) {
+        return width >= 32 ? v : ((v & signBit(width)) != 0 ? v - (1L << width) : v);
+    }
+}
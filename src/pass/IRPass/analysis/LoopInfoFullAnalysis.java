@@ -25,8 +25,7 @@ public class LoopInfoFullAnalysis {
         this.loopInfo = new LoopInfo(function);
         
         // 计算支配信息
-        this.domAnalysis = new DominanceAnalysisPass(function);
-        this.domAnalysis.run();
+        this.domAnalysis = DominanceAnalysisPass.getOrCompute(function);
         
         // 识别循环
         identifyLoops();
@@ -0,0 +1,379 @@
+package pass.IRPass.analysis;
+
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Value;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.LoadInst;
+import ir.value.instructions.StoreInst;
+import ir.value.instructions.VectorLoadInst;
+import ir.value.instructions.VectorStoreInst;
+import ir.type.PointerType;
+import pass.IRPass.analysis.AliasAnalysis.AliasResult;
+import pass.IRPass.analysis.AliasAnalysis.MemoryLocation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 覆盖整个函数内存的 Memory SSA。
+ * <p>
+ * 与 {@link ArrayAliasAnalysis} 按数组划分、在 IR 中插入 MemPhi 不同，这里把全部内存视作一个版本化变量，
+ * 访问节点保存在旁路结构中，不修改 IR：
+ * <ul>
+ * <li>MemoryDef：store、可能写内存的调用；函数入口的初始状态是一个特殊的 liveOnEntry</li>
+ * <li>MemoryUse：load、只读调用</li>
+ * <li>MemoryPhi：在 def 所在块的迭代支配边界处合并内存版本</li>
+ * </ul>
+ * 精度由 {@link #getClobberingAccess} 的 walker 提供：它借助 {@link AliasAnalysis} 跳过不相关的 def，
+ * 并在所有入边都落到同一个 def 时越过 MemoryPhi。
+ * <p>
+ * 分析结果只在 IR 未被修改时有效；删除 load/store 时用 {@link #removeAccess} 同步维护。
+ */
+public class MemorySSA {
+    /** 单次 clobber 查询允许访问的节点数上限，超过后保守返回当前节点 */
+    private static final int WALK_BUDGET = 256;
+
+    public abstract static class MemoryAccess {
+        private final BasicBlock block;
+
+        MemoryAccess(BasicBlock block) {
+            this.block = block;
+        }
+
+        public BasicBlock getBlock() {
+            return block;
+        }
+    }
+
+    /** 带有上一个内存版本的节点（MemoryDef / MemoryUse） */
+    public abstract static class MemoryUseOrDef extends MemoryAccess {
+        private final Instruction inst;
+        private MemoryAccess definingAccess;
+
+        MemoryUseOrDef(Instruction inst, BasicBlock block) {
+            super(block);
+            this.inst = inst;
+        }
+
+        public Instruction getInstruction() {
+            return inst;
+        }
+
+        public MemoryAccess getDefiningAccess() {
+            return definingAccess;
+        }
+
+        void setDefiningAccess(MemoryAccess definingAccess) {
+            this.definingAccess = definingAccess;
+        }
+    }
+
+    public static final class MemoryDef extends MemoryUseOrDef {
+        MemoryDef(Instruction inst, BasicBlock block) {
+            super(inst, block);
+        }
+
+        @Override
+        public String toString() {
+            return getInstruction() == null ? "liveOnEntry" : "MemoryDef(" + getInstruction().toNLVM() + ")";
+        }
+    }
+
+    public static final class MemoryUse extends MemoryUseOrDef {
+        MemoryUse(Instruction inst, BasicBlock block) {
+            super(inst, block);
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryUse(" + getInstruction().toNLVM() + ")";
+        }
+    }
+
+    public static final class MemoryPhi extends MemoryAccess {
+        private final LinkedHashMap<BasicBlock, MemoryAccess> incoming = new LinkedHashMap<>();
+
+        MemoryPhi(BasicBlock block) {
+            super(block);
+        }
+
+        public Map<BasicBlock, MemoryAccess> getIncoming() {
+            return Collections.unmodifiableMap(incoming);
+        }
+
+        @Override
+        public String toString() {
+            return "MemoryPhi(" + getBlock().getName() + ")";
+        }
+    }
+
+    private final Function function;
+    private final DominanceAnalysisPass dom;
+    private final MemoryDef liveOnEntry;
+    /** 过程间 mod/ref 摘要，为 null 时调用只按 isPure 区分 */
+    private final ModRefAnalysis modRef;
+    private final Map<Instruction, MemoryUseOrDef> accessOf = new HashMap<>();
+    private final Map<BasicBlock, MemoryPhi> phiOf = new HashMap<>();
+    /** 每个块内按程序顺序排列的 MemoryDef / MemoryUse */
+    private final Map<BasicBlock, List<MemoryUseOrDef>> blockAccesses = new HashMap<>();
+
+    public MemorySSA(Function function) {
+        this(function, null);
+    }
+
+    public MemorySSA(Function function, ModRefAnalysis modRef) {
+        this.function = function;
+        this.modRef = modRef;
+        this.dom = DominanceAnalysisPass.getOrCompute(function);
+        this.liveOnEntry = new MemoryDef(null, function.getEntryBlock());
+        build();
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public ModRefAnalysis getModRef() {
+        return modRef;
+    }
+
+    public DominanceAnalysisPass getDomTree() {
+        return dom;
+    }
+
+    public MemoryDef getLiveOnEntry() {
+        return liveOnEntry;
+    }
+
+    public boolean isLiveOnEntry(MemoryAccess access) {
+        return access == liveOnEntry;
+    }
+
+    public MemoryUseOrDef getMemoryAccess(Instruction inst) {
+        return accessOf.get(inst);
+    }
+
+    public MemoryPhi getMemoryPhi(BasicBlock bb) {
+        return phiOf.get(bb);
+    }
+
+    public List<MemoryUseOrDef> getBlockAccesses(BasicBlock bb) {
+        return blockAccesses.getOrDefault(bb, Collections.emptyList());
+    }
+
+    // ==================== 构建 ====================
+
+    private enum AccessKind {
+        NONE, USE, DEF
+    }
+
+    private AccessKind classify(Instruction inst) {
+        if (inst instanceof LoadInst || inst instanceof VectorLoadInst)
+            return AccessKind.USE;
+        if (inst instanceof StoreInst || inst instanceof VectorStoreInst)
+            return AccessKind.DEF;
+        if (inst instanceof CallInst call) {
+            ModRefAnalysis.Summary summary = modRef != null ? modRef.getSummary(call.getCalledFunction()) : null;
+            if (summary != null) {
+                // 不读写任何内存的调用（如 putint）不参与内存 SSA
+                if (summary.mayMod())
+                    return AccessKind.DEF;
+                return summary.mayRef() ? AccessKind.USE : AccessKind.NONE;
+            }
+            if (!call.isPure())
+                return AccessKind.DEF;
+            // 纯函数只可能读取实参数组
+            for (Value arg : call.getArgs()) {
+                if (arg.getType() instanceof PointerType)
+                    return AccessKind.USE;
+            }
+        }
+        return AccessKind.NONE;
+    }
+
+    private void build() {
+        // 1) 创建 Def/Use 节点并记录含 def 的块
+        Set<BasicBlock> defBlocks = new HashSet<>();
+        for (BasicBlock bb : dom.getReversePostOrder()) {
+            List<MemoryUseOrDef> list = new ArrayList<>();
+            for (var node : bb.getInstructions()) {
+                Instruction inst = node.getVal();
+                MemoryUseOrDef access = switch (classify(inst)) {
+                    case DEF -> new MemoryDef(inst, bb);
+                    case USE -> new MemoryUse(inst, bb);
+                    case NONE -> null;
+                };
+                if (access == null)
+                    continue;
+                if (access instanceof MemoryDef)
+                    defBlocks.add(bb);
+                accessOf.put(inst, access);
+                list.add(access);
+            }
+            if (!list.isEmpty())
+                blockAccesses.put(bb, list);
+        }
+
+        // 2) 在迭代支配边界放置 MemoryPhi
+        ArrayDeque<BasicBlock> work = new ArrayDeque<>(defBlocks);
+        Set<BasicBlock> queued = new HashSet<>(defBlocks);
+        while (!work.isEmpty()) {
+            BasicBlock bb = work.poll();
+            for (BasicBlock df : dom.getDominanceFrontier(bb)) {
+                if (phiOf.containsKey(df))
+                    continue;
+                phiOf.put(df, new MemoryPhi(df));
+                if (queued.add(df))
+                    work.add(df);
+            }
+        }
+
+        // 3) 沿支配树重命名
+        BasicBlock entry = function.getEntryBlock();
+        if (entry == null)
+            return;
+        ArrayDeque<Map.Entry<BasicBlock, MemoryAccess>> stack = new ArrayDeque<>();
+        stack.push(Map.entry(entry, liveOnEntry));
+        while (!stack.isEmpty()) {
+            var top = stack.pop();
+            BasicBlock bb = top.getKey();
+            MemoryAccess current = phiOf.containsKey(bb) ? phiOf.get(bb) : top.getValue();
+            for (MemoryUseOrDef access : getBlockAccesses(bb)) {
+                access.setDefiningAccess(current);
+                if (access instanceof MemoryDef)
+                    current = access;
+            }
+            for (BasicBlock succ : bb.getSuccessors()) {
+                MemoryPhi phi = phiOf.get(succ);
+                if (phi != null)
+                    phi.incoming.put(bb, current);
+            }
+            for (BasicBlock child : dom.getDomTreeChildren(bb)) {
+                stack.push(Map.entry(child, current));
+            }
+        }
+    }
+
+    // ==================== 维护 ====================
+
+    /**
+     * 在删除 load/store/call 之前调用：让以它为上一个版本的节点改为指向它的上一个版本。
+     */
+    public void removeAccess(Instruction inst) {
+        MemoryUseOrDef access = accessOf.remove(inst);
+        if (access == null)
+            return;
+        List<MemoryUseOrDef> list = blockAccesses.get(access.getBlock());
+        if (list != null)
+            list.remove(access);
+        if (!(access instanceof MemoryDef))
+            return;
+        MemoryAccess replacement = access.getDefiningAccess();
+        for (MemoryUseOrDef other : accessOf.values()) {
+            if (other.getDefiningAccess() == access)
+                other.setDefiningAccess(replacement);
+        }
+        for (MemoryPhi phi : phiOf.values()) {
+            phi.incoming.replaceAll((bb, v) -> v == access ? replacement : v);
+        }
+    }
+
+    // ==================== 查询 ====================
+
+    /** 内存访问指令读写的位置；调用返回 null（位置未知） */
+    public static MemoryLocation getLocation(Instruction inst) {
+        if (inst instanceof LoadInst load)
+            return MemoryLocation.of(load.getPointer(), load.getType());
+        if (inst instanceof StoreInst store)
+            return MemoryLocation.of(store.getPointer(), store.getValue().getType());
+        if (inst instanceof VectorLoadInst vload)
+            return MemoryLocation.of(vload.getPointerOperand(), vload.getType());
+        if (inst instanceof VectorStoreInst vstore)
+            return MemoryLocation.of(vstore.getPointerOperand(), vstore.getValueOperand().getType());
+        return null;
+    }
+
+    /** def 是否可能改写 loc */
+    public boolean clobbers(MemoryDef def, MemoryLocation loc, boolean crossIteration) {
+        if (def == liveOnEntry)
+            return true;
+        Instruction inst = def.getInstruction();
+        if (inst instanceof CallInst call)
+            return AliasAnalysis.callMayModify(call, loc, modRef);
+        MemoryLocation defLoc = getLocation(inst);
+        return defLoc == null || AliasAnalysis.alias(defLoc, loc, crossIteration) != AliasResult.NO;
+    }
+
+    /**
+     * 返回 load/store 之前最近一个可能改写其位置的访问。
+     * 结果 A 满足：从 A 到该指令的任意路径上都没有对该位置的写，因此该位置的值等于 A 之后的值；
+     * A 可以是 liveOnEntry、MemoryDef 或无法越过的 MemoryPhi。
+     */
+    public MemoryAccess getClobberingAccess(Instruction inst) {
+        MemoryUseOrDef access = accessOf.get(inst);
+        MemoryLocation loc = getLocation(inst);
+        if (access == null)
+            return null;
+        if (loc == null)
+            return access.getDefiningAccess();
+        return getClobberingAccess(access.getDefiningAccess(), loc);
+    }
+
+    /** 从 start（含）向上查找 loc 的 clobber */
+    public MemoryAccess getClobberingAccess(MemoryAccess start, MemoryLocation loc) {
+        return walk(start, loc, false, new HashSet<>(), new int[] { WALK_BUDGET });
+    }
+
+    private MemoryAccess walk(MemoryAccess cur, MemoryLocation loc, boolean crossIteration,
+            Set<MemoryPhi> inProgress, int[] budget) {
+        while (true) {
+            if (--budget[0] < 0)
+                return cur;
+            if (cur instanceof MemoryDef def) {
+                if (clobbers(def, loc, crossIteration))
+                    return def;
+                cur = def.getDefiningAccess();
+                continue;
+            }
+            MemoryPhi phi = (MemoryPhi) cur;
+            // 环：沿这条路径回到正在处理的 phi，说明路径上没有新的写
+            if (!inProgress.add(phi))
+                return phi;
+            MemoryAccess common = null;
+            boolean optimized = true;
+            for (var e : phi.incoming.entrySet()) {
+                // 经过回边后，两次访问可能处于不同迭代
+                boolean cross = crossIteration || dom.dominates(phi.getBlock(), e.getKey());
+                MemoryAccess r = walk(e.getValue(), loc, cross, inProgress, budget);
+                if (r == phi)
+                    continue;
+                if (common == null) {
+                    common = r;
+                } else if (common != r) {
+                    optimized = false;
+                    break;
+                }
+            }
+            inProgress.remove(phi);
+            return optimized && common != null ? common : phi;
+        }
+    }
+
+    /**
+     * 循环内是否存在可能改写 inst 所访问位置的写。
+     * 用于 LICM 判断 load 能否外提。
+     */
+    public boolean isClobberedInLoop(Instruction inst, Loop loop) {
+        MemoryAccess clobber = getClobberingAccess(inst);
+        return clobber == null || (clobber != liveOnEntry && loop.contains(clobber.getBlock()));
+    }
+}
@@ -0,0 +1,332 @@
+package pass.IRPass.analysis;
+
+import ir.NLVMModule;
+import ir.SysYLibFunction;
+import ir.type.PointerType;
+import ir.value.Argument;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.GlobalVariable;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.instructions.AllocaInst;
+import ir.value.instructions.CallInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.GEPInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.LoadInst;
+import ir.value.instructions.Phi;
+import ir.value.instructions.SelectInst;
+import ir.value.instructions.StoreInst;
+import ir.value.instructions.VectorLoadInst;
+import ir.value.instructions.VectorStoreInst;
+import pass.IRPass.analysis.AliasAnalysis.MemoryLocation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 过程间 mod/ref 摘要。
+ * <p>
+ * 对每个函数计算它（连同它调用的函数）可能读 / 写的全局变量和指针形参：
+ * <ul>
+ * <li>函数自己的 alloca 对调用者不可见，不计入摘要</li>
+ * <li>调用点把被调函数的形参访问映射回实参的底层对象（全局变量、本函数形参或本地 alloca）</li>
+ * <li>无法追溯到对象的指针记为“未知”读 / 写</li>
+ * </ul>
+ * 自底向上按调用图的强连通分量求解，分量内部迭代到不动点以处理递归。
+ * <p>
+ * 摘要在计算时的 IR 上有效；删除或移动访存指令只会让真实的访问集合变小，但修改函数签名的 pass 之后需要重新计算。
+ */
+public final class ModRefAnalysis {
+    public enum ModRefInfo {
+        NO_MOD_REF, REF, MOD, MOD_REF;
+
+        public boolean isMod() {
+            return this == MOD || this == MOD_REF;
+        }
+
+        public boolean isRef() {
+            return this == REF || this == MOD_REF;
+        }
+
+        static ModRefInfo of(boolean mod, boolean ref) {
+            if (mod)
+                return ref ? MOD_REF : MOD;
+            return ref ? REF : NO_MOD_REF;
+        }
+    }
+
+    /** 单个函数的读 / 写集合 */
+    public static final class Summary {
+        private final Set<GlobalVariable> refGlobals = new HashSet<>();
+        private final Set<GlobalVariable> modGlobals = new HashSet<>();
+        private final BitSet refArgs = new BitSet();
+        private final BitSet modArgs = new BitSet();
+        private boolean refUnknown = false;
+        private boolean modUnknown = false;
+
+        public Set<GlobalVariable> getRefGlobals() {
+            return refGlobals;
+        }
+
+        public Set<GlobalVariable> getModGlobals() {
+            return modGlobals;
+        }
+
+        public boolean refsArg(int index) {
+            return refUnknown || refArgs.get(index);
+        }
+
+        public boolean modsArg(int index) {
+            return modUnknown || modArgs.get(index);
+        }
+
+        public boolean mayRef() {
+            return refUnknown || !refGlobals.isEmpty() || !refArgs.isEmpty();
+        }
+
+        public boolean mayMod() {
+            return modUnknown || !modGlobals.isEmpty() || !modArgs.isEmpty();
+        }
+
+        private static Summary unknown() {
+            Summary s = new Summary();
+            s.refUnknown = true;
+            s.modUnknown = true;
+            return s;
+        }
+
+        /** 合并 other，返回是否有变化 */
+        private boolean mergeFrom(Summary other) {
+            int before = size();
+            refGlobals.addAll(other.refGlobals);
+            modGlobals.addAll(other.modGlobals);
+            refArgs.or(other.refArgs);
+            modArgs.or(other.modArgs);
+            refUnknown |= other.refUnknown;
+            modUnknown |= other.modUnknown;
+            return size() != before;
+        }
+
+        private int size() {
+            return refGlobals.size() + modGlobals.size() + refArgs.cardinality() + modArgs.cardinality()
+                    + (refUnknown ? 1 : 0) + (modUnknown ? 1 : 0);
+        }
+
+        @Override
+        public String toString() {
+            return "ref=" + names(refGlobals) + refArgs + (refUnknown ? "+?" : "")
+                    + " mod=" + names(modGlobals) + modArgs + (modUnknown ? "+?" : "");
+        }
+
+        private static List<String> names(Set<GlobalVariable> globals) {
+            List<String> names = new ArrayList<>();
+            for (GlobalVariable gv : globals)
+                names.add(gv.getName());
+            return names;
+        }
+    }
+
+    private final Map<Function, Summary> summaries = new HashMap<>();
+
+    private ModRefAnalysis() {
+    }
+
+    public static ModRefAnalysis compute(NLVMModule module) {
+        ModRefAnalysis analysis = new ModRefAnalysis();
+        analysis.run(module);
+        return analysis;
+    }
+
+    /** 未知函数返回 null */
+    public Summary getSummary(Function f) {
+        return summaries.get(f);
+    }
+
+    // ==================== 计算 ====================
+
+    private void run(NLVMModule module) {
+        for (Function f : module.getFunctions()) {
+            if (f != null && f.isDeclaration())
+                summaries.put(f, declarationSummary(f));
+        }
+        for (List<Function> scc : CallGraph.compute(module).getBottomUpSCCs()) {
+            for (Function f : scc)
+                summaries.put(f, new Summary());
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Function f : scc) {
+                    changed |= summaries.get(f).mergeFrom(scanFunction(f));
+                }
+            }
+        }
+    }
+
+    /** 运行时库按其语义给出摘要，其它外部声明视为可以读写任何内存 */
+    private static Summary declarationSummary(Function f) {
+        SysYLibFunction lib = SysYLibFunction.getByName(f.getName());
+        if (lib == null)
+            return Summary.unknown();
+        Summary s = new Summary();
+        switch (lib) {
+            case GETARRAY, GETFARRAY -> s.modArgs.set(0);
+            case PUTARRAY, PUTFARRAY -> s.refArgs.set(1);
+            case PUTF -> s.refArgs.set(0);
+            case _SYSY_MEMSET_I32, _SYSY_MEMSET_F32 -> s.modArgs.set(0);
+            case _SYSY_MEMCPY_I32, _SYSY_MEMCPY_F32 -> {
+                s.modArgs.set(0);
+                s.refArgs.set(1);
+            }
+            // 循环体函数读写什么都有可能
+            case _SYSY_PARALLEL_FOR -> {
+                return Summary.unknown();
+            }
+            default -> {
+            }
+        }
+        return s;
+    }
+
+    private Summary scanFunction(Function f) {
+        Summary s = new Summary();
+        for (var bbNode : f.getBlocks()) {
+            for (var instNode : bbNode.getVal().getInstructions()) {
+                Instruction inst = instNode.getVal();
+                if (inst instanceof LoadInst ld) {
+                    record(s, f, ld.getPointer(), false);
+                } else if (inst instanceof VectorLoadInst vld) {
+                    record(s, f, vld.getPointerOperand(), false);
+                } else if (inst instanceof StoreInst st) {
+                    record(s, f, st.getPointer(), true);
+                } else if (inst instanceof VectorStoreInst vst) {
+                    record(s, f, vst.getPointerOperand(), true);
+                } else if (inst instanceof CallInst call) {
+                    applyCall(s, f, call);
+                }
+            }
+        }
+        return s;
+    }
+
+    /** 把被调函数的摘要映射到调用者 */
+    private void applyCall(Summary s, Function caller, CallInst call) {
+        Summary callee = summaries.get(call.getCalledFunction());
+        if (callee == null) {
+            // 尚未求解的函数只可能来自外部模块
+            s.refUnknown = true;
+            s.modUnknown = true;
+            return;
+        }
+        s.refGlobals.addAll(callee.refGlobals);
+        s.modGlobals.addAll(callee.modGlobals);
+        s.refUnknown |= callee.refUnknown;
+        s.modUnknown |= callee.modUnknown;
+        for (int i = 0; i < call.getNumArgs(); i++) {
+            Value arg = call.getArg(i);
+            if (!(arg.getType() instanceof PointerType))
+                continue;
+            if (callee.refArgs.get(i))
+                record(s, caller, arg, false);
+            if (callee.modArgs.get(i))
+                record(s, caller, arg, true);
+        }
+    }
+
+    private static void record(Summary s, Function f, Value ptr, boolean mod) {
+        for (Value base : getUnderlyingObjects(ptr)) {
+            if (base instanceof AllocaInst alloca) {
+                BasicBlock bb = alloca.getParent();
+                if (bb != null && bb.getParent() == f)
+                    continue;
+            }
+            if (base instanceof GlobalVariable gv) {
+                (mod ? s.modGlobals : s.refGlobals).add(gv);
+            } else if (base instanceof Argument arg && arg.getParent() == f) {
+                (mod ? s.modArgs : s.refArgs).set(arg.getIndex());
+            } else if (mod) {
+                s.modUnknown = true;
+            } else {
+                s.refUnknown = true;
+            }
+        }
+    }
+
+    /** 沿 GEP / bitcast / phi / select 收集指针可能指向的全部底层对象 */
+    static Set<Value> getUnderlyingObjects(Value ptr) {
+        Set<Value> result = new LinkedHashSet<>();
+        Set<Value> visited = new HashSet<>();
+        ArrayDeque<Value> work = new ArrayDeque<>();
+        work.add(ptr);
+        while (!work.isEmpty()) {
+            Value cur = work.poll();
+            if (!visited.add(cur))
+                continue;
+            if (cur instanceof GEPInst gep) {
+                work.add(gep.getPointer());
+            } else if (cur instanceof CastInst cast && cast.opCode() == Opcode.BITCAST) {
+                work.add(cast.getOperand(0));
+            } else if (cur instanceof Phi phi) {
+                for (int i = 0; i < phi.getNumIncoming(); i++)
+                    work.add(phi.getIncomingValue(i));
+            } else if (cur instanceof SelectInst sel) {
+                work.add(sel.getTrueValue());
+                work.add(sel.getFalseValue());
+            } else {
+                result.add(cur);
+            }
+        }
+        return result;
+    }
+
+    // ==================== 查询 ====================
+
+    /** 调用对 loc 的读写效果 */
+    public ModRefInfo getModRefInfo(CallInst call, MemoryLocation loc) {
+        Summary s = summaries.get(call.getCalledFunction());
+        if (s == null)
+            return ModRefInfo.MOD_REF;
+        Value base = AliasAnalysis.getUnderlyingObject(loc.pointer());
+        boolean mod = accesses(call, s.modGlobals, s.modArgs, s.modUnknown, base);
+        boolean ref = accesses(call, s.refGlobals, s.refArgs, s.refUnknown, base);
+        return ModRefInfo.of(mod, ref);
+    }
+
+    private static boolean accesses(CallInst call, Set<GlobalVariable> globals, BitSet args, boolean unknown,
+            Value base) {
+        // 本地 alloca 只能经由实参到达被调函数
+        if (base instanceof AllocaInst) {
+            for (int i = 0; i < call.getNumArgs(); i++) {
+                Value arg = call.getArg(i);
+                if ((unknown || args.get(i)) && arg.getType() instanceof PointerType
+                        && getUnderlyingObjects(arg).contains(base))
+                    return true;
+            }
+            return false;
+        }
+        if (unknown)
+            return true;
+        if (base instanceof GlobalVariable gv) {
+            if (globals.contains(gv))
+                return true;
+        } else if (!globals.isEmpty()) {
+            // 形参或未知指针可能指向任何全局数组
+            return true;
+        }
+        for (int i = args.nextSetBit(0); i >= 0 && i < call.getNumArgs(); i = args.nextSetBit(i + 1)) {
+            for (Value argBase : getUnderlyingObjects(call.getArg(i))) {
+                if (AliasAnalysis.mayAliasObjects(argBase, base))
+                    return true;
+            }
+        }
+        return false;
+    }
+}
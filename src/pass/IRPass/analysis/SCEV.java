@@ -0,0 +1,225 @@
+package pass.IRPass.analysis;
+
+import ir.value.Value;
+import ir.value.instructions.Instruction;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 标量演化表达式（SCEV）。所有表达式都是 i32、按二进制补码回绕的整数值。
+ * <p>
+ * 实例只能通过 {@link ScalarEvolution} 的工厂方法创建，同一个分析实例内结构相同的表达式
+ * 是同一个对象；跨实例比较时按规范 key 判等。
+ * <p>
+ * 表达式种类：
+ * <ul>
+ * <li>Constant：整数常量</li>
+ * <li>Unknown：无法进一步分解的 IR 值</li>
+ * <li>Add / Mul：n 元加法、乘法（操作数按规范顺序排列，常量在最前）</li>
+ * <li>SDiv / SMax：有符号除法（向零取整）与有符号最大值，主要用于符号化的迭代次数</li>
+ * <li>AddRec：仿射递推 {start,+,step}&lt;L&gt;，第 k 次迭代的值为 start + k * step</li>
+ * <li>CouldNotCompute：无法计算（如迭代次数未知）</li>
+ * </ul>
+ */
+public abstract class SCEV {
+    public enum Kind {
+        CONSTANT, UNKNOWN, ADD, MUL, SDIV, SMAX, ADDREC, COULD_NOT_COMPUTE
+    }
+
+    private final Kind kind;
+    private final String key;
+
+    protected SCEV(Kind kind, String key) {
+        this.kind = kind;
+        this.key = key;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** 规范 key：结构相同的表达式 key 相同 */
+    public String getKey() {
+        return key;
+    }
+
+    public List<SCEV> getOperands() {
+        return Collections.emptyList();
+    }
+
+    /** 在循环 L 的执行期间值是否不变 */
+    public boolean isLoopInvariant(Loop loop) {
+        for (SCEV op : getOperands()) {
+            if (!op.isLoopInvariant(loop))
+                return false;
+        }
+        return true;
+    }
+
+    public boolean isConstant() {
+        return kind == Kind.CONSTANT;
+    }
+
+    public boolean isCouldNotCompute() {
+        return kind == Kind.COULD_NOT_COMPUTE;
+    }
+
+    /** 表达式中是否出现 AddRec */
+    public boolean containsAddRec() {
+        if (kind == Kind.ADDREC)
+            return true;
+        for (SCEV op : getOperands()) {
+            if (op.containsAddRec())
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SCEV other && key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    // ==================== 具体表达式 ====================
+
+    public static final class Constant extends SCEV {
+        private final int value;
+
+        Constant(int value) {
+            super(Kind.CONSTANT, Integer.toString(value));
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean isLoopInvariant(Loop loop) {
+            return true;
+        }
+    }
+
+    public static final class Unknown extends SCEV {
+        private final Value value;
+
+        Unknown(Value value, String key) {
+            super(Kind.UNKNOWN, key);
+            this.value = value;
+        }
+
+        public Value getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean isLoopInvariant(Loop loop) {
+            if (value instanceof Instruction inst) {
+                return inst.getParent() == null || !loop.contains(inst.getParent());
+            }
+            return true;
+        }
+    }
+
+    /** Add / Mul / SMax 共用的 n 元表达式 */
+    public static final class NAry extends SCEV {
+        private final List<SCEV> operands;
+
+        NAry(Kind kind, List<SCEV> operands, String key) {
+            super(kind, key);
+            this.operands = List.copyOf(operands);
+        }
+
+        @Override
+        public List<SCEV> getOperands() {
+            return operands;
+        }
+    }
+
+    public static final class SDiv extends SCEV {
+        private final SCEV lhs;
+        private final SCEV rhs;
+
+        SDiv(SCEV lhs, SCEV rhs) {
+            super(Kind.SDIV, "(" + lhs.getKey() + " /s " + rhs.getKey() + ")");
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        public SCEV getLhs() {
+            return lhs;
+        }
+
+        public SCEV getRhs() {
+            return rhs;
+        }
+
+        @Override
+        public List<SCEV> getOperands() {
+            return List.of(lhs, rhs);
+        }
+    }
+
+    public static final class AddRec extends SCEV {
+        private final SCEV start;
+        private final SCEV step;
+        private final Loop loop;
+
+        AddRec(SCEV start, SCEV step, Loop loop) {
+            super(Kind.ADDREC, "{" + start.getKey() + ",+," + step.getKey() + "}<"
+                    + loop.getHeader().getName() + ">");
+            this.start = start;
+            this.step = step;
+            this.loop = loop;
+        }
+
+        public SCEV getStart() {
+            return start;
+        }
+
+        public SCEV getStep() {
+            return step;
+        }
+
+        public Loop getLoop() {
+            return loop;
+        }
+
+        @Override
+        public List<SCEV> getOperands() {
+            return List.of(start, step);
+        }
+
+        /** 只有当 L 的执行期间本递推所在的循环不迭代时才不变 */
+        @Override
+        public boolean isLoopInvariant(Loop other) {
+            if (other == loop || other.contains(loop))
+                return false;
+            return start.isLoopInvariant(other) && step.isLoopInvariant(other);
+        }
+    }
+
+    public static final class CouldNotCompute extends SCEV {
+        static final CouldNotCompute INSTANCE = new CouldNotCompute();
+
+        private CouldNotCompute() {
+            super(Kind.COULD_NOT_COMPUTE, "***COULDNOTCOMPUTE***");
+        }
+
+        @Override
+        public boolean isLoopInvariant(Loop loop) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package pass.IRPass.analysis;
+
+import ir.type.IntegerType;
+import ir.value.BasicBlock;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.Phi;
+import ir.value.instructions.SelectInst;
+
+import java.util.List;
+
+/**
+ * 把 SCEV 表达式物化为 IR 指令，插在指定指令之前。
+ * AddRec 只能复用所在循环 header 中已有的、SCEV 相同（或恰为其相反数）的 phi；找不到时展开失败
+ * （返回 null），因此含 AddRec 的表达式只能在该循环内展开。
+ * 不做公共子表达式消除，冗余由后续 GVN 清理。
+ */
+public class SCEVExpander {
+    private static int nameCounter = 0;
+
+    private final ScalarEvolution se;
+
+    public SCEVExpander(ScalarEvolution se) {
+        this.se = se;
+    }
+
+    /** 是否能在不新建 phi 的前提下展开 */
+    public boolean isExpandable(SCEV s) {
+        if (s.isCouldNotCompute())
+            return false;
+        if (s instanceof SCEV.AddRec rec)
+            return findPhiFor(rec) != null || findNegatedPhiFor(rec) != null;
+        for (SCEV op : s.getOperands()) {
+            if (!isExpandable(op))
+                return false;
+        }
+        return true;
+    }
+
+    public Value expand(SCEV s, Instruction insertBefore) {
+        if (s.isCouldNotCompute())
+            return null;
+        switch (s.getKind()) {
+            case CONSTANT:
+                return new ConstantInt(IntegerType.getI32(), ((SCEV.Constant) s).getValue());
+            case UNKNOWN:
+                return ((SCEV.Unknown) s).getValue();
+            case ADDREC: {
+                Phi phi = findPhiFor((SCEV.AddRec) s);
+                if (phi != null)
+                    return phi;
+                // {-a,+,-c} 展开为 0 - {a,+,c}（如分块后内层的 bound - tt）
+                Phi negated = findNegatedPhiFor((SCEV.AddRec) s);
+                return negated == null ? null
+                        : emit(Opcode.SUB, new ConstantInt(IntegerType.getI32(), 0), negated, insertBefore);
+            }
+            case ADD:
+                return expandAdd(s.getOperands(), insertBefore);
+            case MUL: {
+                List<SCEV> ops = s.getOperands();
+                // -1 * x 展开为 0 - x
+                if (ops.size() == 2 && ops.get(0) instanceof SCEV.Constant c && c.getValue() == -1) {
+                    Value x = expand(ops.get(1), insertBefore);
+                    return x == null ? null
+                            : emit(Opcode.SUB, new ConstantInt(IntegerType.getI32(), 0), x, insertBefore);
+                }
+                Value acc = expand(ops.get(0), insertBefore);
+                for (int i = 1; i < ops.size() && acc != null; i++) {
+                    Value rhs = expand(ops.get(i), insertBefore);
+                    acc = rhs == null ? null : emit(Opcode.MUL, acc, rhs, insertBefore);
+                }
+                return acc;
+            }
+            case SDIV: {
+                SCEV.SDiv div = (SCEV.SDiv) s;
+                Value lhs = expand(div.getLhs(), insertBefore);
+                Value rhs = expand(div.getRhs(), insertBefore);
+                return lhs == null || rhs == null ? null : emit(Opcode.SDIV, lhs, rhs, insertBefore);
+            }
+            case SMAX: {
+                Value acc = expand(s.getOperands().get(0), insertBefore);
+                for (int i = 1; i < s.getOperands().size() && acc != null; i++) {
+                    Value rhs = expand(s.getOperands().get(i), insertBefore);
+                    if (rhs == null)
+                        return null;
+                    ICmpInst cmp = new ICmpInst(Opcode.ICMP_SGT, "scev.cmp." + nameCounter++,
+                            IntegerType.getI1(), acc, rhs);
+                    insertBefore.getParent().addInstructionBefore(cmp, insertBefore);
+                    SelectInst sel = new SelectInst(cmp, acc, rhs, "scev.smax." + nameCounter++);
+                    insertBefore.getParent().addInstructionBefore(sel, insertBefore);
+                    acc = sel;
+                }
+                return acc;
+            }
+            default:
+                return null;
+        }
+    }
+
+    /** 和式中系数为负的项用减法展开，避免多余的取负 */
+    private Value expandAdd(List<SCEV> ops, Instruction insertBefore) {
+        Value acc = null;
+        for (SCEV op : ops) {
+            boolean negate = false;
+            SCEV term = op;
+            if (acc != null && op.getKind() == SCEV.Kind.MUL && op.getOperands().get(0) instanceof SCEV.Constant c
+                    && c.getValue() < 0 && c.getValue() != Integer.MIN_VALUE) {
+                negate = true;
+                term = se.getNegativeSCEV(op);
+            } else if (acc != null && op instanceof SCEV.AddRec rec && findPhiFor(rec) == null
+                    && findNegatedPhiFor(rec) != null) {
+                negate = true;
+                term = se.getNegativeSCEV(op);
+            }
+            Value v = expand(term, insertBefore);
+            if (v == null)
+                return null;
+            acc = acc == null ? v : emit(negate ? Opcode.SUB : Opcode.ADD, acc, v, insertBefore);
+        }
+        return acc;
+    }
+
+    private Value emit(Opcode op, Value lhs, Value rhs, Instruction insertBefore) {
+        BinOperator inst = new BinOperator("scev." + nameCounter++, op, IntegerType.getI32(), lhs, rhs);
+        insertBefore.getParent().addInstructionBefore(inst, insertBefore);
+        return inst;
+    }
+
+    private Phi findNegatedPhiFor(SCEV.AddRec rec) {
+        return se.getNegativeSCEV(rec) instanceof SCEV.AddRec negated ? findPhiFor(negated) : null;
+    }
+
+    private Phi findPhiFor(SCEV.AddRec rec) {
+        BasicBlock header = rec.getLoop().getHeader();
+        for (var node : header.getInstructions()) {
+            if (!(node.getVal() instanceof Phi phi))
+                break;
+            if (ScalarEvolution.isSCEVable(phi) && se.getSCEV(phi).equals(rec))
+                return phi;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,694 @@
+package pass.IRPass.analysis;
+
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.Phi;
+
+import java.util.*;
+
+/**
+ * 标量演化分析（Scalar Evolution）：把循环中的整数值表示成 {@link SCEV} 表达式，
+ * 识别仿射递推 {start,+,step}&lt;L&gt;，并据此求出循环的回边执行次数、退出值与步长。
+ * <p>
+ * 建立在 {@link LoopInfoFullAnalysis} 给出的循环结构之上，供各个循环变换共享，
+ * 取代它们各自的归纳变量匹配。分析结果按需计算并缓存；变换修改了 IR 后应调用
+ * {@link #forgetAll()}。
+ * <p>
+ * 约定：与 SysY/C 的语义一致，认为归纳变量的有符号运算不会溢出；
+ * 常量迭代次数则会精确检查回绕。
+ */
+public class ScalarEvolution {
+    // 沿操作数递归的最大深度，超过后当作 Unknown（保守但正确）
+    private static final int MAX_DEPTH = 48;
+
+    private final Function function;
+    private final LoopInfo loopInfo;
+
+    private final Map<Value, SCEV> valueMap = new HashMap<>();
+    private final Map<String, SCEV> uniqueMap = new HashMap<>();
+    private final Map<Value, Integer> unknownIds = new HashMap<>();
+    private final Map<Loop, SCEV> backedgeTakenCounts = new HashMap<>();
+    private final Map<Loop, BasicBlock> exitingBlocks = new HashMap<>();
+    // valueMap 的写入顺序，推导 header phi 时用于回滚以占位符为前提算出的结果
+    private final List<Value> derivationLog = new ArrayList<>();
+    private int depth = 0;
+
+    public ScalarEvolution(Function function, LoopInfo loopInfo) {
+        this.function = function;
+        this.loopInfo = loopInfo;
+    }
+
+    /** 为函数计算循环信息并建立分析 */
+    public static ScalarEvolution compute(Function function) {
+        LoopInfoFullAnalysis loopAnalysis = new LoopInfoFullAnalysis();
+        loopAnalysis.runOnFunction(function);
+        return new ScalarEvolution(function, loopAnalysis.getLoopInfo(function));
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    public LoopInfo getLoopInfo() {
+        return loopInfo;
+    }
+
+    /** IR 被修改后丢弃所有缓存结果 */
+    public void forgetAll() {
+        valueMap.clear();
+        derivationLog.clear();
+        backedgeTakenCounts.clear();
+        exitingBlocks.clear();
+    }
+
+    public static boolean isSCEVable(Value v) {
+        return v != null && v.getType() != null && v.getType().isI32();
+    }
+
+    // ==================== 表达式构造 ====================
+
+    public SCEV getConstant(int value) {
+        return unique(new SCEV.Constant(value));
+    }
+
+    public SCEV getUnknown(Value value) {
+        int id = unknownIds.computeIfAbsent(value, k -> unknownIds.size());
+        String name = value.getName() == null || value.getName().isEmpty() ? "v" : value.getName();
+        return unique(new SCEV.Unknown(value, "%" + name + "#" + id));
+    }
+
+    public SCEV getCouldNotCompute() {
+        return SCEV.CouldNotCompute.INSTANCE;
+    }
+
+    public SCEV getAddRecExpr(SCEV start, SCEV step, Loop loop) {
+        if (start.isCouldNotCompute() || step.isCouldNotCompute())
+            return getCouldNotCompute();
+        if (isZero(step))
+            return start;
+        return unique(new SCEV.AddRec(start, step, loop));
+    }
+
+    public SCEV getAddExpr(SCEV a, SCEV b) {
+        return getAddExpr(List.of(a, b));
+    }
+
+    public SCEV getAddExpr(List<SCEV> operands) {
+        // 展平并累加常量
+        List<SCEV> flat = new ArrayList<>();
+        int constant = 0;
+        Deque<SCEV> work = new ArrayDeque<>(operands);
+        while (!work.isEmpty()) {
+            SCEV op = work.pollFirst();
+            if (op.isCouldNotCompute())
+                return getCouldNotCompute();
+            if (op.getKind() == SCEV.Kind.ADD) {
+                for (SCEV sub : op.getOperands())
+                    work.addLast(sub);
+            } else if (op instanceof SCEV.Constant c) {
+                constant += c.getValue();
+            } else {
+                flat.add(op);
+            }
+        }
+
+        // 合并同类项：c1*X + c2*X => (c1+c2)*X
+        Map<SCEV, Integer> coefficients = new LinkedHashMap<>();
+        for (SCEV op : flat) {
+            int coef = 1;
+            SCEV term = op;
+            if (op.getKind() == SCEV.Kind.MUL && op.getOperands().get(0) instanceof SCEV.Constant c) {
+                coef = c.getValue();
+                List<SCEV> rest = op.getOperands().subList(1, op.getOperands().size());
+                term = rest.size() == 1 ? rest.get(0) : unique(makeNAry(SCEV.Kind.MUL, new ArrayList<>(rest)));
+            }
+            coefficients.merge(term, coef, Integer::sum);
+        }
+        List<SCEV> ops = new ArrayList<>();
+        for (Map.Entry<SCEV, Integer> e : coefficients.entrySet()) {
+            int coef = e.getValue();
+            if (coef == 0)
+                continue;
+            ops.add(coef == 1 ? e.getKey() : getMulExpr(getConstant(coef), e.getKey()));
+        }
+
+        // 把循环不变量并入最内层 AddRec 的起始值，同一循环的 AddRec 逐项相加
+        SCEV.AddRec rec = deepestAddRec(ops);
+        if (rec != null) {
+            Loop loop = rec.getLoop();
+            List<SCEV> starts = new ArrayList<>();
+            List<SCEV> steps = new ArrayList<>();
+            List<SCEV> others = new ArrayList<>();
+            starts.add(rec.getStart());
+            steps.add(rec.getStep());
+            if (constant != 0)
+                starts.add(getConstant(constant));
+            boolean folded = constant != 0;
+            boolean seen = false;
+            for (SCEV op : ops) {
+                if (op == rec && !seen) {
+                    seen = true;
+                } else if (op instanceof SCEV.AddRec r && r.getLoop() == loop) {
+                    starts.add(r.getStart());
+                    steps.add(r.getStep());
+                    folded = true;
+                } else if (op.isLoopInvariant(loop)) {
+                    starts.add(op);
+                    folded = true;
+                } else {
+                    others.add(op);
+                }
+            }
+            if (folded) {
+                SCEV merged = getAddRecExpr(getAddExpr(starts), getAddExpr(steps), loop);
+                if (others.isEmpty())
+                    return merged;
+                others.add(merged);
+                return getAddExpr(others);
+            }
+        }
+
+        if (constant != 0)
+            ops.add(getConstant(constant));
+        if (ops.isEmpty())
+            return getConstant(0);
+        if (ops.size() == 1)
+            return ops.get(0);
+        return unique(makeNAry(SCEV.Kind.ADD, ops));
+    }
+
+    public SCEV getMulExpr(SCEV a, SCEV b) {
+        return getMulExpr(List.of(a, b));
+    }
+
+    public SCEV getMulExpr(List<SCEV> operands) {
+        List<SCEV> ops = new ArrayList<>();
+        int constant = 1;
+        Deque<SCEV> work = new ArrayDeque<>(operands);
+        while (!work.isEmpty()) {
+            SCEV op = work.pollFirst();
+            if (op.isCouldNotCompute())
+                return getCouldNotCompute();
+            if (op.getKind() == SCEV.Kind.MUL) {
+                for (SCEV sub : op.getOperands())
+                    work.addLast(sub);
+            } else if (op instanceof SCEV.Constant c) {
+                constant *= c.getValue();
+            } else {
+                ops.add(op);
+            }
+        }
+        if (constant == 0 || ops.isEmpty())
+            return getConstant(constant);
+
+        // 常量乘以和式时展开，便于加法合并同类项
+        if (constant != 1 && ops.size() == 1 && ops.get(0).getKind() == SCEV.Kind.ADD) {
+            List<SCEV> terms = new ArrayList<>();
+            for (SCEV term : ops.get(0).getOperands())
+                terms.add(getMulExpr(getConstant(constant), term));
+            return getAddExpr(terms);
+        }
+
+        // AddRec 乘以循环不变量：{a,+,b} * X = {a*X,+,b*X}
+        SCEV.AddRec rec = deepestAddRec(ops);
+        if (rec != null) {
+            List<SCEV> factors = new ArrayList<>();
+            boolean allInvariant = true;
+            boolean seen = false;
+            for (SCEV op : ops) {
+                if (op == rec && !seen) {
+                    seen = true;
+                    continue;
+                }
+                if (!op.isLoopInvariant(rec.getLoop())) {
+                    allInvariant = false;
+                    break;
+                }
+                factors.add(op);
+            }
+            if (allInvariant) {
+                if (constant != 1)
+                    factors.add(getConstant(constant));
+                List<SCEV> start = new ArrayList<>(factors);
+                start.add(rec.getStart());
+                List<SCEV> step = new ArrayList<>(factors);
+                step.add(rec.getStep());
+                return getAddRecExpr(getMulExpr(start), getMulExpr(step), rec.getLoop());
+            }
+        }
+
+        if (constant != 1)
+            ops.add(getConstant(constant));
+        if (ops.size() == 1)
+            return ops.get(0);
+        return unique(makeNAry(SCEV.Kind.MUL, ops));
+    }
+
+    public SCEV getNegativeSCEV(SCEV s) {
+        return getMulExpr(getConstant(-1), s);
+    }
+
+    public SCEV getMinusSCEV(SCEV a, SCEV b) {
+        return getAddExpr(a, getNegativeSCEV(b));
+    }
+
+    public SCEV getSDivExpr(SCEV a, SCEV b) {
+        if (a.isCouldNotCompute() || b.isCouldNotCompute())
+            return getCouldNotCompute();
+        if (b instanceof SCEV.Constant cb) {
+            if (cb.getValue() == 0)
+                return getCouldNotCompute();
+            if (cb.getValue() == 1)
+                return a;
+            if (a instanceof SCEV.Constant ca)
+                return getConstant(ca.getValue() / cb.getValue());
+        }
+        return unique(new SCEV.SDiv(a, b));
+    }
+
+    public SCEV getSMaxExpr(SCEV a, SCEV b) {
+        if (a.isCouldNotCompute() || b.isCouldNotCompute())
+            return getCouldNotCompute();
+        if (a.equals(b))
+            return a;
+        if (a instanceof SCEV.Constant ca && b instanceof SCEV.Constant cb)
+            return getConstant(Math.max(ca.getValue(), cb.getValue()));
+        List<SCEV> ops = new ArrayList<>(List.of(a, b));
+        return unique(makeNAry(SCEV.Kind.SMAX, ops));
+    }
+
+    /** AddRec 在第 k 次迭代（从 0 计）的值：start + k * step */
+    public SCEV evaluateAtIteration(SCEV.AddRec rec, SCEV iteration) {
+        return getAddExpr(rec.getStart(), getMulExpr(rec.getStep(), iteration));
+    }
+
+    private SCEV.AddRec deepestAddRec(List<SCEV> ops) {
+        SCEV.AddRec best = null;
+        for (SCEV op : ops) {
+            if (op instanceof SCEV.AddRec r
+                    && (best == null || r.getLoop().getLoopDepth() > best.getLoop().getLoopDepth())) {
+                best = r;
+            }
+        }
+        return best;
+    }
+
+    private SCEV.NAry makeNAry(SCEV.Kind kind, List<SCEV> ops) {
+        ops.sort(Comparator.comparingInt((SCEV s) -> s.getKind().ordinal()).thenComparing(SCEV::getKey));
+        String sep = switch (kind) {
+            case ADD -> " + ";
+            case MUL -> " * ";
+            default -> ", ";
+        };
+        StringBuilder sb = new StringBuilder(kind == SCEV.Kind.SMAX ? "smax(" : "(");
+        for (int i = 0; i < ops.size(); i++) {
+            if (i > 0)
+                sb.append(sep);
+            sb.append(ops.get(i).getKey());
+        }
+        sb.append(")");
+        return new SCEV.NAry(kind, ops, sb.toString());
+    }
+
+    private SCEV unique(SCEV s) {
+        return uniqueMap.computeIfAbsent(s.getKey(), k -> s);
+    }
+
+    private static boolean isZero(SCEV s) {
+        return s instanceof SCEV.Constant c && c.getValue() == 0;
+    }
+
+    // ==================== 值 -> SCEV ====================
+
+    public SCEV getSCEV(Value v) {
+        if (!isSCEVable(v))
+            return getUnknown(v);
+        SCEV cached = valueMap.get(v);
+        if (cached != null)
+            return cached;
+        if (depth >= MAX_DEPTH)
+            return getUnknown(v);
+        depth++;
+        SCEV result;
+        try {
+            result = createSCEV(v);
+        } finally {
+            depth--;
+        }
+        valueMap.put(v, result);
+        derivationLog.add(v);
+        return result;
+    }
+
+    private SCEV createSCEV(Value v) {
+        if (v instanceof ConstantInt ci)
+            return getConstant(ci.getValue());
+        if (v instanceof Phi phi)
+            return createNodeForPhi(phi);
+        if (v instanceof BinOperator bin) {
+            Value lhs = bin.getOperand(0);
+            Value rhs = bin.getOperand(1);
+            switch (bin.opCode()) {
+                case ADD:
+                    return getAddExpr(getSCEV(lhs), getSCEV(rhs));
+                case SUB:
+                    return getMinusSCEV(getSCEV(lhs), getSCEV(rhs));
+                case MUL:
+                    return getMulExpr(getSCEV(lhs), getSCEV(rhs));
+                case SDIV:
+                    return getSDivExpr(getSCEV(lhs), getSCEV(rhs));
+                case SHL:
+                    if (rhs instanceof ConstantInt amount && amount.getValue() >= 0 && amount.getValue() < 31)
+                        return getMulExpr(getSCEV(lhs), getConstant(1 << amount.getValue()));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return getUnknown(v);
+    }
+
+    /**
+     * header phi：phi = [start, 循环外], [phi + step, 回边]，且 step 在循环内不变时
+     * 识别为 {start,+,step}&lt;L&gt;
+     */
+    private SCEV createNodeForPhi(Phi phi) {
+        BasicBlock header = phi.getParent();
+        Loop loop = loopInfo == null ? null : loopInfo.getLoopFor(header);
+        if (loop == null || loop.getHeader() != header)
+            return getUnknown(phi);
+
+        Value startValue = null;
+        Value beValue = null;
+        for (int i = 0; i < phi.getNumIncoming(); i++) {
+            Value in = phi.getIncomingValue(i);
+            if (loop.contains(phi.getIncomingBlock(i))) {
+                if (beValue != null && beValue != in)
+                    return getUnknown(phi);
+                beValue = in;
+            } else {
+                if (startValue != null && startValue != in)
+                    return getUnknown(phi);
+                startValue = in;
+            }
+        }
+        if (startValue == null || beValue == null)
+            return getUnknown(phi);
+
+        // 先以 Unknown(phi) 占位推导回边值，推导结束后回滚这期间缓存的结果
+        SCEV placeholder = getUnknown(phi);
+        valueMap.put(phi, placeholder);
+        int mark = derivationLog.size();
+        SCEV be = getSCEV(beValue);
+        for (int i = derivationLog.size() - 1; i >= mark; i--) {
+            valueMap.remove(derivationLog.remove(i));
+        }
+        valueMap.remove(phi);
+
+        SCEV step = null;
+        if (be == placeholder) {
+            step = getConstant(0);
+        } else if (be.getKind() == SCEV.Kind.ADD) {
+            List<SCEV> rest = new ArrayList<>();
+            int found = 0;
+            for (SCEV op : be.getOperands()) {
+                if (op == placeholder)
+                    found++;
+                else
+                    rest.add(op);
+            }
+            if (found == 1) {
+                SCEV candidate = getAddExpr(rest);
+                if (candidate.isLoopInvariant(loop))
+                    step = candidate;
+            }
+        }
+        if (step == null)
+            return getUnknown(phi);
+        return getAddRecExpr(getSCEV(startValue), step, loop);
+    }
+
+    /** v 在循环 L 中的步长；不是 L 上的仿射递推时返回 null */
+    public SCEV getStride(Value v, Loop loop) {
+        SCEV s = getSCEV(v);
+        if (s instanceof SCEV.AddRec rec && rec.getLoop() == loop)
+            return rec.getStep();
+        return null;
+    }
+
+    // ==================== 迭代次数 ====================
+
+    /**
+     * 回边执行次数：循环体在退出前完整走完并回到 header 的次数。
+     * 目前支持唯一 latch、唯一退出块（header 或 latch）、以 icmp 控制退出的循环。
+     */
+    public SCEV getBackedgeTakenCount(Loop loop) {
+        SCEV cached = backedgeTakenCounts.get(loop);
+        if (cached != null)
+            return cached;
+        SCEV result = computeBackedgeTakenCount(loop);
+        backedgeTakenCounts.put(loop, result);
+        return result;
+    }
+
+    /** header 的执行次数（= 回边次数 + 1）；无法计算时返回 CouldNotCompute */
+    public SCEV getTripCount(Loop loop) {
+        SCEV btc = getBackedgeTakenCount(loop);
+        if (btc.isCouldNotCompute())
+            return btc;
+        return getAddExpr(btc, getConstant(1));
+    }
+
+    /** 常量回边次数，未知时返回 -1 */
+    public int getConstantBackedgeTakenCount(Loop loop) {
+        return getBackedgeTakenCount(loop) instanceof SCEV.Constant c && c.getValue() >= 0 ? c.getValue() : -1;
+    }
+
+    /** 控制退出的唯一块（header 或 latch）；getBackedgeTakenCount 无法计算时为 null */
+    public BasicBlock getExitingBlock(Loop loop) {
+        getBackedgeTakenCount(loop);
+        return exitingBlocks.get(loop);
+    }
+
+    private SCEV computeBackedgeTakenCount(Loop loop) {
+        BasicBlock latch = loop.getUniqueLatch();
+        if (latch == null)
+            return getCouldNotCompute();
+        BasicBlock exiting = null;
+        for (BasicBlock bb : loop.getBlocks()) {
+            for (BasicBlock succ : bb.getSuccessors()) {
+                if (!loop.contains(succ)) {
+                    if (exiting != null && exiting != bb)
+                        return getCouldNotCompute();
+                    exiting = bb;
+                }
+            }
+        }
+        if (exiting == null || (exiting != loop.getHeader() && exiting != latch))
+            return getCouldNotCompute();
+        var termNode = exiting.getTerminator();
+        if (termNode == null || !(termNode.getVal() instanceof BranchInst br) || !br.isConditional()
+                || !(br.getCondition() instanceof ICmpInst cmp))
+            return getCouldNotCompute();
+        boolean thenInLoop = loop.contains(br.getThenBlock());
+        if (thenInLoop == loop.contains(br.getElseBlock()))
+            return getCouldNotCompute();
+        if (!isSCEVable(cmp.getOperand(0)) || !isSCEVable(cmp.getOperand(1)))
+            return getCouldNotCompute();
+
+        // 归一化为“当 lhs pred rhs 成立时继续循环”
+        Opcode pred = thenInLoop ? cmp.getOpcode() : inversePredicate(cmp.getOpcode());
+        SCEV lhs = getSCEV(cmp.getOperand(0));
+        SCEV rhs = getSCEV(cmp.getOperand(1));
+        if (!(lhs instanceof SCEV.AddRec) && rhs instanceof SCEV.AddRec) {
+            SCEV tmp = lhs;
+            lhs = rhs;
+            rhs = tmp;
+            pred = swappedPredicate(pred);
+        }
+        if (!(lhs instanceof SCEV.AddRec rec) || rec.getLoop() != loop || !rhs.isLoopInvariant(loop))
+            return getCouldNotCompute();
+
+        SCEV count = howManyIterations(rec, pred, rhs);
+        if (!count.isCouldNotCompute())
+            exitingBlocks.put(loop, exiting);
+        return count;
+    }
+
+    /** {start,+,step} pred bound 第一次不成立时的迭代序号 */
+    private SCEV howManyIterations(SCEV.AddRec rec, Opcode pred, SCEV bound) {
+        if (!(rec.getStep() instanceof SCEV.Constant stepConst))
+            return getCouldNotCompute();
+        int step = stepConst.getValue();
+        if (rec.getStart() instanceof SCEV.Constant s && bound instanceof SCEV.Constant n)
+            return constantIterations(s.getValue(), step, pred, n.getValue());
+
+        SCEV start = rec.getStart();
+        SCEV zero = getConstant(0);
+        switch (pred) {
+            case ICMP_SLT:
+                if (step <= 0)
+                    break;
+                return ceilDiv(getSMaxExpr(getMinusSCEV(bound, start), zero), step);
+            case ICMP_SLE:
+                if (step <= 0)
+                    break;
+                return ceilDiv(getSMaxExpr(getAddExpr(getMinusSCEV(bound, start), getConstant(1)), zero), step);
+            case ICMP_SGT:
+                if (step >= 0)
+                    break;
+                return ceilDiv(getSMaxExpr(getMinusSCEV(start, bound), zero), -step);
+            case ICMP_SGE:
+                if (step >= 0)
+                    break;
+                return ceilDiv(getSMaxExpr(getAddExpr(getMinusSCEV(start, bound), getConstant(1)), zero), -step);
+            case ICMP_NE:
+                if (step == 1)
+                    return getMinusSCEV(bound, start);
+                if (step == -1)
+                    return getMinusSCEV(start, bound);
+                break;
+            default:
+                break;
+        }
+        return getCouldNotCompute();
+    }
+
+    private SCEV ceilDiv(SCEV x, int divisor) {
+        if (divisor == 1)
+            return x;
+        return getSDivExpr(getAddExpr(x, getConstant(divisor - 1)), getConstant(divisor));
+    }
+
+    /** 常量情形：精确计算并检查 i32 回绕 */
+    private SCEV constantIterations(int start, int step, Opcode pred, int bound) {
+        if (!compare(pred, start, bound))
+            return getConstant(0);
+        long s = start, n = bound, c = step, k;
+        switch (pred) {
+            case ICMP_SLT, ICMP_ULT:
+                if (c <= 0)
+                    return getCouldNotCompute();
+                k = (n - s + c - 1) / c;
+                break;
+            case ICMP_SLE, ICMP_ULE:
+                if (c <= 0)
+                    return getCouldNotCompute();
+                k = (n - s) / c + 1;
+                break;
+            case ICMP_SGT, ICMP_UGT:
+                if (c >= 0)
+                    return getCouldNotCompute();
+                k = (s - n - c - 1) / -c;
+                break;
+            case ICMP_SGE, ICMP_UGE:
+                if (c >= 0)
+                    return getCouldNotCompute();
+                k = (s - n) / -c + 1;
+                break;
+            case ICMP_NE:
+                if (c == 0 || (n - s) % c != 0 || (n - s) / c <= 0)
+                    return getCouldNotCompute();
+                k = (n - s) / c;
+                break;
+            case ICMP_EQ:
+                if (c == 0)
+                    return getCouldNotCompute();
+                k = 1;
+                break;
+            default:
+                return getCouldNotCompute();
+        }
+        // 中间值都要落在 i32 内、且无符号比较时都保持非负，最后一次比较必须失败
+        long last = s + (k - 1) * c;
+        long exit = s + k * c;
+        if (k <= 0 || k > Integer.MAX_VALUE || exit < Integer.MIN_VALUE || exit > Integer.MAX_VALUE)
+            return getCouldNotCompute();
+        if (isUnsigned(pred) && (s < 0 || last < 0))
+            return getCouldNotCompute();
+        if (!compare(pred, (int) last, bound) || compare(pred, (int) exit, bound))
+            return getCouldNotCompute();
+        return getConstant((int) k);
+    }
+
+    private static boolean isUnsigned(Opcode pred) {
+        return pred == Opcode.ICMP_ULT || pred == Opcode.ICMP_ULE || pred == Opcode.ICMP_UGT
+                || pred == Opcode.ICMP_UGE;
+    }
+
+    private static boolean compare(Opcode pred, int a, int b) {
+        return switch (pred) {
+            case ICMP_EQ -> a == b;
+            case ICMP_NE -> a != b;
+            case ICMP_SLT -> a < b;
+            case ICMP_SLE -> a <= b;
+            case ICMP_SGT -> a > b;
+            case ICMP_SGE -> a >= b;
+            case ICMP_ULT -> Integer.compareUnsigned(a, b) < 0;
+            case ICMP_ULE -> Integer.compareUnsigned(a, b) <= 0;
+            case ICMP_UGT -> Integer.compareUnsigned(a, b) > 0;
+            case ICMP_UGE -> Integer.compareUnsigned(a, b) >= 0;
+            default -> throw new IllegalArgumentException("Not an icmp predicate: " + pred);
+        };
+    }
+
+    public static Opcode inversePredicate(Opcode pred) {
+        return switch (pred) {
+            case ICMP_EQ -> Opcode.ICMP_NE;
+            case ICMP_NE -> Opcode.ICMP_EQ;
+            case ICMP_SLT -> Opcode.ICMP_SGE;
+            case ICMP_SGE -> Opcode.ICMP_SLT;
+            case ICMP_SGT -> Opcode.ICMP_SLE;
+            case ICMP_SLE -> Opcode.ICMP_SGT;
+            case ICMP_ULT -> Opcode.ICMP_UGE;
+            case ICMP_UGE -> Opcode.ICMP_ULT;
+            case ICMP_UGT -> Opcode.ICMP_ULE;
+            case ICMP_ULE -> Opcode.ICMP_UGT;
+            default -> throw new IllegalArgumentException("Not an icmp predicate: " + pred);
+        };
+    }
+
+    public static Opcode swappedPredicate(Opcode pred) {
+        return switch (pred) {
+            case ICMP_EQ, ICMP_NE -> pred;
+            case ICMP_SLT -> Opcode.ICMP_SGT;
+            case ICMP_SGT -> Opcode.ICMP_SLT;
+            case ICMP_SLE -> Opcode.ICMP_SGE;
+            case ICMP_SGE -> Opcode.ICMP_SLE;
+            case ICMP_ULT -> Opcode.ICMP_UGT;
+            case ICMP_UGT -> Opcode.ICMP_ULT;
+            case ICMP_ULE -> Opcode.ICMP_UGE;
+            case ICMP_UGE -> Opcode.ICMP_ULE;
+            default -> throw new IllegalArgumentException("Not an icmp predicate: " + pred);
+        };
+    }
+
+    // ==================== 退出值 ====================
+
+    /**
+     * v 在循环 L 退出后的值：循环不变量原样返回；L 上的递推在最后一次执行退出判断的迭代求值。
+     * 要求 v 所在块支配退出块（否则在循环外不可用），无法计算时返回 CouldNotCompute。
+     */
+    public SCEV getExitValue(Value v, Loop loop) {
+        SCEV s = getSCEV(v);
+        if (s.isLoopInvariant(loop))
+            return s;
+        if (!(s instanceof SCEV.AddRec rec) || rec.getLoop() != loop || !(v instanceof Instruction inst))
+            return getCouldNotCompute();
+        SCEV btc = getBackedgeTakenCount(loop);
+        BasicBlock exiting = exitingBlocks.get(loop);
+        if (btc.isCouldNotCompute() || exiting == null)
+            return getCouldNotCompute();
+        DominanceAnalysisPass dom = DominanceAnalysisPass.getOrCompute(function);
+        if (!dom.dominates(inst.getParent(), exiting))
+            return getCouldNotCompute();
+        return evaluateAtIteration(rec, btc);
+    }
+}
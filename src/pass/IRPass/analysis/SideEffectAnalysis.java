@@ -21,8 +21,7 @@ public class SideEffectAnalysis {
     private static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("dbg.purity", "false"));
 
     private final Map<Function, Boolean> hasSideEffect = new HashMap<>();
-    private final Map<Function, Set<Function>> callers = new HashMap<>();
-    private final Map<Function, Set<Function>> callees = new HashMap<>();
+    private CallGraph callGraph;
     private boolean analyzed = false;
 
     public static SideEffectAnalysis getInstance() {
@@ -57,13 +56,7 @@ public class SideEffectAnalysis {
 
     private void clear() {
         hasSideEffect.clear();
-        callers.clear();
-        callees.clear();
-    }
-
-    private void addEdge(Function caller, Function callee) {
-        callees.computeIfAbsent(caller, k -> new HashSet<>()).add(callee);
-        callers.computeIfAbsent(callee, k -> new HashSet<>()).add(caller);
+        callGraph = null;
     }
 
     private boolean isKnownBuiltin(Function f) {
@@ -79,12 +72,11 @@ public class SideEffectAnalysis {
         clear();
         if (DEBUG)
             System.out.println("[Purity] start analysis on module");
+        callGraph = CallGraph.compute(module);
         for (Function f : module.getFunctions()) {
             if (f == null)
                 continue;
             hasSideEffect.put(f, false);
-            callers.putIfAbsent(f, new HashSet<>());
-            callees.putIfAbsent(f, new HashSet<>());
         }
 
         // Seed: built-ins side-effect true; defined functions inspect body
@@ -127,8 +119,6 @@ public class SideEffectAnalysis {
                         }
                         if (inst instanceof CallInst ci) {
                             Function callee = ci.getCalledFunction();
-                            if (callee != null)
-                                addEdge(f, callee);
                             // If calls a built-in, mark side-effect now
                             if (callee != null && builtinHasSideEffect(callee)) {
                                 if (DEBUG)
@@ -152,7 +142,7 @@ public class SideEffectAnalysis {
                 q.add(e.getKey());
         while (!q.isEmpty()) {
             Function g = q.poll();
-            for (Function caller : callers.getOrDefault(g, Collections.emptySet())) {
+            for (Function caller : callGraph.getCallers(g)) {
                 if (!hasSideEffect.getOrDefault(caller, false)) {
                     hasSideEffect.put(caller, true);
                     q.add(caller);
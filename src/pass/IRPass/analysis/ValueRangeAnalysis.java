@@ -0,0 +1,552 @@
+package pass.IRPass.analysis;
+
+import ir.type.IntegerType;
+import ir.value.BasicBlock;
+import ir.value.Function;
+import ir.value.Opcode;
+import ir.value.Value;
+import ir.value.constants.ConstantInt;
+import ir.value.instructions.BinOperator;
+import ir.value.instructions.BranchInst;
+import ir.value.instructions.CastInst;
+import ir.value.instructions.ICmpInst;
+import ir.value.instructions.Instruction;
+import ir.value.instructions.Phi;
+import ir.value.instructions.SelectInst;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 整数值域（区间）分析。
+ * <p>
+ * 在 SSA 上为每个 i32 / i1 值求一个有符号区间 [lo, hi]：
+ * <ul>
+ * <li>全局区间：按逆后序迭代到不动点，phi 取各入边区间的并，多次变化后加宽到 INT_MIN / INT_MAX</li>
+ * <li>入边区间：入边的分支条件（icmp v, x）把 v 收窄到条件成立的部分</li>
+ * <li>位置相关区间 {@link #getRangeAt}：沿支配树向上收集只有单一前驱的块的入边条件</li>
+ * <li>循环头 phi 若是 SCEV 仿射递推，用常量回边次数（或步长方向）给出的区间加以限制</li>
+ * </ul>
+ * 与 {@link ScalarEvolution} 一致，认为归纳变量的有符号运算不会溢出；其余运算溢出时区间退化为全集。
+ * IR 修改后需要重新计算。
+ */
+public class ValueRangeAnalysis {
+    // 有限次变化后把 phi 的区间加宽到边界
+    private static final int WIDEN_THRESHOLD = 2;
+    // 不动点迭代轮数上限，未收敛时所有查询退化为全集
+    private static final int MAX_ROUNDS = 64;
+    // getRangeAt 沿支配树向上走的最大步数
+    private static final int MAX_DOM_WALK = 24;
+
+    /** 有符号 32 位区间；lo &gt; hi 表示空集（值不可达） */
+    public static final class Range {
+        public static final Range FULL = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        public static final Range EMPTY = new Range(1, 0);
+        public static final Range BOOL = new Range(0, 1);
+
+        private final long lo;
+        private final long hi;
+
+        private Range(long lo, long hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /** 端点超出 i32 时视为可能回绕，返回全集 */
+        public static Range of(long lo, long hi) {
+            if (lo > hi)
+                return EMPTY;
+            if (lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE)
+                return FULL;
+            return new Range(lo, hi);
+        }
+
+        public static Range constant(long c) {
+            return of(c, c);
+        }
+
+        public long getLower() {
+            return lo;
+        }
+
+        public long getUpper() {
+            return hi;
+        }
+
+        public boolean isEmpty() {
+            return lo > hi;
+        }
+
+        public boolean isFull() {
+            return lo == Integer.MIN_VALUE && hi == Integer.MAX_VALUE;
+        }
+
+        public boolean isConstant() {
+            return lo == hi;
+        }
+
+        public boolean isNonNegative() {
+            return !isEmpty() && lo >= 0;
+        }
+
+        public boolean contains(long v) {
+            return lo <= v && v <= hi;
+        }
+
+        public Range intersect(Range o) {
+            if (isEmpty() || o.isEmpty())
+                return EMPTY;
+            return of(Math.max(lo, o.lo), Math.min(hi, o.hi));
+        }
+
+        public Range union(Range o) {
+            if (isEmpty())
+                return o;
+            if (o.isEmpty())
+                return this;
+            return of(Math.min(lo, o.lo), Math.max(hi, o.hi));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Range r && (r.lo == lo && r.hi == hi || r.isEmpty() && isEmpty());
+        }
+
+        @Override
+        public int hashCode() {
+            return isEmpty() ? 0 : Long.hashCode(lo * 31 + hi);
+        }
+
+        @Override
+        public String toString() {
+            return isEmpty() ? "[]" : "[" + lo + ", " + hi + "]";
+        }
+    }
+
+    private final Function function;
+    private final ScalarEvolution scev;
+    private final DominanceAnalysisPass dom;
+    private final Map<Value, Range> ranges = new HashMap<>();
+    private final Map<Phi, Integer> phiChanges = new HashMap<>();
+    private boolean converged;
+
+    public ValueRangeAnalysis(Function function, ScalarEvolution scev) {
+        this.function = function;
+        this.scev = scev;
+        this.dom = DominanceAnalysisPass.getOrCompute(function);
+        solve();
+    }
+
+    /** 为函数计算循环信息、标量演化并求值域 */
+    public static ValueRangeAnalysis compute(Function function) {
+        return new ValueRangeAnalysis(function, ScalarEvolution.compute(function));
+    }
+
+    public Function getFunction() {
+        return function;
+    }
+
+    // ==================== 查询 ====================
+
+    /** 与位置无关的区间 */
+    public Range getRange(Value v) {
+        if (v instanceof ConstantInt c)
+            return Range.constant(c.getValue());
+        if (!isTracked(v))
+            return Range.FULL;
+        if (!converged)
+            return typeRange(v);
+        Range r = ranges.get(v);
+        // 空集说明该值不可达，保守地按类型给出
+        return r == null || r.isEmpty() ? typeRange(v) : r;
+    }
+
+    /** v 在块 bb 中（任意位置）被使用时的区间 */
+    public Range getRangeAt(Value v, BasicBlock bb) {
+        Range r = getRange(v);
+        if (!converged || v instanceof ConstantInt || !isI32(v))
+            return r;
+        Range refined = refineByDominatingConditions(v, bb, r);
+        return refined.isEmpty() ? r : refined;
+    }
+
+    /** v 沿 from -&gt; to 这条边流过时的区间 */
+    public Range getRangeOnEdge(Value v, BasicBlock from, BasicBlock to) {
+        if (!converged || !isI32(v))
+            return getRangeAt(v, from);
+        Range r = getRangeAt(v, from).intersect(edgeConstraint(v, from, to));
+        return r.isEmpty() ? getRangeAt(v, from) : r;
+    }
+
+    public boolean isKnownNonNegative(Value v, BasicBlock bb) {
+        return getRangeAt(v, bb).isNonNegative();
+    }
+
+    /**
+     * icmp 在其所在块中的结果：恒真 / 恒假，无法确定时为 null。
+     * 先看支配它的分支条件里有没有同样的比较（包括交换操作数、取反），再比较两边的区间。
+     */
+    public Boolean evaluateICmp(ICmpInst cmp) {
+        BasicBlock bb = cmp.getParent();
+        if (!isI32(cmp.getOperand(0)) || !isI32(cmp.getOperand(1)))
+            return null;
+        Boolean implied = impliedByDominatingCondition(cmp);
+        if (implied != null)
+            return implied;
+        return decide(cmp.getOpcode(), getRangeAt(cmp.getOperand(0), bb), getRangeAt(cmp.getOperand(1), bb));
+    }
+
+    private Boolean impliedByDominatingCondition(ICmpInst cmp) {
+        BasicBlock cur = cmp.getParent();
+        for (int steps = 0; cur != null && steps < MAX_DOM_WALK; steps++) {
+            if (cur.getPredecessors().size() == 1) {
+                BasicBlock pred = cur.getPredecessors().iterator().next();
+                if (pred != cur && pred.getTerminator() != null
+                        && pred.getTerminator().getVal() instanceof BranchInst br && br.isConditional()
+                        && br.getThenBlock() != br.getElseBlock() && br.getCondition() instanceof ICmpInst dc
+                        && dc != cmp) {
+                    Opcode known = dc.getOpcode();
+                    if (br.getElseBlock() == cur)
+                        known = ScalarEvolution.inversePredicate(known);
+                    if (dc.getOperand(0) != cmp.getOperand(0))
+                        known = ScalarEvolution.swappedPredicate(known);
+                    boolean same = dc.getOperand(0) == cmp.getOperand(0) && dc.getOperand(1) == cmp.getOperand(1);
+                    boolean swapped = dc.getOperand(0) == cmp.getOperand(1) && dc.getOperand(1) == cmp.getOperand(0);
+                    if (same || swapped) {
+                        if (known == cmp.getOpcode())
+                            return Boolean.TRUE;
+                        if (known == ScalarEvolution.inversePredicate(cmp.getOpcode()))
+                            return Boolean.FALSE;
+                    }
+                }
+            }
+            cur = dom.getImmediateDominator(cur);
+        }
+        return null;
+    }
+
+    // ==================== 求解 ====================
+
+    private void solve() {
+        List<BasicBlock> rpo = dom.getReversePostOrder();
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean changed = false;
+            for (BasicBlock bb : rpo) {
+                for (var node : bb.getInstructions()) {
+                    Instruction inst = node.getVal();
+                    if (!isTracked(inst))
+                        continue;
+                    Range old = ranges.getOrDefault(inst, Range.EMPTY);
+                    Range computed = evaluate(inst, bb);
+                    Range next = old.union(computed);
+                    if (inst instanceof Phi phi && !next.equals(old)) {
+                        int n = phiChanges.merge(phi, 1, Integer::sum);
+                        if (n > WIDEN_THRESHOLD && !old.isEmpty())
+                            next = widen(old, next);
+                        next = next.intersect(recurrenceRange(phi));
+                    }
+                    if (!next.equals(old)) {
+                        ranges.put(inst, next);
+                        changed = true;
+                    }
+                }
+            }
+            if (!changed) {
+                converged = true;
+                return;
+            }
+        }
+    }
+
+    private static Range widen(Range old, Range next) {
+        long lo = next.lo < old.lo ? Integer.MIN_VALUE : next.lo;
+        long hi = next.hi > old.hi ? Integer.MAX_VALUE : next.hi;
+        return Range.of(lo, hi);
+    }
+
+    /** 求解过程中使用的区间：尚未求出的值为空集 */
+    private Range current(Value v) {
+        if (v instanceof ConstantInt c)
+            return Range.constant(c.getValue());
+        if (v instanceof Instruction && isTracked(v))
+            return ranges.getOrDefault(v, Range.EMPTY);
+        return typeRange(v);
+    }
+
+    private Range currentAt(Value v, BasicBlock bb) {
+        Range r = current(v);
+        if (r.isEmpty() || v instanceof ConstantInt || !isI32(v))
+            return r;
+        return refineByDominatingConditions(v, bb, r);
+    }
+
+    private Range evaluate(Instruction inst, BasicBlock bb) {
+        if (inst instanceof Phi phi) {
+            Range r = Range.EMPTY;
+            for (int i = 0; i < phi.getNumIncoming(); i++) {
+                BasicBlock pred = phi.getIncomingBlock(i);
+                Value in = phi.getIncomingValue(i);
+                Range inRange = currentAt(in, pred);
+                if (isI32(in))
+                    inRange = inRange.intersect(edgeConstraint(in, pred, bb));
+                r = r.union(inRange);
+            }
+            return r;
+        }
+        if (inst instanceof ICmpInst cmp) {
+            if (!isI32(cmp.getOperand(0)) || !isI32(cmp.getOperand(1)))
+                return Range.BOOL;
+            Range a = currentAt(cmp.getOperand(0), bb);
+            Range b = currentAt(cmp.getOperand(1), bb);
+            if (a.isEmpty() || b.isEmpty())
+                return Range.EMPTY;
+            Boolean d = decide(cmp.getOpcode(), a, b);
+            return d == null ? Range.BOOL : Range.constant(d ? 1 : 0);
+        }
+        if (inst instanceof SelectInst sel) {
+            Range c = currentAt(sel.getCondition(), bb);
+            Range t = currentAt(sel.getTrueValue(), bb);
+            Range f = currentAt(sel.getFalseValue(), bb);
+            if (c.isConstant())
+                return c.lo != 0 ? t : f;
+            return t.union(f).intersect(typeRange(inst));
+        }
+        if (inst instanceof CastInst cast) {
+            Range a = currentAt(cast.getValue(), bb);
+            if (a.isEmpty())
+                return Range.EMPTY;
+            return switch (cast.getOpcode()) {
+                case ZEXT -> isBool(cast.getValue()) ? a.intersect(Range.BOOL) : Range.FULL;
+                case SEXT -> isBool(cast.getValue()) ? Range.of(-a.hi, -a.lo) : Range.FULL;
+                default -> typeRange(inst);
+            };
+        }
+        if (inst instanceof BinOperator bin) {
+            Range a = currentAt(bin.getOperand(0), bb);
+            Range b = currentAt(bin.getOperand(1), bb);
+            if (a.isEmpty() || b.isEmpty())
+                return Range.EMPTY;
+            return binary(bin.getOpcode(), a, b).intersect(typeRange(inst));
+        }
+        return typeRange(inst);
+    }
+
+    private static Range binary(Opcode op, Range a, Range b) {
+        switch (op) {
+            case ADD:
+                return Range.of(a.lo + b.lo, a.hi + b.hi);
+            case SUB:
+                return Range.of(a.lo - b.hi, a.hi - b.lo);
+            case MUL: {
+                long p1 = a.lo * b.lo, p2 = a.lo * b.hi, p3 = a.hi * b.lo, p4 = a.hi * b.hi;
+                return Range.of(Math.min(Math.min(p1, p2), Math.min(p3, p4)),
+                        Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+            }
+            case SDIV: {
+                // 除数区间含 0 或可能出现 INT_MIN / -1 时放弃
+                if (b.contains(0) || (a.contains(Integer.MIN_VALUE) && b.contains(-1)))
+                    return Range.FULL;
+                long q1 = a.lo / b.lo, q2 = a.lo / b.hi, q3 = a.hi / b.lo, q4 = a.hi / b.hi;
+                return Range.of(Math.min(Math.min(q1, q2), Math.min(q3, q4)),
+                        Math.max(Math.max(q1, q2), Math.max(q3, q4)));
+            }
+            case SREM: {
+                long m = Math.max(Math.abs(b.lo), Math.abs(b.hi)) - 1;
+                if (m < 0)
+                    return Range.FULL;
+                if (a.lo >= 0)
+                    return Range.of(0, Math.min(a.hi, m));
+                if (a.hi <= 0)
+                    return Range.of(Math.max(a.lo, -m), 0);
+                return Range.of(Math.max(a.lo, -m), Math.min(a.hi, m));
+            }
+            case AND:
+                if (a.lo >= 0 && b.lo >= 0)
+                    return Range.of(0, Math.min(a.hi, b.hi));
+                if (a.lo >= 0)
+                    return Range.of(0, a.hi);
+                if (b.lo >= 0)
+                    return Range.of(0, b.hi);
+                return Range.FULL;
+            case OR:
+            case XOR:
+                if (a.lo >= 0 && b.lo >= 0) {
+                    long mask = (Long.highestOneBit(Math.max(a.hi, b.hi)) << 1) - 1;
+                    long lo = op == Opcode.OR ? Math.max(a.lo, b.lo) : 0;
+                    return Range.of(lo, Math.max(mask, 0));
+                }
+                return Range.FULL;
+            case SHL:
+                if (b.isConstant() && b.lo >= 0 && b.lo < 31)
+                    return Range.of(a.lo << b.lo, a.hi << b.lo);
+                return Range.FULL;
+            case ASHR:
+                if (b.isConstant() && b.lo >= 0 && b.lo < 32)
+                    return Range.of(a.lo >> b.lo, a.hi >> b.lo);
+                return Range.FULL;
+            case LSHR:
+                if (b.isConstant() && b.lo >= 0 && b.lo < 32) {
+                    if (a.lo >= 0)
+                        return Range.of(a.lo >> b.lo, a.hi >> b.lo);
+                    if (b.lo > 0)
+                        return Range.of(0, 0xFFFFFFFFL >>> b.lo);
+                }
+                return Range.FULL;
+            default:
+                return Range.FULL;
+        }
+    }
+
+    /** a pred b 在给定区间下恒真 / 恒假 */
+    private static Boolean decide(Opcode pred, Range a, Range b) {
+        if (a.isEmpty() || b.isEmpty())
+            return null;
+        switch (pred) {
+            case ICMP_ULT, ICMP_ULE, ICMP_UGT, ICMP_UGE:
+                // 两边都非负时无符号比较与有符号比较一致
+                if (!a.isNonNegative() || !b.isNonNegative())
+                    return null;
+                pred = switch (pred) {
+                    case ICMP_ULT -> Opcode.ICMP_SLT;
+                    case ICMP_ULE -> Opcode.ICMP_SLE;
+                    case ICMP_UGT -> Opcode.ICMP_SGT;
+                    default -> Opcode.ICMP_SGE;
+                };
+                break;
+            default:
+                break;
+        }
+        return switch (pred) {
+            case ICMP_EQ -> a.isConstant() && b.isConstant() && a.lo == b.lo ? Boolean.TRUE
+                    : a.intersect(b).isEmpty() ? Boolean.FALSE : null;
+            case ICMP_NE -> a.isConstant() && b.isConstant() && a.lo == b.lo ? Boolean.FALSE
+                    : a.intersect(b).isEmpty() ? Boolean.TRUE : null;
+            case ICMP_SLT -> a.hi < b.lo ? Boolean.TRUE : a.lo >= b.hi ? Boolean.FALSE : null;
+            case ICMP_SLE -> a.hi <= b.lo ? Boolean.TRUE : a.lo > b.hi ? Boolean.FALSE : null;
+            case ICMP_SGT -> a.lo > b.hi ? Boolean.TRUE : a.hi <= b.lo ? Boolean.FALSE : null;
+            case ICMP_SGE -> a.lo >= b.hi ? Boolean.TRUE : a.hi < b.lo ? Boolean.FALSE : null;
+            default -> null;
+        };
+    }
+
+    // ==================== 条件收窄 ====================
+
+    private Range refineByDominatingConditions(Value v, BasicBlock bb, Range r) {
+        BasicBlock defBlock = v instanceof Instruction inst ? inst.getParent() : null;
+        BasicBlock cur = bb;
+        for (int steps = 0; cur != null && cur != defBlock && steps < MAX_DOM_WALK; steps++) {
+            if (cur.getPredecessors().size() == 1) {
+                BasicBlock pred = cur.getPredecessors().iterator().next();
+                if (pred != cur)
+                    r = r.intersect(edgeConstraint(v, pred, cur));
+            }
+            cur = dom.getImmediateDominator(cur);
+        }
+        return r;
+    }
+
+    /** 沿 from -&gt; to 的条件分支可推出的 v 的取值范围；推不出时为全集 */
+    private Range edgeConstraint(Value v, BasicBlock from, BasicBlock to) {
+        if (from.getTerminator() == null || !(from.getTerminator().getVal() instanceof BranchInst br)
+                || !br.isConditional() || br.getThenBlock() == br.getElseBlock())
+            return Range.FULL;
+        if (!(br.getCondition() instanceof ICmpInst cmp))
+            return Range.FULL;
+        Opcode pred = cmp.getOpcode();
+        Value other;
+        if (cmp.getOperand(0) == v) {
+            other = cmp.getOperand(1);
+        } else if (cmp.getOperand(1) == v) {
+            other = cmp.getOperand(0);
+            pred = ScalarEvolution.swappedPredicate(pred);
+        } else {
+            return Range.FULL;
+        }
+        if (!isI32(other) || other == v)
+            return Range.FULL;
+        if (br.getElseBlock() == to)
+            pred = ScalarEvolution.inversePredicate(pred);
+        else if (br.getThenBlock() != to)
+            return Range.FULL;
+
+        Range o = current(other);
+        if (o.isEmpty())
+            return Range.FULL;
+        return switch (pred) {
+            case ICMP_EQ -> o;
+            case ICMP_NE -> Range.FULL;
+            case ICMP_SLT -> Range.of(Integer.MIN_VALUE, o.hi - 1);
+            case ICMP_SLE -> Range.of(Integer.MIN_VALUE, o.hi);
+            case ICMP_SGT -> Range.of(o.lo + 1, Integer.MAX_VALUE);
+            case ICMP_SGE -> Range.of(o.lo, Integer.MAX_VALUE);
+            // 无符号小于一个非负数，则 v 也是非负数
+            case ICMP_ULT -> o.isNonNegative() ? Range.of(0, o.hi - 1) : Range.FULL;
+            case ICMP_ULE -> o.isNonNegative() ? Range.of(0, o.hi) : Range.FULL;
+            default -> Range.FULL;
+        };
+    }
+
+    // ==================== 循环递推 ====================
+
+    /** 循环头 phi 若为 {start,+,step}，由步长方向和常量回边次数限制它的取值 */
+    private Range recurrenceRange(Phi phi) {
+        if (scev == null || !isI32(phi))
+            return Range.FULL;
+        SCEV s = scev.getSCEV(phi);
+        if (!(s instanceof SCEV.AddRec rec) || !(rec.getStep() instanceof SCEV.Constant step)
+                || rec.getLoop().getHeader() != phi.getParent())
+            return Range.FULL;
+        BasicBlock entry = dom.getImmediateDominator(phi.getParent());
+        Range start = scevRange(rec.getStart(), entry);
+        if (start.isEmpty())
+            return Range.FULL;
+        long st = step.getValue();
+        int btc = scev.getConstantBackedgeTakenCount(rec.getLoop());
+        if (btc >= 0) {
+            long last = st * btc;
+            return Range.of(start.lo + Math.min(0, last), start.hi + Math.max(0, last));
+        }
+        if (st > 0)
+            return Range.of(start.lo, Integer.MAX_VALUE);
+        if (st < 0)
+            return Range.of(Integer.MIN_VALUE, start.hi);
+        return start;
+    }
+
+    private Range scevRange(SCEV s, BasicBlock at) {
+        if (s instanceof SCEV.Constant c)
+            return Range.constant(c.getValue());
+        if (s instanceof SCEV.Unknown u)
+            return at == null ? current(u.getValue()) : currentAt(u.getValue(), at);
+        if (s instanceof SCEV.NAry && (s.getKind() == SCEV.Kind.ADD || s.getKind() == SCEV.Kind.MUL)) {
+            Range r = null;
+            for (SCEV op : s.getOperands()) {
+                Range x = scevRange(op, at);
+                if (x.isEmpty())
+                    return Range.EMPTY;
+                r = r == null ? x : binary(s.getKind() == SCEV.Kind.ADD ? Opcode.ADD : Opcode.MUL, r, x);
+            }
+            return r == null ? Range.FULL : r;
+        }
+        return Range.FULL;
+    }
+
+    // ==================== 工具 ====================
+
+    private static boolean isTracked(Value v) {
+        return v instanceof Instruction && (isI32(v) || isBool(v));
+    }
+
+    private static boolean isI32(Value v) {
+        return v != null && v.getType() instanceof IntegerType it && it.getBitWidth() == 32;
+    }
+
+    private static boolean isBool(Value v) {
+        return v != null && v.getType() instanceof IntegerType it && it.getBitWidth() == 1;
+    }
+
+    private static Range typeRange(Value v) {
+        return isBool(v) ? Range.BOOL : Range.FULL;
+    }
+}
@@ -13,8 +13,11 @@ public enum IRPassType implements PassType<IRPass> {
     IRMockPass(IRMockPass::new),
     Mem2reg(Mem2regPass::new),
     FunctionInline(FunctionInlinePass::new),
+    CallGraphSCC(CallGraphSCCPass::new),
+    FunctionSpecialization(FunctionSpecializationPass::new),
 
     ConstantPropagation(ConstantPropagationPass::new),
+    IPSCCP(InterproceduralSCCPPass::new),
     DeadCodeElimination(DeadCodeEliminationPass::new),
     CFGAnalysis(CFGAnalysisPass::new),
     LocalArrayLift(LocalArrayLiftPass::new),
@@ -23,7 +26,15 @@ public enum IRPassType implements PassType<IRPass> {
     LoopSimplifyPass(LoopSimplifyPass::new),
     LoopLICMPass(LoopLICMPass::new),
     LoopUnrollPass(LoopUnrollPass::new),
+    LoopPartialUnroll(() -> new LoopUnrollPass(true)),
     LoopFusionPass(LoopFusionPass::new),
+    LoopInterchange(LoopInterchangePass::new),
+    LoopTiling(LoopTilingPass::new),
+    LoopUnswitch(LoopUnswitchPass::new),
+    LoopIdiomRecognize(LoopIdiomRecognizePass::new),
+    LoopExitValue(LoopExitValuePass::new),
+    LoopParallelize(LoopParallelizePass::new),
+    ParallelForLowering(() -> new LoopParallelizePass(true)),
     LoopStrengthReductionPass(LoopStrengthReductionPass::new),
     DeadLoopEliminationPass(DeadLoopEliminationPass::new),
 
@@ -44,6 +55,8 @@ public enum IRPassType implements PassType<IRPass> {
     LoopRotatePass(LoopRotatePass::new),
     PhiStatsPass(PhiStatsPass::new),
     GVN(GVNPass::new),
+    PRE(PartialRedundancyEliminationPass::new),
+    DeadStoreElimination(DeadStoreEliminationPass::new),
     GCM(GCMPass::new),
     ArrayAliasAnalysis(ArrayAliasAnalysis::new),
     ArrayLayoutOptimizationPass(ArrayLayoutOptimizationPass::new),
@@ -55,6 +68,9 @@ public enum IRPassType implements PassType<IRPass> {
     LoopGEPCombine(LoopGEPCombinePass::new),
     MemSetOptimize(MemSetOptimizePass::new),
     BlockLayout(BlockLayoutPass::new),
+    ValueRangeSimplify(ValueRangeSimplifyPass::new),
+    LoopVectorize(LoopVectorizePass::new),
+    SLPVectorizer(SLPVectorizerPass::new),
     // add more irpass here
     ;
 
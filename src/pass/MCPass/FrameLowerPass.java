@@ -186,11 +186,10 @@ public class FrameLowerPass implements MCPass {
         info.outgoingArgsSize = calculateOutgoingArgsSize(func);
         logger.debug("传出参数(outgoingArgsSize)空间: {} 字节", info.outgoingArgsSize);
 
-        // 5. 计算 caller-saved 寄存器临时保存空间（动态：取所有调用点活跃 caller-saved 的最大个数）
-        int maxCallerSaved = computeMaxCallerSavedAtCalls(func);
-        int callerSavedTempSpace = maxCallerSaved * WORD_SIZE;
+        // 5. 计算 caller-saved 寄存器临时保存空间（动态：取所有调用点活跃 caller-saved 所需的最大字节数）
+        int callerSavedTempSpace = computeMaxCallerSavedAtCalls(func);
         info.callerSavedSize = callerSavedTempSpace;
-        logger.debug("caller-saved临时保存空间: {} 字节 (max regs: {})", callerSavedTempSpace, maxCallerSaved);
+        logger.debug("caller-saved临时保存空间: {} 字节", callerSavedTempSpace);
 
         // 总栈帧放到caculateOffsets里面算，以免有对齐问题
         // 6. 计算总栈帧大小
@@ -377,7 +376,7 @@ public class FrameLowerPass implements MCPass {
     }
 
     private void saveCalleeSavedRegisters(List<Inst> prologue, FrameInfo frameInfo) {
-        List<PReg> regsToSave = new ArrayList<>(frameInfo.calleeSavedRegs);
+        List<PReg> regsToSave = calleeSavedViews(frameInfo);
         int offset = frameInfo.calleeSavedOffset;
 
         logger.debug("保存callee-saved寄存器，起始偏移: {}", offset);
@@ -479,7 +478,7 @@ public class FrameLowerPass implements MCPass {
 
     /** 恢复callee-saved寄存器 */
     private void restoreCalleeSavedRegisters(List<Inst> epilogue, FrameInfo frameInfo) {
-        List<PReg> regsToRestore = new ArrayList<>(frameInfo.calleeSavedRegs);
+        List<PReg> regsToRestore = calleeSavedViews(frameInfo);
         int offset = frameInfo.calleeSavedOffset;
 
         // 使用 LDP 指令成对恢复
@@ -505,6 +504,18 @@ public class FrameLowerPass implements MCPass {
         }
     }
 
+    /**
+     * callee-saved 寄存器按 8 字节保存：浮点寄存器使用 d 视图，
+     * 否则只保存了 s 视图的低 32 位，破坏调用者放在 v8-v15 中的双精度 / 向量低半部分
+     */
+    private List<PReg> calleeSavedViews(FrameInfo frameInfo) {
+        List<PReg> regs = new ArrayList<>();
+        for (PReg reg : frameInfo.calleeSavedRegs) {
+            regs.add(reg.isGPR() ? reg : PReg.getFPR64(reg.getEncoding()));
+        }
+        return regs;
+    }
+
     /** 恢复单个寄存器 */
     private void restoreRegister(List<Inst> epilogue, PReg reg, int offset) {
         epilogue.add(new MemInst(Mnemonic.LDR, reg, ImmAddr.offsetU12(PReg.X29, offset)));
@@ -747,19 +758,14 @@ public class FrameLowerPass implements MCPass {
 
         // 筛选出需要保存的caller-saved寄存器
         // 排除x0寄存器，因为它用于传递返回值
-        List<PReg> toSave = new ArrayList<>();
-        for (PReg reg : liveRegs) {
-            if (reg.isCallerSave() && !reg.equals(PReg.X0)) {
-                toSave.add(reg);
-            }
-        }
+        List<PReg> toSave = orderCallerSaved(liveRegs);
 
         // 应该在callersavedoffset中进行保存
         int saveOffset = frameInfo.callerSavedOffset;
         for (PReg reg : toSave) {
             saveInsts.addAll(
                     createMemoryAccessInsts(Mnemonic.STR, reg, PReg.getFramePointer(), saveOffset));
-            saveOffset += WORD_SIZE;
+            saveOffset += callerSavedSlotSize(reg);
         }
 
         return saveInsts;
@@ -773,12 +779,7 @@ public class FrameLowerPass implements MCPass {
         // 与保存时相同的寄存器集合
         Set<PReg> liveRegs = getLiveRegistersAtCall(func, callInst);
 
-        List<PReg> toRestore = new ArrayList<>();
-        for (PReg reg : liveRegs) {
-            if (reg.isCallerSave() && !reg.equals(PReg.X0)) {
-                toRestore.add(reg);
-            }
-        }
+        List<PReg> toRestore = orderCallerSaved(liveRegs);
 
         // 生成恢复指令
         // 使用与保存时相同的偏移
@@ -786,12 +787,33 @@ public class FrameLowerPass implements MCPass {
         for (PReg reg : toRestore) {
             restoreInsts.addAll(
                     createMemoryAccessInsts(Mnemonic.LDR, reg, PReg.getFramePointer(), restoreOffset));
-            restoreOffset += WORD_SIZE;
+            restoreOffset += callerSavedSlotSize(reg);
         }
 
         return restoreInsts;
     }
 
+    /**
+     * 保存/恢复共用的确定顺序：q 寄存器在前，保证 16 字节槽位从对齐的 callerSavedOffset 开始连续排布
+     */
+    private List<PReg> orderCallerSaved(Set<PReg> liveRegs) {
+        List<PReg> regs = new ArrayList<>();
+        for (PReg reg : liveRegs) {
+            if (reg.isCallerSave() && !reg.equals(PReg.X0)) {
+                regs.add(reg);
+            }
+        }
+        regs.sort(Comparator.comparing((PReg r) -> !r.isVector())
+                .thenComparing(PReg::isGPR)
+                .thenComparingInt(PReg::getEncoding));
+        return regs;
+    }
+
+    /** q 寄存器占 16 字节，其余 8 字节 */
+    private static int callerSavedSlotSize(PReg reg) {
+        return reg.isVector() ? 16 : WORD_SIZE;
+    }
+
     /**
      * Mock 获取调用点活跃寄存器：直接返回所有
      * caller-save（除返回值/特殊寄存器）的物理寄存器
@@ -834,7 +856,7 @@ public class FrameLowerPass implements MCPass {
     }
 
     /**
-     * 计算该函数在所有调用点需要保存的最大 caller-saved 寄存器数量。
+     * 计算该函数在所有调用点保存 caller-saved 寄存器所需的最大字节数。
      * 依赖 RegAllocPass 在 SAVE_PSEUDO 处预计算的活跃 caller-saved 信息。
      */
     private int computeMaxCallerSavedAtCalls(MachineFunc func) {
@@ -850,7 +872,7 @@ public class FrameLowerPass implements MCPass {
                     int cnt = 0;
                     for (PReg r : live) {
                         if (!r.equals(PReg.X0) && r.isCallerSave())
-                            cnt++;
+                            cnt += callerSavedSlotSize(r);
                     }
                     if (cnt > max)
                         max = cnt;
@@ -1094,8 +1116,8 @@ class FrameInfo {
         int csBytes = calleeSavedRegs.size() * 8;
         cur = calleeSavedOffset + FrameLowerPass.alignTo(csBytes, 8);
 
-        // 3. Spill 槽（溢出槽），一般不需要更大对齐
-        spillOffset = FrameLowerPass.alignTo(cur, 8);
+        // 3. Spill 槽（溢出槽），按 16 字节对齐以容纳 q 寄存器溢出
+        spillOffset = FrameLowerPass.alignTo(cur, 16);
         cur = spillOffset + spillSize;
 
         // 4. 局部变量区（如需要对齐，可改成 FrameLowerPass.alignTo(cur,
@@ -1103,8 +1125,8 @@ class FrameInfo {
         localOffset = FrameLowerPass.alignTo(cur, 8);
         cur = localOffset + localSize;
 
-        // 5. Caller-saved 临时 spill 区
-        callerSavedOffset = FrameLowerPass.alignTo(cur, 8);
+        // 5. Caller-saved 临时 spill 区（q 寄存器需要 16 字节对齐）
+        callerSavedOffset = FrameLowerPass.alignTo(cur, 16);
         cur = callerSavedOffset + callerSavedSize;
 
         // 这一部分我们暂时不把outgoingargssize算到totalsize里，因为这部分是mirgenerator在callinst中处理的
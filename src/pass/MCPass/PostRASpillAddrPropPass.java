@@ -135,14 +135,15 @@ public class PostRASpillAddrPropPass implements MCPass {
                 }
 
                 // 改写：ldr/str v, [r,#d] 且 r 携带 (fp + A) => 尝试对 [fp, #(A + d)]
-                Register base = getAddrBase(mem.getAddr());
+                // 只改写立即数偏移；[r, idx] 形式的寄存器偏移改成 fp 基址会丢掉 idx
+                Register base = mem.getAddr() instanceof ImmAddr ? getAddrBase(mem.getAddr()) : null;
                 Long carried = (base != null) ? regCarriesFpOff.get(base) : null;
                 if (base != null && carried != null) {
                     long d = getAddrOffset(mem.getAddr());
                     long finalOff = carried + d;
 
                     List<Inst> repl = createMemoryAccessIfEncodable(
-                            mem.getMnemonic(), mem.getReg1(), PReg.getFramePointer(), finalOff);
+                            mem.getMnemonic(), mem.getReg1(), PReg.getFramePointer(), finalOff, mem.is32Bit());
 
                     if (repl != null) {
                         out.addAll(repl);
@@ -200,6 +201,8 @@ public class PostRASpillAddrPropPass implements MCPass {
                 Operand src = mv.getSrc();
                 if (src instanceof Register && reg.equals((Register) src)) return true;
             }
+            // 向量 ldr/str q 的基址、dup/ins 的标量源
+            if (I instanceof VectorInst vec && vec.getUses().contains(reg)) return true;
 
             // 3) 兜底：若你的其他指令类型（如逻辑/比较）也可能用到寄存器，
             //    可以在这里按需补充。保守起见，不做字符串匹配。
@@ -246,18 +249,19 @@ public class PostRASpillAddrPropPass implements MCPass {
      * 如果 off 可用 U12/S9/U12<<12 编码，返回对应的访存指令序列；否则返回 null（放弃改写）。
      * 不引入 scratch，不改变 flags。
      */
-    private List<Inst> createMemoryAccessIfEncodable(Mnemonic mnem, Register reg, Register base, long off) {
+    private List<Inst> createMemoryAccessIfEncodable(Mnemonic mnem, Register reg, Register base, long off,
+                                                     boolean is32Bit) {
         // ① 12-bit UIMM：0..4095
         if (off >= 0 && off <= 0xFFF) {
-            return List.of(new MemInst(mnem, reg, ImmAddr.offsetU12(base, off)));
+            return List.of(new MemInst(mnem, reg, ImmAddr.offsetU12(base, off), is32Bit));
         }
         // ② 9-bit signed：-256..255 （STUR/LDUR 形态）
         if (off >= -256 && off <= 255) {
-            return List.of(new MemInst(mnem, reg, ImmAddr.preS9(base, off)));
+            return List.of(new MemInst(mnem, reg, ImmAddr.preS9(base, off), is32Bit));
         }
         // ③ 12-bit UIMM << 12：4KB 对齐，≤ 0xFFF000
         if ((off & 0xFFFL) == 0 && ((off >>> 12) <= 0xFFFL)) {
-            return List.of(new MemInst(mnem, reg, ImmAddr.offsetU12LSL12(base, off)));
+            return List.of(new MemInst(mnem, reg, ImmAddr.offsetU12LSL12(base, off), is32Bit));
         }
         // ④ 否则：放弃改写（保守）
         return null;
@@ -33,6 +33,8 @@ public class RegAllocPass implements MCPass {
     private static final int MAX_VREGS_FOR_GRAPH = 3500;
     private static final int MAX_INTERVALS_FOR_GRAPH = 9000;
     private static final int MAX_EDGES_FOR_GRAPH = 50_000;
+    // 溢出代价中块频率的下限
+    private static final double MIN_BLOCK_FREQUENCY = 1e-3;
 
     private static final Logger RegAllocLogger = LoggingManager.getLogger(RegAllocPass.class);
 
@@ -333,6 +335,10 @@ public class RegAllocPass implements MCPass {
 
             /* 3-b. 计算当前已占用寄存器 */
             List<PReg> pool = cur.isGPR ? availableGPRs : availableFPRs;
+            if (cur.v.isVector() && isLiveAcrossCall(cur.v)) {
+                // v8-v15 只有低 64 位被调用方保存，跨调用的向量只能放在 caller-saved 中
+                pool = pool.stream().filter(PReg::isCallerSave).toList();
+            }
             Set<PReg> used = active.stream()
                                  .filter(iv -> iv.isGPR == cur.isGPR)
                                  .map(iv -> iv.assigned)
@@ -423,7 +429,7 @@ public class RegAllocPass implements MCPass {
         /* 清除寄存器映射，防止重用 */
         vregToPregMap.remove(vreg);
 
-        int slot = allocateSpillSlot();
+        int slot = allocateSpillSlot(vreg);
         spilledVRegs.put(vreg, slot);
     }
 
@@ -445,17 +451,16 @@ public class RegAllocPass implements MCPass {
         interferenceGraph = buildInterferenceGraph(liveIntervals);
         RegAllocLogger.info("干扰图构建完成，节点数量: {}", interferenceGraph.getNodes().size());
 
-        // 计算溢出代价（使用块频率加权的 use 次数 + 循环深度权重）
+        // 计算溢出代价（使用块频率加权的 use 次数，块频率已包含循环放大倍数）
         Map<MachineBlock, Double> blockFreq = computeBlockFrequencies(func);
         Map<VReg, Double> useCounts = computeUseCountsWeighted(func, blockFreq);
-        Map<VReg, Double> loopWeights = computeLoopDepthWeights(func);
 
         // 在着色前执行 George/Briggs 保守合并；若发生合并则重建干扰图
         if (conservativeCoalesce(func, liveIntervals, availableGPRs.size(), availableFPRs.size())) {
             interferenceGraph = buildInterferenceGraph(liveIntervals);
         }
 
-        interferenceGraph.calculateSpillCosts(useCounts, loopWeights);
+        interferenceGraph.calculateSpillCosts(useCounts);
 
         // 执行标准图着色算法
         performStandardGraphColoring(numGPRColors, numFPRColors);
@@ -489,7 +494,7 @@ public class RegAllocPass implements MCPass {
             for (VReg b : partners) {
                 if (a == b)
                     continue;
-                if (a.isGPR() != b.isGPR())
+                if (a.getRegClass() != b.getRegClass())
                     continue;
                 String key = a.toString().compareTo(b.toString()) < 0 ? a + "<-" + b : b + "<-" + a;
                 if (!visited.add(key))
@@ -761,6 +766,10 @@ public class RegAllocPass implements MCPass {
                     Set<PReg> livePhysRegs = new HashSet<>();
                     for (VReg vreg : liveVRegs) {
                         PReg preg = vregToPregMap.get(vreg);
+                        if (preg != null && vreg.isVector()) {
+                            // 向量需要按 q 寄存器整体保存
+                            preg = PReg.getVector(preg.getEncoding());
+                        }
                         if (preg != null && preg.isCallerSave()) {
                             // 只关心caller-saved寄存器
                             livePhysRegs.add(preg);
@@ -928,6 +937,10 @@ public class RegAllocPass implements MCPass {
             // 获取可用颜色
             Set<PReg> availableColors =
                 vreg.isGPR() ? new HashSet<>(availableGPRs) : new HashSet<>(availableFPRs);
+            if (vreg.isVector() && isLiveAcrossCall(vreg)) {
+                // v8-v15 只有低 64 位被调用方保存，跨调用的向量只能放在 caller-saved 中
+                availableColors.removeIf(r -> !r.isCallerSave());
+            }
 
             // 移除邻居已使用的颜色（包括PReg的预着色和VReg的分配颜色）
             Set<PReg> usedColors = interferenceGraph.getNeighborColors(vreg);
@@ -1059,89 +1072,14 @@ public class RegAllocPass implements MCPass {
     }
 
     /**
-     * 计算虚拟寄存器的循环深度
-     * 基于控制流图分析和循环嵌套深度计算
-     */
-    private Map<VReg, Double> computeLoopDepthWeights(MachineFunc func) {
-        Map<VReg, Double> loopWeights = new HashMap<>();
-        // 1) 计算每个基本块的循环深度
-        Map<MachineBlock, Integer> blockLoopDepths = computeBlockLoopDepths(func);
-        // 2) 将深度转换为权重：2^depth
-        for (MIRList.MIRNode<MachineBlock, MachineFunc> blockNode : func.getBlocks()) {
-            MachineBlock block = blockNode.getValue();
-            int depth = blockLoopDepths.getOrDefault(block, 0);
-            double w = Math.pow(2.0, depth);
-            for (MIRList.MIRNode<Inst, MachineBlock> instNode : block.getInsts()) {
-                Inst inst = instNode.getValue();
-                for (Operand operand : inst.getOperands()) {
-                    if (operand instanceof VReg vreg) {
-                        double cur = loopWeights.getOrDefault(vreg, 0.0);
-                        loopWeights.put(vreg, Math.max(cur, w));
-                    }
-                }
-            }
-        }
-        // 3) 默认权重1.0
-        for (MIRList.MIRNode<MachineBlock, MachineFunc> blockNode : func.getBlocks()) {
-            MachineBlock block = blockNode.getValue();
-            for (MIRList.MIRNode<Inst, MachineBlock> instNode : block.getInsts()) {
-                Inst inst = instNode.getValue();
-                for (Operand operand : inst.getOperands()) {
-                    if (operand instanceof VReg vreg) {
-                        loopWeights.putIfAbsent(vreg, 1.0);
-                    }
-                }
-            }
-        }
-        return loopWeights;
-    }
-
-    /**
-     * 基本块频率估计：
-     * - 简单模型：入口块频率=1；对每条边平均分配后继概率，迭代传播若干轮到收敛或到达上限。
-     * - 作为溢出代价权重的近似。
+     * 基本块频率：取 MirGenerator 从 IR 块频率分析带下来的估计值（相对入口的期望执行次数）。
+     * - 不可达或极冷的块取下限，避免其中的 use 完全不计代价。
      */
     private Map<MachineBlock, Double> computeBlockFrequencies(MachineFunc func) {
         Map<MachineBlock, Double> freq = new HashMap<>();
-        List<MachineBlock> blocks = new ArrayList<>();
         for (MIRList.MIRNode<MachineBlock, MachineFunc> n : func.getBlocks()) {
             MachineBlock b = n.getValue();
-            blocks.add(b);
-            freq.put(b, 0.0);
-        }
-        if (blocks.isEmpty())
-            return freq;
-        MachineBlock entry = blocks.get(0);
-        freq.put(entry, 1.0);
-        // 迭代 8 轮传播概率
-        for (int it = 0; it < 8; it++) {
-            Map<MachineBlock, Double> next = new HashMap<>(freq);
-            for (MachineBlock b : blocks) {
-                double p = freq.getOrDefault(b, 0.0);
-                if (p == 0.0)
-                    continue;
-                int succN = Math.max(1, b.getSuccessors().size());
-                double share = p / succN;
-                if (b.getSuccessors().isEmpty()) {
-                    // 终结块将概率留在自身，避免全部流失
-                    next.put(b, next.getOrDefault(b, 0.0) + p);
-                } else {
-                    for (MachineBlock s : b.getSuccessors()) {
-                        next.put(s, next.getOrDefault(s, 0.0) + share);
-                    }
-                }
-            }
-            // 迭代步完成
-            freq.clear();
-            freq.putAll(next);
-        }
-        // 归一化到 [1.0, +]，避免 0
-        final Map<MachineBlock, Double> freqFinal = freq;
-        double min =
-            blocks.stream().mapToDouble(b -> freqFinal.getOrDefault(b, 0.0)).min().orElse(0.0);
-        for (MachineBlock b : blocks) {
-            double v = freq.getOrDefault(b, 0.0);
-            freq.put(b, Math.max(1.0, v - min + 1e-6));
+            freq.put(b, Math.max(MIN_BLOCK_FREQUENCY, b.getFrequency()));
         }
         return freq;
     }
@@ -1166,7 +1104,7 @@ public class RegAllocPass implements MCPass {
             for (VReg b : e.getValue()) {
                 if (a == b)
                     continue;
-                if (a.isGPR() != b.isGPR())
+                if (a.getRegClass() != b.getRegClass())
                     continue;
                 String key = a.toString().compareTo(b.toString()) < 0 ? a + "<-" + b : b + "<-" + a;
                 if (!seen.add(key))
@@ -1199,25 +1137,6 @@ public class RegAllocPass implements MCPass {
         return changed;
     }
 
-    /**
-     * 计算每个基本块的循环深度
-     */
-    private Map<MachineBlock, Integer> computeBlockLoopDepths(MachineFunc func) {
-        Map<MachineBlock, Integer> blockDepths = new HashMap<>();
-
-        RegAllocLogger.debug("计算基本块循环深度");
-
-        for (MIRList.MIRNode<MachineBlock, MachineFunc> blockNode : func.getBlocks()) {
-            MachineBlock block = blockNode.getValue();
-            int depth = block.getLoopDepth();
-            blockDepths.put(block, depth);
-
-            RegAllocLogger.debug("基本块 {} 循环深度: {}", block.getLabel(), depth);
-        }
-
-        return blockDepths;
-    }
-
     /**
      * 溢出代码插入和指令重写（优化版本，减少不必要的溢出）
      */
@@ -1345,7 +1264,8 @@ public class RegAllocPass implements MCPass {
         int roundRobin = vreg.isGPR() ? gprtempRegisterRoundRobin++ : fprtempRegisterRoundRobin++;
         // 简单的轮询分配策略
 
-        return tempPool.get(roundRobin % tempPool.size());
+        PReg temp = tempPool.get(roundRobin % tempPool.size());
+        return vreg.isVector() ? PReg.getVector(temp.getEncoding()) : temp;
     }
 
     private Map<Inst, Integer> numberInstructions(MachineFunc func) {
@@ -1660,7 +1580,8 @@ public class RegAllocPass implements MCPass {
             PReg preg = vregToPregMap.get(vreg);
 
             if (preg != null) {
-                return preg;
+                // 向量与浮点共用 v0-v31，分配结果统一记录为 s 视图，这里换成 q 视图
+                return vreg.isVector() ? PReg.getVector(preg.getEncoding()) : preg;
             } else if (tempAssignments.containsKey(vreg)) {
                 return tempAssignments.get(vreg);
             } else {
@@ -1874,15 +1795,19 @@ public class RegAllocPass implements MCPass {
         } else if (oldInst instanceof CondSelectInst condSel) {
             return new CondSelectInst(condSel.getMnemonic(), (Register) newOperands.get(0),
                 newOperands.get(1), newOperands.get(2), condSel.getCondition());
+        } else if (oldInst instanceof VectorInst vec) {
+            return vec.withOperands(newOperands);
         } else {
             throw new UnsupportedOperationException(
                 "不支持的指令类型: " + oldInst.getClass().getSimpleName());
         }
     }
 
-    private int allocateSpillSlot() {
-        int slot = nextSpillSlot;
-        nextSpillSlot += 8; // ARM64 对齐
+    private int allocateSpillSlot(VReg vreg) {
+        // 向量占 16 字节，且 ldr/str q 的缩放立即数要求 16 字节对齐
+        int size = vreg.isVector() ? 16 : 8;
+        int slot = (nextSpillSlot + size - 1) & ~(size - 1);
+        nextSpillSlot = slot + size; // ARM64 对齐
         RegAllocLogger.debug("分配栈槽: 偏移={}", slot);
         return slot;
     }
@@ -1905,7 +1830,7 @@ public class RegAllocPass implements MCPass {
         }
 
         // 分配新的唯一栈槽
-        int newSlot = allocateSpillSlot();
+        int newSlot = allocateSpillSlot(vreg);
         vregToUniqueSlot.put(vreg, newSlot);
 
         RegAllocLogger.debug("分配新的唯一栈槽: {} -> {}", vreg, newSlot);
@@ -128,19 +128,18 @@ public class InterferenceGraph {
 
     /**
      * 计算所有VReg节点的溢出代价
-     * 溢出代价 = (使用次数 * 10^循环深度) / max(度数, 1)
+     * 溢出代价 = 按块频率加权的使用次数 / max(度数, 1)
      * PReg节点不计算溢出代价（永远不溢出）
      */
-    public void calculateSpillCosts(Map<VReg, Double> useCounts, Map<VReg, Double> loopDepths) {
+    public void calculateSpillCosts(Map<VReg, Double> useCounts) {
         for (Node node : nodes.values()) {
             if (!node.isPrecolored && node.getVReg() != null) {
                 VReg vreg = node.getVReg();
                 double useCount = useCounts.getOrDefault(vreg, 1.0);
-                double loopDepth = loopDepths.getOrDefault(vreg, 1.0);
 
-                // 溢出代价公式：使用频率越高，循环嵌套越深，代价越高
+                // 溢出代价公式：在热块（循环内）中使用得越多，代价越高
                 // 度数越高的节点，溢出后对其他节点的影响越大，所以代价降低
-                node.spillCost = useCount * Math.pow(10, loopDepth) / Math.max(node.degree, 1);
+                node.spillCost = useCount / Math.max(node.degree, 1);
             }
         }
     }
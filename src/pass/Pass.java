@@ -1,5 +1,7 @@
 package pass;
 
+import ir.value.Function;
+
 
 public interface Pass {
     // just a mark class for future change
@@ -11,6 +13,14 @@ public interface Pass {
         void run();
     }
 
+    /**
+     * 可以只对单个函数运行的 IR pass，供按调用图 SCC 自底向上调度时使用；
+     * run() 等价于对模块中每个定义的函数调用一次 run(func)
+     */
+    public interface FunctionPass extends IRPass {
+        void run(Function func);
+    }
+
     public interface MCPass extends Pass {
         // TODO: change the interface base on what we need
         //       may be we need to add some context in the run method
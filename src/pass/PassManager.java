@@ -3,6 +3,7 @@ package pass;
 import driver.Config;
 import exception.CompileException;
 import ir.NLVMModule;
+import ir.value.Function;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -13,9 +14,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import pass.IRPassType;
 import pass.MCPassType;
+import pass.IRPass.analysis.CallGraph;
+import pass.Pass.FunctionPass;
 import pass.Pass.IRPass;
 import pass.Pass.MCPass;
 import util.LoggingManager;
@@ -92,7 +96,8 @@ public class PassManager {
         setIRPipeline(
                 IRPassType.MergeBlocks,
                 IRPassType.MergeBlocks,
-                IRPassType.FunctionInline,
+                // 自底向上：被调函数先化简，再按优化后的大小决定是否内联
+                IRPassType.CallGraphSCC,
                 IRPassType.TailRecursionElimination,
                 // IRPassType.PhiStatsPass,
 
@@ -145,6 +150,7 @@ public class PassManager {
                 IRPassType.GCM,
                 IRPassType.InstCombinePass,
                 IRPassType.GVN,
+                IRPassType.DeadStoreElimination,
                 IRPassType.GCM,
                 // Loop normalization + analysis
                 IRPassType.LoopSimplifyPass,
@@ -170,6 +176,7 @@ public class PassManager {
                 IRPassType.GCM,
                 IRPassType.InstCombinePass,
                 IRPassType.GVN,
+                IRPassType.DeadStoreElimination,
                 IRPassType.GCM,
 
                 IRPassType.GEPJoint,
@@ -182,6 +189,10 @@ public class PassManager {
                 // 清理环 #1：紧随 SSA
                 IRPassType.PhiSimplifyPass,
                 IRPassType.MergeBlocks,
+                // 没被内联的大函数、递归函数按热点常量实参克隆，克隆体里的常量由下面的 IPSCCP 折叠
+                IRPassType.FunctionSpecialization,
+                // 跨函数传播常量实参、常量返回值与只写一个常量的全局，被调函数里的死分支交给下面的 DCE
+                IRPassType.IPSCCP,
                 IRPassType.ConstantPropagation,
                 IRPassType.DeadCodeElimination,
                 IRPassType.CFGAnalysis,
@@ -220,6 +231,7 @@ public class PassManager {
                 IRPassType.CFGAnalysis,
                 IRPassType.IfToSelectPass,
                 IRPassType.GVN,
+                IRPassType.DeadStoreElimination,
                 IRPassType.GCM,
                 // Loop normalization + analysis
                 IRPassType.LoopSimplifyPass,
@@ -227,7 +239,18 @@ public class PassManager {
                 IRPassType.InstCombinePass,
                 IRPassType.LCSSAPass,
                 // Profit-driven loop transforms
+                // 循环交换与分块放在 LICM 之前：此时嵌套仍是完美的
+                IRPassType.LoopInterchange,
+                IRPassType.LoopTiling,
                 IRPassType.LoopLICMPass,
+                // LICM 把不变的比较提出循环后，再把以它为条件的分支提到循环之前
+                IRPassType.LoopUnswitch,
+                // 填充 / 拷贝循环换成运行时调用，要赶在展开与向量化把循环体复制开之前
+                IRPassType.LoopIdiomRecognize,
+                // 退出值换成闭式后没有副作用的循环成为死循环，由本组末尾的 DeadLoopElimination 删除
+                IRPassType.LoopExitValue,
+                // 无携带依赖的最外层循环外提为循环体函数交给线程池；同样要在展开、向量化之前，循环体函数里再各自优化
+                IRPassType.LoopParallelize,
                 IRPassType.LoopUnrollPass,
                 IRPassType.LoopFusionPass,
                 IRPassType.LoopStrengthReductionPass,
@@ -237,6 +260,8 @@ public class PassManager {
                 IRPassType.LoopFusionPass,
                 IRPassType.LoopStrengthReductionPass,
                 IRPassType.DeadLoopEliminationPass,
+                // 值域化简：消除循环边界下冗余的比较、非负数的 2^k 取余 / 除法
+                IRPassType.ValueRangeSimplify,
                 // 清理环 #2：循环优化之后
                 IRPassType.PhiSimplifyPass,
                 IRPassType.MergeBlocks,
@@ -268,6 +293,8 @@ public class PassManager {
 
                 IRPassType.ArrayStoreRemovement,
 
+                // 部分 / 运行时展开：复制出的循环体交给随后的 DCE、块合并与 GVN 清理
+                IRPassType.LoopPartialUnroll,
                 IRPassType.DeadCodeElimination,
                 IRPassType.ConstantPropagation,
                 IRPassType.DeadCodeElimination,
@@ -279,9 +306,16 @@ public class PassManager {
 
                 IRPassType.InstCombinePass,
                 IRPassType.GVN,
+                // GVN 只在块内编号：跨块的完全冗余与汇合处的部分冗余在这里补算、合并
+                IRPassType.PRE,
                 IRPassType.InstCombinePass,
                 IRPassType.GCM,
                 IRPassType.InstCombinePass,
+                // 向量化放在最后：之后的 pass 只需保留它生成的向量指令
+                IRPassType.LoopVectorize,
+                IRPassType.SLPVectorizer,
+                // 并行循环的运行时调用最后才按定长原型把实参扩成 long，之前各 pass 都能看到指针实参
+                IRPassType.ParallelForLowering,
 
                 IRPassType.CFGAnalysis,
                 IRPassType.BlockLayout
@@ -455,6 +489,45 @@ public class PassManager {
         }
     }
 
+    /**
+     * 按调用图强连通分量自底向上运行函数级 pipeline：
+     * 每个分量（被调者在前）先执行 sccAction（如内联），再对分量内的函数依次运行各 pass。
+     * sccAction 改写函数后需自行更新调用图；分量顺序在开始时确定，内联不会破坏它。
+     */
+    public void runBottomUp(CallGraph callGraph, List<FunctionPass> pipeline, Consumer<List<Function>> sccAction) {
+        for (List<Function> scc : new ArrayList<>(callGraph.getBottomUpSCCs())) {
+            if (sccAction != null) {
+                sccAction.accept(scc);
+            }
+            for (Function f : scc) {
+                for (FunctionPass p : pipeline) {
+                    if (Config.getInstance().isDebug) {
+                        log.info("[IR] " + p.getType().getName() + " @" + f.getName());
+                    }
+                    p.run(f);
+                }
+            }
+        }
+    }
+
+    /**
+     * 构造函数级 pipeline，同样受 -Dir.passes 过滤；不支持单函数运行的 pass 直接报错
+     */
+    public List<FunctionPass> createFunctionPipeline(IRPassType... types) {
+        List<FunctionPass> pipeline = new ArrayList<>();
+        for (IRPassType type : types) {
+            if (!enabledIR.isEmpty() && !enabledIR.contains(type.getName())) {
+                continue;
+            }
+            IRPass p = type.create();
+            if (!(p instanceof FunctionPass fp)) {
+                throw new CompileException("pass can not run on a single function: " + type.getName());
+            }
+            pipeline.add(fp);
+        }
+        return pipeline;
+    }
+
     // TODO: we may want to change the implements of runing pass
     public void runMCPasses() {
         for (MCPass p : mcPipeline) {
@@ -482,6 +555,9 @@ public class PassManager {
     private void setIRPipeline(IRPassType... types) {
         irPipeline.clear();
         for (IRPassType type : types) {
+            // 向量化生成的 vload / vadd 等只有后端能翻译，输出 LLVM IR 时不做
+            if ((type == IRPassType.LoopVectorize || type == IRPassType.SLPVectorizer) && Config.getInstance().emitLLVM)
+                continue;
             if (enabledIR.isEmpty() || enabledIR.contains(type.getName())) {
                 irPipeline.add(type.create());
             }
@@ -24,6 +24,7 @@ public class LLVMIRParser {
     private final Map<String, Value> valueMap; // 存储变量名到Value的映射
     private final Map<String, BasicBlock> blockMap; // 存储基本块名到BasicBlock的映射
     private final Map<String, Type> typeMap; // 存储类型缓存
+    private final Map<String, Matcher> packedGlobals = new HashMap<>(); // 数据全局名 → 其定义，等别名出现时再建全局变量
 
     private NLVMModule module;
     private Function currentFunction;
@@ -34,6 +35,11 @@ public class LLVMIRParser {
     // 正则表达式模式
     private static final Pattern GLOBAL_VAR_PATTERN = Pattern
             .compile("@([\\w.-]+)\\s*=\\s*(?:global|constant)\\s+([^\\s]+(?:\\s*\\*)*)\\s+(.+?)(?:, align \\d+)?$");
+    // 大而稀疏的数组：packed struct 类型的数据全局 + 把它 bitcast 成数组指针的别名（见 GlobalVariable）
+    private static final Pattern PACKED_GLOBAL_PATTERN = Pattern
+            .compile("@([\\w.-]+)\\s*=\\s*private\\s+(?:unnamed_addr\\s+)?(global|constant)\\s+<\\{.*?\\}>\\s+<\\{(.*)\\}>(?:, align \\d+)?$");
+    private static final Pattern GLOBAL_ALIAS_PATTERN = Pattern
+            .compile("@([\\w.-]+)\\s*=\\s*(?:private\\s+)?alias\\s+([^,]+),.*\\s@([\\w.-]+)\\s+to\\s");
     private static final Pattern FUNCTION_DECLARE_PATTERN = Pattern
             .compile("declare\\s+(\\S+)\\s+@(\\w+)\\s*\\(([^)]*)\\)");
     // 允许：define  [任意多修饰符]  <retTy>  @name ( … )  [任意多修饰符] {
@@ -175,6 +181,18 @@ public class LLVMIRParser {
      * 第一阶段解析：只处理结构性元素和值定义
      */
     private void parseLineFirstPass(String line) throws LLVMParseException {
+        Matcher packedMatcher = PACKED_GLOBAL_PATTERN.matcher(line);
+        if (packedMatcher.find()) {
+            packedGlobals.put(packedMatcher.group(1), packedMatcher);
+            return;
+        }
+
+        Matcher aliasMatcher = GLOBAL_ALIAS_PATTERN.matcher(line);
+        if (aliasMatcher.find()) {
+            parsePackedGlobal(aliasMatcher);
+            return;
+        }
+
         Matcher globalMatcher = GLOBAL_VAR_PATTERN.matcher(line);
         if (globalMatcher.find()) {
             parseGlobalVariable(globalMatcher);
@@ -290,7 +308,8 @@ public class LLVMIRParser {
         }
 
         // Skip elements already processed in the first pass
-        if (GLOBAL_VAR_PATTERN.matcher(line).find() ||
+        if (GLOBAL_VAR_PATTERN.matcher(line).find() || PACKED_GLOBAL_PATTERN.matcher(line).find()
+                || GLOBAL_ALIAS_PATTERN.matcher(line).find() ||
             FUNCTION_DECLARE_PATTERN.matcher(line).find()) {
             return;
         }
@@ -377,6 +396,37 @@ public class LLVMIRParser {
         }
     }
 
+    /**
+     * 别名 @name 指向之前定义的 packed struct 数据全局：按别名的数组类型建全局变量，
+     * 字段里的 [k x T] zeroinitializer 跳过 k 个元素，其余字段逐个作为非零元素
+     */
+    private void parsePackedGlobal(Matcher alias) throws LLVMParseException {
+        String name = alias.group(1);
+        Matcher data = packedGlobals.remove(alias.group(3));
+        Type type = parseType(alias.group(2).trim());
+        if (data == null || !(type instanceof ArrayType arrayType)) {
+            throw new LLVMParseException("Unsupported alias: @" + name, currentLineNumber, alias.group(0));
+        }
+        Type scalarType = arrayType;
+        while (scalarType instanceof ArrayType at) {
+            scalarType = at.getElementType();
+        }
+        Map<Integer, Constant> nonZeros = new HashMap<>();
+        int flat = 0;
+        for (String field : data.group(3).split(",")) {
+            field = field.trim();
+            if (field.startsWith("[")) {
+                flat += Integer.parseInt(field.substring(1, field.indexOf(' ')));
+            } else {
+                nonZeros.put(flat++, parseConstant(splitTypeAndValue(field)[1], scalarType));
+            }
+        }
+        GlobalVariable global = module.addGlobal(type, name);
+        global.setConst(data.group(2).equals("constant"));
+        global.setInitializer(new ConstantSparseArray(arrayType, nonZeros));
+        valueMap.put("@" + name, global);
+    }
+
     /**
      * 智能分离类型和初始化器，处理嵌套括号
      */
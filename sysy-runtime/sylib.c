@@ -1,6 +1,12 @@
 #include<stdio.h>
 #include<stdarg.h>
 #include<sys/time.h>
+#include<string.h>
+#include<pthread.h>
+#include<unistd.h>
+#ifdef __ARM_NEON
+#include<arm_neon.h>
+#endif
 #include"sylib.h"
 /* Input & output functions */
 int getint(){int t; scanf("%d",&t); return t; }
@@ -51,6 +57,134 @@ void putf(char a[], ...) {
     va_end(args);
 }
 
+/* Bulk fill & copy */
+void _sysy_memset_i32(int *dst, int val, int n){
+  if(n<=0) return;
+  /* zero fill: libc memset clears whole cache lines (dc zva) */
+  if(val==0){ memset(dst,0,(size_t)n*sizeof(int)); return; }
+  int i=0;
+#ifdef __ARM_NEON
+  int32x4_t v=vdupq_n_s32(val);
+  for(;i+16<=n;i+=16){
+    vst1q_s32(dst+i,v); vst1q_s32(dst+i+4,v);
+    vst1q_s32(dst+i+8,v); vst1q_s32(dst+i+12,v);
+  }
+  for(;i+4<=n;i+=4) vst1q_s32(dst+i,v);
+#endif
+  for(;i<n;i++) dst[i]=val;
+}
+void _sysy_memset_f32(float *dst, float val, int n){
+  /* fill by bit pattern, so -0.0f is not mistaken for a zero fill */
+  int bits;
+  memcpy(&bits,&val,sizeof bits);
+  _sysy_memset_i32((int *)dst,bits,n);
+}
+void _sysy_memcpy_i32(int *dst, const int *src, int n){
+  if(n<=0) return;
+  int i=0;
+#ifdef __ARM_NEON
+  for(;i+16<=n;i+=16){
+    int32x4_t a=vld1q_s32(src+i), b=vld1q_s32(src+i+4);
+    int32x4_t c=vld1q_s32(src+i+8), d=vld1q_s32(src+i+12);
+    vst1q_s32(dst+i,a); vst1q_s32(dst+i+4,b);
+    vst1q_s32(dst+i+8,c); vst1q_s32(dst+i+12,d);
+  }
+  for(;i+4<=n;i+=4) vst1q_s32(dst+i,vld1q_s32(src+i));
+#endif
+  for(;i<n;i++) dst[i]=src[i];
+}
+void _sysy_memcpy_f32(float *dst, const float *src, int n){
+  _sysy_memcpy_i32((int *)dst,(const int *)src,n);
+}
+
+/* Parallel loops: the calling thread runs chunk 0, a pool of workers created on
+   first use runs the others. A task is published under the lock by bumping the
+   generation; the caller returns once every chunk has finished. */
+static struct {
+  pthread_mutex_t lock;
+  pthread_cond_t start, done;
+  unsigned long gen;
+  int threads, chunks, pending;
+  _sysy_par_body body;
+  int lo, hi;
+  long a[4];
+  float f[8];
+} _sysy_par = { PTHREAD_MUTEX_INITIALIZER, PTHREAD_COND_INITIALIZER, PTHREAD_COND_INITIALIZER };
+/* set on workers and while the caller runs its own chunk: nested loops run serially */
+static __thread int _sysy_par_inside;
+
+static void _sysy_par_run(int k){
+  long n=(long)_sysy_par.hi-_sysy_par.lo;
+  int lo=(int)(_sysy_par.lo+n*k/_sysy_par.chunks);
+  int hi=(int)(_sysy_par.lo+n*(k+1)/_sysy_par.chunks);
+  const long *a=_sysy_par.a;
+  const float *f=_sysy_par.f;
+  _sysy_par.body(lo,hi,k,a[0],a[1],a[2],a[3],f[0],f[1],f[2],f[3],f[4],f[5],f[6],f[7]);
+}
+static void *_sysy_par_worker(void *arg){
+  int k=(int)(long)arg;
+  unsigned long seen=0; /* workers are created before the first task */
+  _sysy_par_inside=1;
+  pthread_mutex_lock(&_sysy_par.lock);
+  for(;;){
+    while(_sysy_par.gen==seen) pthread_cond_wait(&_sysy_par.start,&_sysy_par.lock);
+    seen=_sysy_par.gen;
+    if(k>=_sysy_par.chunks) continue;
+    pthread_mutex_unlock(&_sysy_par.lock);
+    _sysy_par_run(k);
+    pthread_mutex_lock(&_sysy_par.lock);
+    if(--_sysy_par.pending==0) pthread_cond_signal(&_sysy_par.done);
+  }
+  return NULL;
+}
+static int _sysy_par_threads(){
+  if(_sysy_par.threads) return _sysy_par.threads;
+  long cpus=sysconf(_SC_NPROCESSORS_ONLN);
+  int want=cpus<1?1:cpus>_SYSY_PAR_SLOTS?_SYSY_PAR_SLOTS:(int)cpus;
+  int t=1;
+  for(;t<want;t++){
+    pthread_t tid;
+    if(pthread_create(&tid,NULL,_sysy_par_worker,(void *)(long)t)!=0) break;
+    pthread_detach(tid);
+  }
+  return _sysy_par.threads=t;
+}
+void _sysy_parallel_for(_sysy_par_body body, int lo, int hi, int grain,
+                        long a0, long a1, long a2, long a3,
+                        float f0, float f1, float f2, float f3,
+                        float f4, float f5, float f6, float f7){
+  if(hi<=lo) return;
+  long n=(long)hi-lo;
+  long chunks=n/(grain<1?1:grain);
+  if(!_sysy_par_inside && chunks>1){
+    int t=_sysy_par_threads();
+    if(chunks>t) chunks=t;
+  }
+  if(_sysy_par_inside || chunks<=1){
+    body(lo,hi,0,a0,a1,a2,a3,f0,f1,f2,f3,f4,f5,f6,f7);
+    return;
+  }
+  pthread_mutex_lock(&_sysy_par.lock);
+  _sysy_par.body=body;
+  _sysy_par.lo=lo; _sysy_par.hi=hi;
+  _sysy_par.chunks=(int)chunks;
+  _sysy_par.pending=(int)chunks-1;
+  _sysy_par.a[0]=a0; _sysy_par.a[1]=a1; _sysy_par.a[2]=a2; _sysy_par.a[3]=a3;
+  _sysy_par.f[0]=f0; _sysy_par.f[1]=f1; _sysy_par.f[2]=f2; _sysy_par.f[3]=f3;
+  _sysy_par.f[4]=f4; _sysy_par.f[5]=f5; _sysy_par.f[6]=f6; _sysy_par.f[7]=f7;
+  _sysy_par.gen++;
+  pthread_cond_broadcast(&_sysy_par.start);
+  pthread_mutex_unlock(&_sysy_par.lock);
+
+  _sysy_par_inside=1;
+  _sysy_par_run(0);
+  _sysy_par_inside=0;
+
+  pthread_mutex_lock(&_sysy_par.lock);
+  while(_sysy_par.pending) pthread_cond_wait(&_sysy_par.done,&_sysy_par.lock);
+  pthread_mutex_unlock(&_sysy_par.lock);
+}
+
 /* Timing function implementation */
 __attribute((constructor)) void before_main(){
   for(int i=0;i<_SYSY_N;i++)
@@ -15,6 +15,25 @@ void putfarray(int n, float a[]);
 
 void putf(char a[], ...);
 
+/* Bulk fill & copy emitted by the compiler for idiom loops (n counts elements) */
+void _sysy_memset_i32(int *dst, int val, int n);
+void _sysy_memset_f32(float *dst, float val, int n);
+void _sysy_memcpy_i32(int *dst, const int *src, int n);
+void _sysy_memcpy_f32(float *dst, const float *src, int n);
+
+/* Parallel loops emitted by the compiler: [lo, hi) is split into at most
+   _SYSY_PAR_SLOTS contiguous chunks, chunk k runs body(lo_k, hi_k, k, ...) on its
+   own thread. The integer / pointer and float arguments are forwarded unchanged
+   in the argument registers; unused ones are ignored by the body. */
+#define _SYSY_PAR_SLOTS 8
+typedef void (*_sysy_par_body)(int lo, int hi, int tid, long a0, long a1, long a2, long a3,
+                               float f0, float f1, float f2, float f3,
+                               float f4, float f5, float f6, float f7);
+void _sysy_parallel_for(_sysy_par_body body, int lo, int hi, int grain,
+                        long a0, long a1, long a2, long a3,
+                        float f0, float f1, float f2, float f3,
+                        float f4, float f5, float f6, float f7);
+
 /* Timing function implementation */
 struct timeval _sysy_start,_sysy_end;
 #define starttime() _sysy_starttime(__LINE__)